@@ -1,5 +1,7 @@
 package bisq.common.config;
 
+import bisq.common.persistence.StorageCodec;
+
 import org.bitcoinj.core.NetworkParameters;
 
 import joptsimple.AbstractOptionSpec;
@@ -81,6 +83,8 @@ public class Config {
     public static final String BAN_LIST = "banList";
     public static final String NODE_PORT = "nodePort";
     public static final String USE_LOCALHOST_FOR_P2P = "useLocalhostForP2P";
+    public static final String NIO_SELECTOR_THREADS = "nioSelectorThreads";
+    public static final String STORAGE_VALIDATION_THREADS = "storageValidationThreads";
     public static final String MAX_CONNECTIONS = "maxConnections";
     public static final String SOCKS_5_PROXY_BTC_ADDRESS = "socks5ProxyBtcAddress";
     public static final String SOCKS_5_PROXY_HTTP_ADDRESS = "socks5ProxyHttpAddress";
@@ -110,6 +114,8 @@ public class Config {
     public static final String RPC_BLOCK_NOTIFICATION_PORT = "rpcBlockNotificationPort";
     public static final String RPC_BLOCK_NOTIFICATION_HOST = "rpcBlockNotificationHost";
     public static final String DUMP_BLOCKCHAIN_DATA = "dumpBlockchainData";
+    public static final String DAO_STATE_BLOCK_SEGMENTS = "daoStateBlockSegments";
+    public static final String STORAGE_CODEC = "storageCodec";
     public static final String FULL_DAO_NODE = "fullDaoNode";
     public static final String GENESIS_TX_ID = "genesisTxId";
     public static final String GENESIS_BLOCK_HEIGHT = "genesisBlockHeight";
@@ -168,6 +174,8 @@ public class Config {
     public final List<String> seedNodes;
     public final List<String> banList;
     public final boolean useLocalhostForP2P;
+    public final int nioSelectorThreads;
+    public final int storageValidationThreads;
     public final int maxConnections;
     public final String socks5ProxyBtcAddress;
     public final String socks5ProxyHttpAddress;
@@ -196,6 +204,8 @@ public class Config {
     public final int rpcBlockNotificationPort;
     public final String rpcBlockNotificationHost;
     public final boolean dumpBlockchainData;
+    public final boolean daoStateBlockSegments;
+    public final StorageCodec storageCodec;
     public final boolean fullDaoNode;
     public final boolean fullDaoNodeOptionSetExplicitly;
     public final String genesisTxId;
@@ -413,6 +423,20 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Integer> nioSelectorThreadsOpt =
+                parser.accepts(NIO_SELECTOR_THREADS, "Number of selector threads used for non-blocking I/O of the " +
+                        "localhost P2P network. If 0 each connection uses its own input thread.")
+                        .withRequiredArg()
+                        .ofType(int.class)
+                        .defaultsTo(0);
+
+        ArgumentAcceptingOptionSpec<Integer> storageValidationThreadsOpt =
+                parser.accepts(STORAGE_VALIDATION_THREADS, "Number of threads used to validate and apply the offer " +
+                        "and mailbox data received from the P2P network. If 0 it is done on the user thread.")
+                        .withRequiredArg()
+                        .ofType(int.class)
+                        .defaultsTo(0);
+
         ArgumentAcceptingOptionSpec<Integer> maxConnectionsOpt =
                 parser.accepts(MAX_CONNECTIONS, "Max. connections a peer will try to keep")
                         .withRequiredArg()
@@ -583,6 +607,24 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Boolean> daoStateBlockSegmentsOpt =
+                parser.accepts(DAO_STATE_BLOCK_SEGMENTS, "If set to true the blocks of the persisted DAO state " +
+                        "are written once to block range segment files and only the recent blocks and the mutable " +
+                        "state are rewritten at each snapshot. Versions without support for block segments would " +
+                        "read such a DAO state without its old blocks, so do not enable it if you might downgrade.")
+                        .withRequiredArg()
+                        .ofType(boolean.class)
+                        .defaultsTo(false);
+
+        //noinspection rawtypes
+        ArgumentAcceptingOptionSpec<Enum> storageCodecOpt =
+                parser.accepts(STORAGE_CODEC, "Compression of large persisted files (NONE, DEFLATE_FAST, DEFLATE). " +
+                        "Files in any format can be read independent of that option.")
+                        .withRequiredArg()
+                        .ofType(StorageCodec.class)
+                        .withValuesConvertedBy(new EnumValueConverter(StorageCodec.class))
+                        .defaultsTo(StorageCodec.NONE);
+
         ArgumentAcceptingOptionSpec<Boolean> fullDaoNodeOpt =
                 parser.accepts(FULL_DAO_NODE, "If set to true the node requests the blockchain data via RPC requests " +
                         "from Bitcoin Core and provide the validated BSQ txs to the network. It requires that the " +
@@ -723,6 +765,8 @@ public class Config {
             this.seedNodes = options.valuesOf(seedNodesOpt);
             this.banList = options.valuesOf(banListOpt);
             this.useLocalhostForP2P = !this.baseCurrencyNetwork.isMainnet() && options.valueOf(useLocalhostForP2POpt);
+            this.nioSelectorThreads = options.valueOf(nioSelectorThreadsOpt);
+            this.storageValidationThreads = options.valueOf(storageValidationThreadsOpt);
             this.maxConnections = options.valueOf(maxConnectionsOpt);
             this.socks5ProxyBtcAddress = options.valueOf(socks5ProxyBtcAddressOpt);
             this.socks5ProxyHttpAddress = options.valueOf(socks5ProxyHttpAddressOpt);
@@ -744,6 +788,8 @@ public class Config {
             this.rpcBlockNotificationPort = options.valueOf(rpcBlockNotificationPortOpt);
             this.rpcBlockNotificationHost = options.valueOf(rpcBlockNotificationHostOpt);
             this.dumpBlockchainData = options.valueOf(dumpBlockchainDataOpt);
+            this.daoStateBlockSegments = options.valueOf(daoStateBlockSegmentsOpt);
+            this.storageCodec = (StorageCodec) options.valueOf(storageCodecOpt);
             this.fullDaoNode = options.valueOf(fullDaoNodeOpt);
             this.fullDaoNodeOptionSetExplicitly = options.has(fullDaoNodeOpt);
             this.genesisTxId = options.valueOf(genesisTxIdOpt);
@@ -24,8 +24,12 @@ import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -35,7 +39,6 @@ import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -43,7 +46,23 @@ import javax.annotation.Nullable;
 
 @Slf4j
 public class FileUtil {
+    public enum BackupMode {
+        // Copies the content of the file
+        COPY,
+        // Creates a hard link to the file, so no bytes get copied. Must only be used for files which are never changed
+        // in place but always replaced by renaming a new file to it, otherwise the backup would change as well. Falls
+        // back to COPY if the file system does not support hard links.
+        HARD_LINK
+    }
+
+    // Set once we got an exception at creating a hard link, so we do not try again
+    private static volatile boolean hardLinksUnsupported;
+
     public static void rollingBackup(File dir, String fileName, int numMaxBackupFiles) {
+        rollingBackup(dir, fileName, numMaxBackupFiles, BackupMode.COPY);
+    }
+
+    public static void rollingBackup(File dir, String fileName, int numMaxBackupFiles, BackupMode backupMode) {
         if (dir.exists()) {
             File backupDir = new File(Paths.get(dir.getAbsolutePath(), "backup").toString());
             if (!backupDir.exists())
@@ -63,7 +82,11 @@ public class FileUtil {
                 File backupFile = new File(Paths.get(backupFileDir.getAbsolutePath(), new Date().getTime() + "_" + fileName).toString());
 
                 try {
-                    Files.copy(origFile, backupFile);
+                    if (backupMode == BackupMode.HARD_LINK && !hardLinksUnsupported) {
+                        linkOrCopy(origFile, backupFile);
+                    } else {
+                        Files.copy(origFile, backupFile);
+                    }
 
                     pruneBackup(backupFileDir, numMaxBackupFiles);
                 } catch (IOException e) {
@@ -74,24 +97,35 @@ public class FileUtil {
         }
     }
 
+    private static void linkOrCopy(File origFile, File backupFile) throws IOException {
+        try {
+            java.nio.file.Files.createLink(backupFile.toPath(), origFile.toPath());
+        } catch (FileAlreadyExistsException e) {
+            log.warn("Backup file {} exists already", backupFile.getName());
+        } catch (UnsupportedOperationException | FileSystemException | SecurityException e) {
+            log.warn("Creating a hard link for the backup failed. We copy the files from now on. {}", e.toString());
+            hardLinksUnsupported = true;
+            Files.copy(origFile, backupFile);
+        }
+    }
+
     private static void pruneBackup(File backupDir, int numMaxBackupFiles) {
-        if (backupDir.isDirectory()) {
-            File[] files = backupDir.listFiles();
-            if (files != null) {
-                List<File> filesList = Arrays.asList(files);
-                if (filesList.size() > numMaxBackupFiles) {
-                    filesList.sort(Comparator.comparing(File::getName));
-                    File file = filesList.get(0);
-                    if (file.isFile()) {
-                        if (!file.delete())
-                            log.error("Failed to delete file: " + file);
-                        else
-                            pruneBackup(backupDir, numMaxBackupFiles);
+        if (!backupDir.isDirectory())
+            return;
 
-                    } else {
-                        pruneBackup(new File(Paths.get(backupDir.getAbsolutePath(), file.getName()).toString()), numMaxBackupFiles);
-                    }
-                }
+        File[] files = backupDir.listFiles();
+        if (files == null || files.length <= numMaxBackupFiles)
+            return;
+
+        // The file names start with the timestamp, so the oldest come first
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (int i = 0; i < files.length - numMaxBackupFiles; i++) {
+            File file = files[i];
+            if (file.isFile()) {
+                if (!file.delete())
+                    log.error("Failed to delete file: " + file);
+            } else {
+                pruneBackup(file, numMaxBackupFiles);
             }
         }
     }
@@ -183,6 +217,19 @@ public class FileUtil {
         }
     }
 
+    // Makes a created, deleted or renamed file of the directory durable. A directory cannot be opened on Windows, so
+    // we skip it there.
+    public static void syncDirectory(File dir) {
+        if (Utilities.isWindows())
+            return;
+
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.warn("Syncing directory {} failed. {}", dir, e.toString());
+        }
+    }
+
     public static void copyFile(File origin, File target) throws IOException {
         if (!origin.exists()) {
             return;
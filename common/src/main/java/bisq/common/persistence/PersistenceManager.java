@@ -17,7 +17,6 @@
 
 package bisq.common.persistence;
 
-import bisq.common.Timer;
 import bisq.common.UserThread;
 import bisq.common.app.DevEnv;
 import bisq.common.config.Config;
@@ -26,7 +25,12 @@ import bisq.common.file.FileUtil;
 import bisq.common.handlers.ResultHandler;
 import bisq.common.proto.persistable.PersistableEnvelope;
 import bisq.common.proto.persistable.PersistenceProtoResolver;
-import bisq.common.util.Utilities;
+import bisq.common.proto.persistable.StreamingEnvelopeDecoder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 
 import com.google.inject.Inject;
 
@@ -34,19 +38,26 @@ import javax.inject.Named;
 
 import java.nio.file.Path;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -80,10 +91,43 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public static final Map<String, PersistenceManager<?>> ALL_PERSISTENCE_MANAGERS = new HashMap<>();
+    private static final Map<String, SerializationStats> SERIALIZATION_STATS = new ConcurrentHashMap<>();
+    // Small files are not worth compressing
+    private static final int MIN_SIZE_FOR_COMPRESSION = 256 * 1024;
+    private static final int MAX_VARINT_SIZE = 5;
+    private static volatile StorageCodec storageCodec = StorageCodec.NONE;
+
+    // Reading is mostly parsing, so we use about one thread per core. The threads terminate once startup is done.
+    private static final int NUM_READ_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor READ_EXECUTOR = new ThreadPoolExecutor(NUM_READ_THREADS,
+            NUM_READ_THREADS,
+            10,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("PersistenceManager-read-%d").setDaemon(true).build());
+
+    static {
+        READ_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Used by stores which need to read further files beside the one of their PersistenceManager
+    public static Executor getReadExecutor() {
+        return READ_EXECUTOR;
+    }
+
+    public static void setStorageCodec(StorageCodec storageCodec) {
+        PersistenceManager.storageCodec = storageCodec;
+    }
+
+    public static Map<String, SerializationStats> getSerializationStats() {
+        return Collections.unmodifiableMap(SERIALIZATION_STATS);
+    }
 
     // We don't know from which thread we are called so we map back to user thread
     public static void flushAllDataToDisk(ResultHandler completeHandler) {
         log.info("Start flushAllDataToDisk at shutdown");
+        SERIALIZATION_STATS.forEach((fileName, stats) -> log.info("Serialization of {}: {}", fileName, stats));
+        log.info("PersistenceScheduler: {}", PersistenceScheduler.INSTANCE);
         AtomicInteger openInstances = new AtomicInteger(ALL_PERSISTENCE_MANAGERS.size());
 
         if (openInstances.get() == 0) {
@@ -126,13 +170,13 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
     public enum Source {
         // For data stores we received from the network and which could be rebuilt. We store only for avoiding too much network traffic.
-        NETWORK(1, TimeUnit.HOURS.toSeconds(1), false),
+        NETWORK(1, TimeUnit.HOURS.toSeconds(1), false, TimeUnit.DAYS.toSeconds(1), 2),
 
         // For data stores which are created from private local data. This data could only be rebuilt from backup files.
-        PRIVATE(10, TimeUnit.SECONDS.toSeconds(30), true),
+        PRIVATE(10, TimeUnit.SECONDS.toSeconds(30), true, 0, 0),
 
         // For data stores which are created from private local data. Loss of that data would not have any critical consequences.
-        PRIVATE_LOW_PRIO(4, TimeUnit.HOURS.toSeconds(2), false);
+        PRIVATE_LOW_PRIO(4, TimeUnit.HOURS.toSeconds(2), false, TimeUnit.DAYS.toSeconds(1), 1);
 
 
         @Getter
@@ -141,11 +185,23 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         private final long delayInSec;
         @Getter
         private final boolean flushAtShutDown;
+        // Min. time between two backups. The first write after startup always creates a backup.
+        @Getter
+        private final long backupIntervalInSec;
+        // Pending writes with a lower value are written first
+        @Getter
+        private final int writePriority;
 
-        Source(int numMaxBackupFiles, long delayInSec, boolean flushAtShutDown) {
+        Source(int numMaxBackupFiles,
+               long delayInSec,
+               boolean flushAtShutDown,
+               long backupIntervalInSec,
+               int writePriority) {
             this.numMaxBackupFiles = numMaxBackupFiles;
             this.delayInSec = delayInSec;
             this.flushAtShutDown = flushAtShutDown;
+            this.backupIntervalInSec = backupIntervalInSec;
+            this.writePriority = writePriority;
         }
     }
 
@@ -155,17 +211,17 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private final File dir;
+    @Getter
     private final PersistenceProtoResolver persistenceProtoResolver;
     private final CorruptedStorageFileHandler corruptedStorageFileHandler;
     private File storageFile;
     private T persistable;
     private String fileName;
+    @Getter(AccessLevel.PACKAGE)
     private Source source = Source.PRIVATE_LOW_PRIO;
     private Path usedTempFilePath;
     private volatile boolean persistenceRequested;
-    @Nullable
-    private Timer timer;
-    private ExecutorService writeToDiskExecutor;
+    private volatile long lastBackupTimestamp;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -199,14 +255,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
     public void shutdown() {
         ALL_PERSISTENCE_MANAGERS.remove(fileName);
-
-        if (timer != null) {
-            timer.stop();
-        }
-
-        if (writeToDiskExecutor != null) {
-            writeToDiskExecutor.shutdown();
-        }
+        PersistenceScheduler.INSTANCE.cancelPersistenceRequest(this);
     }
 
 
@@ -225,7 +274,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     }
 
     /**
-     * Read persisted file in a thread.
+     * Read persisted file in a thread of a pool shared by all instances, so independent files are read in parallel.
      * We map result handler calls to UserThread, so clients don't need to worry about threading
      *
      * @param fileName          File name of our persisted data.
@@ -233,14 +282,20 @@ public class PersistenceManager<T extends PersistableEnvelope> {
      * @param orElse            Called if no file exists or reading of file failed.
      */
     public void readPersisted(String fileName, Consumer<T> resultHandler, Runnable orElse) {
-        new Thread(() -> {
+        StartupTimeline.record(fileName, StartupTimeline.Phase.QUEUED);
+        READ_EXECUTOR.execute(() -> {
+            StartupTimeline.record(fileName, StartupTimeline.Phase.READ_STARTED);
             T persisted = getPersisted(fileName);
-            if (persisted != null) {
-                UserThread.execute(() -> resultHandler.accept(persisted));
-            } else {
-                UserThread.execute(orElse);
-            }
-        }, "PersistenceManager-read-" + fileName).start();
+            StartupTimeline.record(fileName, StartupTimeline.Phase.PARSED);
+            UserThread.execute(() -> {
+                if (persisted != null) {
+                    resultHandler.accept(persisted);
+                } else {
+                    orElse.run();
+                }
+                StartupTimeline.record(fileName, StartupTimeline.Phase.PUBLISHED);
+            });
+        });
     }
 
     // API for synchronous reading of data. Not recommended to be used in application code.
@@ -258,10 +313,9 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
 
         long ts = System.currentTimeMillis();
-        try (FileInputStream fileInputStream = new FileInputStream(storageFile)) {
-            protobuf.PersistableEnvelope proto = protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
+        try (InputStream inputStream = StorageCodec.decode(new FileInputStream(storageFile))) {
             //noinspection unchecked
-            T persistableEnvelope = (T) persistenceProtoResolver.fromProto(proto);
+            T persistableEnvelope = (T) readEnvelope(inputStream);
             log.info("Reading {} completed in {} ms", fileName, System.currentTimeMillis() - ts);
             return persistableEnvelope;
         } catch (Throwable t) {
@@ -283,6 +337,35 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     }
 
 
+    // Large stores get decoded element by element if the resolver supports it. Otherwise we parse the whole message.
+    private PersistableEnvelope readEnvelope(InputStream inputStream) throws IOException {
+        // We peek at the length and the tag of the store field to find out which store it is
+        inputStream.mark(2 * MAX_VARINT_SIZE);
+        int firstByte = inputStream.read();
+        if (firstByte == -1) {
+            throw new EOFException("File is empty");
+        }
+        int length = CodedInputStream.readRawVarint32(firstByte, inputStream);
+        int tag = CodedInputStream.readRawVarint32(inputStream.read(), inputStream);
+        inputStream.reset();
+
+        StreamingEnvelopeDecoder decoder = persistenceProtoResolver.getStreamingDecoder(WireFormat.getTagFieldNumber(tag));
+        if (decoder == null || WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            return persistenceProtoResolver.fromProto(protobuf.PersistableEnvelope.parseDelimitedFrom(inputStream));
+        }
+
+        CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+        codedInputStream.readRawVarint32();
+        int envelopeLimit = codedInputStream.pushLimit(length);
+        codedInputStream.readTag();
+        int storeLimit = codedInputStream.pushLimit(codedInputStream.readRawVarint32());
+        PersistableEnvelope persistableEnvelope = decoder.decode(codedInputStream);
+        codedInputStream.popLimit(storeLimit);
+        codedInputStream.popLimit(envelopeLimit);
+        return persistableEnvelope;
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Write file to disk
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -291,28 +374,40 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         persistenceRequested = true;
 
         // We write to disk with a delay to avoid frequent write operations. Depending on the priority those delays
-        // can be rather long.
-        if (timer == null) {
-            timer = UserThread.runAfter(() -> {
-                persistNow(null);
-                UserThread.execute(() -> timer = null);
-            }, source.delayInSec, TimeUnit.SECONDS);
-        }
+        // can be rather long. Further requests until then are covered by that write.
+        PersistenceScheduler.INSTANCE.requestPersistence(this, source.delayInSec);
     }
 
     public void persistNow(@Nullable Runnable completeHandler) {
         long ts = System.currentTimeMillis();
         try {
-            // The serialisation is done on the user thread to avoid threading issue with potential mutations of the
-            // persistable object. Keeping it on the user thread we are in a synchronize model.
-            protobuf.PersistableEnvelope serialized = (protobuf.PersistableEnvelope) persistable.toPersistableMessage();
+            // Stores which can provide a snapshot which is not affected by later mutations get serialized at the
+            // write thread. All others are serialized on the user thread to avoid threading issues with potential
+            // mutations of the persistable object. Keeping it on the user thread we are in a synchronize model.
+            PersistableEnvelope snapshot = persistable.toPersistableSnapshot();
+            if (snapshot != null) {
+                submitWrite(() -> {
+                    protobuf.PersistableEnvelope serialized;
+                    try {
+                        serialized = serialize(snapshot, false);
+                    } catch (Throwable t) {
+                        log.error("Error in saveToFile toProtoMessage: {}, {}",
+                                persistable.getClass().getSimpleName(), fileName, t);
+                        persistenceRequested = false;
+                        return;
+                    }
+                    writeToDisk(serialized, null);
+                }, completeHandler);
+                log.debug("Creating snapshot of {} took {} msec", fileName, System.currentTimeMillis() - ts);
+                return;
+            }
+
+            protobuf.PersistableEnvelope serialized = serialize(persistable, true);
 
             // For the write to disk task we use a thread. We do not have any issues anymore if the persistable objects
             // gets mutated while the thread is running as we have serialized it already and do not operate on the
             // reference to the persistable object.
-            getWriteToDiskExecutor().execute(() -> writeToDisk(serialized, completeHandler));
-
-            log.info("Serializing {} took {} msec", fileName, System.currentTimeMillis() - ts);
+            submitWrite(() -> writeToDisk(serialized, null), completeHandler);
         } catch (Throwable e) {
             log.error("Error in saveToFile toProtoMessage: {}, {}", persistable.getClass().getSimpleName(), fileName);
             e.printStackTrace();
@@ -320,6 +415,16 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
     }
 
+    private protobuf.PersistableEnvelope serialize(PersistableEnvelope envelope, boolean onUserThread) {
+        long ts = System.nanoTime();
+        protobuf.PersistableEnvelope serialized = (protobuf.PersistableEnvelope) envelope.toPersistableMessage();
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ts);
+        SERIALIZATION_STATS.computeIfAbsent(fileName, key -> new SerializationStats()).add(duration, onUserThread);
+        log.info("Serializing {} took {} msec on {}", fileName, duration,
+                onUserThread ? "user thread" : "write thread");
+        return serialized;
+    }
+
     public void writeToDisk(protobuf.PersistableEnvelope serialized, @Nullable Runnable completeHandler) {
         long ts = System.currentTimeMillis();
         File tempFile = null;
@@ -327,7 +432,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
         try {
             // Before we write we backup existing file
-            FileUtil.rollingBackup(dir, fileName, source.getNumMaxBackupFiles());
+            maybeRollingBackup();
 
             if (!dir.exists() && !dir.mkdir())
                 log.warn("make dir failed {}", fileName);
@@ -340,7 +445,10 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
             fileOutputStream = new FileOutputStream(tempFile);
 
-            serialized.writeDelimitedTo(fileOutputStream);
+            StorageCodec codec = serialized.getSerializedSize() >= MIN_SIZE_FOR_COMPRESSION ?
+                    storageCodec :
+                    StorageCodec.NONE;
+            codec.writeDelimited(serialized, fileOutputStream);
 
             // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
             // to not write through to physical media for at least a few seconds, but this is the best we can do.
@@ -382,12 +490,62 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
     }
 
-    private ExecutorService getWriteToDiskExecutor() {
-        if (writeToDiskExecutor == null) {
-            String name = "Write-" + fileName + "_to-disk";
-            writeToDiskExecutor = Utilities.getSingleThreadExecutor(name);
+    private void maybeRollingBackup() {
+        long now = System.currentTimeMillis();
+        if (now - lastBackupTimestamp < TimeUnit.SECONDS.toMillis(source.getBackupIntervalInSec()))
+            return;
+
+        lastBackupTimestamp = now;
+        // We always replace the storage file by renaming the temp file, so a hard link to the old file keeps its content
+        FileUtil.rollingBackup(dir, fileName, source.getNumMaxBackupFiles(), FileUtil.BackupMode.HARD_LINK);
+    }
+
+    // The write is executed by the shared pool of the scheduler. A write which is still queued gets replaced by
+    // that one.
+    private void submitWrite(Runnable task, @Nullable Runnable completeHandler) {
+        PersistenceScheduler.INSTANCE.submitWrite(fileName, source.getWritePriority(), task, completeHandler);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // SerializationStats
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Serialization time per file name, so we can see which stores block the user thread
+    public static class SerializationStats {
+        @Getter
+        private int count;
+        @Getter
+        private int countOnUserThread;
+        @Getter
+        private long totalTime;
+        @Getter
+        private long totalTimeOnUserThread;
+        @Getter
+        private long maxTime;
+        @Getter
+        private long lastTime;
+
+        private synchronized void add(long duration, boolean onUserThread) {
+            count++;
+            totalTime += duration;
+            if (onUserThread) {
+                countOnUserThread++;
+                totalTimeOnUserThread += duration;
+            }
+            maxTime = Math.max(maxTime, duration);
+            lastTime = duration;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count +
+                    ", countOnUserThread=" + countOnUserThread +
+                    ", totalTime=" + totalTime + " msec" +
+                    ", totalTimeOnUserThread=" + totalTimeOnUserThread + " msec" +
+                    ", maxTime=" + maxTime + " msec" +
+                    ", lastTime=" + lastTime + " msec";
         }
-        return writeToDiskExecutor;
     }
 
 
@@ -0,0 +1,260 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.persistence;
+
+import bisq.common.Timer;
+import bisq.common.UserThread;
+import bisq.common.util.Utilities;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Schedules the delayed persistence requests and the disk writes of all {@link PersistenceManager} instances.
+ *
+ * Instead of a timer per instance we keep one timer for the earliest due request. Requests for an instance which
+ * is already scheduled do not change its due time.
+ *
+ * Writes are executed by a small pool so that not dozens of threads sync their files at the same time. Jobs are
+ * ordered by the write priority of their {@link PersistenceManager.Source} so private data hits the disk before
+ * network data, and in submission order within the same priority. At most one write per file is executed at a
+ * time. If a newer write for a file gets submitted before the queued one has started, the older job is dropped and
+ * its complete handlers are called once the newer one has been written.
+ */
+@Slf4j
+class PersistenceScheduler {
+    private static final int NUM_WRITE_THREADS = 2;
+
+    static final PersistenceScheduler INSTANCE = new PersistenceScheduler("PersistenceScheduler", NUM_WRITE_THREADS);
+
+    private static class WriteJob {
+        private final String fileName;
+        private final int priority;
+        private final long sequenceNr;
+        private final long submitTimestamp;
+        private Runnable task;
+        private final List<Runnable> completeHandlers = new ArrayList<>();
+
+        private WriteJob(String fileName, int priority, long sequenceNr, Runnable task) {
+            this.fileName = fileName;
+            this.priority = priority;
+            this.sequenceNr = sequenceNr;
+            this.task = task;
+            submitTimestamp = System.currentTimeMillis();
+        }
+    }
+
+    private final Executor executor;
+    private final int numThreads;
+
+    // Guarded by this
+    private final TreeSet<WriteJob> queue = new TreeSet<>(Comparator.<WriteJob>comparingInt(job -> job.priority)
+            .thenComparingLong(job -> job.sequenceNr));
+    private final Map<String, WriteJob> queuedJobByFileName = new HashMap<>();
+    private final Set<String> fileNamesInProgress = new HashSet<>();
+    private int numActiveWorkers;
+    private long nextSequenceNr;
+
+    // Guarded by dueTimestamps
+    private final Map<PersistenceManager<?>, Long> dueTimestamps = new HashMap<>();
+    @Nullable
+    private Timer timer;
+    private long timerDueTimestamp;
+
+    private final AtomicLong numCoalescedWrites = new AtomicLong();
+    @Getter
+    private volatile long lastWriteDuration;
+    // Time from submitting a write until it was completed
+    @Getter
+    private volatile long lastWriteLatency;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    PersistenceScheduler(String name, int numThreads) {
+        this.numThreads = numThreads;
+        executor = Utilities.getThreadPoolExecutor(name + "-%d", numThreads, numThreads, 60);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void requestPersistence(PersistenceManager<?> persistenceManager, long delayInSec) {
+        synchronized (dueTimestamps) {
+            if (dueTimestamps.containsKey(persistenceManager))
+                return;
+
+            long dueTimestamp = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delayInSec);
+            dueTimestamps.put(persistenceManager, dueTimestamp);
+            if (timer == null || dueTimestamp < timerDueTimestamp)
+                startTimer(dueTimestamp);
+        }
+    }
+
+    void cancelPersistenceRequest(PersistenceManager<?> persistenceManager) {
+        synchronized (dueTimestamps) {
+            dueTimestamps.remove(persistenceManager);
+        }
+    }
+
+    /**
+     * @param fileName          Jobs with the same file name are executed in order and never concurrently.
+     * @param priority          Jobs with a lower value are executed first.
+     * @param task              The write task.
+     * @param completeHandler   Called on the user thread after the task or a newer task of the same file has completed.
+     */
+    void submitWrite(String fileName, int priority, Runnable task, @Nullable Runnable completeHandler) {
+        synchronized (this) {
+            WriteJob job = queuedJobByFileName.get(fileName);
+            if (job != null) {
+                // The newer task contains the latest state, so the queued one would only write outdated data
+                job.task = task;
+                numCoalescedWrites.incrementAndGet();
+            } else {
+                job = new WriteJob(fileName, priority, nextSequenceNr++, task);
+                queue.add(job);
+                queuedJobByFileName.put(fileName, job);
+            }
+            if (completeHandler != null) {
+                job.completeHandlers.add(completeHandler);
+            }
+            maybeStartWorker();
+        }
+    }
+
+    synchronized int getBacklog() {
+        return queue.size() + fileNamesInProgress.size();
+    }
+
+    long getNumCoalescedWrites() {
+        return numCoalescedWrites.get();
+    }
+
+    @Override
+    public String toString() {
+        return "backlog=" + getBacklog() +
+                ", numCoalescedWrites=" + numCoalescedWrites.get() +
+                ", lastWriteDuration=" + lastWriteDuration + " msec" +
+                ", lastWriteLatency=" + lastWriteLatency + " msec";
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void startTimer(long dueTimestamp) {
+        if (timer != null) {
+            timer.stop();
+        }
+        timerDueTimestamp = dueTimestamp;
+        long delay = Math.max(0, dueTimestamp - System.currentTimeMillis());
+        timer = UserThread.runAfter(this::onTimer, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Called on the user thread
+    private void onTimer() {
+        List<PersistenceManager<?>> dueManagers = new ArrayList<>();
+        synchronized (dueTimestamps) {
+            timer = null;
+            long now = System.currentTimeMillis();
+            long nextDueTimestamp = Long.MAX_VALUE;
+            Iterator<Map.Entry<PersistenceManager<?>, Long>> iterator = dueTimestamps.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PersistenceManager<?>, Long> entry = iterator.next();
+                if (entry.getValue() <= now) {
+                    dueManagers.add(entry.getKey());
+                    iterator.remove();
+                } else {
+                    nextDueTimestamp = Math.min(nextDueTimestamp, entry.getValue());
+                }
+            }
+            if (nextDueTimestamp != Long.MAX_VALUE)
+                startTimer(nextDueTimestamp);
+        }
+
+        dueManagers.sort(Comparator.comparingInt(persistenceManager ->
+                persistenceManager.getSource().getWritePriority()));
+        dueManagers.forEach(persistenceManager -> persistenceManager.persistNow(null));
+    }
+
+    // Must be called while holding the lock
+    private void maybeStartWorker() {
+        if (numActiveWorkers < numThreads && hasExecutableJob()) {
+            numActiveWorkers++;
+            executor.execute(this::runJobs);
+        }
+    }
+
+    private void runJobs() {
+        WriteJob job;
+        while ((job = pollExecutableJob()) != null) {
+            try {
+                long ts = System.currentTimeMillis();
+                job.task.run();
+                lastWriteDuration = System.currentTimeMillis() - ts;
+                lastWriteLatency = System.currentTimeMillis() - job.submitTimestamp;
+            } catch (Throwable t) {
+                log.error("Write of {} failed", job.fileName, t);
+            } finally {
+                synchronized (this) {
+                    fileNamesInProgress.remove(job.fileName);
+                }
+                job.completeHandlers.forEach(UserThread::execute);
+            }
+        }
+    }
+
+    @Nullable
+    private synchronized WriteJob pollExecutableJob() {
+        Iterator<WriteJob> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            WriteJob job = iterator.next();
+            if (!fileNamesInProgress.contains(job.fileName)) {
+                iterator.remove();
+                queuedJobByFileName.remove(job.fileName);
+                fileNamesInProgress.add(job.fileName);
+                return job;
+            }
+        }
+        numActiveWorkers--;
+        return null;
+    }
+
+    private boolean hasExecutableJob() {
+        return queue.stream().anyMatch(job -> !fileNamesInProgress.contains(job.fileName));
+    }
+}
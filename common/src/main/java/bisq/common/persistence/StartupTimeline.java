@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects when the persisted files got queued for reading, read and parsed, and when their result got applied on
+ * the user thread, together with milestones of the startup. The times are relative to the first recorded event.
+ * Files which are read again later (e.g. at a resync) overwrite their previous times.
+ */
+@Slf4j
+public class StartupTimeline {
+    public enum Phase {
+        QUEUED,
+        READ_STARTED,
+        PARSED,
+        PUBLISHED
+    }
+
+    // Insertion order is the order in which the reads got requested
+    private static final Map<String, long[]> TIMESTAMPS_BY_NAME = new LinkedHashMap<>();
+    private static long startTimestamp;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static synchronized void record(String fileName, Phase phase) {
+        long now = System.currentTimeMillis();
+        if (startTimestamp == 0) {
+            startTimestamp = now;
+        }
+        TIMESTAMPS_BY_NAME.computeIfAbsent(fileName, key -> new long[Phase.values().length])[phase.ordinal()] = now;
+    }
+
+    public static synchronized void addMilestone(String milestone) {
+        record(milestone, Phase.PUBLISHED);
+    }
+
+    public static void log() {
+        List<String> lines = new ArrayList<>();
+        synchronized (StartupTimeline.class) {
+            TIMESTAMPS_BY_NAME.forEach((name, timestamps) -> lines.add(toLine(name, timestamps)));
+        }
+        log.info("Startup timeline in ms (queued / read started / parsed / published):\n{}", String.join("\n", lines));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String toLine(String name, long[] timestamps) {
+        StringBuilder sb = new StringBuilder(String.format("%-48s", name));
+        for (long timestamp : timestamps) {
+            sb.append(String.format("%8s", timestamp == 0 ? "-" : String.valueOf(timestamp - startTimestamp)));
+        }
+        long readStarted = timestamps[Phase.READ_STARTED.ordinal()];
+        long parsed = timestamps[Phase.PARSED.ordinal()];
+        if (readStarted != 0 && parsed != 0) {
+            sb.append("  (read in ").append(parsed - readStarted).append(" ms)");
+        }
+        return sb.toString();
+    }
+}
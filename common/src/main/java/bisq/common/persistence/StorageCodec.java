@@ -0,0 +1,175 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+
+/**
+ * Optional compression of persisted files. Compressed files start with a header of 4 magic bytes, the format version
+ * and the codec id, followed by the compressed delimited {@link protobuf.PersistableEnvelope}. Uncompressed files
+ * are the plain delimited envelope as before. Their first byte is the varint length of the envelope which is never
+ * 0, so the first magic byte 0 tells them apart and old files as well as uncompressed resource files keep loading.
+ *
+ * The stores mostly consist of hashes which do not compress, but the repeated field tags, currency codes, payment
+ * method ids and scripts do.
+ */
+public enum StorageCodec {
+    NONE(0, Deflater.NO_COMPRESSION),
+    DEFLATE_FAST(1, Deflater.BEST_SPEED),
+    DEFLATE(2, Deflater.DEFAULT_COMPRESSION);
+
+    private static final byte[] MAGIC = {0, 'B', 'S', 'C'};
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Getter
+    private final int id;
+    private final int level;
+
+    StorageCodec(int id, int level) {
+        this.id = id;
+        this.level = level;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the delimited envelope to outputStream. With NONE it is written without header as in previous versions.
+     */
+    public void writeDelimited(protobuf.PersistableEnvelope envelope, OutputStream outputStream) throws IOException {
+        if (this == NONE) {
+            envelope.writeDelimitedTo(outputStream);
+            return;
+        }
+
+        outputStream.write(MAGIC);
+        outputStream.write(FORMAT_VERSION);
+        outputStream.write(id);
+        Deflater deflater = new Deflater(level);
+        try {
+            DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater, BUFFER_SIZE);
+            envelope.writeDelimitedTo(deflaterOutputStream);
+            // Does not close outputStream, the caller still needs to sync it
+            deflaterOutputStream.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads a delimited envelope which was written with any codec or by a version without compression support.
+     * Closes inputStream.
+     *
+     * @return The envelope or null if inputStream is at its end.
+     */
+    @Nullable
+    public static protobuf.PersistableEnvelope parseDelimited(InputStream inputStream) throws IOException {
+        try (InputStream decodedStream = decode(inputStream)) {
+            return protobuf.PersistableEnvelope.parseDelimitedFrom(decodedStream);
+        }
+    }
+
+    /**
+     * Consumes the header if there is one and returns a buffered stream of the uncompressed delimited envelope.
+     * Closing the returned stream closes inputStream as well.
+     */
+    public static InputStream decode(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        StorageCodec codec = readHeader(bufferedInputStream);
+        if (codec == NONE) {
+            return bufferedInputStream;
+        }
+
+        InputStream inflaterInputStream = new InflaterInputStream(bufferedInputStream, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                // Not done by close if the inflater was passed to the constructor
+                inf.end();
+            }
+        };
+        return new BufferedInputStream(inflaterInputStream, BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the content of source with the given codec to target. Can be used to convert the resource files.
+     */
+    public static void convert(File source, File target, StorageCodec codec) throws IOException {
+        protobuf.PersistableEnvelope envelope;
+        try (InputStream inputStream = new FileInputStream(source)) {
+            envelope = parseDelimited(inputStream);
+        }
+        if (envelope == null) {
+            throw new IOException(source + " is empty");
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+            codec.writeDelimited(envelope, outputStream);
+        }
+    }
+
+    public static StorageCodec fromId(int id) throws IOException {
+        for (StorageCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IOException("Unknown storage codec id " + id);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Consumes the header if there is one, otherwise the stream is reset to its start
+    private static StorageCodec readHeader(InputStream inputStream) throws IOException {
+        inputStream.mark(HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int numBytes = inputStream.readNBytes(header, 0, HEADER_SIZE);
+        if (numBytes < HEADER_SIZE || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+            inputStream.reset();
+            return NONE;
+        }
+
+        int formatVersion = header[MAGIC.length];
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported storage format version " + formatVersion);
+        }
+        return fromId(header[MAGIC.length + 1]);
+    }
+}
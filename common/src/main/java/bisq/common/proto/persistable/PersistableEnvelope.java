@@ -21,6 +21,8 @@ import bisq.common.Envelope;
 
 import com.google.protobuf.Message;
 
+import javax.annotation.Nullable;
+
 /**
  * Interface for the outside envelope object persisted to disk.
  */
@@ -30,6 +32,20 @@ public interface PersistableEnvelope extends Envelope {
         return toProtoMessage();
     }
 
+    /**
+     * Stores which are expensive to serialize can opt in to get serialized on the write thread of the
+     * {@link bisq.common.persistence.PersistenceManager} instead of the user thread. It is called on the user thread
+     * and has to return an envelope whose toPersistableMessage can be called from another thread while this
+     * instance keeps getting changed on the user thread. That is either an immutable copy which is cheap to create
+     * or the instance itself if it is thread safe and only holds immutable elements.
+     *
+     * @return The envelope to serialize on the write thread or null if it has to be serialized on the user thread.
+     */
+    @Nullable
+    default PersistableEnvelope toPersistableSnapshot() {
+        return null;
+    }
+
     default String getDefaultStorageFileName() {
         return this.getClass().getSimpleName();
     }
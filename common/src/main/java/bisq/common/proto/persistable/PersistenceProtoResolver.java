@@ -19,7 +19,18 @@ package bisq.common.proto.persistable;
 
 import bisq.common.proto.ProtoResolver;
 
+import javax.annotation.Nullable;
 
 public interface PersistenceProtoResolver extends ProtoResolver {
     PersistableEnvelope fromProto(protobuf.PersistableEnvelope persistable);
+
+    /**
+     * @param envelopeFieldNumber   Field number of the store message in {@link protobuf.PersistableEnvelope}.
+     * @return Decoder for stores which should be decoded element by element or null if the envelope is parsed as a
+     * whole and passed to {@link #fromProto(protobuf.PersistableEnvelope)}.
+     */
+    @Nullable
+    default StreamingEnvelopeDecoder getStreamingDecoder(int envelopeFieldNumber) {
+        return null;
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.proto.persistable;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+import java.util.function.Consumer;
+
+/**
+ * Decodes a persisted envelope directly from the stream instead of parsing the whole protobuf message first. Used
+ * for stores with a large repeated field, so the protobuf objects of the elements can be garbage collected as soon
+ * as they have been converted to the domain objects.
+ */
+@FunctionalInterface
+public interface StreamingEnvelopeDecoder {
+    /**
+     * @param inputStream   Stream which is limited to the store message, i.e. the field of the
+     *                      {@link protobuf.PersistableEnvelope} without its tag and length.
+     */
+    PersistableEnvelope decode(CodedInputStream inputStream) throws IOException;
+
+    /**
+     * Passes all elements of the repeated message field with the given field number to the consumer, one after
+     * another. Other fields are skipped.
+     */
+    static <M extends MessageLite> void readRepeatedField(CodedInputStream inputStream,
+                                                          int fieldNumber,
+                                                          Parser<M> parser,
+                                                          Consumer<M> consumer) throws IOException {
+        int tag;
+        while ((tag = inputStream.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == fieldNumber &&
+                    WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                consumer.accept(inputStream.readMessage(parser, ExtensionRegistryLite.getEmptyRegistry()));
+            } else if (!inputStream.skipField(tag)) {
+                return;
+            }
+        }
+    }
+}
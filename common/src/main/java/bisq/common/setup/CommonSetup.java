@@ -23,6 +23,7 @@ import bisq.common.app.DevEnv;
 import bisq.common.app.Log;
 import bisq.common.app.Version;
 import bisq.common.config.Config;
+import bisq.common.persistence.PersistenceManager;
 import bisq.common.util.Profiler;
 import bisq.common.util.Utilities;
 
@@ -59,6 +60,7 @@ public class CommonSetup {
         setupSigIntHandlers(gracefulShutDownHandler);
 
         DevEnv.setup(config);
+        PersistenceManager.setStorageCodec(config.storageCodec);
     }
 
     public static void printSystemLoadPeriodically(int delayMin) {
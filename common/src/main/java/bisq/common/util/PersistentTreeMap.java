@@ -0,0 +1,343 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sorted map backed by an immutable AVL tree. Keys must be Comparable. Changes copy only the path from the root to the changed node and share
+ * all other nodes, so {@link #snapshot()} is O(1) and get, put and remove are O(log n).
+ *
+ * A snapshot is independent of later changes of the map it was taken from and vice versa. As the nodes are
+ * immutable, a snapshot which is not changed anymore can be read from any thread. The map itself is not thread safe.
+ *
+ * Iteration is in the natural order of the keys and is not affected by changes made during iteration.
+ */
+@NotThreadSafe
+public final class PersistentTreeMap<K, V> extends AbstractMap<K, V> {
+    private Node<K, V> root;
+    private int size;
+    // Incremented at each change of this map, snapshots start with 0
+    private int modCount;
+    // Value replaced or removed by the last put or remove, used to avoid a second lookup
+    @Nullable
+    private V previousValue;
+
+    public PersistentTreeMap() {
+    }
+
+    public PersistentTreeMap(Map<? extends K, ? extends V> map) {
+        putAll(map);
+    }
+
+    private PersistentTreeMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public PersistentTreeMap<K, V> snapshot() {
+        return new PersistentTreeMap<>(root, size);
+    }
+
+    /**
+     * @return A counter which changes whenever this map gets changed. Allows callers to detect changes without
+     * comparing the content. Only meaningful for the same map instance.
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = findNode(key);
+        return node != null ? node.value : null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        previousValue = null;
+        root = insert(root, key, value);
+        modCount++;
+        V result = previousValue;
+        previousValue = null;
+        return result;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (findNode(key) == null)
+            return null;
+
+        previousValue = null;
+        root = delete(root, castKey(key));
+        modCount++;
+        V result = previousValue;
+        previousValue = null;
+        size--;
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Tree
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Node<K, V> implements Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    // Same as at TreeMap we support keys which implement the raw Comparable type
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object key1, Object key2) {
+        return ((Comparable) key1).compareTo(key2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K castKey(Object key) {
+        return (K) key;
+    }
+
+    @Nullable
+    private Node<K, V> findNode(Object key) {
+        if (key == null)
+            return null;
+
+        K k = castKey(key);
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = compare(k, node.key);
+            if (cmp == 0)
+                return node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            size++;
+            return new Node<>(key, value, null, null);
+        }
+
+        int cmp = compare(key, node.key);
+        if (cmp == 0) {
+            previousValue = node.value;
+            return new Node<>(key, value, node.left, node.right);
+        } else if (cmp < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        } else {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        }
+    }
+
+    // The key must exist
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        int cmp = compare(key, node.key);
+        if (cmp < 0)
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        if (cmp > 0)
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+
+        previousValue = node.value;
+        if (node.left == null)
+            return node.right;
+        if (node.right == null)
+            return node.left;
+
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.value, node.left, deleteMin(node.right));
+    }
+
+    private Node<K, V> deleteMin(Node<K, V> node) {
+        if (node.left == null)
+            return node.right;
+        return balance(node.key, node.value, deleteMin(node.left), node.right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            } else {
+                Node<K, V> pivot = left.right;
+                return new Node<>(pivot.key, pivot.value,
+                        new Node<>(left.key, left.value, left.left, pivot.left),
+                        new Node<>(key, value, pivot.right, right));
+            }
+        } else if (diff < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            } else {
+                Node<K, V> pivot = right.left;
+                return new Node<>(pivot.key, pivot.value,
+                        new Node<>(key, value, left, pivot.left),
+                        new Node<>(right.key, right.value, pivot.right, right.right));
+            }
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Iterator
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Iterates over the tree of the time it was created
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+        @Nullable
+        private Node<K, V> lastReturned;
+
+        private EntryIterator() {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+
+            Node<K, V> node = stack.pop();
+            pushLeft(node.right);
+            lastReturned = node;
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+
+            PersistentTreeMap.this.remove(lastReturned.key);
+            lastReturned = null;
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+    }
+}
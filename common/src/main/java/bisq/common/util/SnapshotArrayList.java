@@ -0,0 +1,188 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Array based list for data which is mostly appended, supporting O(1) snapshots by sharing the backing array.
+ *
+ * A snapshot sees only the elements up to its size. The list a snapshot was taken from keeps appending in place, as
+ * that does not touch the shared elements. Any other change of a shared array, as well as any change of a snapshot,
+ * copies the array first. A snapshot is independent of later changes of the list it was taken from and vice versa
+ * and a snapshot which is not changed anymore can be read from any thread. The list itself is not thread safe.
+ */
+@NotThreadSafe
+public final class SnapshotArrayList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements;
+    private int size;
+    // If true we can append in place, only the first list using the backing array is allowed to do that
+    private boolean appendInPlace;
+    // If true the elements below size are shared with snapshots and must not be changed in place
+    private boolean shared;
+
+    public SnapshotArrayList() {
+        this(new Object[DEFAULT_CAPACITY], 0, true, false);
+    }
+
+    public SnapshotArrayList(Collection<? extends E> collection) {
+        this(collection.toArray(), collection.size(), true, false);
+    }
+
+    private SnapshotArrayList(Object[] elements, int size, boolean appendInPlace, boolean shared) {
+        this.elements = elements;
+        this.size = size;
+        this.appendInPlace = appendInPlace;
+        this.shared = shared;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public SnapshotArrayList<E> snapshot() {
+        shared = true;
+        return new SnapshotArrayList<>(elements, size, false, true);
+    }
+
+    public E getFirst() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return get(0);
+    }
+
+    public E getLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return get(size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size);
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (!appendInPlace || size == elements.length)
+            copyElements(Math.max(DEFAULT_CAPACITY, size + (size >> 1) + 1));
+        elements[size++] = element;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size + 1);
+        copyElements(Math.max(DEFAULT_CAPACITY, size + (size >> 1) + 1));
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        Object[] added = collection.toArray();
+        if (!appendInPlace || size + added.length > elements.length)
+            copyElements(Math.max(DEFAULT_CAPACITY, size + added.length + (size >> 1)));
+        System.arraycopy(added, 0, elements, size, added.length);
+        size += added.length;
+        modCount++;
+        return added.length > 0;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> collection) {
+        checkIndex(index, size + 1);
+        Object[] added = collection.toArray();
+        copyElements(size + added.length);
+        System.arraycopy(elements, index, elements, index + added.length, size - index);
+        System.arraycopy(added, 0, elements, index, added.length);
+        size += added.length;
+        modCount++;
+        return added.length > 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        checkIndex(index, size);
+        if (shared)
+            copyElements(elements.length);
+        E previous = (E) elements[index];
+        elements[index] = element;
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        checkIndex(index, size);
+        if (shared)
+            copyElements(elements.length);
+        E previous = (E) elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        elements = new Object[DEFAULT_CAPACITY];
+        size = 0;
+        appendInPlace = true;
+        shared = false;
+        modCount++;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // After the copy we own the backing array exclusively
+    private void copyElements(int capacity) {
+        Object[] copy = new Object[Math.max(capacity, size)];
+        // Elements above size might belong to the list we got the snapshot from
+        System.arraycopy(elements, 0, copy, 0, size);
+        elements = copy;
+        appendInPlace = true;
+        shared = false;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
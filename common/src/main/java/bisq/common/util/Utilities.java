@@ -104,6 +104,16 @@ public class Utilities {
         return MoreExecutors.listeningDecorator(getSingleThreadExecutor(name));
     }
 
+    // In contrast to getThreadPoolExecutor tasks which find no free thread are queued without limit, so the callers
+    // need to limit the number of tasks they submit.
+    public static ListeningExecutorService getFixedThreadPoolListeningExecutor(String name, int numThreads) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(name)
+                .setDaemon(true)
+                .build();
+        return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numThreads, threadFactory));
+    }
+
     public static ListeningExecutorService getListeningExecutorService(String name,
                                                                        int corePoolSize,
                                                                        int maximumPoolSize,
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.file;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileUtilTest {
+    private static final String FILE_NAME = "TestStore";
+
+    private File dir;
+    private File backupFileDir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("storage").toFile();
+        backupFileDir = new File(dir, "backup/backups_" + FILE_NAME);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    // Same as the PersistenceManager we replace the file by renaming a new file to it
+    private void writeStore(String content) throws IOException, InterruptedException {
+        File tempFile = new File(dir, "temp_" + FILE_NAME);
+        Files.write(tempFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        FileUtil.renameFile(tempFile, new File(dir, FILE_NAME));
+        // Backup file names contain the timestamp in ms
+        Thread.sleep(2);
+    }
+
+    private String[] readBackups() throws IOException {
+        File[] files = Objects.requireNonNull(backupFileDir.listFiles());
+        Arrays.sort(files);
+        String[] contents = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            contents[i] = new String(Files.readAllBytes(files[i].toPath()), StandardCharsets.UTF_8);
+        }
+        return contents;
+    }
+
+    @Test
+    public void testHardLinkBackupKeepsContentOfReplacedFile() throws Exception {
+        writeStore("v1");
+        FileUtil.rollingBackup(dir, FILE_NAME, 10, FileUtil.BackupMode.HARD_LINK);
+        writeStore("v2");
+        FileUtil.rollingBackup(dir, FILE_NAME, 10, FileUtil.BackupMode.HARD_LINK);
+        writeStore("v3");
+
+        assertEquals(Arrays.asList("v1", "v2"), Arrays.asList(readBackups()));
+    }
+
+    @Test
+    public void testRollingBackupKeepsMaxNumFiles() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            writeStore("v" + i);
+            FileUtil.rollingBackup(dir, FILE_NAME, 3, i % 2 == 0 ? FileUtil.BackupMode.HARD_LINK : FileUtil.BackupMode.COPY);
+        }
+
+        assertEquals(Arrays.asList("v3", "v4", "v5"), Arrays.asList(readBackups()));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.persistence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistenceSchedulerTest {
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testPriorityAndCoalescing() {
+        PersistenceScheduler scheduler = new PersistenceScheduler("PersistenceSchedulerTest", 1);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        scheduler.submitWrite("blocker", 0, () -> {
+            blockerStarted.countDown();
+            await(releaseBlocker);
+        }, null);
+        await(blockerStarted);
+
+        List<String> writes = new CopyOnWriteArrayList<>();
+        AtomicInteger numCompleted = new AtomicInteger();
+        CountDownLatch allCompleted = new CountDownLatch(3);
+        Runnable completeHandler = () -> {
+            numCompleted.incrementAndGet();
+            allCompleted.countDown();
+        };
+        scheduler.submitWrite("network", 2, () -> writes.add("network"), completeHandler);
+        scheduler.submitWrite("private", 0, () -> writes.add("private-1"), completeHandler);
+        scheduler.submitWrite("private", 0, () -> writes.add("private-2"), completeHandler);
+        Assert.assertEquals(3, scheduler.getBacklog());
+
+        releaseBlocker.countDown();
+        await(allCompleted);
+
+        Assert.assertEquals(List.of("private-2", "network"), writes);
+        Assert.assertEquals(3, numCompleted.get());
+        Assert.assertEquals(1, scheduler.getNumCoalescedWrites());
+    }
+
+    @Test
+    public void testWritesOfSameFileAreNotConcurrent() {
+        PersistenceScheduler scheduler = new PersistenceScheduler("PersistenceSchedulerTest", 4);
+        AtomicInteger numConcurrentWrites = new AtomicInteger();
+        AtomicInteger maxConcurrentWrites = new AtomicInteger();
+        int numWrites = 20;
+        CountDownLatch allCompleted = new CountDownLatch(numWrites);
+        for (int i = 0; i < numWrites; i++) {
+            scheduler.submitWrite("file", 0, () -> {
+                maxConcurrentWrites.accumulateAndGet(numConcurrentWrites.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ignore) {
+                }
+                numConcurrentWrites.decrementAndGet();
+            }, allCompleted::countDown);
+        }
+        await(allCompleted);
+
+        Assert.assertEquals(1, maxConcurrentWrites.get());
+    }
+}
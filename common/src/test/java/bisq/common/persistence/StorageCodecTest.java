@@ -0,0 +1,79 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.persistence;
+
+import com.google.protobuf.ByteString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StorageCodecTest {
+    private static protobuf.PersistableEnvelope createEnvelope(int numEntries) {
+        protobuf.SequenceNumberMap.Builder builder = protobuf.SequenceNumberMap.newBuilder();
+        for (int i = 0; i < numEntries; i++) {
+            builder.addSequenceNumberEntries(protobuf.SequenceNumberEntry.newBuilder()
+                    .setBytes(protobuf.ByteArray.newBuilder().setBytes(ByteString.copyFrom(new byte[]{(byte) i, 1, 2})))
+                    .setMapValue(protobuf.MapValue.newBuilder().setSequenceNr(i).setTimeStamp(1000L * i)));
+        }
+        return protobuf.PersistableEnvelope.newBuilder().setSequenceNumberMap(builder).build();
+    }
+
+    private static byte[] write(StorageCodec codec, protobuf.PersistableEnvelope envelope) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        codec.writeDelimited(envelope, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        protobuf.PersistableEnvelope envelope = createEnvelope(1000);
+        for (StorageCodec codec : StorageCodec.values()) {
+            byte[] bytes = write(codec, envelope);
+            Assert.assertEquals(envelope, StorageCodec.parseDelimited(new ByteArrayInputStream(bytes)));
+            if (codec != StorageCodec.NONE) {
+                Assert.assertTrue(bytes.length < envelope.getSerializedSize());
+            }
+        }
+    }
+
+    @Test
+    public void testReadUncompressedFormat() throws IOException {
+        protobuf.PersistableEnvelope envelope = createEnvelope(1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        envelope.writeDelimitedTo(outputStream);
+
+        Assert.assertArrayEquals(outputStream.toByteArray(), write(StorageCodec.NONE, envelope));
+        Assert.assertEquals(envelope,
+                StorageCodec.parseDelimited(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+
+    @Test
+    public void testReadEmptyStream() throws IOException {
+        Assert.assertNull(StorageCodec.parseDelimited(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownCodec() throws IOException {
+        byte[] bytes = write(StorageCodec.DEFLATE, createEnvelope(1));
+        bytes[5] = 42;
+        StorageCodec.parseDelimited(new ByteArrayInputStream(bytes));
+    }
+}
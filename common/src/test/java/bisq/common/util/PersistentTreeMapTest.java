@@ -0,0 +1,119 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentTreeMapTest {
+    @Test
+    public void testBehavesLikeTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        PersistentTreeMap<Integer, String> map = new PersistentTreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertNull(map.get(-1));
+        assertFalse(map.containsKey(-1));
+    }
+
+    @Test
+    public void testSnapshotIsIndependent() {
+        PersistentTreeMap<String, Integer> map = new PersistentTreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put("key" + i, i);
+        }
+
+        PersistentTreeMap<String, Integer> snapshot = map.snapshot();
+        map.put("key0", -1);
+        map.remove("key1");
+        map.put("new", 100);
+
+        assertEquals(100, snapshot.size());
+        assertEquals(0, (int) snapshot.get("key0"));
+        assertEquals(1, (int) snapshot.get("key1"));
+        assertFalse(snapshot.containsKey("new"));
+
+        snapshot.clear();
+        assertTrue(snapshot.isEmpty());
+        assertEquals(100, map.size());
+        assertEquals(-1, (int) map.get("key0"));
+    }
+
+    @Test
+    public void testRemoveWhileIterating() {
+        PersistentTreeMap<Integer, Integer> map = new PersistentTreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey() % 2 == 0)
+                iterator.remove();
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(50, map.size());
+        map.keySet().forEach(key -> assertEquals(1, key % 2));
+    }
+
+    @Test
+    public void testModCount() {
+        PersistentTreeMap<String, Integer> map = new PersistentTreeMap<>();
+        int modCount = map.getModCount();
+        map.put("key", 1);
+        assertNotEquals(modCount, map.getModCount());
+
+        modCount = map.getModCount();
+        map.remove("unknown");
+        assertEquals(modCount, map.getModCount());
+        map.get("key");
+        map.snapshot().put("key", 2);
+        assertEquals(modCount, map.getModCount());
+
+        map.remove("key");
+        assertNotEquals(modCount, map.getModCount());
+        modCount = map.getModCount();
+        map.clear();
+        assertNotEquals(modCount, map.getModCount());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.common.util;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SnapshotArrayListTest {
+    private static SnapshotArrayList<Integer> createList(int size) {
+        SnapshotArrayList<Integer> list = new SnapshotArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Test
+    public void testAppendAfterSnapshot() {
+        SnapshotArrayList<Integer> list = createList(10);
+        SnapshotArrayList<Integer> snapshot = list.snapshot();
+        for (int i = 10; i < 100; i++) {
+            list.add(i);
+        }
+
+        assertEquals(10, snapshot.size());
+        assertEquals(9, (int) snapshot.getLast());
+        assertEquals(100, list.size());
+        assertEquals(99, (int) list.getLast());
+    }
+
+    @Test
+    public void testChangesOfSnapshotDoNotAffectList() {
+        SnapshotArrayList<Integer> list = createList(10);
+        SnapshotArrayList<Integer> snapshot = list.snapshot();
+        snapshot.add(-1);
+        snapshot.set(0, -2);
+        list.add(10);
+
+        assertEquals(List.of(-2, 1, 2, 3, 4, 5, 6, 7, 8, 9, -1), snapshot);
+        assertEquals(createList(11), list);
+    }
+
+    @Test
+    public void testChangesOfListDoNotAffectSnapshot() {
+        SnapshotArrayList<Integer> list = createList(10);
+        SnapshotArrayList<Integer> snapshot = list.snapshot();
+        list.set(0, -1);
+        list.remove(1);
+        list.add(0, -2);
+        list.addAll(0, List.of(-3, -4));
+
+        assertEquals(createList(10), snapshot);
+        assertEquals(List.of(-3, -4, -2, -1, 2, 3, 4, 5, 6, 7, 8, 9), list);
+
+        list.clear();
+        list.addAll(List.of(1, 2));
+        assertEquals(List.of(1, 2), list);
+        assertEquals(createList(10), snapshot);
+    }
+
+    @Test
+    public void testSnapshotOfSnapshot() {
+        SnapshotArrayList<Integer> list = createList(5);
+        SnapshotArrayList<Integer> snapshot = list.snapshot();
+        SnapshotArrayList<Integer> snapshotOfSnapshot = snapshot.snapshot();
+        list.add(5);
+        snapshot.add(-1);
+
+        assertEquals(createList(5), snapshotOfSnapshot);
+        assertEquals(List.of(0, 1, 2, 3, 4, -1), snapshot);
+        assertEquals(createList(6), list);
+    }
+}
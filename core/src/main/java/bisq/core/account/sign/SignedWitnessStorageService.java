@@ -81,4 +81,9 @@ public class SignedWitnessStorageService extends MapStoreService<SignedWitnessSt
     protected SignedWitnessStore createStore() {
         return new SignedWitnessStore();
     }
+
+    @Override
+    protected boolean useAppendOnlyLog() {
+        return true;
+    }
 }
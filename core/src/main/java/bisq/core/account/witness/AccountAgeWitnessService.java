@@ -42,6 +42,7 @@ import bisq.network.p2p.BootstrapListener;
 import bisq.network.p2p.P2PService;
 import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.persistence.AppendOnlyDataStoreService;
+import bisq.network.p2p.storage.persistence.BatchedAppendOnlyDataStoreListener;
 
 import bisq.common.UserThread;
 import bisq.common.crypto.CryptoException;
@@ -172,10 +173,11 @@ public class AccountAgeWitnessService {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void onAllServicesInitialized() {
-        p2PService.getP2PDataStorage().addAppendOnlyDataStoreListener(payload -> {
-            if (payload instanceof AccountAgeWitness)
-                addToMap((AccountAgeWitness) payload);
-        });
+        p2PService.getP2PDataStorage().addAppendOnlyDataStoreListener((BatchedAppendOnlyDataStoreListener) payloads ->
+                payloads.forEach(payload -> {
+                    if (payload instanceof AccountAgeWitness)
+                        addToMap((AccountAgeWitness) payload);
+                }));
 
         // At startup the P2PDataStorage initializes earlier, otherwise we get the listener called.
         p2PService.getP2PDataStorage().getAppendOnlyDataStoreMap().values().forEach(e -> {
@@ -81,4 +81,9 @@ public class AccountAgeWitnessStorageService extends MapStoreService<AccountAgeW
     protected AccountAgeWitnessStore createStore() {
         return new AccountAgeWitnessStore();
     }
+
+    @Override
+    protected boolean useAppendOnlyLog() {
+        return true;
+    }
 }
@@ -19,8 +19,11 @@ package bisq.core.account.witness;
 
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
+import java.io.IOException;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -66,4 +69,8 @@ public class AccountAgeWitnessStore extends PersistableNetworkPayloadStore<Accou
                 .map(AccountAgeWitness::fromProto).collect(Collectors.toList());
         return new AccountAgeWitnessStore(list);
     }
+
+    public static AccountAgeWitnessStore fromProto(CodedInputStream inputStream) throws IOException {
+        return readItems(inputStream, new AccountAgeWitnessStore(), protobuf.AccountAgeWitness.parser(), AccountAgeWitness::fromProto);
+    }
 }
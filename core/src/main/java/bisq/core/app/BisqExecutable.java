@@ -24,11 +24,13 @@ import bisq.core.dao.DaoSetup;
 import bisq.core.offer.OpenOfferManager;
 import bisq.core.setup.CorePersistedDataHost;
 import bisq.core.setup.CoreSetup;
+import bisq.core.setup.CoreStoreServices;
 import bisq.core.support.dispute.arbitration.arbitrator.ArbitratorManager;
 import bisq.core.trade.statistics.TradeStatisticsManager;
 import bisq.core.trade.txproof.xmr.XmrTxProofService;
 
 import bisq.network.p2p.P2PService;
+import bisq.network.p2p.storage.P2PDataStorage;
 
 import bisq.common.UserThread;
 import bisq.common.app.AppModule;
@@ -37,6 +39,7 @@ import bisq.common.config.Config;
 import bisq.common.config.ConfigException;
 import bisq.common.handlers.ResultHandler;
 import bisq.common.persistence.PersistenceManager;
+import bisq.common.persistence.StartupTimeline;
 import bisq.common.proto.persistable.PersistedDataHost;
 import bisq.common.setup.CommonSetup;
 import bisq.common.setup.GracefulShutDownHandler;
@@ -171,10 +174,19 @@ public abstract class BisqExecutable implements GracefulShutDownHandler, BisqSet
         hosts.forEach(host -> {
             host.readPersisted(() -> {
                 if (remaining.decrementAndGet() == 0) {
+                    StartupTimeline.addMilestone("Persisted data hosts read");
                     UserThread.execute(completeHandler);
                 }
             });
         });
+
+        // The P2P data stores do not depend on the data of the hosts, so we start reading them already now instead
+        // of waiting until the setup requests them. Stores which are added later would not be read, so we create
+        // all services adding a store first.
+        CoreStoreServices.addStoreServices(injector);
+        String postFix = "_" + config.baseCurrencyNetwork.name();
+        injector.getInstance(P2PDataStorage.class).readFromResources(postFix, () -> {
+        });
     }
 
     protected void setupAvoidStandbyMode() {
@@ -74,6 +74,7 @@ import bisq.core.dao.node.explorer.ExportJsonFilesService;
 import bisq.core.dao.node.full.FullNode;
 import bisq.core.dao.node.full.RpcService;
 import bisq.core.dao.node.full.network.FullNodeNetworkService;
+import bisq.core.dao.node.full.network.RawBlockCache;
 import bisq.core.dao.node.lite.LiteNode;
 import bisq.core.dao.node.lite.network.LiteNodeNetworkService;
 import bisq.core.dao.node.parser.BlockParser;
@@ -112,6 +113,7 @@ public class DaoModule extends AppModule {
         bind(RpcService.class).in(Singleton.class);
         bind(BlockParser.class).in(Singleton.class);
         bind(FullNodeNetworkService.class).in(Singleton.class);
+        bind(RawBlockCache.class).in(Singleton.class);
         bind(LiteNodeNetworkService.class).in(Singleton.class);
 
         // DaoState
@@ -222,6 +224,7 @@ public class DaoModule extends AppModule {
         bindConstant().annotatedWith(named(Config.RPC_BLOCK_NOTIFICATION_PORT)).to(config.rpcBlockNotificationPort);
         bindConstant().annotatedWith(named(Config.RPC_BLOCK_NOTIFICATION_HOST)).to(config.rpcBlockNotificationHost);
         bindConstant().annotatedWith(named(Config.DUMP_BLOCKCHAIN_DATA)).to(config.dumpBlockchainData);
+        bindConstant().annotatedWith(named(Config.DAO_STATE_BLOCK_SEGMENTS)).to(config.daoStateBlockSegments);
         bindConstant().annotatedWith(named(Config.FULL_DAO_NODE)).to(config.fullDaoNode);
         bindConstant().annotatedWith(named(Config.DAO_ACTIVATED)).to(config.daoActivated);
     }
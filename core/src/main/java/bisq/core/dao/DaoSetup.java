@@ -39,6 +39,7 @@ import bisq.core.dao.node.BsqNode;
 import bisq.core.dao.node.BsqNodeProvider;
 import bisq.core.dao.node.explorer.ExportJsonFilesService;
 import bisq.core.dao.state.DaoStateService;
+import bisq.core.dao.state.storage.DaoStateStorageService;
 
 import com.google.inject.Inject;
 
@@ -52,6 +53,7 @@ import java.util.function.Consumer;
  */
 public class DaoSetup {
     private final BsqNode bsqNode;
+    private final DaoStateStorageService daoStateStorageService;
     private final List<DaoSetupService> daoSetupServices = new ArrayList<>();
 
     @Inject
@@ -78,9 +80,11 @@ public class DaoSetup {
                     DaoStateMonitoringService daoStateMonitoringService,
                     ProposalStateMonitoringService proposalStateMonitoringService,
                     BlindVoteStateMonitoringService blindVoteStateMonitoringService,
-                    DaoEventCoordinator daoEventCoordinator) {
+                    DaoEventCoordinator daoEventCoordinator,
+                    DaoStateStorageService daoStateStorageService) {
 
         bsqNode = bsqNodeProvider.getBsqNode();
+        this.daoStateStorageService = daoStateStorageService;
 
         // We need to take care of order of execution.
 
@@ -129,5 +133,6 @@ public class DaoSetup {
 
     public void shutDown() {
         bsqNode.shutDown();
+        daoStateStorageService.shutDown();
     }
 }
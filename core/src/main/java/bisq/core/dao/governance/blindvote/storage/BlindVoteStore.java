@@ -19,8 +19,11 @@ package bisq.core.dao.governance.blindvote.storage;
 
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
+import java.io.IOException;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -65,4 +68,8 @@ public class BlindVoteStore extends PersistableNetworkPayloadStore<BlindVotePayl
                 .map(BlindVotePayload::fromProto).collect(Collectors.toList());
         return new BlindVoteStore(list);
     }
+
+    public static BlindVoteStore fromProto(CodedInputStream inputStream) throws IOException {
+        return readItems(inputStream, new BlindVoteStore(), protobuf.BlindVotePayload.parser(), BlindVotePayload::fromProto);
+    }
 }
@@ -19,8 +19,11 @@ package bisq.core.dao.governance.proposal.storage.appendonly;
 
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
+import java.io.IOException;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -66,4 +69,8 @@ public class ProposalStore extends PersistableNetworkPayloadStore<ProposalPayloa
                 .map(ProposalPayload::fromProto).collect(Collectors.toList());
         return new ProposalStore(list);
     }
+
+    public static ProposalStore fromProto(CodedInputStream inputStream) throws IOException {
+        return readItems(inputStream, new ProposalStore(), protobuf.ProposalPayload.parser(), ProposalPayload::fromProto);
+    }
 }
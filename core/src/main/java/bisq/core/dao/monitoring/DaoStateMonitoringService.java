@@ -118,6 +118,10 @@ public class DaoStateMonitoringService implements DaoSetupService, DaoStateListe
     private final boolean ignoreDevMsg;
     private int numCalls;
     private long accumulatedDuration;
+    private long batchStartTs;
+    private long accumulatedDurationAtBatchStart;
+    private int numBatches;
+    private long accumulatedBatchDuration;
 
     private final File storageDir;
 
@@ -183,6 +187,9 @@ public class DaoStateMonitoringService implements DaoSetupService, DaoStateListe
                 numCalls,
                 accumulatedDuration,
                 (int) ((double) accumulatedDuration / (double) numCalls));
+        if (numBatches > 0) {
+            log.info("ParseBlockChainComplete: Batch processing of {} batches took {} ms", numBatches, accumulatedBatchDuration);
+        }
     }
 
     @Override
@@ -243,10 +250,33 @@ public class DaoStateMonitoringService implements DaoSetupService, DaoStateListe
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    public static byte[] getHash(byte[] prevHash, byte[] serializedStateForHashChain) {
+        // We include the prev. hash in our new hash so we can be sure that if one hash is matching all the past would
+        // match as well.
+        byte[] combined = ArrayUtils.addAll(prevHash, serializedStateForHashChain);
+        return Hash.getSha256Ripemd160hash(combined);
+    }
+
     public void createHashFromBlock(Block block) {
         updateHashChain(block);
     }
 
+    public void onBatchProcessingStarted() {
+        batchStartTs = System.currentTimeMillis();
+        accumulatedDurationAtBatchStart = accumulatedDuration;
+    }
+
+    public void onBatchProcessingCompleted(int numBlocks) {
+        long duration = System.currentTimeMillis() - batchStartTs;
+        numBatches++;
+        accumulatedBatchDuration += duration;
+        log.info("Batch processing of {} blocks up to height {} took {} ms ({} ms for updating the hash chain)",
+                numBlocks,
+                daoStateService.getChainHeight(),
+                duration,
+                accumulatedDuration - accumulatedDurationAtBatchStart);
+    }
+
     public void requestHashesFromGenesisBlockHeight(String peersAddress) {
         daoStateNetworkService.requestHashes(genesisTxInfo.getGenesisBlockHeight(), peersAddress);
     }
@@ -304,10 +334,7 @@ public class DaoStateMonitoringService implements DaoSetupService, DaoStateListe
             prevHash = daoStateBlockChain.getLast().getHash();
         }
         byte[] stateHash = daoStateService.getSerializedStateForHashChain();
-        // We include the prev. hash in our new hash so we can be sure that if one hash is matching all the past would
-        // match as well.
-        byte[] combined = ArrayUtils.addAll(prevHash, stateHash);
-        byte[] hash = Hash.getSha256Ripemd160hash(combined);
+        byte[] hash = getHash(prevHash, stateHash);
 
         DaoStateHash myDaoStateHash = new DaoStateHash(height, hash, prevHash);
         DaoStateBlock daoStateBlock = new DaoStateBlock(myDaoStateHash);
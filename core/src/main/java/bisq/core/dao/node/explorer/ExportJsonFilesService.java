@@ -147,7 +147,7 @@ public class ExportJsonFilesService implements DaoSetupService {
                         return jsonTx;
                     }).collect(Collectors.toList());
 
-            DaoState daoState = daoStateService.getClone();
+            DaoState daoState = daoStateService.getSnapshot();
             List<JsonBlock> jsonBlockList = daoState.getBlocks().stream()
                     .map(this::getJsonBlock)
                     .collect(Collectors.toList());
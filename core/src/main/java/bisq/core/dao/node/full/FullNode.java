@@ -42,6 +42,8 @@ import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Main class for a full node which have Bitcoin Core with rpc running and does the blockchain lookup itself.
  * It also provides the BSQ transactions to lite nodes on request and broadcasts new BSQ blocks.
@@ -57,6 +59,8 @@ public class FullNode extends BsqNode {
     private boolean addBlockHandlerAdded;
     private int blocksToParseInBatch;
     private long parseInBatchStartTime;
+    @Nullable
+    private RawBlockPipeline rawBlockPipeline;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -95,6 +99,7 @@ public class FullNode extends BsqNode {
     }
 
     public void shutDown() {
+        stopRawBlockPipeline();
         super.shutDown();
         fullNodeNetworkService.shutDown();
     }
@@ -106,11 +111,13 @@ public class FullNode extends BsqNode {
 
     @Override
     protected void startParseBlocks() {
+        stopRawBlockPipeline();
         requestChainHeadHeightAndParseBlocks(getStartBlockHeight());
     }
 
     @Override
     protected void startReOrgFromLastSnapshot() {
+        stopRawBlockPipeline();
         super.startReOrgFromLastSnapshot();
 
         int startBlockHeight = getStartBlockHeight();
@@ -228,32 +235,29 @@ public class FullNode extends BsqNode {
                              Consumer<Block> newBlockHandler,
                              ResultHandler resultHandler,
                              Consumer<Throwable> errorHandler) {
-        parseBlockRecursively(startBlockHeight, chainHeight, newBlockHandler, resultHandler, errorHandler);
-    }
-
-    private void parseBlockRecursively(int blockHeight,
-                                       int chainHeight,
-                                       Consumer<Block> newBlockHandler,
-                                       ResultHandler resultHandler,
-                                       Consumer<Throwable> errorHandler) {
-        rpcService.requestBtcBlock(blockHeight,
+        stopRawBlockPipeline();
+        // Blocks are requested ahead in parallel but get parsed in order
+        rawBlockPipeline = new RawBlockPipeline(rpcService,
+                daoStateService,
+                startBlockHeight,
+                chainHeight,
                 rawBlock -> {
                     try {
                         doParseBlock(rawBlock).ifPresent(newBlockHandler);
-
-                        // Increment blockHeight and recursively call parseBlockAsync until we reach chainHeight
-                        if (blockHeight < chainHeight) {
-                            int newBlockHeight = blockHeight + 1;
-                            parseBlockRecursively(newBlockHeight, chainHeight, newBlockHandler, resultHandler, errorHandler);
-                        } else {
-                            // We are done
-                            resultHandler.handleResult();
-                        }
                     } catch (RequiredReorgFromSnapshotException ignore) {
-                        // If we get a reorg we don't continue to call parseBlockRecursively
+                        // The pipeline got already stopped at startReOrgFromLastSnapshot
                     }
                 },
+                resultHandler,
                 errorHandler);
+        rawBlockPipeline.start();
+    }
+
+    private void stopRawBlockPipeline() {
+        if (rawBlockPipeline != null) {
+            rawBlockPipeline.stop();
+            rawBlockPipeline = null;
+        }
     }
 
     private void handleError(Throwable throwable) {
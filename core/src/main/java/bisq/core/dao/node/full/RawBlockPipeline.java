@@ -0,0 +1,308 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.full;
+
+import bisq.core.dao.node.parser.GenesisTxParser;
+import bisq.core.dao.state.DaoStateListener;
+import bisq.core.dao.state.DaoStateService;
+import bisq.core.dao.state.model.blockchain.Block;
+import bisq.core.dao.state.model.blockchain.Tx;
+import bisq.core.dao.state.model.blockchain.TxInput;
+import bisq.core.dao.state.model.blockchain.TxOutput;
+import bisq.core.dao.state.model.blockchain.TxOutputKey;
+
+import bisq.common.UserThread;
+import bisq.common.handlers.ResultHandler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Feeds a range of blocks from Bitcoin Core to the parser when the full node syncs. While a block gets parsed on the
+ * user thread, the following blocks are already requested and decoded in parallel by the {@link RpcService}. Blocks
+ * are handed to the parser strictly in the order of their height.
+ * <p>
+ * Before a block is handed to the parser we remove all txs which cannot be BSQ txs. A tx is only a BSQ tx if it is the
+ * genesis tx or if it spends an unspent BSQ output. The request threads check the inputs against a snapshot of the
+ * unspent BSQ outputs taken when the block got requested and keep txs spending an output of a tx kept before in the
+ * same block. The outputs created by blocks which got parsed after the snapshot are unknown to the request threads, so
+ * on the user thread we check the remaining txs against the BSQ txs of those blocks. That set is usually empty. The
+ * filter might keep txs which turn out to be no BSQ txs but it never removes a BSQ tx.
+ */
+@Slf4j
+class RawBlockPipeline implements DaoStateListener {
+    private final RpcService rpcService;
+    private final DaoStateService daoStateService;
+    private final String genesisTxId;
+    private final int genesisBlockHeight;
+    private final int chainHeight;
+    private final Consumer<RawBlock> rawBlockHandler;
+    private final ResultHandler resultHandler;
+    private final Consumer<Throwable> errorHandler;
+
+    // All fields below are only accessed from the user thread
+    private final Map<Integer, PrefilteredBlock> receivedBlocks = new HashMap<>();
+    // Requests which did not complete yet by their block height. They get cancelled when we stop, so a new pipeline
+    // does not have to wait for them.
+    private final Map<Integer, ListenableFuture<PrefilteredBlock>> pendingRequests = new HashMap<>();
+    // Height of the last parsed block at the time when the pending blocks got requested, in the order of the requests
+    private final Deque<Integer> pendingSnapshotHeights = new ArrayDeque<>();
+    // Ids of the BSQ txs of the blocks parsed while the pipeline is running
+    private final TreeMap<Integer, Set<String>> bsqTxIdsByHeight = new TreeMap<>();
+    private int nextHeightToRequest;
+    private int nextHeightToParse;
+    private boolean stopped;
+    private long numTxs;
+    private long numCandidateTxs;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    RawBlockPipeline(RpcService rpcService,
+                     DaoStateService daoStateService,
+                     int startBlockHeight,
+                     int chainHeight,
+                     Consumer<RawBlock> rawBlockHandler,
+                     ResultHandler resultHandler,
+                     Consumer<Throwable> errorHandler) {
+        this.rpcService = rpcService;
+        this.daoStateService = daoStateService;
+        this.genesisTxId = daoStateService.getGenesisTxId();
+        this.genesisBlockHeight = daoStateService.getGenesisBlockHeight();
+        this.chainHeight = chainHeight;
+        this.rawBlockHandler = rawBlockHandler;
+        this.resultHandler = resultHandler;
+        this.errorHandler = errorHandler;
+
+        nextHeightToRequest = startBlockHeight;
+        nextHeightToParse = startBlockHeight;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // DaoStateListener
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onParseBlockComplete(Block block) {
+        // We get called for blocks parsed by us as well as for blocks parsed from another source
+        if (!block.getTxs().isEmpty()) {
+            bsqTxIdsByHeight.put(block.getHeight(), block.getTxs().stream()
+                    .map(Tx::getId)
+                    .collect(Collectors.toSet()));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void start() {
+        daoStateService.addDaoStateListener(this);
+        requestBlocks();
+    }
+
+    void stop() {
+        if (!stopped) {
+            stopped = true;
+            daoStateService.removeDaoStateListener(this);
+            pendingRequests.values().forEach(future -> future.cancel(false));
+            pendingRequests.clear();
+            receivedBlocks.clear();
+            pendingSnapshotHeights.clear();
+            bsqTxIdsByHeight.clear();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void requestBlocks() {
+        while (!stopped &&
+                nextHeightToRequest <= chainHeight &&
+                nextHeightToRequest - nextHeightToParse < RpcService.MAX_PENDING_BLOCK_REQUESTS) {
+            requestBlock(nextHeightToRequest++);
+        }
+    }
+
+    private void requestBlock(int blockHeight) {
+        // The snapshot is cheap as the map is shared structurally with the dao state
+        Map<TxOutputKey, TxOutput> unspentTxOutputs = daoStateService.getUnspentTxOutputMapSnapshot();
+        int snapshotHeight = daoStateService.getBlockHeightOfLastBlock();
+        pendingSnapshotHeights.add(snapshotHeight);
+
+        // The prefilter runs on the thread which completed the request
+        ListenableFuture<PrefilteredBlock> future = Futures.transform(rpcService.requestBtcBlock(blockHeight),
+                rawBlock -> prefilter(rawBlock, unspentTxOutputs, snapshotHeight),
+                MoreExecutors.directExecutor());
+        pendingRequests.put(blockHeight, future);
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(PrefilteredBlock prefilteredBlock) {
+                UserThread.execute(() -> onBlockReceived(prefilteredBlock));
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable throwable) {
+                UserThread.execute(() -> onRequestFailed(blockHeight, throwable));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    // Called on a block request thread
+    private PrefilteredBlock prefilter(RawBlock rawBlock,
+                                       Map<TxOutputKey, TxOutput> unspentTxOutputs,
+                                       int snapshotHeight) {
+        Set<String> candidateTxIds = new HashSet<>();
+        rawBlock.getRawTxs().forEach(rawTx -> {
+            if (GenesisTxParser.isGenesis(rawTx, genesisTxId, genesisBlockHeight) ||
+                    rawTx.getTxInputs().stream().anyMatch(txInput ->
+                            unspentTxOutputs.containsKey(txInput.getConnectedTxOutputKey()) ||
+                                    candidateTxIds.contains(txInput.getConnectedTxOutputTxId()))) {
+                candidateTxIds.add(rawTx.getId());
+            }
+        });
+        return new PrefilteredBlock(rawBlock, candidateTxIds, snapshotHeight);
+    }
+
+    private void onBlockReceived(PrefilteredBlock prefilteredBlock) {
+        if (stopped)
+            return;
+
+        pendingRequests.remove(prefilteredBlock.rawBlock.getHeight());
+        receivedBlocks.put(prefilteredBlock.rawBlock.getHeight(), prefilteredBlock);
+        parseNextBlock();
+    }
+
+    private void parseNextBlock() {
+        if (stopped)
+            return;
+
+        PrefilteredBlock prefilteredBlock = receivedBlocks.remove(nextHeightToParse);
+        if (prefilteredBlock == null)
+            return;
+
+        pendingSnapshotHeights.poll();
+        nextHeightToParse++;
+        // The handler might stop us in case of a reorg
+        rawBlockHandler.accept(getBlockWithCandidateTxs(prefilteredBlock));
+        if (stopped)
+            return;
+
+        // Blocks older than all snapshots of the pending blocks are not needed anymore
+        Integer oldestSnapshotHeight = pendingSnapshotHeights.peek();
+        int obsoleteHeight = oldestSnapshotHeight != null ?
+                oldestSnapshotHeight :
+                daoStateService.getBlockHeightOfLastBlock();
+        bsqTxIdsByHeight.headMap(obsoleteHeight, true).clear();
+
+        if (nextHeightToParse > chainHeight) {
+            log.info("Parsed blocks up to height {}. {} of {} txs were passed to the parser.",
+                    chainHeight, numCandidateTxs, numTxs);
+            stop();
+            resultHandler.handleResult();
+            return;
+        }
+
+        requestBlocks();
+
+        // We parse only one block at a time to not block the user thread for too long
+        if (receivedBlocks.containsKey(nextHeightToParse))
+            UserThread.execute(this::parseNextBlock);
+    }
+
+    private RawBlock getBlockWithCandidateTxs(PrefilteredBlock prefilteredBlock) {
+        RawBlock rawBlock = prefilteredBlock.rawBlock;
+        // BSQ txs of blocks parsed after the snapshot used by the prefilter
+        Set<String> recentBsqTxIds = new HashSet<>();
+        bsqTxIdsByHeight.subMap(prefilteredBlock.snapshotHeight, false, rawBlock.getHeight(), false)
+                .values()
+                .forEach(recentBsqTxIds::addAll);
+
+        Set<String> candidateTxIds = new HashSet<>(prefilteredBlock.candidateTxIds);
+        if (!recentBsqTxIds.isEmpty()) {
+            for (RawTx rawTx : rawBlock.getRawTxs()) {
+                if (!candidateTxIds.contains(rawTx.getId()) &&
+                        rawTx.getTxInputs().stream()
+                                .map(TxInput::getConnectedTxOutputTxId)
+                                .anyMatch(txId -> recentBsqTxIds.contains(txId) || candidateTxIds.contains(txId))) {
+                    candidateTxIds.add(rawTx.getId());
+                }
+            }
+        }
+
+        List<RawTx> candidateTxs = rawBlock.getRawTxs().stream()
+                .filter(rawTx -> candidateTxIds.contains(rawTx.getId()))
+                .collect(Collectors.toList());
+        numTxs += rawBlock.getRawTxs().size();
+        numCandidateTxs += candidateTxs.size();
+        return new RawBlock(rawBlock.getHeight(),
+                rawBlock.getTime(),
+                rawBlock.getHash(),
+                rawBlock.getPreviousBlockHash(),
+                ImmutableList.copyOf(candidateTxs));
+    }
+
+    private void onRequestFailed(int blockHeight, Throwable throwable) {
+        if (stopped)
+            return;
+
+        log.error("Error at requestBtcBlock: blockHeight={}", blockHeight);
+        stop();
+        errorHandler.accept(throwable);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PrefilteredBlock
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class PrefilteredBlock {
+        private final RawBlock rawBlock;
+        private final Set<String> candidateTxIds;
+        private final int snapshotHeight;
+
+        private PrefilteredBlock(RawBlock rawBlock, Set<String> candidateTxIds, int snapshotHeight) {
+            this.rawBlock = rawBlock;
+            this.candidateTxIds = candidateTxIds;
+            this.snapshotHeight = snapshotHeight;
+        }
+    }
+}
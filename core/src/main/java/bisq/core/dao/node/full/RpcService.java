@@ -56,6 +56,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -70,6 +71,11 @@ import org.jetbrains.annotations.NotNull;
  */
 @Slf4j
 public class RpcService {
+    // Bitcoin Core handles 4 rpc requests in parallel by default (rpcthreads)
+    private static final int NUM_BLOCK_REQUEST_THREADS = 4;
+    // The block request executor queues all requests, so the callers limit how many requests they have pending
+    static final int MAX_PENDING_BLOCK_REQUESTS = 2 * NUM_BLOCK_REQUEST_THREADS;
+
     private final String rpcUser;
     private final String rpcPassword;
     private final String rpcHost;
@@ -80,9 +86,10 @@ public class RpcService {
     private BtcdClient client;
     private BtcdDaemon daemon;
 
-    // We could use multiple threads but then we need to support ordering of results in a queue
-    // Keep that for optimization after measuring performance differences
     private final ListeningExecutorService executor = Utilities.getSingleThreadListeningExecutor("RpcService");
+    // Blocks are requested in parallel, the caller is responsible for the ordering of the results
+    private final ListeningExecutorService blockRequestExecutor = Utilities.getFixedThreadPoolListeningExecutor(
+            "RpcService-blocks-%d", NUM_BLOCK_REQUEST_THREADS);
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -131,6 +138,9 @@ public class RpcService {
 
                 long startTs = System.currentTimeMillis();
                 PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+                // One connection for each block request thread and one for the other requests
+                cm.setDefaultMaxPerRoute(NUM_BLOCK_REQUEST_THREADS + 1);
+                cm.setMaxTotal(NUM_BLOCK_REQUEST_THREADS + 1);
                 CloseableHttpClient httpProvider = HttpClients.custom().setConnectionManager(cm).build();
                 Properties nodeConfig = new Properties();
                 nodeConfig.setProperty("node.bitcoind.rpc.protocol", "http");
@@ -221,37 +231,18 @@ public class RpcService {
         }, MoreExecutors.directExecutor());
     }
 
-    void requestBtcBlock(int blockHeight,
-                         Consumer<RawBlock> resultHandler,
-                         Consumer<Throwable> errorHandler) {
-        ListenableFuture<RawBlock> future = executor.submit(() -> {
-            long startTs = System.currentTimeMillis();
-            String blockHash = client.getBlockHash(blockHeight);
-            com.neemre.btcdcli4j.core.domain.RawBlock rawBtcBlock = client.getBlock(blockHash, 2);
-            List<RawTx> txList = rawBtcBlock.getTx().stream()
-                    .map(e -> getTxFromRawTransaction(e, rawBtcBlock))
-                    .collect(Collectors.toList());
-            log.info("requestBtcBlock from bitcoind at blockHeight {} with {} txs took {} ms",
-                    blockHeight, txList.size(), System.currentTimeMillis() - startTs);
-            return new RawBlock(rawBtcBlock.getHeight(),
-                    rawBtcBlock.getTime() * 1000, // rawBtcBlock.getTime() is in sec but we want ms
-                    rawBtcBlock.getHash(),
-                    rawBtcBlock.getPreviousBlockHash(),
-                    ImmutableList.copyOf(txList));
-        });
-
-        Futures.addCallback(future, new FutureCallback<>() {
-            @Override
-            public void onSuccess(RawBlock block) {
-                UserThread.execute(() -> resultHandler.accept(block));
-            }
-
-            @Override
-            public void onFailure(@NotNull Throwable throwable) {
-                log.error("Error at requestBtcBlock: blockHeight={}", blockHeight);
-                UserThread.execute(() -> errorHandler.accept(throwable));
-            }
-        }, MoreExecutors.directExecutor());
+    /**
+     * Requests and decodes the block at blockHeight on one of the block request threads. Several blocks can be
+     * requested in parallel, but not more than {@link #MAX_PENDING_BLOCK_REQUESTS} at a time. The returned future
+     * completes on the block request thread, so callers can do further processing there before they map to the
+     * user thread. If the request cannot be executed the future fails, so the caller always gets a result.
+     */
+    ListenableFuture<RawBlock> requestBtcBlock(int blockHeight) {
+        try {
+            return blockRequestExecutor.submit(() -> requestAndDecodeBtcBlock(blockHeight));
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
     }
 
 
@@ -259,6 +250,22 @@ public class RpcService {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private RawBlock requestAndDecodeBtcBlock(int blockHeight) throws BitcoindException, CommunicationException {
+        long startTs = System.currentTimeMillis();
+        String blockHash = client.getBlockHash(blockHeight);
+        com.neemre.btcdcli4j.core.domain.RawBlock rawBtcBlock = client.getBlock(blockHash, 2);
+        List<RawTx> txList = rawBtcBlock.getTx().stream()
+                .map(e -> getTxFromRawTransaction(e, rawBtcBlock))
+                .collect(Collectors.toList());
+        log.info("requestBtcBlock from bitcoind at blockHeight {} with {} txs took {} ms",
+                blockHeight, txList.size(), System.currentTimeMillis() - startTs);
+        return new RawBlock(rawBtcBlock.getHeight(),
+                rawBtcBlock.getTime() * 1000, // rawBtcBlock.getTime() is in sec but we want ms
+                rawBtcBlock.getHash(),
+                rawBtcBlock.getPreviousBlockHash(),
+                ImmutableList.copyOf(txList));
+    }
+
     private RawTx getTxFromRawTransaction(RawTransaction rawBtcTx,
                                           com.neemre.btcdcli4j.core.domain.RawBlock rawBtcBlock) {
         String txId = rawBtcTx.getTxId();
@@ -22,7 +22,6 @@ import bisq.core.dao.governance.voteresult.MissingDataRequestService;
 import bisq.core.dao.node.full.RawBlock;
 import bisq.core.dao.node.messages.GetBlocksRequest;
 import bisq.core.dao.node.messages.NewBlockBroadcastMessage;
-import bisq.core.dao.state.DaoStateService;
 import bisq.core.dao.state.model.blockchain.Block;
 
 import bisq.network.p2p.network.Connection;
@@ -60,7 +59,7 @@ public class FullNodeNetworkService implements MessageListener, PeerManager.List
     private final PeerManager peerManager;
     private final Broadcaster broadcaster;
     private final MissingDataRequestService missingDataRequestService;
-    private final DaoStateService daoStateService;
+    private final RawBlockCache rawBlockCache;
 
     // Key is connection UID
     private final Map<String, GetBlocksRequestHandler> getBlocksRequestHandlers = new HashMap<>();
@@ -76,12 +75,12 @@ public class FullNodeNetworkService implements MessageListener, PeerManager.List
                                   PeerManager peerManager,
                                   Broadcaster broadcaster,
                                   MissingDataRequestService missingDataRequestService,
-                                  DaoStateService daoStateService) {
+                                  RawBlockCache rawBlockCache) {
         this.networkNode = networkNode;
         this.peerManager = peerManager;
         this.broadcaster = broadcaster;
         this.missingDataRequestService = missingDataRequestService;
-        this.daoStateService = daoStateService;
+        this.rawBlockCache = rawBlockCache;
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -141,7 +140,7 @@ public class FullNodeNetworkService implements MessageListener, PeerManager.List
                 final String uid = connection.getUid();
                 if (!getBlocksRequestHandlers.containsKey(uid)) {
                     GetBlocksRequestHandler requestHandler = new GetBlocksRequestHandler(networkNode,
-                            daoStateService,
+                            rawBlockCache,
                             new GetBlocksRequestHandler.Listener() {
                                 @Override
                                 public void onComplete() {
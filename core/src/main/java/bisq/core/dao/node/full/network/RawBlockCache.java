@@ -0,0 +1,122 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.full.network;
+
+import bisq.core.dao.node.full.RawBlock;
+import bisq.core.dao.state.DaoStateService;
+import bisq.core.dao.state.model.blockchain.Block;
+
+import com.google.protobuf.ByteString;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the RawBlocks we send to lite nodes together with their serialized protos by block height, so a
+ * GetBlocksResponse for blocks which have been requested before does not need to convert and serialize them again.
+ * Blocks are added when they get requested. Lite nodes mostly request the recent blocks, so we keep the blocks used
+ * most recently, but not more than fit into one response.
+ * At a reorg the blocks at a height can change. We compare the hash with the block in the dao state at each request
+ * and replace changed blocks.
+ * Accessed only from the user thread.
+ */
+@Slf4j
+public class RawBlockCache {
+    // We send at most 6000 blocks, which is about 1.5 months
+    static final int MAX_NUM_BLOCKS = 6000;
+
+    private final DaoStateService daoStateService;
+    private final Cache<Integer, CachedBlock> cachedBlockByHeight = CacheBuilder.newBuilder()
+            // Only used from the user thread. With a single segment the least recently used blocks get evicted first.
+            .concurrencyLevel(1)
+            .maximumSize(MAX_NUM_BLOCKS)
+            .build();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public RawBlockCache(DaoStateService daoStateService) {
+        this.daoStateService = daoStateService;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public List<RawBlock> getRawBlocks(int fromBlockHeight, int numMaxBlocks) {
+        List<Block> blocks = daoStateService.getBlocksFromBlockHeight(fromBlockHeight,
+                Math.min(numMaxBlocks, MAX_NUM_BLOCKS));
+        List<RawBlock> rawBlocks = new ArrayList<>(blocks.size());
+        int numAddedBlocks = 0;
+        for (Block block : blocks) {
+            CachedBlock cachedBlock = cachedBlockByHeight.getIfPresent(block.getHeight());
+            if (cachedBlock == null || !cachedBlock.rawBlock.getHash().equals(block.getHash())) {
+                cachedBlock = new CachedBlock(RawBlock.fromBlock(block));
+                cachedBlockByHeight.put(block.getHeight(), cachedBlock);
+                numAddedBlocks++;
+            }
+            rawBlocks.add(cachedBlock.rawBlock);
+        }
+        if (numAddedBlocks > 0)
+            log.info("Added {} blocks to the RawBlock cache", numAddedBlocks);
+
+        return Collections.unmodifiableList(rawBlocks);
+    }
+
+    /**
+     * @return The serialized proto of a RawBlock returned by getRawBlocks. If the block is not cached anymore it gets
+     * serialized again.
+     */
+    public ByteString getSerializedRawBlock(RawBlock rawBlock) {
+        CachedBlock cachedBlock = cachedBlockByHeight.getIfPresent(rawBlock.getHeight());
+        return cachedBlock != null && cachedBlock.rawBlock == rawBlock ?
+                cachedBlock.serializedRawBlock :
+                rawBlock.toProtoMessage().toByteString();
+    }
+
+    long size() {
+        cachedBlockByHeight.cleanUp();
+        return cachedBlockByHeight.size();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // CachedBlock
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class CachedBlock {
+        private final RawBlock rawBlock;
+        private final ByteString serializedRawBlock;
+
+        private CachedBlock(RawBlock rawBlock) {
+            this.rawBlock = rawBlock;
+            this.serializedRawBlock = rawBlock.toProtoMessage().toByteString();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package bisq.core.dao.node.lite;
 
 import bisq.core.btc.wallet.BsqWalletService;
+import bisq.core.dao.monitoring.DaoStateMonitoringService;
 import bisq.core.dao.node.BsqNode;
 import bisq.core.dao.node.explorer.ExportJsonFilesService;
 import bisq.core.dao.node.full.RawBlock;
@@ -37,6 +38,8 @@ import bisq.common.UserThread;
 
 import com.google.inject.Inject;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -51,9 +54,14 @@ import org.jetbrains.annotations.Nullable;
 @Slf4j
 public class LiteNode extends BsqNode {
     private static final int CHECK_FOR_BLOCK_RECEIVED_DELAY_SEC = 10;
+    // Limits for the blocks we parse in one user thread call at batch processing. The UI gets updated between the
+    // batches.
+    private static final int MAX_BLOCKS_PER_BATCH = 500;
+    private static final long MAX_BATCH_DURATION_MS = 200;
 
     private final LiteNodeNetworkService liteNodeNetworkService;
     private final BsqWalletService bsqWalletService;
+    private final DaoStateMonitoringService daoStateMonitoringService;
     private Timer checkForBlockReceivedTimer;
 
 
@@ -69,11 +77,13 @@ public class LiteNode extends BsqNode {
                     P2PService p2PService,
                     LiteNodeNetworkService liteNodeNetworkService,
                     BsqWalletService bsqWalletService,
+                    DaoStateMonitoringService daoStateMonitoringService,
                     ExportJsonFilesService exportJsonFilesService) {
         super(blockParser, daoStateService, daoStateSnapshotService, p2PService, exportJsonFilesService);
 
         this.liteNodeNetworkService = liteNodeNetworkService;
         this.bsqWalletService = bsqWalletService;
+        this.daoStateMonitoringService = daoStateMonitoringService;
     }
 
 
@@ -197,7 +207,16 @@ public class LiteNode extends BsqNode {
             return;
         }
 
+        // The blocks which connect to their predecessor in the list are applied in batches. A not connecting block
+        // and all blocks after it are passed one by one, so doParseBlock deals with it as before.
+        int numConnectingBlocks = getNumConnectingBlocks(blockList);
+        if (numConnectingBlocks < blockList.size()) {
+            log.warn("Received block at height {} does not connect to its predecessor",
+                    blockList.get(numConnectingBlocks).getHeight());
+        }
+
         runDelayedBatchProcessing(new ArrayList<>(blockList),
+                numConnectingBlocks,
                 () -> {
                     log.debug("Parsing {} blocks took {} seconds.", blockList.size(), (System.currentTimeMillis() - ts) / 1000d);
                     if (daoStateService.getChainHeight() < bsqWalletService.getBestChainHeight()) {
@@ -209,20 +228,38 @@ public class LiteNode extends BsqNode {
                 });
     }
 
-    private void runDelayedBatchProcessing(List<RawBlock> blocks, Runnable resultHandler) {
+    private void runDelayedBatchProcessing(List<RawBlock> blocks, int numConnectingBlocks, Runnable resultHandler) {
         UserThread.execute(() -> {
             if (blocks.isEmpty()) {
                 resultHandler.run();
                 return;
             }
 
-            RawBlock block = blocks.remove(0);
+            int maxBatchSize = numConnectingBlocks > 0 ? Math.min(numConnectingBlocks, MAX_BLOCKS_PER_BATCH) : 1;
+            int numParsedBlocks = 0;
+            boolean reorgRequired = false;
+            long ts = System.currentTimeMillis();
+            daoStateMonitoringService.onBatchProcessingStarted();
             try {
-                doParseBlock(block);
-                runDelayedBatchProcessing(blocks, resultHandler);
+                while (numParsedBlocks < maxBatchSize &&
+                        (numParsedBlocks == 0 || System.currentTimeMillis() - ts < MAX_BATCH_DURATION_MS)) {
+                    RawBlock block = blocks.get(numParsedBlocks);
+                    numParsedBlocks++;
+                    doParseBlock(block);
+                }
             } catch (RequiredReorgFromSnapshotException e) {
+                reorgRequired = true;
+            } finally {
+                daoStateMonitoringService.onBatchProcessingCompleted(numParsedBlocks);
+            }
+
+            if (reorgRequired) {
                 resultHandler.run();
+                return;
             }
+
+            blocks.subList(0, numParsedBlocks).clear();
+            runDelayedBatchProcessing(blocks, Math.max(0, numConnectingBlocks - numParsedBlocks), resultHandler);
         });
     }
 
@@ -242,4 +279,20 @@ public class LiteNode extends BsqNode {
 
         maybeExportToJson();
     }
+
+    // Returns the number of blocks from the start of the list where each block connects to the block before it.
+    // The first block is always counted as it gets validated against our last block at parsing.
+    @VisibleForTesting
+    static int getNumConnectingBlocks(List<RawBlock> blocks) {
+        for (int index = 1; index < blocks.size(); index++) {
+            if (!isConnecting(blocks.get(index - 1), blocks.get(index)))
+                return index;
+        }
+        return blocks.size();
+    }
+
+    private static boolean isConnecting(RawBlock previous, RawBlock block) {
+        return previous.getHeight() + 1 == block.getHeight() &&
+                previous.getHash().equals(block.getPreviousBlockHash());
+    }
 }
@@ -25,23 +25,41 @@ import bisq.network.p2p.ExtendedDataSizePermission;
 import bisq.common.app.Version;
 import bisq.common.proto.network.NetworkEnvelope;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 @EqualsAndHashCode(callSuper = true)
 @Getter
 @Slf4j
 public final class GetBlocksResponse extends NetworkEnvelope implements DirectMessage, ExtendedDataSizePermission {
     private final List<RawBlock> blocks;
     private final int requestNonce;
+    // Only set at the sender. If set, the blocks are written with the bytes it returns.
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    private final Function<RawBlock, ByteString> blockSerializer;
 
     public GetBlocksResponse(List<RawBlock> blocks, int requestNonce) {
-        this(blocks, requestNonce, Version.getP2PMessageVersion());
+        this(blocks, requestNonce, null);
+    }
+
+    public GetBlocksResponse(List<RawBlock> blocks,
+                             int requestNonce,
+                             @Nullable Function<RawBlock, ByteString> blockSerializer) {
+        this(blocks, requestNonce, blockSerializer, Version.getP2PMessageVersion());
     }
 
 
@@ -49,20 +67,42 @@ public final class GetBlocksResponse extends NetworkEnvelope implements DirectMe
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private GetBlocksResponse(List<RawBlock> blocks, int requestNonce, int messageVersion) {
+    private GetBlocksResponse(List<RawBlock> blocks,
+                              int requestNonce,
+                              @Nullable Function<RawBlock, ByteString> blockSerializer,
+                              int messageVersion) {
         super(messageVersion);
         this.blocks = blocks;
         this.requestNonce = requestNonce;
+        this.blockSerializer = blockSerializer;
     }
 
     @Override
     public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
+        protobuf.GetBlocksResponse.Builder builder = protobuf.GetBlocksResponse.newBuilder();
+        if (blockSerializer != null) {
+            // The blocks are serialized already, so we add them as raw length delimited fields. Unknown fields are
+            // written after the known fields, so the request nonce (field 2) is added as unknown field as well. As
+            // with a known int32 field a 0 is not written and a negative value is sign extended to 64 bits. That
+            // results in the same bytes on the wire as if we had added the messages.
+            UnknownFieldSet.Field.Builder rawBlocksField = UnknownFieldSet.Field.newBuilder();
+            blocks.forEach(block -> rawBlocksField.addLengthDelimited(blockSerializer.apply(block)));
+            UnknownFieldSet.Builder unknownFields = UnknownFieldSet.newBuilder()
+                    .addField(protobuf.GetBlocksResponse.RAW_BLOCKS_FIELD_NUMBER, rawBlocksField.build());
+            if (requestNonce != 0) {
+                unknownFields.addField(protobuf.GetBlocksResponse.REQUEST_NONCE_FIELD_NUMBER,
+                        UnknownFieldSet.Field.newBuilder().addVarint(requestNonce).build());
+            }
+            builder.setUnknownFields(unknownFields.build());
+        } else {
+            builder.addAllRawBlocks(blocks.stream()
+                    .map(RawBlock::toProtoMessage)
+                    .collect(Collectors.toList()))
+                    .setRequestNonce(requestNonce);
+        }
+
         protobuf.NetworkEnvelope proto = getNetworkEnvelopeBuilder()
-                .setGetBlocksResponse(protobuf.GetBlocksResponse.newBuilder()
-                        .addAllRawBlocks(blocks.stream()
-                                .map(RawBlock::toProtoMessage)
-                                .collect(Collectors.toList()))
-                        .setRequestNonce(requestNonce))
+                .setGetBlocksResponse(builder)
                 .build();
         log.info("Sending a GetBlocksResponse with {} kB", proto.getSerializedSize() / 1000d);
         return proto;
@@ -77,6 +117,7 @@ public final class GetBlocksResponse extends NetworkEnvelope implements DirectMe
                 new ArrayList<>() :
                 list,
                 proto.getRequestNonce(),
+                null,
                 messageVersion);
     }
 
@@ -29,7 +29,7 @@ import org.bitcoinj.core.Coin;
 
 import javax.inject.Inject;
 
-import java.util.LinkedList;
+import java.util.Optional;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -119,12 +119,11 @@ public class BlockParser {
     }
 
     private void validateIfBlockIsConnecting(RawBlock rawBlock) throws BlockHashNotConnectingException, BlockHeightNotConnectingException {
-        LinkedList<Block> blocks = daoStateService.getBlocks();
-
-        if (blocks.isEmpty())
+        Optional<Block> lastBlock = daoStateService.getLastBlock();
+        if (!lastBlock.isPresent())
             return;
 
-        Block last = blocks.getLast();
+        Block last = lastBlock.get();
         if (last.getHeight() + 1 != rawBlock.getHeight())
             throw new BlockHeightNotConnectingException(rawBlock);
 
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.state;
+
+import bisq.core.dao.state.model.DaoState;
+import bisq.core.dao.state.model.blockchain.Block;
+import bisq.core.dao.state.model.blockchain.Tx;
+import bisq.core.dao.state.model.blockchain.TxOutput;
+import bisq.core.dao.state.model.blockchain.TxOutputKey;
+import bisq.core.dao.state.model.blockchain.TxOutputType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Lookup tables for the DaoState queries which would otherwise scan all blocks or all tx outputs.
+ *
+ * The tables are built lazily from the blocks and the tx cache of the DaoState at the first lookup and are updated
+ * incrementally when blocks and txs get added. When the DaoState gets replaced by a snapshot they get dropped and
+ * are rebuilt at the next lookup. Only {@link DaoStateService} changes the DaoState, so it is responsible for
+ * calling the update methods.
+ */
+@NotThreadSafe
+class DaoStateIndex {
+    private final DaoState daoState;
+
+    // Null as long as not built
+    @Nullable
+    private Map<Integer, Block> blockByHeight;
+    @Nullable
+    private Map<String, Integer> heightByBlockHash;
+    @Nullable
+    private Map<TxOutputKey, TxOutput> txOutputByKey;
+    @Nullable
+    private Map<TxOutputType, List<TxOutput>> txOutputsByType;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    DaoStateIndex(DaoState daoState) {
+        this.daoState = daoState;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Updates
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void onBlockAdded(Block block) {
+        if (blockByHeight != null)
+            addBlock(block);
+    }
+
+    void onTxAdded(Tx tx) {
+        if (txOutputByKey != null)
+            addTx(tx);
+    }
+
+    void reset() {
+        blockByHeight = null;
+        heightByBlockHash = null;
+        txOutputByKey = null;
+        txOutputsByType = null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Lookups
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Nullable
+    Block getBlockAtHeight(int height) {
+        buildBlockIndexIfMissing();
+        return blockByHeight.get(height);
+    }
+
+    @Nullable
+    Integer getHeightOfBlockHash(String blockHash) {
+        buildBlockIndexIfMissing();
+        return heightByBlockHash.get(blockHash);
+    }
+
+    @Nullable
+    TxOutput getTxOutput(TxOutputKey txOutputKey) {
+        buildTxOutputIndexIfMissing();
+        return txOutputByKey.get(txOutputKey);
+    }
+
+    List<TxOutput> getTxOutputsByType(TxOutputType txOutputType) {
+        buildTxOutputIndexIfMissing();
+        return Collections.unmodifiableList(txOutputsByType.getOrDefault(txOutputType, Collections.emptyList()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void buildBlockIndexIfMissing() {
+        if (blockByHeight == null) {
+            blockByHeight = new HashMap<>();
+            heightByBlockHash = new HashMap<>();
+            daoState.getBlocks().forEach(this::addBlock);
+        }
+    }
+
+    private void buildTxOutputIndexIfMissing() {
+        if (txOutputByKey == null) {
+            txOutputByKey = new HashMap<>();
+            txOutputsByType = new EnumMap<>(TxOutputType.class);
+            daoState.getTxCache().values().forEach(this::addTx);
+        }
+    }
+
+    private void addBlock(Block block) {
+        // Heights and hashes are unique, in case that is ever violated we keep the first block as the
+        // previous linear search would have done
+        blockByHeight.putIfAbsent(block.getHeight(), block);
+        heightByBlockHash.putIfAbsent(block.getHash(), block.getHeight());
+    }
+
+    private void addTx(Tx tx) {
+        tx.getTxOutputs().forEach(txOutput -> {
+            txOutputByKey.putIfAbsent(txOutput.getKey(), txOutput);
+            txOutputsByType.computeIfAbsent(txOutput.getTxOutputType(), type -> new ArrayList<>()).add(txOutput);
+        });
+    }
+}
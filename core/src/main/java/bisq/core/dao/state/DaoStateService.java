@@ -47,9 +47,9 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -67,6 +67,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 @Slf4j
 public class DaoStateService implements DaoSetupService {
     private final DaoState daoState;
+    private final DaoStateIndex daoStateIndex;
     private final GenesisTxInfo genesisTxInfo;
     private final BsqFormatter bsqFormatter;
     private final List<DaoStateListener> daoStateListeners = new CopyOnWriteArrayList<>();
@@ -82,6 +83,7 @@ public class DaoStateService implements DaoSetupService {
     @Inject
     public DaoStateService(DaoState daoState, GenesisTxInfo genesisTxInfo, BsqFormatter bsqFormatter) {
         this.daoState = daoState;
+        this.daoStateIndex = new DaoStateIndex(daoState);
         this.genesisTxInfo = genesisTxInfo;
         this.bsqFormatter = bsqFormatter;
     }
@@ -119,6 +121,7 @@ public class DaoStateService implements DaoSetupService {
 
         daoState.getBlocks().clear();
         daoState.getBlocks().addAll(snapshot.getBlocks());
+        daoStateIndex.reset();
 
         daoState.getCycles().clear();
         daoState.getCycles().addAll(snapshot.getCycles());
@@ -145,8 +148,9 @@ public class DaoStateService implements DaoSetupService {
         daoState.getDecryptedBallotsWithMeritsList().addAll(snapshot.getDecryptedBallotsWithMeritsList());
     }
 
-    public DaoState getClone() {
-        return DaoState.getClone(daoState);
+    // Cheap snapshot which is not affected by later changes of the daoState
+    public DaoState getSnapshot() {
+        return DaoState.getSnapshot(daoState);
     }
 
     public byte[] getSerializedStateForHashChain() {
@@ -218,6 +222,7 @@ public class DaoStateService implements DaoSetupService {
                     "That might happen in edge cases at reorgs. Received block={}", block);
         } else {
             daoState.getBlocks().add(block);
+            daoStateIndex.onBlockAdded(block);
 
             if (parseBlockChainComplete)
                 log.info("New Block added at blockHeight {}", block.getHeight());
@@ -233,6 +238,9 @@ public class DaoStateService implements DaoSetupService {
                 // We need to ensure that the txs in all blocks are in sync with the txs in our txMap (cache).
                 block.addTx(tx);
                 daoState.addToTxCache(tx);
+                // A tx with a duplicate txId is not added to the cache, so it must not be indexed either
+                if (daoState.getTxCache().get(tx.getId()) == tx)
+                    daoStateIndex.onTxAdded(tx);
             } else {
                 // Not clear if this case can happen but at onNewBlockWithEmptyTxs we handle such a potential edge
                 // case as well, so we need to reflect that here as well.
@@ -279,7 +287,7 @@ public class DaoStateService implements DaoSetupService {
     }
 
 
-    public LinkedList<Block> getBlocks() {
+    public List<Block> getBlocks() {
         return daoState.getBlocks();
     }
 
@@ -291,12 +299,12 @@ public class DaoStateService implements DaoSetupService {
      * {@code false}.
      */
     public boolean isBlockHashKnown(String blockHash) {
-        return getBlocks().stream().anyMatch(block -> block.getHash().equals(blockHash));
+        return daoStateIndex.getHeightOfBlockHash(blockHash) != null;
     }
 
     public Optional<Block> getLastBlock() {
         if (!getBlocks().isEmpty())
-            return Optional.of(getBlocks().getLast());
+            return Optional.of(daoState.getBlocks().getLast());
         else
             return Optional.empty();
     }
@@ -306,9 +314,7 @@ public class DaoStateService implements DaoSetupService {
     }
 
     public Optional<Block> getBlockAtHeight(int height) {
-        return getBlocks().stream()
-                .filter(block -> block.getHeight() == height)
-                .findAny();
+        return Optional.ofNullable(daoStateIndex.getBlockAtHeight(height));
     }
 
     public boolean containsBlock(Block block) {
@@ -316,7 +322,7 @@ public class DaoStateService implements DaoSetupService {
     }
 
     public boolean containsBlockHash(String blockHash) {
-        return getBlocks().stream().anyMatch(block -> block.getHash().equals(blockHash));
+        return daoStateIndex.getHeightOfBlockHash(blockHash) != null;
     }
 
     public long getBlockTime(int height) {
@@ -429,19 +435,12 @@ public class DaoStateService implements DaoSetupService {
     // TxOutput
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private Stream<TxOutput> getUnorderedTxOutputStream() {
-        return getUnorderedTxStream()
-                .flatMap(tx -> tx.getTxOutputs().stream());
-    }
-
     public boolean existsTxOutput(TxOutputKey key) {
-        return getUnorderedTxOutputStream().anyMatch(txOutput -> txOutput.getKey().equals(key));
+        return daoStateIndex.getTxOutput(key) != null;
     }
 
     public Optional<TxOutput> getTxOutput(TxOutputKey txOutputKey) {
-        return getUnorderedTxOutputStream()
-                .filter(txOutput -> txOutput.getKey().equals(txOutputKey))
-                .findAny();
+        return Optional.ofNullable(daoStateIndex.getTxOutput(txOutputKey));
     }
 
 
@@ -449,10 +448,15 @@ public class DaoStateService implements DaoSetupService {
     // UnspentTxOutput
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public TreeMap<TxOutputKey, TxOutput> getUnspentTxOutputMap() {
+    public Map<TxOutputKey, TxOutput> getUnspentTxOutputMap() {
         return daoState.getUnspentTxOutputMap();
     }
 
+    // Not affected by later changes and can be read from any thread
+    public Map<TxOutputKey, TxOutput> getUnspentTxOutputMapSnapshot() {
+        return daoState.getUnspentTxOutputMap().snapshot();
+    }
+
     public void addUnspentTxOutput(TxOutput txOutput) {
         assertDaoStateChange();
         getUnspentTxOutputMap().put(txOutput.getKey(), txOutput);
@@ -525,9 +529,7 @@ public class DaoStateService implements DaoSetupService {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private Set<TxOutput> getTxOutputsByTxOutputType(TxOutputType txOutputType) {
-        return getUnorderedTxOutputStream()
-                .filter(txOutput -> txOutput.getTxOutputType() == txOutputType)
-                .collect(Collectors.toSet());
+        return new HashSet<>(daoStateIndex.getTxOutputsByType(txOutputType));
     }
 
     public boolean isBsqTxOutputType(TxOutput txOutput) {
@@ -28,7 +28,9 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -88,37 +90,45 @@ public class DaoStateSnapshotService {
                 daoStateSnapshotCandidate.getChainHeight() != chainHeight;
         if (isSnapshotHeight(chainHeight) &&
                 !daoStateService.getBlocks().isEmpty() &&
-                isValidHeight(daoStateService.getBlocks().getLast().getHeight()) &&
+                isValidHeight(daoStateService.getBlockHeightOfLastBlock()) &&
                 noSnapshotCandidateOrDifferentHeight) {
             // At trigger event we store the latest snapshotCandidate to disc
             long ts = System.currentTimeMillis();
             if (daoStateSnapshotCandidate != null) {
-                // Serialisation happens on the userThread so we do not need to clone the data. Write to disk happens
-                // in a thread but does not interfere with our objects as they got already serialized when passed to the
-                // write thread. We use requestPersistence so we do not write immediately but at next scheduled interval.
-                // This avoids frequent write at dao sync and better performance.
+                // The snapshotCandidate is not affected by changes of the daoState, so it does not matter when and on
+                // which thread it gets serialized. We use requestPersistence so we do not write immediately but at
+                // next scheduled interval. This avoids frequent write at dao sync and better performance.
                 daoStateStorageService.requestPersistence(daoStateSnapshotCandidate, daoStateHashChainSnapshotCandidate);
                 log.info("Serializing snapshotCandidate for writing to Disc with height {} at height {} took {} ms",
                         daoStateSnapshotCandidate.getChainHeight(), chainHeight, System.currentTimeMillis() - ts);
             }
 
             ts = System.currentTimeMillis();
-            // Now we clone and keep it in memory for the next trigger event
-            daoStateSnapshotCandidate = daoStateService.getClone();
+            // Now we take a snapshot and keep it in memory for the next trigger event. It shares the blocks and maps
+            // with the daoState, so that is cheap.
+            daoStateSnapshotCandidate = daoStateService.getSnapshot();
             daoStateHashChainSnapshotCandidate = new LinkedList<>(daoStateMonitoringService.getDaoStateHashChain());
 
-            log.debug("Cloned new snapshotCandidate at height {} took {} ms", chainHeight, System.currentTimeMillis() - ts);
+            log.debug("Created new snapshotCandidate at height {} took {} ms", chainHeight, System.currentTimeMillis() - ts);
         }
     }
 
     public void applySnapshot(boolean fromReorg) {
         DaoState persistedBsqState = daoStateStorageService.getPersistedBsqState();
         LinkedList<DaoStateHash> persistedDaoStateHashChain = daoStateStorageService.getPersistedDaoStateHashChain();
+        if (persistedBsqState != null &&
+                daoStateStorageService.isPersistedBsqStateFromBlockSegments() &&
+                !isConsistentWithHashChain(persistedBsqState, persistedDaoStateHashChain)) {
+            log.warn("The persisted daoState with chainHeight {} does not match the persisted hash chain. " +
+                    "We do not apply the snapshot.", persistedBsqState.getChainHeight());
+            persistedBsqState = null;
+        }
+
         if (persistedBsqState != null) {
-            LinkedList<Block> blocks = persistedBsqState.getBlocks();
+            List<Block> blocks = persistedBsqState.getBlocks();
             int chainHeightOfPersisted = persistedBsqState.getChainHeight();
             if (!blocks.isEmpty()) {
-                int heightOfLastBlock = blocks.getLast().getHeight();
+                int heightOfLastBlock = blocks.get(blocks.size() - 1).getHeight();
                 log.debug("applySnapshot from persistedBsqState daoState with height of last block {}", heightOfLastBlock);
                 if (isValidHeight(heightOfLastBlock)) {
                     if (chainHeightOfLastApplySnapshot != chainHeightOfPersisted) {
@@ -152,6 +162,26 @@ public class DaoStateSnapshotService {
         return heightOfLastBlock >= genesisTxInfo.getGenesisBlockHeight();
     }
 
+    // The last hash of the persisted hash chain was created from the state we have persisted together with it
+    private boolean isConsistentWithHashChain(DaoState persistedBsqState,
+                                              LinkedList<DaoStateHash> persistedDaoStateHashChain) {
+        if (persistedBsqState.getBlocks().isEmpty() || persistedDaoStateHashChain.isEmpty())
+            return true;
+
+        DaoStateHash lastDaoStateHash = persistedDaoStateHashChain.getLast();
+        if (lastDaoStateHash.getHeight() != persistedBsqState.getChainHeight()) {
+            log.warn("Last height of the persisted hash chain {} does not match chainHeight {} of the persisted daoState",
+                    lastDaoStateHash.getHeight(), persistedBsqState.getChainHeight());
+            return false;
+        }
+
+        long ts = System.currentTimeMillis();
+        byte[] hash = DaoStateMonitoringService.getHash(lastDaoStateHash.getPrevHash(),
+                persistedBsqState.getSerializedStateForHashChain());
+        log.info("Verifying the persisted daoState against the hash chain took {} ms", System.currentTimeMillis() - ts);
+        return Arrays.equals(hash, lastDaoStateHash.getHash());
+    }
+
     private void applyEmptySnapshot() {
         DaoState emptyDaoState = new DaoState();
         int genesisBlockHeight = genesisTxInfo.getGenesisBlockHeight();
@@ -30,9 +30,13 @@ import bisq.core.dao.state.model.governance.ParamChange;
 
 import bisq.common.proto.persistable.PersistablePayload;
 import bisq.common.util.JsonExclude;
+import bisq.common.util.PersistentTreeMap;
+import bisq.common.util.SnapshotArrayList;
 
 import com.google.protobuf.Message;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import javax.inject.Inject;
 
 import java.util.ArrayList;
@@ -41,13 +45,16 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Root class for mutable state of the DAO.
  * Holds both blockchain data as well as data derived from the governance process (voting).
@@ -68,6 +75,23 @@ public class DaoState implements PersistablePayload {
         return DaoState.fromProto(daoState.getBsqStateBuilder().build());
     }
 
+    // Blocks and the maps are shared structurally with the daoState, so creating a snapshot is cheap. The small lists
+    // get copied. Blocks and the other elements are immutable beside the txs of the last block which are added while
+    // it gets parsed. As we take snapshots only after a block was parsed, the snapshot is not affected by later
+    // changes of the daoState and can be read from another thread.
+    public static DaoState getSnapshot(DaoState daoState) {
+        return new DaoState(daoState.chainHeight,
+                daoState.blocks.snapshot(),
+                new LinkedList<>(daoState.cycles),
+                daoState.unspentTxOutputMap.snapshot(),
+                daoState.spentInfoMap.snapshot(),
+                new ArrayList<>(daoState.confiscatedLockupTxList),
+                daoState.issuanceMap.snapshot(),
+                new ArrayList<>(daoState.paramChangeList),
+                new ArrayList<>(daoState.evaluatedProposalList),
+                new ArrayList<>(daoState.decryptedBallotsWithMeritsList));
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Fields
@@ -76,21 +100,21 @@ public class DaoState implements PersistablePayload {
     @Getter
     private int chainHeight; // Is set initially to genesis height
     @Getter
-    private final LinkedList<Block> blocks;
+    private final SnapshotArrayList<Block> blocks;
     @Getter
     private final LinkedList<Cycle> cycles;
 
     // These maps represent mutual data which can get changed at parsing a transaction
     @Getter
-    private final TreeMap<TxOutputKey, TxOutput> unspentTxOutputMap;
+    private final PersistentTreeMap<TxOutputKey, TxOutput> unspentTxOutputMap;
     @Getter
-    private final TreeMap<TxOutputKey, SpentInfo> spentInfoMap;
+    private final PersistentTreeMap<TxOutputKey, SpentInfo> spentInfoMap;
 
     // These maps are related to state change triggered by voting
     @Getter
     private final List<String> confiscatedLockupTxList;
     @Getter
-    private final TreeMap<String, Issuance> issuanceMap; // key is txId
+    private final PersistentTreeMap<String, Issuance> issuanceMap; // key is txId
     @Getter
     private final List<ParamChange> paramChangeList;
 
@@ -102,9 +126,16 @@ public class DaoState implements PersistablePayload {
     @Getter
     private final List<DecryptedBallotsWithMerits> decryptedBallotsWithMeritsList;
 
-    // Transient data used only as an index - must be kept in sync with the block list
+    // Transient data used only as an index - must be kept in sync with the block list. Created lazily as we do not
+    // need it for snapshots.
+    @JsonExclude
+    @Nullable
+    private transient Map<String, Tx> txCache; // key is txId
+
+    // Serialized fields used for the hash chain, created lazily at the first use
     @JsonExclude
-    private transient final Map<String, Tx> txCache; // key is txId
+    @Nullable
+    private transient List<SerializedField> serializedFieldsForHashChain;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -114,12 +145,12 @@ public class DaoState implements PersistablePayload {
     @Inject
     public DaoState() {
         this(0,
+                new SnapshotArrayList<>(),
                 new LinkedList<>(),
-                new LinkedList<>(),
-                new TreeMap<>(),
-                new TreeMap<>(),
+                new PersistentTreeMap<>(),
+                new PersistentTreeMap<>(),
                 new ArrayList<>(),
-                new TreeMap<>(),
+                new PersistentTreeMap<>(),
                 new ArrayList<>(),
                 new ArrayList<>(),
                 new ArrayList<>()
@@ -132,12 +163,12 @@ public class DaoState implements PersistablePayload {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private DaoState(int chainHeight,
-                     LinkedList<Block> blocks,
+                     SnapshotArrayList<Block> blocks,
                      LinkedList<Cycle> cycles,
-                     TreeMap<TxOutputKey, TxOutput> unspentTxOutputMap,
-                     TreeMap<TxOutputKey, SpentInfo> spentInfoMap,
+                     PersistentTreeMap<TxOutputKey, TxOutput> unspentTxOutputMap,
+                     PersistentTreeMap<TxOutputKey, SpentInfo> spentInfoMap,
                      List<String> confiscatedLockupTxList,
-                     TreeMap<String, Issuance> issuanceMap,
+                     PersistentTreeMap<String, Issuance> issuanceMap,
                      List<ParamChange> paramChangeList,
                      List<EvaluatedProposal> evaluatedProposalList,
                      List<DecryptedBallotsWithMerits> decryptedBallotsWithMeritsList) {
@@ -153,10 +184,6 @@ public class DaoState implements PersistablePayload {
         this.paramChangeList = paramChangeList;
         this.evaluatedProposalList = evaluatedProposalList;
         this.decryptedBallotsWithMeritsList = decryptedBallotsWithMeritsList;
-
-        txCache = blocks.stream()
-                .flatMap(block -> block.getTxs().stream())
-                .collect(Collectors.toMap(Tx::getId, Function.identity(), (x, y) -> x, HashMap::new));
     }
 
     @Override
@@ -170,35 +197,78 @@ public class DaoState implements PersistablePayload {
                 .collect(Collectors.toList()));
     }
 
+    // Used if the blocks up to blockSegmentsToHeight are persisted separately in block segment files
+    public protobuf.DaoState.Builder getBsqStateBuilderWithBlocksAbove(int blockSegmentsToHeight) {
+        return getBsqStateBuilderExcludingBlocks().addAllBlocks(blocks.stream()
+                .filter(block -> block.getHeight() > blockSegmentsToHeight)
+                .map(Block::toProtoMessage)
+                .collect(Collectors.toList()));
+    }
+
     private protobuf.DaoState.Builder getBsqStateBuilderExcludingBlocks() {
         protobuf.DaoState.Builder builder = protobuf.DaoState.newBuilder();
-        builder.setChainHeight(chainHeight)
-                .addAllCycles(cycles.stream().map(Cycle::toProtoMessage).collect(Collectors.toList()))
-                .putAllUnspentTxOutputMap(unspentTxOutputMap.entrySet().stream()
-                        .collect(Collectors.toMap(e -> e.getKey().toString(), e -> e.getValue().toProtoMessage())))
-                .putAllSpentInfoMap(spentInfoMap.entrySet().stream()
-                        .collect(Collectors.toMap(e -> e.getKey().toString(), entry -> entry.getValue().toProtoMessage())))
-                .addAllConfiscatedLockupTxList(confiscatedLockupTxList)
-                .putAllIssuanceMap(issuanceMap.entrySet().stream()
-                        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().toProtoMessage())))
-                .addAllParamChangeList(paramChangeList.stream().map(ParamChange::toProtoMessage).collect(Collectors.toList()))
-                .addAllEvaluatedProposalList(evaluatedProposalList.stream().map(EvaluatedProposal::toProtoMessage).collect(Collectors.toList()))
-                .addAllDecryptedBallotsWithMeritsList(decryptedBallotsWithMeritsList.stream().map(DecryptedBallotsWithMerits::toProtoMessage).collect(Collectors.toList()));
+        builder.setChainHeight(chainHeight);
+        addCycles(builder);
+        addUnspentTxOutputMap(builder);
+        addSpentInfoMap(builder);
+        addConfiscatedLockupTxList(builder);
+        addIssuanceMap(builder);
+        addParamChangeList(builder);
+        addEvaluatedProposalList(builder);
+        addDecryptedBallotsWithMeritsList(builder);
         return builder;
     }
 
+    // The methods for the single fields are used for the full message as well as for the serialized fields used
+    // for the hash chain, so both are guaranteed to serialize a field in the same way.
+
+    private void addCycles(protobuf.DaoState.Builder builder) {
+        builder.addAllCycles(cycles.stream().map(Cycle::toProtoMessage).collect(Collectors.toList()));
+    }
+
+    private void addUnspentTxOutputMap(protobuf.DaoState.Builder builder) {
+        builder.putAllUnspentTxOutputMap(unspentTxOutputMap.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toString(), e -> e.getValue().toProtoMessage())));
+    }
+
+    private void addSpentInfoMap(protobuf.DaoState.Builder builder) {
+        builder.putAllSpentInfoMap(spentInfoMap.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toString(), entry -> entry.getValue().toProtoMessage())));
+    }
+
+    private void addConfiscatedLockupTxList(protobuf.DaoState.Builder builder) {
+        builder.addAllConfiscatedLockupTxList(confiscatedLockupTxList);
+    }
+
+    private void addIssuanceMap(protobuf.DaoState.Builder builder) {
+        builder.putAllIssuanceMap(issuanceMap.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().toProtoMessage())));
+    }
+
+    private void addParamChangeList(protobuf.DaoState.Builder builder) {
+        builder.addAllParamChangeList(paramChangeList.stream().map(ParamChange::toProtoMessage).collect(Collectors.toList()));
+    }
+
+    private void addEvaluatedProposalList(protobuf.DaoState.Builder builder) {
+        builder.addAllEvaluatedProposalList(evaluatedProposalList.stream().map(EvaluatedProposal::toProtoMessage).collect(Collectors.toList()));
+    }
+
+    private void addDecryptedBallotsWithMeritsList(protobuf.DaoState.Builder builder) {
+        builder.addAllDecryptedBallotsWithMeritsList(decryptedBallotsWithMeritsList.stream().map(DecryptedBallotsWithMerits::toProtoMessage).collect(Collectors.toList()));
+    }
+
     public static DaoState fromProto(protobuf.DaoState proto) {
-        LinkedList<Block> blocks = proto.getBlocksList().stream()
+        SnapshotArrayList<Block> blocks = proto.getBlocksList().stream()
                 .map(Block::fromProto)
-                .collect(Collectors.toCollection(LinkedList::new));
+                .collect(Collectors.toCollection(SnapshotArrayList::new));
         LinkedList<Cycle> cycles = proto.getCyclesList().stream()
                 .map(Cycle::fromProto).collect(Collectors.toCollection(LinkedList::new));
-        TreeMap<TxOutputKey, TxOutput> unspentTxOutputMap = new TreeMap<>(proto.getUnspentTxOutputMapMap().entrySet().stream()
+        PersistentTreeMap<TxOutputKey, TxOutput> unspentTxOutputMap = new PersistentTreeMap<>(proto.getUnspentTxOutputMapMap().entrySet().stream()
                 .collect(Collectors.toMap(e -> TxOutputKey.getKeyFromString(e.getKey()), e -> TxOutput.fromProto(e.getValue()))));
-        TreeMap<TxOutputKey, SpentInfo> spentInfoMap = new TreeMap<>(proto.getSpentInfoMapMap().entrySet().stream()
+        PersistentTreeMap<TxOutputKey, SpentInfo> spentInfoMap = new PersistentTreeMap<>(proto.getSpentInfoMapMap().entrySet().stream()
                 .collect(Collectors.toMap(e -> TxOutputKey.getKeyFromString(e.getKey()), e -> SpentInfo.fromProto(e.getValue()))));
         List<String> confiscatedLockupTxList = new ArrayList<>(proto.getConfiscatedLockupTxListList());
-        TreeMap<String, Issuance> issuanceMap = new TreeMap<>(proto.getIssuanceMapMap().entrySet().stream()
+        PersistentTreeMap<String, Issuance> issuanceMap = new PersistentTreeMap<>(proto.getIssuanceMapMap().entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> Issuance.fromProto(e.getValue()))));
         List<ParamChange> paramChangeList = proto.getParamChangeListList().stream()
                 .map(ParamChange::fromProto).collect(Collectors.toCollection(ArrayList::new));
@@ -233,22 +303,80 @@ public class DaoState implements PersistablePayload {
         // Reorgs are handled by rebuilding the hash chain from last snapshot.
         // Using the full blocks list becomes quite heavy. 7000 blocks are
         // about 1.4 MB and creating the hash takes 30 sec. By using just the last block we reduce the time to 7 sec.
+        //
+        // Protobuf writes the fields of a message in the order of their field numbers, so the serialized message is
+        // the concatenation of its serialized fields. We keep the serialized fields and only serialize those again
+        // which got changed since the last call. The result is the same as serializing the message
+        // getBsqStateBuilderExcludingBlocks().addBlocks(lastBlock) as a whole.
+        byte[] chainHeightAndLastBlock = protobuf.DaoState.newBuilder()
+                .setChainHeight(chainHeight)
+                .addBlocks(getBlocks().getLast().toProtoMessage())
+                .build()
+                .toByteArray();
+
+        List<SerializedField> serializedFields = getSerializedFieldsForHashChain();
+        List<byte[]> parts = new ArrayList<>(serializedFields.size() + 1);
+        parts.add(chainHeightAndLastBlock);
+        serializedFields.forEach(serializedField -> parts.add(serializedField.getBytes()));
+
+        byte[] result = new byte[parts.stream().mapToInt(part -> part.length).sum()];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+    // Kept for verifying that the serialized fields deliver the same result
+    @VisibleForTesting
+    byte[] getSerializedStateForHashChainWithoutCache() {
         return getBsqStateBuilderExcludingBlocks().addBlocks(getBlocks().getLast().toProtoMessage()).build().toByteArray();
     }
 
     public void addToTxCache(Tx tx) {
         // We shouldn't get duplicate txIds, but use putIfAbsent instead of put for consistency with the map merge
-        // function used in the constructor to initialise txCache (and to exactly match the pre-caching behaviour).
-        txCache.putIfAbsent(tx.getId(), tx);
+        // function used to initialise txCache (and to exactly match the pre-caching behaviour).
+        getOrCreateTxCache().putIfAbsent(tx.getId(), tx);
+    }
+
+    // Adds the blocks read from the block segment files in front of the blocks we got from the persisted store
+    public void prependBlocks(List<Block> olderBlocks) {
+        blocks.addAll(0, olderBlocks);
+        olderBlocks.forEach(block -> block.getTxs().forEach(this::addToTxCache));
     }
 
     public void setTxCache(Map<String, Tx> txCache) {
-        this.txCache.clear();
-        this.txCache.putAll(txCache);
+        this.txCache = new HashMap<>(txCache);
     }
 
     public Map<String, Tx> getTxCache() {
-        return Collections.unmodifiableMap(txCache);
+        return Collections.unmodifiableMap(getOrCreateTxCache());
+    }
+
+    // In the order of the field numbers of the fields following chainHeight and blocks
+    private List<SerializedField> getSerializedFieldsForHashChain() {
+        if (serializedFieldsForHashChain == null) {
+            serializedFieldsForHashChain = List.of(
+                    SerializedField.ofList(cycles, this::addCycles),
+                    SerializedField.ofMap(unspentTxOutputMap, this::addUnspentTxOutputMap),
+                    SerializedField.ofMap(issuanceMap, this::addIssuanceMap),
+                    SerializedField.ofList(confiscatedLockupTxList, this::addConfiscatedLockupTxList),
+                    SerializedField.ofMap(spentInfoMap, this::addSpentInfoMap),
+                    SerializedField.ofList(paramChangeList, this::addParamChangeList),
+                    SerializedField.ofList(evaluatedProposalList, this::addEvaluatedProposalList),
+                    SerializedField.ofList(decryptedBallotsWithMeritsList, this::addDecryptedBallotsWithMeritsList));
+        }
+        return serializedFieldsForHashChain;
+    }
+
+    private Map<String, Tx> getOrCreateTxCache() {
+        if (txCache == null) {
+            txCache = blocks.stream()
+                    .flatMap(block -> block.getTxs().stream())
+                    .collect(Collectors.toMap(Tx::getId, Function.identity(), (x, y) -> x, HashMap::new));
+        }
+        return txCache;
     }
 
     @Override
@@ -267,4 +395,61 @@ public class DaoState implements PersistablePayload {
                 ",\n     txCache=" + txCache +
                 "\n}";
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // SerializedField
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Serialized form of a single field of the proto message which is reused as long as the field is not changed.
+    // The maps tell us about changes by their modCount. The lists are mutated by the DaoStateService directly, so
+    // we compare the elements by identity instead. That is cheap compared to serializing them and is safe as all
+    // elements are immutable.
+    private static final class SerializedField {
+        static SerializedField ofMap(PersistentTreeMap<?, ?> map, Consumer<protobuf.DaoState.Builder> fieldWriter) {
+            return new SerializedField(map::getModCount, fieldWriter);
+        }
+
+        static SerializedField ofList(List<?> list, Consumer<protobuf.DaoState.Builder> fieldWriter) {
+            return new SerializedField(list::toArray, fieldWriter);
+        }
+
+        private final Supplier<Object> versionSupplier;
+        private final Consumer<protobuf.DaoState.Builder> fieldWriter;
+        @Nullable
+        private Object version;
+        @Nullable
+        private byte[] bytes;
+
+        private SerializedField(Supplier<Object> versionSupplier, Consumer<protobuf.DaoState.Builder> fieldWriter) {
+            this.versionSupplier = versionSupplier;
+            this.fieldWriter = fieldWriter;
+        }
+
+        byte[] getBytes() {
+            Object currentVersion = versionSupplier.get();
+            if (bytes == null || !isSameVersion(version, currentVersion)) {
+                protobuf.DaoState.Builder builder = protobuf.DaoState.newBuilder();
+                fieldWriter.accept(builder);
+                bytes = builder.build().toByteArray();
+                version = currentVersion;
+            }
+            return bytes;
+        }
+
+        private static boolean isSameVersion(@Nullable Object version, Object currentVersion) {
+            if (version instanceof Object[] && currentVersion instanceof Object[]) {
+                Object[] elements = (Object[]) version;
+                Object[] currentElements = (Object[]) currentVersion;
+                if (elements.length != currentElements.length)
+                    return false;
+                for (int i = 0; i < elements.length; i++) {
+                    if (elements[i] != currentElements[i])
+                        return false;
+                }
+                return true;
+            }
+            return currentVersion.equals(version);
+        }
+    }
 }
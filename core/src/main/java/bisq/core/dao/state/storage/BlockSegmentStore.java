@@ -0,0 +1,349 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.state.storage;
+
+import bisq.core.dao.state.model.blockchain.Block;
+
+import bisq.common.file.FileUtil;
+import bisq.common.util.Utilities;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stores the blocks of the DaoState in immutable segment files covering a fixed block range. Old blocks never change,
+ * so each segment is written only once and the DaoStateStore only needs to contain the recent blocks and the mutable
+ * part of the state.
+ *
+ * Segment boundaries are aligned to multiples of BLOCKS_PER_SEGMENT, only the first segment starting at the genesis
+ * height is shorter. A segment gets written once there are more than REORG_SAFETY_MARGIN blocks above its range.
+ * Writing happens on a background thread to a temp file which is renamed when complete. The height returned by
+ * writeCompletedSegments only covers segments already on disk, so a persisted store never refers to a segment
+ * which might get lost at a crash.
+ *
+ * A segment file consists of a header (magic, fromHeight, toHeight, number of blocks, CRC32 and length of the data)
+ * followed by the length delimited protobuf.BaseBlock messages.
+ */
+@ThreadSafe
+@Slf4j
+class BlockSegmentStore {
+    @VisibleForTesting
+    static final int BLOCKS_PER_SEGMENT = 1000;
+    @VisibleForTesting
+    static final int REORG_SAFETY_MARGIN = 100;
+    private static final int MAGIC = 0x42534547;
+    private static final int HEADER_SIZE = 24;
+    private static final String PREFIX = "blocks_";
+    private static final String SUFFIX = ".seg";
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile(Pattern.quote(PREFIX) + "(\\d+)-(\\d+)" +
+            Pattern.quote(SUFFIX));
+
+    private final File dir;
+    private final ExecutorService executor;
+    // Key is fromHeight, value is toHeight of the segments which are completely written to disk
+    private final ConcurrentSkipListMap<Integer, Integer> writtenSegments = new ConcurrentSkipListMap<>();
+    private final Set<Integer> scheduledSegments = ConcurrentHashMap.newKeySet();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    BlockSegmentStore(File dir) {
+        this.dir = dir;
+        executor = Utilities.getSingleThreadExecutor("BlockSegmentStore");
+        readWrittenSegments();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Schedules writing of all completed segments of the given blocks which are not written yet. The blocks must be
+     * immutable, we serialize them on the write thread.
+     *
+     * @return The height up to which the blocks are contained in contiguous segments already written to disk,
+     * starting at the first block. 0 if there is no such segment yet.
+     */
+    int writeCompletedSegments(List<Block> blocks) {
+        if (blocks.isEmpty())
+            return 0;
+
+        int firstHeight = blocks.get(0).getHeight();
+        int maxToHeight = blocks.get(blocks.size() - 1).getHeight() - REORG_SAFETY_MARGIN;
+        int fromHeight = firstHeight;
+        int toHeight = getSegmentToHeight(fromHeight);
+        int expectedHeight = firstHeight;
+        List<Block> segmentBlocks = new ArrayList<>();
+        for (Block block : blocks) {
+            if (toHeight > maxToHeight)
+                break;
+
+            if (block.getHeight() != expectedHeight) {
+                log.warn("Blocks are not contiguous. Expected height {} but got {}. We do not write further segments.",
+                        expectedHeight, block.getHeight());
+                break;
+            }
+            expectedHeight++;
+
+            boolean isPending = !writtenSegments.containsKey(fromHeight) && !scheduledSegments.contains(fromHeight);
+            if (isPending)
+                segmentBlocks.add(block);
+
+            if (block.getHeight() == toHeight) {
+                if (isPending) {
+                    scheduleWrite(fromHeight, toHeight, segmentBlocks);
+                    segmentBlocks = new ArrayList<>();
+                }
+                fromHeight = toHeight + 1;
+                toHeight = getSegmentToHeight(fromHeight);
+            }
+        }
+        return getContiguousWrittenHeight(firstHeight);
+    }
+
+    /**
+     * Reads the blocks of all segments from fromHeight up to toHeight.
+     *
+     * @throws IOException if a segment is missing or corrupt or if the blocks are not linked
+     */
+    List<Block> readBlocks(int fromHeight, int toHeight) throws IOException {
+        long ts = System.currentTimeMillis();
+        List<Block> blocks = new ArrayList<>();
+        int segmentFromHeight = fromHeight;
+        while (segmentFromHeight <= toHeight) {
+            int segmentToHeight = getSegmentToHeight(segmentFromHeight);
+            if (segmentToHeight > toHeight)
+                throw new IOException("Height " + toHeight + " is not at a segment boundary");
+
+            File file = getFile(segmentFromHeight, segmentToHeight);
+            if (!file.exists())
+                throw new IOException("Missing block segment " + file.getName());
+
+            List<Block> segmentBlocks = readSegment(file, segmentFromHeight, segmentToHeight);
+            for (Block block : segmentBlocks) {
+                if (!blocks.isEmpty()) {
+                    Block previous = blocks.get(blocks.size() - 1);
+                    if (!block.getPreviousBlockHash().equals(previous.getHash()))
+                        throw new IOException("Block at height " + block.getHeight() +
+                                " is not linked to its previous block in segment " + file.getName());
+                }
+                blocks.add(block);
+            }
+            segmentFromHeight = segmentToHeight + 1;
+        }
+        log.info("Reading {} blocks from block segments up to height {} took {} ms",
+                blocks.size(), toHeight, System.currentTimeMillis() - ts);
+        return blocks;
+    }
+
+    void deleteAllSegments() {
+        executeOnWriteThread(() -> {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete())
+                        log.warn("Could not delete {}", file);
+                }
+            }
+            writtenSegments.clear();
+            scheduledSegments.clear();
+        });
+    }
+
+    // Blocks until all scheduled segments are written
+    void shutDown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                log.warn("Writing block segments at shutdown timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @VisibleForTesting
+    static int getSegmentToHeight(int fromHeight) {
+        return (fromHeight / BLOCKS_PER_SEGMENT + 1) * BLOCKS_PER_SEGMENT - 1;
+    }
+
+    private int getContiguousWrittenHeight(int firstHeight) {
+        int height = 0;
+        Integer toHeight;
+        int fromHeight = firstHeight;
+        while ((toHeight = writtenSegments.get(fromHeight)) != null) {
+            height = toHeight;
+            fromHeight = toHeight + 1;
+        }
+        return height;
+    }
+
+    private void scheduleWrite(int fromHeight, int toHeight, List<Block> blocks) {
+        scheduledSegments.add(fromHeight);
+        executeOnWriteThread(() -> {
+            try {
+                writeSegment(fromHeight, toHeight, blocks);
+                writtenSegments.put(fromHeight, toHeight);
+            } finally {
+                scheduledSegments.remove(fromHeight);
+            }
+        });
+    }
+
+    private void executeOnWriteThread(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Error at writing block segments", t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("BlockSegmentStore is shut down already");
+        }
+    }
+
+    private void writeSegment(int fromHeight, int toHeight, List<Block> blocks) {
+        long ts = System.currentTimeMillis();
+        if (!dir.exists() && !dir.mkdirs())
+            log.warn("make dir failed {}", dir);
+
+        File file = getFile(fromHeight, toHeight);
+        Path tempPath = new File(dir, file.getName() + ".tmp").toPath();
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            for (Block block : blocks) {
+                block.toProtoMessage().writeDelimitedTo(outputStream);
+            }
+            byte[] data = outputStream.toByteArray();
+            CRC32 crc32 = new CRC32();
+            crc32.update(data);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(fromHeight);
+            header.putInt(toHeight);
+            header.putInt(blocks.size());
+            header.putInt((int) crc32.getValue());
+            header.putInt(data.length);
+
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                ByteBuffer dataBuffer = ByteBuffer.wrap(data);
+                while (dataBuffer.hasRemaining()) {
+                    channel.write(dataBuffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tempPath, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            // The segment is only referred to by a persisted store after we return, so the rename must be durable
+            FileUtil.syncDirectory(dir);
+            log.info("Writing block segment {} with {} kB took {} ms",
+                    file.getName(), data.length / 1024, System.currentTimeMillis() - ts);
+        } catch (IOException e) {
+            throw new RuntimeException("Writing block segment " + file.getName() + " failed", e);
+        }
+    }
+
+    private static List<Block> readSegment(File file, int fromHeight, int toHeight) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            throw new IOException("Invalid header of block segment " + file.getName());
+
+        int numBlocks = toHeight - fromHeight + 1;
+        if (buffer.getInt() != fromHeight || buffer.getInt() != toHeight || buffer.getInt() != numBlocks)
+            throw new IOException("Unexpected block range in header of block segment " + file.getName());
+
+        int checksum = buffer.getInt();
+        int length = buffer.getInt();
+        if (length != buffer.remaining())
+            throw new IOException("Invalid length of block segment " + file.getName());
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), HEADER_SIZE, length);
+        if ((int) crc32.getValue() != checksum)
+            throw new IOException("Invalid checksum of block segment " + file.getName());
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(buffer.array(), HEADER_SIZE, length);
+        List<Block> blocks = new ArrayList<>(numBlocks);
+        for (int height = fromHeight; height <= toHeight; height++) {
+            protobuf.BaseBlock proto = protobuf.BaseBlock.parseDelimitedFrom(inputStream);
+            if (proto == null || proto.getHeight() != height)
+                throw new IOException("Missing block at height " + height + " in block segment " + file.getName());
+            blocks.add(Block.fromProto(proto));
+        }
+        return blocks;
+    }
+
+    private void readWrittenSegments() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+            if (matcher.matches()) {
+                writtenSegments.put(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            } else if (file.getName().endsWith(".tmp") && !file.delete()) {
+                log.warn("Could not delete {}", file);
+            }
+        }
+    }
+
+    private File getFile(int fromHeight, int toHeight) {
+        return new File(dir, PREFIX + fromHeight + "-" + toHeight + SUFFIX);
+    }
+}
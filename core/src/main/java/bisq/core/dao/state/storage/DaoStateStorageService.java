@@ -19,7 +19,9 @@ package bisq.core.dao.state.storage;
 
 import bisq.core.dao.monitoring.DaoStateMonitoringService;
 import bisq.core.dao.monitoring.model.DaoStateHash;
+import bisq.core.dao.state.GenesisTxInfo;
 import bisq.core.dao.state.model.DaoState;
+import bisq.core.dao.state.model.blockchain.Block;
 
 import bisq.network.p2p.storage.persistence.ResourceDataStoreService;
 import bisq.network.p2p.storage.persistence.StoreService;
@@ -35,18 +37,29 @@ import java.io.File;
 import java.io.IOException;
 
 import java.util.LinkedList;
+import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Manages persistence of the daoState.
+ *
+ * If block segments are enabled the old blocks are written once to the immutable segment files of the
+ * BlockSegmentStore and the DaoStateStore contains only the blocks above the height covered by the segments. The
+ * blocks from the segments are added back when the persisted daoState is requested for applying the snapshot.
  */
 @Slf4j
 public class DaoStateStorageService extends StoreService<DaoStateStore> {
     private static final String FILE_NAME = "DaoStateStore";
+    private static final String BLOCK_SEGMENTS_DIR_NAME = FILE_NAME + "_blocks";
 
     private final DaoState daoState;
     private final DaoStateMonitoringService daoStateMonitoringService;
+    private final GenesisTxInfo genesisTxInfo;
+    private final boolean useBlockSegments;
+    private final BlockSegmentStore blockSegmentStore;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -57,11 +70,16 @@ public class DaoStateStorageService extends StoreService<DaoStateStore> {
     public DaoStateStorageService(ResourceDataStoreService resourceDataStoreService,
                                   DaoState daoState,
                                   DaoStateMonitoringService daoStateMonitoringService,
+                                  GenesisTxInfo genesisTxInfo,
                                   @Named(Config.STORAGE_DIR) File storageDir,
+                                  @Named(Config.DAO_STATE_BLOCK_SEGMENTS) boolean useBlockSegments,
                                   PersistenceManager<DaoStateStore> persistenceManager) {
         super(storageDir, persistenceManager);
         this.daoState = daoState;
         this.daoStateMonitoringService = daoStateMonitoringService;
+        this.genesisTxInfo = genesisTxInfo;
+        this.useBlockSegments = useBlockSegments;
+        blockSegmentStore = new BlockSegmentStore(new File(storageDir, BLOCK_SEGMENTS_DIR_NAME));
 
         resourceDataStoreService.addService(this);
     }
@@ -77,13 +95,48 @@ public class DaoStateStorageService extends StoreService<DaoStateStore> {
     }
 
     public void requestPersistence(DaoState daoState, LinkedList<DaoStateHash> daoStateHashChain) {
+        // The segments which are not written yet get written in the background and are used only for one of the
+        // next snapshots. Until then their blocks are still contained in the store.
+        int blockSegmentsToHeight = useBlockSegments ? blockSegmentStore.writeCompletedSegments(daoState.getBlocks()) : 0;
+        store.setBlockSegmentsToHeight(blockSegmentsToHeight);
         store.setDaoState(daoState);
         store.setDaoStateHashChain(daoStateHashChain);
         persistenceManager.requestPersistence();
     }
 
+    // Returns null if the blocks of the persisted daoState cannot be restored from the block segments
+    @Nullable
     public DaoState getPersistedBsqState() {
-        return store.getDaoState();
+        DaoState persistedBsqState = store.getDaoState();
+        int blockSegmentsToHeight = store.getBlockSegmentsToHeight();
+        if (persistedBsqState == null || blockSegmentsToHeight == 0)
+            return persistedBsqState;
+
+        // If we have persisted the daoState in the current session it still contains all blocks
+        List<Block> blocks = persistedBsqState.getBlocks();
+        if (!blocks.isEmpty() && blocks.get(0).getHeight() <= blockSegmentsToHeight)
+            return persistedBsqState;
+
+        try {
+            List<Block> blocksFromSegments = blockSegmentStore.readBlocks(genesisTxInfo.getGenesisBlockHeight(),
+                    blockSegmentsToHeight);
+            Block lastBlockFromSegments = blocksFromSegments.get(blocksFromSegments.size() - 1);
+            if (!blocks.isEmpty() && !blocks.get(0).getPreviousBlockHash().equals(lastBlockFromSegments.getHash()))
+                throw new IOException("First block of the persisted daoState is not linked to the block segments");
+
+            persistedBsqState.prependBlocks(blocksFromSegments);
+            return persistedBsqState;
+        } catch (IOException e) {
+            log.error("Could not restore the blocks of the persisted daoState from the block segments. " +
+                    "We delete the block segments and start over without snapshot.", e);
+            blockSegmentStore.deleteAllSegments();
+            return null;
+        }
+    }
+
+    // If the blocks got restored from the block segments we verify the daoState against the hash chain
+    public boolean isPersistedBsqStateFromBlockSegments() {
+        return store.getBlockSegmentsToHeight() > 0;
     }
 
     public LinkedList<DaoStateHash> getPersistedDaoStateHashChain() {
@@ -91,6 +144,8 @@ public class DaoStateStorageService extends StoreService<DaoStateStore> {
     }
 
     public void resyncDaoStateFromGenesis(Runnable resultHandler) {
+        blockSegmentStore.deleteAllSegments();
+        store.setBlockSegmentsToHeight(0);
         store.setDaoState(new DaoState());
         store.setDaoStateHashChain(new LinkedList<>());
         persistenceManager.persistNow(resultHandler);
@@ -116,6 +171,14 @@ public class DaoStateStorageService extends StoreService<DaoStateStore> {
 
         newFileName = "DaoStateStore_" + currentTime;
         FileUtil.removeAndBackupFile(storageDir, new File(storageDir, "DaoStateStore"), newFileName, backupDirName);
+
+        // The block segments are useless without the DaoStateStore
+        blockSegmentStore.deleteAllSegments();
+    }
+
+    // Waits until the scheduled block segments are written
+    public void shutDown() {
+        blockSegmentStore.shutDown();
     }
 
 
@@ -125,7 +188,7 @@ public class DaoStateStorageService extends StoreService<DaoStateStore> {
 
     @Override
     protected DaoStateStore createStore() {
-        return new DaoStateStore(DaoState.getClone(daoState), new LinkedList<>(daoStateMonitoringService.getDaoStateHashChain()));
+        return new DaoStateStore(DaoState.getSnapshot(daoState), new LinkedList<>(daoStateMonitoringService.getDaoStateHashChain()));
     }
 
     @Override
@@ -36,7 +36,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 @Slf4j
 public class DaoStateStore implements PersistableEnvelope {
-    // DaoState is always a clone and must not be used for read access beside initial read from disc when we apply
+    // DaoState is always a snapshot and must not be used for read access beside initial read from disc when we apply
     // the snapshot!
     @Getter
     @Setter
@@ -44,10 +44,20 @@ public class DaoStateStore implements PersistableEnvelope {
     @Getter
     @Setter
     private LinkedList<DaoStateHash> daoStateHashChain;
+    // The blocks up to that height are persisted in the block segment files and not as part of the daoState.
+    // 0 if all blocks are contained in the daoState.
+    @Getter
+    @Setter
+    private int blockSegmentsToHeight;
 
     DaoStateStore(DaoState daoState, LinkedList<DaoStateHash> daoStateHashChain) {
+        this(daoState, daoStateHashChain, 0);
+    }
+
+    private DaoStateStore(DaoState daoState, LinkedList<DaoStateHash> daoStateHashChain, int blockSegmentsToHeight) {
         this.daoState = daoState;
         this.daoStateHashChain = daoStateHashChain;
+        this.blockSegmentsToHeight = blockSegmentsToHeight;
     }
 
 
@@ -58,21 +68,33 @@ public class DaoStateStore implements PersistableEnvelope {
     public Message toProtoMessage() {
         checkNotNull(daoState, "daoState must not be null when toProtoMessage is invoked");
         protobuf.DaoStateStore.Builder builder = protobuf.DaoStateStore.newBuilder()
-                .setDaoState(daoState.getBsqStateBuilder())
+                .setDaoState(blockSegmentsToHeight > 0 ?
+                        daoState.getBsqStateBuilderWithBlocksAbove(blockSegmentsToHeight) :
+                        daoState.getBsqStateBuilder())
                 .addAllDaoStateHash(daoStateHashChain.stream()
                         .map(DaoStateHash::toProtoMessage)
-                        .collect(Collectors.toList()));
+                        .collect(Collectors.toList()))
+                .setBlockSegmentsToHeight(blockSegmentsToHeight);
         return protobuf.PersistableEnvelope.newBuilder()
                 .setDaoStateStore(builder)
                 .build();
     }
 
+    // The daoState is a snapshot and the hash chain a copy which are replaced but never changed, so we only need to
+    // capture the current references.
+    @Override
+    public PersistableEnvelope toPersistableSnapshot() {
+        return new DaoStateStore(daoState, daoStateHashChain, blockSegmentsToHeight);
+    }
+
     public static DaoStateStore fromProto(protobuf.DaoStateStore proto) {
         LinkedList<DaoStateHash> daoStateHashList = proto.getDaoStateHashList().isEmpty() ?
                 new LinkedList<>() :
                 new LinkedList<>(proto.getDaoStateHashList().stream()
                         .map(DaoStateHash::fromProto)
                         .collect(Collectors.toList()));
-        return new DaoStateStore(DaoState.fromProto(proto.getDaoState()), daoStateHashList);
+        return new DaoStateStore(DaoState.fromProto(proto.getDaoState()),
+                daoStateHashList,
+                proto.getBlockSegmentsToHeight());
     }
 }
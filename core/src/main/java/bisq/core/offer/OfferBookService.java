@@ -60,6 +60,16 @@ public class OfferBookService {
         void onAdded(Offer offer);
 
         void onRemoved(Offer offer);
+
+        // Called with all offers of one batch of storage changes, e.g. all offers of a GetDataResponse. Listeners
+        // which do expensive work per change should override these and handle the offers at once.
+        default void onAdded(Collection<Offer> offers) {
+            offers.forEach(this::onAdded);
+        }
+
+        default void onRemoved(Collection<Offer> offers) {
+            offers.forEach(this::onRemoved);
+        }
     }
 
     private final P2PService p2PService;
@@ -87,26 +97,20 @@ public class OfferBookService {
         p2PService.addHashSetChangedListener(new HashMapChangedListener() {
             @Override
             public void onAdded(Collection<ProtectedStorageEntry> protectedStorageEntries) {
-                protectedStorageEntries.forEach(protectedStorageEntry -> offerBookChangedListeners.forEach(listener -> {
-                    if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
-                        OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                        Offer offer = new Offer(offerPayload);
-                        offer.setPriceFeedService(priceFeedService);
-                        listener.onAdded(offer);
-                    }
-                }));
+                offerBookChangedListeners.forEach(listener -> {
+                    List<Offer> offers = toOffers(protectedStorageEntries);
+                    if (!offers.isEmpty())
+                        listener.onAdded(offers);
+                });
             }
 
             @Override
             public void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
-                protectedStorageEntries.forEach(protectedStorageEntry -> offerBookChangedListeners.forEach(listener -> {
-                    if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
-                        OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                        Offer offer = new Offer(offerPayload);
-                        offer.setPriceFeedService(priceFeedService);
-                        listener.onRemoved(offer);
-                    }
-                }));
+                offerBookChangedListeners.forEach(listener -> {
+                    List<Offer> offers = toOffers(protectedStorageEntries);
+                    if (!offers.isEmpty())
+                        listener.onRemoved(offers);
+                });
             }
         });
 
@@ -124,6 +128,16 @@ public class OfferBookService {
                         public void onRemoved(Offer offer) {
                             doDumpStatistics();
                         }
+
+                        @Override
+                        public void onAdded(Collection<Offer> offers) {
+                            doDumpStatistics();
+                        }
+
+                        @Override
+                        public void onRemoved(Collection<Offer> offers) {
+                            doDumpStatistics();
+                        }
                     });
                     UserThread.runAfter(OfferBookService.this::doDumpStatistics, 1);
                 }
@@ -220,6 +234,19 @@ public class OfferBookService {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Each listener gets its own Offer instances as listeners might change the state of the offer
+    private List<Offer> toOffers(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+        return protectedStorageEntries.stream()
+                .filter(protectedStorageEntry -> protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload)
+                .map(protectedStorageEntry -> {
+                    OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
+                    Offer offer = new Offer(offerPayload);
+                    offer.setPriceFeedService(priceFeedService);
+                    return offer;
+                })
+                .collect(Collectors.toList());
+    }
+
     private void doDumpStatistics() {
         // We filter the case that it is a MarketBasedPrice but the price is not available
         // That should only be possible if the price feed provider is not available
@@ -51,6 +51,7 @@ import bisq.common.proto.network.NetworkProtoResolver;
 import bisq.common.proto.persistable.NavigationPath;
 import bisq.common.proto.persistable.PersistableEnvelope;
 import bisq.common.proto.persistable.PersistenceProtoResolver;
+import bisq.common.proto.persistable.StreamingEnvelopeDecoder;
 
 import com.google.inject.Provider;
 
@@ -139,4 +140,25 @@ public class CorePersistenceProtoResolver extends CoreProtoResolver implements P
             throw new ProtobufferRuntimeException("PB.PersistableEnvelope is null");
         }
     }
+
+    // The stores of the network payloads can have several 100 000 items, so we decode them element by element
+    @Override
+    public StreamingEnvelopeDecoder getStreamingDecoder(int envelopeFieldNumber) {
+        switch (envelopeFieldNumber) {
+            case protobuf.PersistableEnvelope.ACCOUNT_AGE_WITNESS_STORE_FIELD_NUMBER:
+                return AccountAgeWitnessStore::fromProto;
+            case protobuf.PersistableEnvelope.TRADE_STATISTICS2_STORE_FIELD_NUMBER:
+                return TradeStatistics2Store::fromProto;
+            case protobuf.PersistableEnvelope.BLIND_VOTE_STORE_FIELD_NUMBER:
+                return BlindVoteStore::fromProto;
+            case protobuf.PersistableEnvelope.PROPOSAL_STORE_FIELD_NUMBER:
+                return ProposalStore::fromProto;
+            case protobuf.PersistableEnvelope.SIGNED_WITNESS_STORE_FIELD_NUMBER:
+                return SignedWitnessStore::fromProto;
+            case protobuf.PersistableEnvelope.TRADE_STATISTICS3_STORE_FIELD_NUMBER:
+                return TradeStatistics3Store::fromProto;
+            default:
+                return null;
+        }
+    }
 }
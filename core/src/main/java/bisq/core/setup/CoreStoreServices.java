@@ -0,0 +1,53 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.setup;
+
+import bisq.core.account.sign.SignedWitnessService;
+import bisq.core.account.witness.AccountAgeWitnessService;
+import bisq.core.dao.governance.blindvote.BlindVoteListService;
+import bisq.core.dao.governance.proposal.ProposalService;
+import bisq.core.dao.state.storage.DaoStateStorageService;
+import bisq.core.trade.statistics.TradeStatisticsConverter;
+import bisq.core.trade.statistics.TradeStatisticsManager;
+
+import bisq.common.config.Config;
+
+import com.google.inject.Injector;
+
+/**
+ * The stores of the P2PDataStorage are added to the AppendOnlyDataStoreService, ProtectedDataStoreService and
+ * ResourceDataStoreService in the constructors of the services owning them. Guice creates those services when they
+ * are needed first, and stores which get added after the P2PDataStorage has started reading are never read. So we
+ * create all of them before we start reading.
+ */
+public class CoreStoreServices {
+
+    // All classes which add a store to the data store services of the P2PDataStorage need to be added here
+    public static void addStoreServices(Injector injector) {
+        injector.getInstance(AccountAgeWitnessService.class);
+        injector.getInstance(SignedWitnessService.class);
+        injector.getInstance(TradeStatisticsConverter.class);
+        injector.getInstance(TradeStatisticsManager.class);
+        injector.getInstance(DaoStateStorageService.class);
+
+        // Those only add their stores if the DAO is activated
+        if (injector.getInstance(Config.class).daoActivated) {
+            injector.getInstance(BlindVoteListService.class);
+            injector.getInstance(ProposalService.class);
+        }
+    }
+}
@@ -19,8 +19,11 @@ package bisq.core.trade.statistics;
 
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
+import java.io.IOException;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -65,4 +68,8 @@ public class TradeStatistics2Store extends PersistableNetworkPayloadStore<TradeS
                 .map(TradeStatistics2::fromProto).collect(Collectors.toList());
         return new TradeStatistics2Store(list);
     }
+
+    public static TradeStatistics2Store fromProto(CodedInputStream inputStream) throws IOException {
+        return readItems(inputStream, new TradeStatistics2Store(), protobuf.TradeStatistics2.parser(), TradeStatistics2::fromProto);
+    }
 }
@@ -77,8 +77,13 @@ public class TradeStatistics3StorageService extends HistoricalDataStoreService<T
         return new TradeStatistics3Store();
     }
 
+    // The store grows with each new payload, so we append new payloads instead of rewriting the whole store
+    @Override
+    protected boolean useAppendOnlyLog() {
+        return true;
+    }
+
     public void persistNow() {
-        persistenceManager.persistNow(() -> {
-        });
+        persistAll();
     }
 }
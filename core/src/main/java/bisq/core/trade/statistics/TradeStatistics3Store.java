@@ -20,8 +20,11 @@ package bisq.core.trade.statistics;
 import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
+import java.io.IOException;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -67,6 +70,10 @@ public class TradeStatistics3Store extends PersistableNetworkPayloadStore<TradeS
         return new TradeStatistics3Store(list);
     }
 
+    public static TradeStatistics3Store fromProto(CodedInputStream inputStream) throws IOException {
+        return readItems(inputStream, new TradeStatistics3Store(), protobuf.TradeStatistics3.parser(), TradeStatistics3::fromProto);
+    }
+
     public boolean containsKey(P2PDataStorage.ByteArray hash) {
         return map.containsKey(hash);
     }
@@ -27,6 +27,7 @@ import bisq.core.trade.Trade;
 import bisq.network.p2p.P2PService;
 import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.persistence.AppendOnlyDataStoreService;
+import bisq.network.p2p.storage.persistence.BatchedAppendOnlyDataStoreListener;
 
 import bisq.common.config.Config;
 import bisq.common.file.JsonFileManager;
@@ -90,16 +91,20 @@ public class TradeStatisticsManager {
     }
 
     public void onAllServicesInitialized() {
-        p2PService.getP2PDataStorage().addAppendOnlyDataStoreListener(payload -> {
-            if (payload instanceof TradeStatistics3) {
-                TradeStatistics3 tradeStatistics = (TradeStatistics3) payload;
-                if (!tradeStatistics.isValid()) {
-                    return;
-                }
-                observableTradeStatisticsSet.add(tradeStatistics);
-                priceFeedService.applyLatestBisqMarketPrice(observableTradeStatisticsSet);
-                maybeDumpStatistics();
+        // We get all trade statistics of a GetDataResponse or bundle at once, so we update the observable set and
+        // apply the market price only once per batch
+        p2PService.getP2PDataStorage().addAppendOnlyDataStoreListener((BatchedAppendOnlyDataStoreListener) payloads -> {
+            List<TradeStatistics3> newTradeStatistics = payloads.stream()
+                    .filter(payload -> payload instanceof TradeStatistics3)
+                    .map(payload -> (TradeStatistics3) payload)
+                    .filter(TradeStatistics3::isValid)
+                    .collect(Collectors.toList());
+            if (newTradeStatistics.isEmpty()) {
+                return;
             }
+            observableTradeStatisticsSet.addAll(newTradeStatistics);
+            priceFeedService.applyLatestBisqMarketPrice(observableTradeStatisticsSet);
+            maybeDumpStatistics();
         });
 
         Set<TradeStatistics3> set = tradeStatistics3StorageService.getMapOfAllData().values().stream()
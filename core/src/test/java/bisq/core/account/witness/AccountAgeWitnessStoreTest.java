@@ -0,0 +1,90 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.account.witness;
+
+import bisq.core.proto.persistable.CorePersistenceProtoResolver;
+
+import bisq.common.file.FileUtil;
+import bisq.common.persistence.PersistenceManager;
+import bisq.common.persistence.StorageCodec;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class AccountAgeWitnessStoreTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("storage").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private static AccountAgeWitnessStore createStore(int numItems) {
+        Random random = new Random(1);
+        AccountAgeWitnessStore store = new AccountAgeWitnessStore();
+        for (int i = 0; i < numItems; i++) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            AccountAgeWitness witness = new AccountAgeWitness(hash, 1000L * i);
+            store.getMap().put(witness.getHashAsByteArray(), witness);
+        }
+        return store;
+    }
+
+    @Test
+    public void testStreamingDecoding() throws IOException {
+        AccountAgeWitnessStore store = createStore(1000);
+        PersistenceManager<AccountAgeWitnessStore> persistenceManager = new PersistenceManager<>(dir,
+                new CorePersistenceProtoResolver(null, null), null);
+
+        for (StorageCodec codec : StorageCodec.values()) {
+            File file = new File(dir, "AccountAgeWitnessStore_" + codec);
+            try (OutputStream outputStream = new FileOutputStream(file)) {
+                codec.writeDelimited((protobuf.PersistableEnvelope) store.toProtoMessage(), outputStream);
+            }
+
+            AccountAgeWitnessStore persisted = persistenceManager.getPersisted(file.getName());
+            assertNotNull(persisted);
+            assertEquals(store.getMap().size(), persisted.getMap().size());
+            store.getMap().forEach((hash, witness) -> {
+                AccountAgeWitness persistedWitness = (AccountAgeWitness) persisted.getMap().get(hash);
+                assertNotNull(persistedWitness);
+                assertArrayEquals(witness.getHash(), persistedWitness.getHash());
+                assertEquals(((AccountAgeWitness) witness).getDate(), persistedWitness.getDate());
+            });
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.full;
+
+import bisq.core.dao.governance.period.PeriodService;
+import bisq.core.dao.node.parser.BlockParser;
+import bisq.core.dao.node.parser.TxParser;
+import bisq.core.dao.state.DaoStateService;
+import bisq.core.dao.state.GenesisTxInfo;
+import bisq.core.dao.state.model.DaoState;
+import bisq.core.dao.state.model.blockchain.Tx;
+import bisq.core.user.Preferences;
+import bisq.core.util.coin.BsqFormatter;
+
+import bisq.network.p2p.Utils;
+
+import bisq.common.UserThread;
+
+import com.google.gson.JsonObject;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RawBlockPipelineTest {
+    private static final String GENESIS_TX_ID = "genesistxid";
+    private static final int NUM_BLOCKS = 200;
+    private static final int NUM_GENESIS_OUTPUTS = 10;
+    private static final long GENESIS_OUTPUT_VALUE = 1_000_000;
+    private static final int NUM_NON_BSQ_TXS_PER_BLOCK = 20;
+
+    private final StandInRpcServer standInRpcServer = new StandInRpcServer();
+    private Executor userThreadExecutor;
+    private int numTxs;
+    private int numBsqTxs;
+
+    @Before
+    public void setUp() throws Exception {
+        userThreadExecutor = UserThread.getExecutor();
+        UserThread.setExecutor(Executors.newSingleThreadExecutor());
+        createChain(new Random(3));
+    }
+
+    @After
+    public void tearDown() {
+        standInRpcServer.stop();
+        UserThread.setExecutor(userThreadExecutor);
+    }
+
+    @Test
+    public void testSyncMatchesParsingAllTxs() throws Exception {
+        RpcService rpcService = createRpcService(standInRpcServer.start());
+
+        // Reference: all blocks requested one by one and parsed with all txs
+        DaoStateService expectedDaoStateService = createDaoStateService();
+        BlockParser expectedBlockParser = createBlockParser(expectedDaoStateService);
+        for (int height = 0; height < NUM_BLOCKS; height++) {
+            expectedBlockParser.parseBlock(rpcService.requestBtcBlock(height).get(10, TimeUnit.SECONDS));
+        }
+
+        DaoStateService daoStateService = createDaoStateService();
+        BlockParser blockParser = createBlockParser(daoStateService);
+        AtomicInteger numTxsPassedToParser = new AtomicInteger();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        UserThread.execute(() -> new RawBlockPipeline(rpcService,
+                daoStateService,
+                0,
+                NUM_BLOCKS - 1,
+                rawBlock -> {
+                    numTxsPassedToParser.addAndGet(rawBlock.getRawTxs().size());
+                    try {
+                        blockParser.parseBlock(rawBlock);
+                    } catch (Exception e) {
+                        completed.completeExceptionally(e);
+                    }
+                },
+                () -> completed.complete(null),
+                completed::completeExceptionally)
+                .start());
+        completed.get(60, TimeUnit.SECONDS);
+
+        assertEquals(NUM_BLOCKS, daoStateService.getBlocks().size());
+        assertEquals(numBsqTxs, expectedDaoStateService.getNumTxs());
+        assertEquals(getTxIds(expectedDaoStateService), getTxIds(daoStateService));
+        assertEquals(expectedDaoStateService.getUnspentTxOutputMap(), daoStateService.getUnspentTxOutputMap());
+        assertArrayEquals(expectedDaoStateService.getSerializedStateForHashChain(),
+                daoStateService.getSerializedStateForHashChain());
+
+        // The non BSQ txs must not reach the parser
+        assertTrue(numTxsPassedToParser.get() >= numBsqTxs);
+        assertTrue(numTxsPassedToParser.get() < numTxs / 2);
+    }
+
+    @Test
+    public void testStopCancelsPendingRequests() throws Exception {
+        RpcService rpcService = mock(RpcService.class);
+        List<SettableFuture<RawBlock>> requests = Collections.synchronizedList(new ArrayList<>());
+        when(rpcService.requestBtcBlock(anyInt())).thenAnswer(invocation -> {
+            SettableFuture<RawBlock> request = SettableFuture.create();
+            requests.add(request);
+            return request;
+        });
+        RawBlockPipeline rawBlockPipeline = new RawBlockPipeline(rpcService,
+                createDaoStateService(),
+                0,
+                NUM_BLOCKS - 1,
+                rawBlock -> {
+                },
+                () -> {
+                },
+                throwable -> {
+                });
+
+        runOnUserThread(rawBlockPipeline::start);
+        assertEquals(RpcService.MAX_PENDING_BLOCK_REQUESTS, requests.size());
+
+        runOnUserThread(rawBlockPipeline::stop);
+        assertTrue(requests.stream().allMatch(Future::isCancelled));
+    }
+
+    private static void runOnUserThread(Runnable runnable) throws Exception {
+        CompletableFuture.runAsync(runnable, UserThread.getExecutor()).get(10, TimeUnit.SECONDS);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Chain
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Each block has a coinbase tx and a number of BTC txs. After the genesis block BSQ gets transferred in most
+    // blocks, often spending BSQ received in the block before, which is not yet parsed when the block gets requested.
+    // Some transfers spend the output of a transfer in the same block.
+    private void createChain(Random random) {
+        List<String> btcOutputs = new ArrayList<>();
+        Map<String, Long> bsqOutputs = new HashMap<>();
+        int txCounter = 0;
+
+        for (int height = 0; height < NUM_BLOCKS; height++) {
+            List<JsonObject> txs = new ArrayList<>();
+            String coinbaseTxId = "coinbase" + height;
+            txs.add(StandInRpcServer.createTx(coinbaseTxId,
+                    Collections.singletonList(StandInRpcServer.createCoinbaseInput()),
+                    Collections.singletonList(StandInRpcServer.createOutput(5_000_000_000L, "miner"))));
+            btcOutputs.add(coinbaseTxId + ":0");
+
+            if (height == 0) {
+                List<JsonObject> outputs = new ArrayList<>();
+                for (int i = 0; i < NUM_GENESIS_OUTPUTS; i++) {
+                    outputs.add(StandInRpcServer.createOutput(GENESIS_OUTPUT_VALUE, "bsq" + i));
+                    bsqOutputs.put(GENESIS_TX_ID + ":" + i, GENESIS_OUTPUT_VALUE);
+                }
+                txs.add(StandInRpcServer.createTx(GENESIS_TX_ID,
+                        Collections.singletonList(StandInRpcServer.createInput("funding", 0)),
+                        outputs));
+                numBsqTxs++;
+            } else {
+                for (int i = 0; i < NUM_NON_BSQ_TXS_PER_BLOCK; i++) {
+                    String txId = "btc" + txCounter++;
+                    String spentOutput = btcOutputs.remove(random.nextInt(btcOutputs.size()));
+                    txs.add(StandInRpcServer.createTx(txId,
+                            Collections.singletonList(createInput(spentOutput)),
+                            Arrays.asList(StandInRpcServer.createOutput(100_000, "btc"),
+                                    StandInRpcServer.createOutput(200_000, "btc"))));
+                    btcOutputs.add(txId + ":0");
+                    btcOutputs.add(txId + ":1");
+                }
+
+                int numTransfers = random.nextInt(3);
+                for (int i = 0; i < numTransfers && !bsqOutputs.isEmpty(); i++) {
+                    List<String> keys = new ArrayList<>(bsqOutputs.keySet());
+                    Collections.sort(keys);
+                    String spentOutput = keys.get(random.nextInt(keys.size()));
+                    long value = bsqOutputs.remove(spentOutput);
+                    String txId = "bsq" + txCounter++;
+                    txs.add(StandInRpcServer.createTx(txId,
+                            Collections.singletonList(createInput(spentOutput)),
+                            Collections.singletonList(StandInRpcServer.createOutput(value, "bsq"))));
+                    numBsqTxs++;
+
+                    if (random.nextInt(3) == 0) {
+                        // Spends the output of the transfer above in the same block
+                        String childTxId = "bsq" + txCounter++;
+                        txs.add(StandInRpcServer.createTx(childTxId,
+                                Collections.singletonList(StandInRpcServer.createInput(txId, 0)),
+                                Collections.singletonList(StandInRpcServer.createOutput(value, "bsq"))));
+                        numBsqTxs++;
+                        bsqOutputs.put(childTxId + ":0", value);
+                    } else {
+                        bsqOutputs.put(txId + ":0", value);
+                    }
+                }
+            }
+
+            numTxs += txs.size();
+            standInRpcServer.addBlock(txs);
+        }
+    }
+
+    private static JsonObject createInput(String output) {
+        String[] tokens = output.split(":");
+        return StandInRpcServer.createInput(tokens[0], Integer.parseInt(tokens[1]));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Services
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static RpcService createRpcService(int port) throws Exception {
+        Preferences preferences = mock(Preferences.class);
+        when(preferences.getRpcUser()).thenReturn("user");
+        when(preferences.getRpcPw()).thenReturn("password");
+        RpcService rpcService = new RpcService(preferences, "127.0.0.1", port, Utils.findFreeSystemPort(), "127.0.0.1");
+
+        CompletableFuture<Void> setupCompleted = new CompletableFuture<>();
+        rpcService.setup(() -> setupCompleted.complete(null), setupCompleted::completeExceptionally);
+        setupCompleted.get(30, TimeUnit.SECONDS);
+        return rpcService;
+    }
+
+    private static DaoStateService createDaoStateService() {
+        return new DaoStateService(new DaoState(),
+                new GenesisTxInfo(GENESIS_TX_ID, 0, NUM_GENESIS_OUTPUTS * GENESIS_OUTPUT_VALUE),
+                new BsqFormatter());
+    }
+
+    private static BlockParser createBlockParser(DaoStateService daoStateService) {
+        return new BlockParser(new TxParser(new PeriodService(daoStateService), daoStateService), daoStateService);
+    }
+
+    private static Set<String> getTxIds(DaoStateService daoStateService) {
+        return daoStateService.getUnorderedTxStream().map(Tx::getId).collect(Collectors.toSet());
+    }
+}
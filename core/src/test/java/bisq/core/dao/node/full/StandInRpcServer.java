@@ -0,0 +1,245 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.full;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import java.nio.charset.StandardCharsets;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.math.BigDecimal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Minimal stand-in for the JSON-RPC interface of Bitcoin Core which serves a chain of synthetic blocks. It supports
+ * the calls used by the {@link RpcService} to request blocks and the calls btcd-cli4j uses at startup, so a full node
+ * can sync from it without bitcoind. Requests are handled in parallel like Bitcoin Core does.
+ */
+@Slf4j
+class StandInRpcServer {
+    private final List<JsonObject> blocks = new ArrayList<>();
+    private HttpServer httpServer;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Chain
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static JsonObject createTx(String txId, List<JsonObject> inputs, List<JsonObject> outputs) {
+        JsonArray vin = new JsonArray();
+        inputs.forEach(vin::add);
+        JsonArray vout = new JsonArray();
+        for (int i = 0; i < outputs.size(); i++) {
+            JsonObject output = outputs.get(i);
+            output.addProperty("n", i);
+            vout.add(output);
+        }
+        JsonObject tx = new JsonObject();
+        tx.addProperty("txid", txId);
+        tx.addProperty("hash", txId);
+        tx.addProperty("version", 2);
+        tx.addProperty("size", 225);
+        tx.addProperty("vsize", 225);
+        tx.addProperty("locktime", 0);
+        tx.add("vin", vin);
+        tx.add("vout", vout);
+        tx.addProperty("hex", "00");
+        return tx;
+    }
+
+    static JsonObject createCoinbaseInput() {
+        JsonObject input = new JsonObject();
+        input.addProperty("coinbase", "03");
+        input.addProperty("sequence", 4294967295L);
+        return input;
+    }
+
+    static JsonObject createInput(String txId, int index) {
+        JsonObject scriptSig = new JsonObject();
+        scriptSig.addProperty("asm", "3044[ALL] 02" + txId);
+        scriptSig.addProperty("hex", "00");
+        JsonObject input = new JsonObject();
+        input.addProperty("txid", txId);
+        input.addProperty("vout", index);
+        input.add("scriptSig", scriptSig);
+        input.addProperty("sequence", 4294967295L);
+        return input;
+    }
+
+    static JsonObject createOutput(long valueInSat, String address) {
+        JsonArray addresses = new JsonArray();
+        addresses.add(address);
+        JsonObject scriptPubKey = new JsonObject();
+        scriptPubKey.addProperty("asm", "OP_DUP OP_HASH160 " + address + " OP_EQUALVERIFY OP_CHECKSIG");
+        scriptPubKey.addProperty("hex", "76a9");
+        scriptPubKey.addProperty("reqSigs", 1);
+        scriptPubKey.addProperty("type", "pubkeyhash");
+        scriptPubKey.add("addresses", addresses);
+        JsonObject output = new JsonObject();
+        output.addProperty("value", BigDecimal.valueOf(valueInSat).movePointLeft(8));
+        output.add("scriptPubKey", scriptPubKey);
+        return output;
+    }
+
+    /**
+     * Adds a block with the given txs on top of the chain.
+     */
+    void addBlock(List<JsonObject> txs) {
+        int height = blocks.size();
+        JsonArray tx = new JsonArray();
+        txs.forEach(tx::add);
+        JsonObject block = new JsonObject();
+        block.addProperty("hash", getBlockHash(height));
+        block.addProperty("confirmations", 1);
+        block.addProperty("size", 1000);
+        block.addProperty("height", height);
+        block.addProperty("version", 536870912);
+        block.addProperty("merkleroot", getBlockHash(height));
+        block.add("tx", tx);
+        block.addProperty("time", 1534800000L + height * 600L);
+        block.addProperty("mediantime", 1534800000L + height * 600L);
+        block.addProperty("nonce", height);
+        block.addProperty("bits", "207fffff");
+        block.addProperty("difficulty", 1);
+        block.addProperty("chainwork", "00");
+        if (height > 0) {
+            block.addProperty("previousblockhash", getBlockHash(height - 1));
+            blocks.get(height - 1).addProperty("nextblockhash", getBlockHash(height));
+        }
+        blocks.add(block);
+    }
+
+    static String getBlockHash(int height) {
+        return String.format("%064x", height + 1);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Server
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        httpServer.createContext("/", this::handle);
+        httpServer.setExecutor(Executors.newFixedThreadPool(4));
+        httpServer.start();
+        return httpServer.getAddress().getPort();
+    }
+
+    void stop() {
+        if (httpServer != null)
+            httpServer.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonObject request;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request = new JsonParser().parse(reader).getAsJsonObject();
+        }
+
+        JsonObject response = new JsonObject();
+        response.add("id", request.get("id"));
+        try {
+            response.add("result", call(request.get("method").getAsString(), request.getAsJsonArray("params")));
+            response.add("error", JsonNull.INSTANCE);
+        } catch (IllegalArgumentException e) {
+            JsonObject error = new JsonObject();
+            error.addProperty("code", -32601);
+            error.addProperty("message", e.getMessage());
+            response.add("result", JsonNull.INSTANCE);
+            response.add("error", error);
+        }
+
+        byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private JsonElement call(String method, JsonArray params) {
+        switch (method) {
+            case "getblockcount":
+                return new JsonPrimitive(blocks.size() - 1);
+            case "getbestblockhash":
+                return new JsonPrimitive(getBlockHash(blocks.size() - 1));
+            case "getblockhash":
+                return new JsonPrimitive(getBlockHash(params.get(0).getAsInt()));
+            case "getblock":
+                return getBlock(params);
+            case "getnetworkinfo":
+            case "getinfo":
+                return getNetworkInfo();
+            default:
+                throw new IllegalArgumentException("Method not found: " + method);
+        }
+    }
+
+    private JsonObject getBlock(JsonArray params) {
+        int height = Integer.parseInt(params.get(0).getAsString(), 16) - 1;
+        JsonObject block = blocks.get(height);
+        JsonElement verbosity = params.size() > 1 ? params.get(1) : new JsonPrimitive(1);
+        if (verbosity.getAsJsonPrimitive().isNumber() && verbosity.getAsInt() == 2)
+            return block;
+
+        // Verbosity 1 contains only the tx ids
+        JsonObject result = block.deepCopy();
+        JsonArray txIds = new JsonArray();
+        block.getAsJsonArray("tx").forEach(tx -> txIds.add(tx.getAsJsonObject().get("txid")));
+        result.add("tx", txIds);
+        return result;
+    }
+
+    private JsonObject getNetworkInfo() {
+        JsonObject networkInfo = new JsonObject();
+        networkInfo.addProperty("version", 190100);
+        networkInfo.addProperty("subversion", "/Satoshi:0.19.1/");
+        networkInfo.addProperty("protocolversion", 70015);
+        networkInfo.addProperty("localservices", "0000000000000409");
+        networkInfo.addProperty("localrelay", true);
+        networkInfo.addProperty("timeoffset", 0);
+        networkInfo.addProperty("networkactive", true);
+        networkInfo.addProperty("connections", 8);
+        networkInfo.add("networks", new JsonArray());
+        networkInfo.addProperty("relayfee", 0.00001);
+        networkInfo.addProperty("incrementalfee", 0.00001);
+        networkInfo.add("localaddresses", new JsonArray());
+        networkInfo.addProperty("warnings", "");
+        networkInfo.addProperty("blocks", blocks.size() - 1);
+        return networkInfo;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.full.network;
+
+import bisq.core.dao.node.full.RawBlock;
+import bisq.core.dao.node.messages.GetBlocksResponse;
+import bisq.core.dao.state.DaoStateService;
+import bisq.core.dao.state.GenesisTxInfo;
+import bisq.core.dao.state.model.DaoState;
+import bisq.core.dao.state.model.blockchain.Block;
+import bisq.core.util.coin.BsqFormatter;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RawBlockCacheTest {
+    private DaoStateService daoStateService;
+    private RawBlockCache rawBlockCache;
+
+    @Before
+    public void setUp() {
+        daoStateService = new DaoStateService(new DaoState(),
+                new GenesisTxInfo("genesistxid", 0, 2_500_000),
+                new BsqFormatter());
+        rawBlockCache = new RawBlockCache(daoStateService);
+        addBlock(0, "hash0", null);
+        addBlock(1, "hash1", "hash0");
+    }
+
+    @Test
+    public void testGetRawBlocks() {
+        List<RawBlock> rawBlocks = rawBlockCache.getRawBlocks(0, 10);
+        assertEquals(2, rawBlocks.size());
+        assertEquals("hash0", rawBlocks.get(0).getHash());
+        assertEquals("hash1", rawBlocks.get(1).getHash());
+
+        addBlock(2, "hash2", "hash1");
+        addBlock(3, "hash3", "hash2");
+        List<RawBlock> rawBlocksFromHeight1 = rawBlockCache.getRawBlocks(1, 2);
+        assertEquals(2, rawBlocksFromHeight1.size());
+        assertSame(rawBlocks.get(1), rawBlocksFromHeight1.get(0));
+        assertEquals("hash2", rawBlocksFromHeight1.get(1).getHash());
+        assertEquals(3, rawBlockCache.size());
+        assertEquals(4, rawBlockCache.getRawBlocks(0, 6000).size());
+        assertEquals(4, rawBlockCache.size());
+    }
+
+    @Test
+    public void testGetSerializedRawBlock() {
+        RawBlock rawBlock = rawBlockCache.getRawBlocks(1, 1).get(0);
+        // The block gets serialized only once
+        assertSame(rawBlockCache.getSerializedRawBlock(rawBlock), rawBlockCache.getSerializedRawBlock(rawBlock));
+        assertEquals(rawBlock.toProtoMessage().toByteString(), rawBlockCache.getSerializedRawBlock(rawBlock));
+
+        // A block which is not in the cache gets serialized as well
+        RawBlock notCachedRawBlock = RawBlock.fromBlock(daoStateService.getBlockAtHeight(0).get());
+        assertEquals(notCachedRawBlock.toProtoMessage().toByteString(),
+                rawBlockCache.getSerializedRawBlock(notCachedRawBlock));
+    }
+
+    @Test
+    public void testBlocksChangedByReorg() {
+        addBlock(2, "hash2", "hash1");
+        RawBlock rawBlock1 = rawBlockCache.getRawBlocks(1, 1).get(0);
+        RawBlock rawBlock2 = rawBlockCache.getRawBlocks(2, 1).get(0);
+        assertEquals("hash2", rawBlock2.getHash());
+
+        DaoState snapshot = new DaoState();
+        snapshot.setChainHeight(1);
+        snapshot.getBlocks().add(new Block(0, 0, "hash0", null));
+        snapshot.getBlocks().add(new Block(1, 600, "hash1", "hash0"));
+        daoStateService.applySnapshot(snapshot);
+
+        addBlock(2, "otherHash2", "hash1");
+        List<RawBlock> rawBlocks = rawBlockCache.getRawBlocks(1, 10);
+        assertEquals(2, rawBlocks.size());
+        // Unchanged blocks are kept
+        assertSame(rawBlock1, rawBlocks.get(0));
+        assertNotSame(rawBlock2, rawBlocks.get(1));
+        assertEquals("otherHash2", rawBlocks.get(1).getHash());
+        assertEquals(rawBlocks.get(1).toProtoMessage().toByteString(),
+                rawBlockCache.getSerializedRawBlock(rawBlocks.get(1)));
+        // The replaced block is not in the cache anymore
+        assertNotSame(rawBlockCache.getSerializedRawBlock(rawBlock2), rawBlockCache.getSerializedRawBlock(rawBlock2));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        int numBlocks = RawBlockCache.MAX_NUM_BLOCKS + 10;
+        for (int height = 2; height < numBlocks; height++) {
+            addBlock(height, "hash" + height, "hash" + (height - 1));
+        }
+
+        List<RawBlock> rawBlocksFromGenesis = rawBlockCache.getRawBlocks(0, numBlocks);
+        assertEquals(RawBlockCache.MAX_NUM_BLOCKS, rawBlocksFromGenesis.size());
+        List<RawBlock> rawBlocks = rawBlockCache.getRawBlocks(10, numBlocks);
+        assertEquals(RawBlockCache.MAX_NUM_BLOCKS, rawBlocks.size());
+        assertEquals(RawBlockCache.MAX_NUM_BLOCKS, rawBlockCache.size());
+
+        // The least recently requested blocks got evicted
+        RawBlock lastRawBlock = rawBlocks.get(rawBlocks.size() - 1);
+        assertSame(rawBlockCache.getSerializedRawBlock(lastRawBlock),
+                rawBlockCache.getSerializedRawBlock(lastRawBlock));
+        assertNotSame(rawBlocksFromGenesis.get(0), rawBlockCache.getRawBlocks(0, 1).get(0));
+    }
+
+    @Test
+    public void testSerializedBlocksGiveSameBytes() {
+        addBlock(2, "hash2", "hash1");
+        List<RawBlock> rawBlocks = rawBlockCache.getRawBlocks(0, 10);
+        for (int requestNonce : new int[]{0, 42, -42, Integer.MIN_VALUE}) {
+            assertArrayEquals(new GetBlocksResponse(rawBlocks, requestNonce).toProtoNetworkEnvelope().toByteArray(),
+                    new GetBlocksResponse(rawBlocks, requestNonce, rawBlockCache::getSerializedRawBlock)
+                            .toProtoNetworkEnvelope().toByteArray());
+        }
+    }
+
+    private void addBlock(int height, String hash, String previousBlockHash) {
+        Block block = new Block(height, height * 600L, hash, previousBlockHash);
+        daoStateService.onNewBlockHeight(height);
+        daoStateService.onNewBlockWithEmptyTxs(block);
+        daoStateService.onParseBlockComplete(block);
+    }
+}
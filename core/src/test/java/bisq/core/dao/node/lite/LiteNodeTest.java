@@ -0,0 +1,69 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.node.lite;
+
+import bisq.core.dao.node.full.RawBlock;
+import bisq.core.dao.state.model.blockchain.Block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LiteNodeTest {
+    @Test
+    public void testGetNumConnectingBlocks() {
+        assertEquals(0, LiteNode.getNumConnectingBlocks(Collections.emptyList()));
+        assertEquals(1, LiteNode.getNumConnectingBlocks(createBlocks(100, 1)));
+
+        List<RawBlock> blocks = createBlocks(100, 1000);
+        assertEquals(1000, LiteNode.getNumConnectingBlocks(blocks));
+
+        // Block at index 700 has a different previous block hash
+        List<RawBlock> notConnectingHash = new ArrayList<>(blocks);
+        notConnectingHash.set(700, createBlock(800, "otherHash"));
+        assertEquals(700, LiteNode.getNumConnectingBlocks(notConnectingHash));
+
+        // Missing block at index 300, the blocks after it still connect to each other
+        List<RawBlock> missingBlock = new ArrayList<>(blocks);
+        missingBlock.remove(300);
+        assertEquals(300, LiteNode.getNumConnectingBlocks(missingBlock));
+
+        // The first not connecting block counts
+        missingBlock.set(800, createBlock(901, "otherHash"));
+        assertEquals(300, LiteNode.getNumConnectingBlocks(missingBlock));
+    }
+
+    private static List<RawBlock> createBlocks(int startHeight, int numBlocks) {
+        List<RawBlock> blocks = new ArrayList<>();
+        for (int height = startHeight; height < startHeight + numBlocks; height++) {
+            blocks.add(createBlock(height, getHash(height - 1)));
+        }
+        return blocks;
+    }
+
+    private static RawBlock createBlock(int height, String previousBlockHash) {
+        return RawBlock.fromBlock(new Block(height, height * 600L, getHash(height), previousBlockHash));
+    }
+
+    private static String getHash(int height) {
+        return "hash" + height;
+    }
+}
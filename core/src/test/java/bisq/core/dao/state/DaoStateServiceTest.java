@@ -19,10 +19,18 @@ package bisq.core.dao.state;
 
 import bisq.core.dao.state.model.DaoState;
 import bisq.core.dao.state.model.blockchain.Block;
+import bisq.core.dao.state.model.blockchain.Tx;
+import bisq.core.dao.state.model.blockchain.TxOutput;
+import bisq.core.dao.state.model.blockchain.TxOutputKey;
+import bisq.core.dao.state.model.blockchain.TxOutputType;
+import bisq.core.dao.state.model.blockchain.TxType;
 import bisq.core.util.coin.BsqFormatter;
 
 import org.bitcoinj.core.Coin;
 
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -69,4 +77,131 @@ public class DaoStateServiceTest {
                 stateService.isBlockHashKnown("fakeblockhash4")
         );
     }
+
+    @Test
+    public void testIndexesFollowStateChanges() {
+        DaoStateService stateService = new DaoStateService(
+                new DaoState(),
+                new GenesisTxInfo("fakegenesistxid", 0, Coin.parseCoin("2.5").value),
+                new BsqFormatter());
+        stateService.onNewBlockHeight(0);
+        Block genesisBlock = new Block(0, 1534800000, "fakeblockhash0", null);
+        stateService.onNewBlockWithEmptyTxs(genesisBlock);
+        Tx genesisTx = createTx("fakegenesistxid", genesisBlock, TxOutputType.GENESIS_OUTPUT);
+        stateService.onNewTxForLastBlock(genesisBlock, genesisTx);
+
+        // Lookups build the indexes, so later changes need to be applied incrementally
+        Assert.assertEquals(genesisBlock, stateService.getBlockAtHeight(0).orElse(null));
+        Assert.assertTrue(stateService.getLockupTxOutputs().isEmpty());
+        Assert.assertFalse(stateService.existsTxOutput(new TxOutputKey("lockuptxid", 0)));
+
+        stateService.onNewBlockHeight(1);
+        Block block = new Block(1, 1534800001, "fakeblockhash1", "fakeblockhash0");
+        stateService.onNewBlockWithEmptyTxs(block);
+        Tx lockupTx = createTx("lockuptxid", block, TxOutputType.LOCKUP_OUTPUT, TxOutputType.LOCKUP_OP_RETURN_OUTPUT);
+        stateService.onNewTxForLastBlock(block, lockupTx);
+
+        Assert.assertEquals(block, stateService.getBlockAtHeight(1).orElse(null));
+        Assert.assertFalse(stateService.getBlockAtHeight(2).isPresent());
+        Assert.assertTrue(stateService.containsBlockHash("fakeblockhash1"));
+        Assert.assertEquals(lockupTx.getTxOutputs().get(1),
+                stateService.getTxOutput(new TxOutputKey("lockuptxid", 1)).orElse(null));
+        Assert.assertFalse(stateService.existsTxOutput(new TxOutputKey("lockuptxid", 2)));
+        Assert.assertEquals(1, stateService.getLockupTxOutputs().size());
+        Assert.assertTrue(stateService.getLockupTxOutputs().contains(lockupTx.getTxOutputs().get(0)));
+
+        // After a snapshot got applied the indexes must only reflect the snapshot's state
+        DaoState snapshot = new DaoState();
+        snapshot.getBlocks().add(genesisBlock);
+        stateService.applySnapshot(snapshot);
+
+        Assert.assertFalse(stateService.getBlockAtHeight(1).isPresent());
+        Assert.assertFalse(stateService.isBlockHashKnown("fakeblockhash1"));
+        Assert.assertTrue(stateService.isBlockHashKnown("fakeblockhash0"));
+        Assert.assertFalse(stateService.existsTxOutput(new TxOutputKey("lockuptxid", 0)));
+        Assert.assertTrue(stateService.existsTxOutput(new TxOutputKey("fakegenesistxid", 0)));
+        Assert.assertTrue(stateService.getLockupTxOutputs().isEmpty());
+    }
+
+    @Test
+    public void testIndexedLookupsMatchLinearScans() {
+        DaoStateService stateService = new DaoStateService(
+                new DaoState(),
+                new GenesisTxInfo("txid0-0", 0, Coin.parseCoin("2.5").value),
+                new BsqFormatter());
+        TxOutputType[] txOutputTypes = {
+                TxOutputType.BSQ_OUTPUT,
+                TxOutputType.LOCKUP_OUTPUT,
+                TxOutputType.UNLOCK_OUTPUT,
+                TxOutputType.PROOF_OF_BURN_OP_RETURN_OUTPUT
+        };
+        int numBlocks = 50;
+        int numTxsPerBlock = 5;
+        for (int height = 0; height < numBlocks; height++) {
+            stateService.onNewBlockHeight(height);
+            Block block = new Block(height, 1534800000 + height, "blockhash" + height,
+                    height > 0 ? "blockhash" + (height - 1) : null);
+            stateService.onNewBlockWithEmptyTxs(block);
+            for (int i = 0; i < numTxsPerBlock; i++) {
+                stateService.onNewTxForLastBlock(block, createTx("txid" + height + "-" + i, block,
+                        TxOutputType.BSQ_OUTPUT, txOutputTypes[(height + i) % txOutputTypes.length]));
+            }
+        }
+
+        for (int height = 0; height <= numBlocks; height++) {
+            int h = height;
+            Assert.assertEquals(stateService.getBlocks().stream().filter(block -> block.getHeight() == h).findAny(),
+                    stateService.getBlockAtHeight(height));
+            String hash = "blockhash" + height;
+            Assert.assertEquals(stateService.getBlocks().stream().anyMatch(block -> block.getHash().equals(hash)),
+                    stateService.isBlockHashKnown(hash));
+            for (int i = 0; i <= numTxsPerBlock; i++) {
+                for (int index = 0; index < 3; index++) {
+                    TxOutputKey key = new TxOutputKey("txid" + height + "-" + i, index);
+                    Assert.assertEquals(stateService.getUnorderedTxStream()
+                                    .flatMap(tx -> tx.getTxOutputs().stream())
+                                    .filter(txOutput -> txOutput.getKey().equals(key))
+                                    .findAny(),
+                            stateService.getTxOutput(key));
+                }
+            }
+        }
+
+        Assert.assertEquals(getTxOutputs(stateService, TxOutputType.LOCKUP_OUTPUT),
+                stateService.getLockupTxOutputs());
+        Assert.assertEquals(getTxOutputs(stateService, TxOutputType.UNLOCK_OUTPUT),
+                stateService.getUnlockTxOutputs());
+        Assert.assertEquals(getTxOutputs(stateService, TxOutputType.PROOF_OF_BURN_OP_RETURN_OUTPUT),
+                stateService.getProofOfBurnOpReturnTxOutputs());
+        Assert.assertFalse(stateService.getLockupTxOutputs().isEmpty());
+    }
+
+    private static Set<TxOutput> getTxOutputs(DaoStateService stateService, TxOutputType txOutputType) {
+        return stateService.getUnorderedTxStream()
+                .flatMap(tx -> tx.getTxOutputs().stream())
+                .filter(txOutput -> txOutput.getTxOutputType() == txOutputType)
+                .collect(Collectors.toSet());
+    }
+
+    static Tx createTx(String txId, Block block, TxOutputType... txOutputTypes) {
+        protobuf.Tx.Builder txBuilder = protobuf.Tx.newBuilder()
+                .setTxType(TxType.TRANSFER_BSQ.toProtoMessage());
+        for (int i = 0; i < txOutputTypes.length; i++) {
+            txBuilder.addTxOutputs(protobuf.BaseTxOutput.newBuilder()
+                    .setIndex(i)
+                    .setValue(1000)
+                    .setTxId(txId)
+                    .setBlockHeight(block.getHeight())
+                    .setTxOutput(protobuf.TxOutput.newBuilder()
+                            .setTxOutputType(txOutputTypes[i].toProtoMessage())));
+        }
+        return Tx.fromProto(protobuf.BaseTx.newBuilder()
+                .setTxVersion("1")
+                .setId(txId)
+                .setBlockHeight(block.getHeight())
+                .setBlockHash(block.getHash())
+                .setTime(block.getTime())
+                .setTx(txBuilder)
+                .build());
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.state.model;
+
+import bisq.core.dao.state.model.blockchain.Block;
+import bisq.core.dao.state.model.blockchain.SpentInfo;
+import bisq.core.dao.state.model.blockchain.TxOutput;
+import bisq.core.dao.state.model.blockchain.TxOutputKey;
+import bisq.core.dao.state.model.blockchain.TxOutputType;
+import bisq.core.dao.state.model.governance.Cycle;
+import bisq.core.dao.state.model.governance.DaoPhase;
+import bisq.core.dao.state.model.governance.Issuance;
+import bisq.core.dao.state.model.governance.IssuanceType;
+import bisq.core.dao.state.model.governance.ParamChange;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class DaoStateTest {
+    @Test
+    public void testSerializedStateForHashChainMatchesFullSerialization() {
+        Random random = new Random(7);
+        DaoState daoState = new DaoState();
+        for (int height = 0; height < 500; height++) {
+            daoState.setChainHeight(height);
+            daoState.getBlocks().add(new Block(height, 1534800000 + height, "blockhash" + height,
+                    height > 0 ? "blockhash" + (height - 1) : null));
+
+            // Most blocks only change a few sections, some none at all
+            int numChanges = random.nextInt(4);
+            for (int i = 0; i < numChanges; i++) {
+                applyRandomChange(daoState, random, height);
+            }
+
+            assertArrayEquals("Serialized state differs at height " + height,
+                    daoState.getSerializedStateForHashChainWithoutCache(),
+                    daoState.getSerializedStateForHashChain());
+        }
+    }
+
+    private static void applyRandomChange(DaoState daoState, Random random, int height) {
+        String txId = "txid" + random.nextInt(200);
+        switch (random.nextInt(9)) {
+            case 0:
+                daoState.getUnspentTxOutputMap().put(new TxOutputKey(txId, random.nextInt(3)),
+                        createTxOutput(txId, random.nextInt(3), height));
+                break;
+            case 1:
+                removeRandomKey(daoState.getUnspentTxOutputMap(), random);
+                break;
+            case 2:
+                daoState.getSpentInfoMap().put(new TxOutputKey(txId, random.nextInt(3)),
+                        new SpentInfo(height, "spending" + txId, random.nextInt(3)));
+                break;
+            case 3:
+                daoState.getIssuanceMap().put(txId, new Issuance(txId, height, random.nextInt(100000),
+                        random.nextBoolean() ? "pubkey" + txId : null, IssuanceType.COMPENSATION));
+                break;
+            case 4:
+                daoState.getCycles().add(new Cycle(height, ImmutableList.of(
+                        new DaoPhase(DaoPhase.Phase.PROPOSAL, random.nextInt(10) + 1),
+                        new DaoPhase(DaoPhase.Phase.BREAK1, random.nextInt(10) + 1))));
+                break;
+            case 5:
+                daoState.getConfiscatedLockupTxList().add(txId);
+                break;
+            case 6:
+                daoState.getParamChangeList().add(new ParamChange("param" + random.nextInt(5),
+                        String.valueOf(random.nextInt(1000)), height));
+                break;
+            case 7:
+                // Replaces an element by an equal but different instance
+                List<ParamChange> paramChangeList = daoState.getParamChangeList();
+                if (!paramChangeList.isEmpty()) {
+                    int index = random.nextInt(paramChangeList.size());
+                    ParamChange paramChange = paramChangeList.get(index);
+                    paramChangeList.set(index, new ParamChange(paramChange.getParamName(), paramChange.getValue(),
+                            paramChange.getActivationHeight()));
+                }
+                break;
+            default:
+                if (!daoState.getConfiscatedLockupTxList().isEmpty())
+                    daoState.getConfiscatedLockupTxList().remove(0);
+                if (random.nextInt(10) == 0)
+                    daoState.getIssuanceMap().clear();
+                break;
+        }
+    }
+
+    private static void removeRandomKey(Map<TxOutputKey, ?> map, Random random) {
+        List<TxOutputKey> keys = new ArrayList<>(map.keySet());
+        if (!keys.isEmpty())
+            map.remove(keys.get(random.nextInt(keys.size())));
+    }
+
+    private static TxOutput createTxOutput(String txId, int index, int height) {
+        return TxOutput.fromProto(protobuf.BaseTxOutput.newBuilder()
+                .setIndex(index)
+                .setValue(1000 + height)
+                .setTxId(txId)
+                .setBlockHeight(height)
+                .setTxOutput(protobuf.TxOutput.newBuilder()
+                        .setTxOutputType(TxOutputType.BSQ_OUTPUT.toProtoMessage())
+                        .setLockTime(-1))
+                .build());
+    }
+}
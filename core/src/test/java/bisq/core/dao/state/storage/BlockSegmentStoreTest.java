@@ -0,0 +1,158 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.core.dao.state.storage;
+
+import bisq.core.dao.state.model.blockchain.Block;
+
+import bisq.common.file.FileUtil;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static bisq.core.dao.state.storage.BlockSegmentStore.BLOCKS_PER_SEGMENT;
+import static bisq.core.dao.state.storage.BlockSegmentStore.REORG_SAFETY_MARGIN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockSegmentStoreTest {
+    private static final int GENESIS_HEIGHT = 1500;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = new File(Files.createTempDirectory("storage").toFile(), "DaoStateStore_blocks");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir.getParentFile());
+    }
+
+    private static LinkedList<Block> createBlocks(int lastHeight) {
+        LinkedList<Block> blocks = new LinkedList<>();
+        for (int height = GENESIS_HEIGHT; height <= lastHeight; height++) {
+            blocks.add(new Block(height, height * 600L, "hash" + height, "hash" + (height - 1)));
+        }
+        return blocks;
+    }
+
+    // Writes the completed segments and waits until they are on disk
+    private BlockSegmentStore writeSegments(LinkedList<Block> blocks) {
+        BlockSegmentStore store = new BlockSegmentStore(dir);
+        store.writeCompletedSegments(blocks);
+        store.shutDown();
+        return new BlockSegmentStore(dir);
+    }
+
+    @Test
+    public void testSegmentBoundaries() {
+        assertEquals(1999, BlockSegmentStore.getSegmentToHeight(GENESIS_HEIGHT));
+        assertEquals(2999, BlockSegmentStore.getSegmentToHeight(2000));
+        assertEquals(2999, BlockSegmentStore.getSegmentToHeight(2999));
+    }
+
+    @Test
+    public void testCompletedSegmentsAreWritten() {
+        LinkedList<Block> blocks = createBlocks(2 * BLOCKS_PER_SEGMENT + 999 + REORG_SAFETY_MARGIN);
+        assertEquals(2999, writeSegments(blocks).writeCompletedSegments(blocks));
+        assertTrue(new File(dir, "blocks_1500-1999.seg").exists());
+        assertTrue(new File(dir, "blocks_2000-2999.seg").exists());
+    }
+
+    @Test
+    public void testSegmentsCloseToTipAreNotWritten() {
+        LinkedList<Block> blocks = createBlocks(2999 + REORG_SAFETY_MARGIN - 1);
+        assertEquals(1999, writeSegments(blocks).writeCompletedSegments(blocks));
+    }
+
+    @Test
+    public void testReadBlocks() throws IOException {
+        LinkedList<Block> blocks = createBlocks(4050 + REORG_SAFETY_MARGIN);
+        BlockSegmentStore store = writeSegments(blocks);
+        assertEquals(3999, store.writeCompletedSegments(blocks));
+
+        List<Block> blocksFromSegments = store.readBlocks(GENESIS_HEIGHT, 3999);
+        assertEquals(3999 - GENESIS_HEIGHT + 1, blocksFromSegments.size());
+        for (int i = 0; i < blocksFromSegments.size(); i++) {
+            assertEquals(blocks.get(i), blocksFromSegments.get(i));
+        }
+    }
+
+    @Test
+    public void testReadBlocksRequiresSegmentBoundary() {
+        LinkedList<Block> blocks = createBlocks(3000 + REORG_SAFETY_MARGIN);
+        BlockSegmentStore store = writeSegments(blocks);
+        try {
+            store.readBlocks(GENESIS_HEIGHT, 2500);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testCorruptSegmentIsRejected() throws IOException {
+        LinkedList<Block> blocks = createBlocks(3000 + REORG_SAFETY_MARGIN);
+        BlockSegmentStore store = writeSegments(blocks);
+
+        File segment = new File(dir, "blocks_2000-2999.seg");
+        assertTrue(segment.exists());
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        bytes[bytes.length - 10] ^= 0x01;
+        Files.write(segment.toPath(), bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            store.readBlocks(GENESIS_HEIGHT, 2999);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+        // The first segment is still fine
+        assertEquals(500, store.readBlocks(GENESIS_HEIGHT, 1999).size());
+    }
+
+    @Test
+    public void testUnlinkedBlocksAreRejected() {
+        LinkedList<Block> blocks = createBlocks(3000 + REORG_SAFETY_MARGIN);
+        blocks.set(700, new Block(GENESIS_HEIGHT + 700, 0, "hash" + (GENESIS_HEIGHT + 700), "otherHash"));
+        BlockSegmentStore store = writeSegments(blocks);
+        try {
+            store.readBlocks(GENESIS_HEIGHT, 2999);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testDeleteAllSegments() {
+        LinkedList<Block> blocks = createBlocks(3000 + REORG_SAFETY_MARGIN);
+        BlockSegmentStore store = writeSegments(blocks);
+        store.deleteAllSegments();
+        store.shutDown();
+        assertEquals(0, dir.listFiles().length);
+    }
+}
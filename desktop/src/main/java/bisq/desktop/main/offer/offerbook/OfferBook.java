@@ -28,7 +28,12 @@ import javax.inject.Singleton;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -65,35 +70,52 @@ public class OfferBook {
         offerBookService.addOfferBookChangedListener(new OfferBookService.OfferBookChangedListener() {
             @Override
             public void onAdded(Offer offer) {
+                onAdded(Collections.singletonList(offer));
+            }
+
+            @Override
+            public void onAdded(Collection<Offer> offers) {
                 // We get onAdded called every time a new ProtectedStorageEntry is received.
                 // Mostly it is the same OfferPayload but the ProtectedStorageEntry is different.
                 // We filter here to only add new offers if the same offer (using equals) was not already added and it
                 // is not banned.
+                // A batch (e.g. all offers of the initial data response) is applied with one lookup map and one
+                // change of the observable list, so the views are updated only once.
+
+                Map<String, OfferBookListItem> itemsById = new HashMap<>();
+                offerBookListItems.forEach(item -> itemsById.putIfAbsent(item.getOffer().getId(), item));
+                List<OfferBookListItem> itemsToRemove = new ArrayList<>();
+                Map<String, OfferBookListItem> itemsToAdd = new LinkedHashMap<>();
+
+                offers.forEach(offer -> {
+                    if (filterManager.isOfferIdBanned(offer.getId())) {
+                        log.debug("Ignored banned offer. ID={}", offer.getId());
+                        return;
+                    }
 
-                if (filterManager.isOfferIdBanned(offer.getId())) {
-                    log.debug("Ignored banned offer. ID={}", offer.getId());
-                    return;
-                }
+                    OfferBookListItem candidateWithSameId = itemsToAdd.containsKey(offer.getId()) ?
+                            itemsToAdd.get(offer.getId()) :
+                            itemsById.get(offer.getId());
+                    if (candidateWithSameId != null && candidateWithSameId.getOffer().equals(offer)) {
+                        log.debug("We have the exact same offer already in our list and ignore the onAdded call. ID={}", offer.getId());
+                        return;
+                    }
 
-                boolean hasSameOffer = offerBookListItems.stream()
-                        .anyMatch(item -> item.getOffer().equals(offer));
-                if (!hasSameOffer) {
                     OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
                     // We don't use the contains method as the equals method in Offer takes state and errorMessage into account.
                     // If we have an offer with same ID we remove it and add the new offer as it might have a changed state.
-                    Optional<OfferBookListItem> candidateWithSameId = offerBookListItems.stream()
-                            .filter(item -> item.getOffer().getId().equals(offer.getId()))
-                            .findAny();
-                    if (candidateWithSameId.isPresent()) {
+                    if (candidateWithSameId != null && itemsById.remove(offer.getId()) != null) {
                         log.warn("We had an old offer in the list with the same Offer ID. We remove the old one. " +
-                                "old offerBookListItem={}, new offerBookListItem={}", candidateWithSameId.get(), offerBookListItem);
-                        offerBookListItems.remove(candidateWithSameId.get());
+                                "old offerBookListItem={}, new offerBookListItem={}", candidateWithSameId, offerBookListItem);
+                        itemsToRemove.add(candidateWithSameId);
                     }
+                    itemsToAdd.put(offer.getId(), offerBookListItem);
+                });
 
-                    offerBookListItems.add(offerBookListItem);
-                } else {
-                    log.debug("We have the exact same offer already in our list and ignore the onAdded call. ID={}", offer.getId());
-                }
+                if (!itemsToRemove.isEmpty())
+                    offerBookListItems.removeAll(itemsToRemove);
+                if (!itemsToAdd.isEmpty())
+                    offerBookListItems.addAll(itemsToAdd.values());
             }
 
             @Override
@@ -253,6 +253,7 @@ public class InventoryMonitor implements SetupListener {
         return new NetworkNodeProvider(networkProtoResolver,
                 ArrayList::new,
                 useLocalhostForP2P,
+                0,
                 9999,
                 torDir,
                 null,
@@ -27,13 +27,19 @@ import bisq.common.proto.ProtobufferException;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkProtoResolver;
 
+import com.google.protobuf.CodedOutputStream;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 @EqualsAndHashCode(callSuper = true)
 @Value
@@ -41,6 +47,19 @@ public final class BundleOfEnvelopes extends BroadcastMessage implements Extende
 
     private final List<NetworkEnvelope> envelopes;
 
+    // Protos of the envelopes added by the add methods. We reuse them at serialisation, so each envelope gets
+    // converted only once. Only used if it covers all envelopes.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private final List<protobuf.NetworkEnvelope> envelopeProtos = new ArrayList<>();
+    // Running sum of the serialized sizes of the envelopeProtos as elements of the repeated field
+    @NonFinal
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private int serializedEnvelopesSize;
+
     public BundleOfEnvelopes() {
         this(new ArrayList<>(), Version.getP2PMessageVersion());
     }
@@ -50,9 +69,45 @@ public final class BundleOfEnvelopes extends BroadcastMessage implements Extende
     }
 
     public void add(NetworkEnvelope networkEnvelope) {
+        add(networkEnvelope, networkEnvelope.toProtoNetworkEnvelope());
+    }
+
+    // The proto of the envelope is passed in if the caller has built it already
+    public void add(NetworkEnvelope networkEnvelope, protobuf.NetworkEnvelope proto) {
+        if (envelopeProtos.size() == envelopes.size()) {
+            envelopeProtos.add(proto);
+            serializedEnvelopesSize += CodedOutputStream.computeMessageSize(protobuf.BundleOfEnvelopes.ENVELOPES_FIELD_NUMBER, proto);
+        }
         envelopes.add(networkEnvelope);
     }
 
+    /**
+     * @return The size of the serialized NetworkEnvelope. If all envelopes got added by the add methods it is
+     * calculated from the running counter without serializing the bundle.
+     */
+    public int getSerializedSize() {
+        if (!hasAllEnvelopeProtos())
+            return toProtoNetworkEnvelope().getSerializedSize();
+
+        int messageVersionSize = messageVersion != 0 ?
+                CodedOutputStream.computeInt32Size(protobuf.NetworkEnvelope.MESSAGE_VERSION_FIELD_NUMBER, messageVersion) :
+                0;
+        return messageVersionSize +
+                CodedOutputStream.computeTagSize(protobuf.NetworkEnvelope.BUNDLE_OF_ENVELOPES_FIELD_NUMBER) +
+                CodedOutputStream.computeUInt32SizeNoTag(serializedEnvelopesSize) +
+                serializedEnvelopesSize;
+    }
+
+    public protobuf.NetworkEnvelope getEnvelopeProto(int index) {
+        return hasAllEnvelopeProtos() ?
+                envelopeProtos.get(index) :
+                envelopes.get(index).toProtoNetworkEnvelope();
+    }
+
+    private boolean hasAllEnvelopeProtos() {
+        return envelopeProtos.size() == envelopes.size();
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -65,10 +120,13 @@ public final class BundleOfEnvelopes extends BroadcastMessage implements Extende
 
     @Override
     public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
-        return getNetworkEnvelopeBuilder()
-                .setBundleOfEnvelopes(protobuf.BundleOfEnvelopes.newBuilder().addAllEnvelopes(envelopes.stream()
+        List<protobuf.NetworkEnvelope> protos = hasAllEnvelopeProtos() ?
+                envelopeProtos :
+                envelopes.stream()
                         .map(NetworkEnvelope::toProtoNetworkEnvelope)
-                        .collect(Collectors.toList())))
+                        .collect(Collectors.toList());
+        return getNetworkEnvelopeBuilder()
+                .setBundleOfEnvelopes(protobuf.BundleOfEnvelopes.newBuilder().addAllEnvelopes(protos))
                 .build();
     }
 
@@ -44,6 +44,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
     public NetworkNodeProvider(NetworkProtoResolver networkProtoResolver,
                                BridgeAddressProvider bridgeAddressProvider,
                                @Named(Config.USE_LOCALHOST_FOR_P2P) boolean useLocalhostForP2P,
+                               @Named(Config.NIO_SELECTOR_THREADS) int nioSelectorThreads,
                                @Named(Config.NODE_PORT) int port,
                                @Named(Config.TOR_DIR) File torDir,
                                @Nullable @Named(Config.TORRC_FILE) File torrcFile,
@@ -54,7 +55,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
                                @Named(Config.TOR_STREAM_ISOLATION) boolean streamIsolation,
                                @Named(Config.TOR_CONTROL_USE_SAFE_COOKIE_AUTH) boolean useSafeCookieAuthentication ) {
         networkNode = useLocalhostForP2P ?
-                new LocalhostNetworkNode(port, networkProtoResolver) :
+                new LocalhostNetworkNode(port, networkProtoResolver, nioSelectorThreads) :
                 new TorNetworkNode(port, networkProtoResolver, streamIsolation,
                         controlPort != Config.UNSPECIFIED_PORT ?
                                 new RunningTor(torDir, controlPort, password, cookieFile, useSafeCookieAuthentication) :
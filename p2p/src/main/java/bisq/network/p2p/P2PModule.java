@@ -76,6 +76,8 @@ public class P2PModule extends AppModule {
         requestStaticInjection(Connection.class);
 
         bindConstant().annotatedWith(named(USE_LOCALHOST_FOR_P2P)).to(config.useLocalhostForP2P);
+        bindConstant().annotatedWith(named(NIO_SELECTOR_THREADS)).to(config.nioSelectorThreads);
+        bindConstant().annotatedWith(named(STORAGE_VALIDATION_THREADS)).to(config.storageValidationThreads);
 
         bind(File.class).annotatedWith(named(TOR_DIR)).toInstance(config.torDir);
 
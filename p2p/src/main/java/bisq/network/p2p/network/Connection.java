@@ -44,6 +44,7 @@ import bisq.common.config.Config;
 import bisq.common.proto.ProtobufferException;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkProtoResolver;
+import bisq.common.util.Tuple2;
 import bisq.common.util.Utilities;
 
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -51,7 +52,6 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import javax.inject.Inject;
 
 import com.google.common.util.concurrent.MoreExecutors;
-import com.google.common.util.concurrent.Uninterruptibles;
 
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -67,19 +67,21 @@ import java.io.InvalidClassException;
 import java.io.OptionalDataException;
 import java.io.StreamCorruptedException;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import java.lang.ref.WeakReference;
 
@@ -119,10 +121,10 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private static Config config;
 
     // Leaving some constants package-private for tests to know limits.
-    private static final int PERMITTED_MESSAGE_SIZE = 200 * 1024;                       // 200 kb
-    private static final int MAX_PERMITTED_MESSAGE_SIZE = 10 * 1024 * 1024;             // 10 MB (425 offers resulted in about 660 kb, mailbox msg will add more to it) offer has usually 2 kb, mailbox 3kb.
+    static final int PERMITTED_MESSAGE_SIZE = 200 * 1024;                       // 200 kb
+    static final int MAX_PERMITTED_MESSAGE_SIZE = 10 * 1024 * 1024;             // 10 MB (425 offers resulted in about 660 kb, mailbox msg will add more to it) offer has usually 2 kb, mailbox 3kb.
     //TODO decrease limits again after testing
-    private static final int SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(180);
+    static final int SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(180);
 
     public static int getPermittedMessageSize() {
         return PERMITTED_MESSAGE_SIZE;
@@ -136,6 +138,8 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final Socket socket;
     // private final MessageListener messageListener;
     private final ConnectionListener connectionListener;
+    // Shared with the other connections of the node, used for all delayed work of the connection
+    private final ConnectionScheduler connectionScheduler;
     @Getter
     private final String uid;
     private final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Connection.java executor-service"));
@@ -144,7 +148,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final Statistic statistic;
 
     // set in init
-    private SynchronizedProtoOutputStream protoOutputStream;
+    private ProtoOutputStream protoOutputStream;
 
     // mutable data, set from other threads but not changed internally.
     @Getter
@@ -179,30 +183,41 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                MessageListener messageListener,
                ConnectionListener connectionListener,
                @Nullable NodeAddress peersNodeAddress,
-               NetworkProtoResolver networkProtoResolver) {
+               NetworkProtoResolver networkProtoResolver,
+               ConnectionScheduler connectionScheduler,
+               @Nullable NioSelectorPool nioSelectorPool) {
         this.socket = socket;
         this.connectionListener = connectionListener;
+        this.connectionScheduler = connectionScheduler;
         uid = UUID.randomUUID().toString();
         statistic = new Statistic();
 
         addMessageListener(messageListener);
 
         this.networkProtoResolver = networkProtoResolver;
-        init(peersNodeAddress);
+        init(peersNodeAddress, nioSelectorPool);
     }
 
-    private void init(@Nullable NodeAddress peersNodeAddress) {
+    private void init(@Nullable NodeAddress peersNodeAddress, @Nullable NioSelectorPool nioSelectorPool) {
         try {
             socket.setSoTimeout(SOCKET_TIMEOUT);
-            // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
-            // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
-            // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
-            // the associated ObjectOutputStream on the other end of the connection has written.
-            // It will not return until that header has been read.
-            protoOutputStream = new SynchronizedProtoOutputStream(socket.getOutputStream(), statistic);
-            protoInputStream = socket.getInputStream();
-            // We create a thread for handling inputStream data
-            singleThreadExecutor.submit(this);
+            if (nioSelectorPool != null && socket.getChannel() != null) {
+                // The selector pool reads from the channel and calls us for each received frame, so we don't need
+                // the InputHandler thread.
+                NioChannelOutputStream outputStream = nioSelectorPool.register(socket.getChannel(), new InputFrameHandler());
+                protoOutputStream = new NioProtoOutputStream(outputStream, statistic);
+            } else {
+                // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
+                // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
+                // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
+                // the associated ObjectOutputStream on the other end of the connection has written.
+                // It will not return until that header has been read.
+                protoOutputStream = new SynchronizedProtoOutputStream(socket.getOutputStream(), statistic);
+                protoInputStream = socket.getInputStream();
+                frameReader = new NetworkEnvelopeFrameReader(protoInputStream);
+                // We create a thread for handling inputStream data
+                singleThreadExecutor.submit(this);
+            }
 
             if (peersNodeAddress != null)
                 setPeersNodeAddress(peersNodeAddress);
@@ -223,8 +238,16 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     }
 
     private final Object lock = new Object();
-    private final Queue<BundleOfEnvelopes> queueOfBundles = new ConcurrentLinkedQueue<>();
-    private final ScheduledExecutorService bundleSender = Executors.newSingleThreadScheduledExecutor();
+    private final Deque<BundleOfEnvelopes> queueOfBundles = new ConcurrentLinkedDeque<>();
+
+    // Envelopes to peers which do not support BundleOfEnvelopes are throttled by a token bucket. Instead of blocking
+    // the sending thread we queue them and let the connectionScheduler write them once a token is available.
+    private final Object sendQueueLock = new Object();
+    private final Queue<Tuple2<NetworkEnvelope, protobuf.NetworkEnvelope>> throttledEnvelopes = new ArrayDeque<>();
+    private final TokenBucket sendTokenBucket = new TokenBucket(
+            1 + getSendMsgThrottleSleep() / Math.max(1, getSendMsgThrottleTrigger()),
+            Math.max(1, getSendMsgThrottleTrigger()),
+            System.currentTimeMillis());
 
     // Called from various threads
     public void sendMessage(NetworkEnvelope networkEnvelope) {
@@ -247,65 +270,55 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         setPeerType(Connection.PeerType.PEER);
                     }
 
+                    // We build the proto only once and use it for the size checks as well as for writing it
+                    protobuf.NetworkEnvelope proto = networkEnvelope.toProtoNetworkEnvelope();
+
+                    // The CloseConnectionMessage is the last message we send. It must not wait in a bundle or
+                    // in the throttle queue, as those get discarded when the connection is stopped.
+                    if (networkEnvelope instanceof CloseConnectionMessage) {
+                        // Sent from the connectionScheduler, so we must not block it until the write is done
+                        protoOutputStream.writeEnvelopeAsync(networkEnvelope, proto,
+                                throwable -> log.debug("Sending CloseConnectionMessage failed. {}", throwable.toString()));
+                        return;
+                    }
+
                     // Throttle outbound network_messages
                     long now = System.currentTimeMillis();
                     long elapsed = now - lastSendTimeStamp;
-                    if (elapsed < getSendMsgThrottleTrigger()) {
-                        log.debug("We got 2 sendMessage requests in less than {} ms. We set the thread to sleep " +
-                                        "for {} ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
-                                getSendMsgThrottleTrigger(), getSendMsgThrottleSleep(), lastSendTimeStamp, now, elapsed,
+                    if (elapsed < getSendMsgThrottleTrigger() &&
+                            getCapabilities().containsAll(new Capabilities(Capability.BUNDLE_OF_ENVELOPES))) {
+                        log.debug("We got 2 sendMessage requests in less than {} ms. We bundle the envelope to " +
+                                        "avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
+                                getSendMsgThrottleTrigger(), lastSendTimeStamp, now, elapsed,
                                 networkEnvelope.getClass().getSimpleName());
 
-                        // check if BundleOfEnvelopes is supported
-                        if (getCapabilities().containsAll(new Capabilities(Capability.BUNDLE_OF_ENVELOPES))) {
-                            synchronized (lock) {
-                                // check if current envelope fits size
-                                // - no? create new envelope
-                                if (queueOfBundles.isEmpty() || queueOfBundles.element().toProtoNetworkEnvelope().getSerializedSize() + networkEnvelope.toProtoNetworkEnvelope().getSerializedSize() > MAX_PERMITTED_MESSAGE_SIZE * 0.9) {
-                                    // - no? create a bucket
-                                    queueOfBundles.add(new BundleOfEnvelopes());
-
-                                    // - and schedule it for sending
-                                    lastSendTimeStamp += getSendMsgThrottleSleep();
-
-                                    bundleSender.schedule(() -> {
-                                        if (!stopped) {
-                                            synchronized (lock) {
-                                                BundleOfEnvelopes bundle = queueOfBundles.poll();
-                                                if (bundle != null && !stopped) {
-                                                    NetworkEnvelope envelope = bundle.getEnvelopes().size() == 1 ?
-                                                            bundle.getEnvelopes().get(0) :
-                                                            bundle;
-                                                    try {
-                                                        protoOutputStream.writeEnvelope(envelope);
-                                                    } catch (Throwable t) {
-                                                        log.error("Sending envelope of class {} to address {} " +
-                                                                        "failed due {}",
-                                                                envelope.getClass().getSimpleName(),
-                                                                this.getPeersNodeAddressOptional(),
-                                                                t.toString());
-                                                        log.error("envelope: {}", envelope);
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }, lastSendTimeStamp - now, TimeUnit.MILLISECONDS);
+                        synchronized (lock) {
+                            // check if current bundle has space left
+                            BundleOfEnvelopes bundle = queueOfBundles.peekLast();
+                            if (bundle == null ||
+                                    bundle.getSerializedSize() + proto.getSerializedSize() > MAX_PERMITTED_MESSAGE_SIZE * 0.9) {
+                                // - no? create a new bundle
+                                bundle = new BundleOfEnvelopes();
+                                queueOfBundles.add(bundle);
+
+                                // - and schedule it for sending
+                                lastSendTimeStamp += getSendMsgThrottleSleep();
+                                if (!connectionScheduler.schedule(this::sendBundle, lastSendTimeStamp - now,
+                                        TimeUnit.MILLISECONDS)) {
+                                    // Our node is shut down already, so the bundles would never get sent
+                                    log.debug("Could not schedule sending of bundle. We discard {} bundles.",
+                                            queueOfBundles.size());
+                                    queueOfBundles.clear();
+                                    return;
                                 }
-
-                                // - yes? add to bucket
-                                queueOfBundles.element().add(networkEnvelope);
                             }
-                            return;
-                        }
 
-                        Thread.sleep(getSendMsgThrottleSleep());
+                            bundle.add(networkEnvelope, proto);
+                        }
+                        return;
                     }
 
-                    lastSendTimeStamp = now;
-
-                    if (!stopped) {
-                        protoOutputStream.writeEnvelope(networkEnvelope);
-                    }
+                    sendOrEnqueue(networkEnvelope, proto, now);
                 } catch (Throwable t) {
                     handleException(t);
                 }
@@ -315,6 +328,93 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         }
     }
 
+    private void sendBundle() {
+        if (!stopped) {
+            synchronized (lock) {
+                BundleOfEnvelopes bundle = queueOfBundles.poll();
+                if (bundle != null && !stopped) {
+                    boolean isSingleEnvelope = bundle.getEnvelopes().size() == 1;
+                    NetworkEnvelope envelope = isSingleEnvelope ? bundle.getEnvelopes().get(0) : bundle;
+                    Consumer<Throwable> errorHandler = t -> {
+                        log.error("Sending envelope of class {} to address {} " +
+                                        "failed due {}",
+                                envelope.getClass().getSimpleName(),
+                                this.getPeersNodeAddressOptional(),
+                                t.toString());
+                        log.error("envelope: {}", envelope);
+                    };
+                    try {
+                        protobuf.NetworkEnvelope proto = isSingleEnvelope ?
+                                bundle.getEnvelopeProto(0) :
+                                bundle.toProtoNetworkEnvelope();
+                        // We run on the shared connectionScheduler, so a slow peer must not block it until the write
+                        // is done. The write is handed over to the write thread of the connection.
+                        protoOutputStream.writeEnvelopeAsync(envelope, proto, errorHandler);
+                    } catch (Throwable t) {
+                        errorHandler.accept(t);
+                    }
+                }
+            }
+        }
+    }
+
+    private void sendOrEnqueue(NetworkEnvelope networkEnvelope, protobuf.NetworkEnvelope proto, long now) {
+        synchronized (sendQueueLock) {
+            // If there are queued envelopes we must not overtake them
+            if (throttledEnvelopes.isEmpty() && sendTokenBucket.tryConsume(now)) {
+                lastSendTimeStamp = now;
+                if (!stopped) {
+                    // We must not block while holding the sendQueueLock as the drain on the shared
+                    // connectionScheduler needs it as well. The write thread keeps the order of the envelopes.
+                    protoOutputStream.writeEnvelopeAsync(networkEnvelope, proto, this::handleException);
+                }
+                return;
+            }
+
+            throttledEnvelopes.add(new Tuple2<>(networkEnvelope, proto));
+            log.debug("We throttle sending of {} to avoid flooding our peer. Number of queued envelopes={}",
+                    networkEnvelope.getClass().getSimpleName(), throttledEnvelopes.size());
+            // Only the first queued envelope schedules the drain, following ones get picked up by it
+            if (throttledEnvelopes.size() == 1) {
+                scheduleSendThrottledEnvelopes(now);
+            }
+        }
+    }
+
+    private void sendThrottledEnvelopes() {
+        synchronized (sendQueueLock) {
+            long now = System.currentTimeMillis();
+            while (!throttledEnvelopes.isEmpty()) {
+                if (stopped) {
+                    throttledEnvelopes.clear();
+                    return;
+                }
+
+                if (!sendTokenBucket.tryConsume(now)) {
+                    scheduleSendThrottledEnvelopes(now);
+                    return;
+                }
+
+                Tuple2<NetworkEnvelope, protobuf.NetworkEnvelope> tuple = throttledEnvelopes.poll();
+                lastSendTimeStamp = now;
+                // As in sendBundle we only decide when to write, the write itself does not block the scheduler.
+                // A failed write shuts down the connection, which discards the remaining envelopes.
+                protoOutputStream.writeEnvelopeAsync(tuple.first, tuple.second, this::handleException);
+            }
+        }
+    }
+
+    // Must be called while holding the sendQueueLock
+    private void scheduleSendThrottledEnvelopes(long now) {
+        if (!connectionScheduler.schedule(this::sendThrottledEnvelopes,
+                sendTokenBucket.getMillisUntilNextToken(now), TimeUnit.MILLISECONDS)) {
+            // Our node is shut down already, so nobody would send the queued envelopes
+            log.debug("Could not schedule sending of throttled envelopes. We discard {} envelopes.",
+                    throttledEnvelopes.size());
+            throttledEnvelopes.clear();
+        }
+    }
+
     // TODO: If msg is BundleOfEnvelopes we should check each individual message for capability and filter out those
     //  which fail.
     public boolean noCapabilityRequiredOrCapabilityIsSupported(Proto msg) {
@@ -423,9 +523,18 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         checkArgument(connection.equals(this));
 
         if (networkEnvelope instanceof BundleOfEnvelopes) {
-            for (NetworkEnvelope current : ((BundleOfEnvelopes) networkEnvelope).getEnvelopes()) {
-                UserThread.execute(() -> messageListeners.forEach(e -> e.onMessage(current, connection)));
-            }
+            // We deliver all envelopes of a bundle with one task on the user thread, so the changes they cause can be
+            // handled as one batch (e.g. by the listeners of the P2PDataStorage)
+            List<NetworkEnvelope> envelopes = ((BundleOfEnvelopes) networkEnvelope).getEnvelopes();
+            UserThread.execute(() -> envelopes.forEach(current -> {
+                try {
+                    messageListeners.forEach(e -> e.onMessage(current, connection));
+                } catch (Throwable t) {
+                    // A failing envelope must not prevent the delivery of the other envelopes of the bundle
+                    log.error("Exception at handling envelope {} of a bundle",
+                            current.getClass().getSimpleName(), t);
+                }
+            }));
         } else {
             UserThread.execute(() -> messageListeners.forEach(e -> e.onMessage(networkEnvelope, connection)));
         }
@@ -491,24 +600,28 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                     + "\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n");
 
             if (closeConnectionReason.sendCloseMessage) {
-                new Thread(() -> {
+                Runnable completeShutDown = () -> UserThread.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler));
+                boolean isScheduled = connectionScheduler.execute(() -> {
                     try {
                         String reason = closeConnectionReason == CloseConnectionReason.RULE_VIOLATION ?
                                 getRuleViolation().name() : closeConnectionReason.name();
                         sendMessage(new CloseConnectionMessage(reason));
-
-                        stopped = true;
-
-                        //noinspection UnstableApiUsage
-                        Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
                     } catch (Throwable t) {
                         log.error(t.getMessage());
                         t.printStackTrace();
                     } finally {
                         stopped = true;
-                        UserThread.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler));
+                        // We give the peer a bit of time to receive the CloseConnectionMessage. Instead of sleeping
+                        // we free the scheduler thread and complete the shutdown delayed.
+                        if (!connectionScheduler.schedule(completeShutDown, 200, TimeUnit.MILLISECONDS))
+                            completeShutDown.run();
                     }
-                }, "Connection:SendCloseConnectionMessage-" + this.uid).start();
+                });
+                if (!isScheduled) {
+                    // Our node is shut down already, so we cannot send the CloseConnectionMessage
+                    stopped = true;
+                    completeShutDown.run();
+                }
             } else {
                 stopped = true;
                 doShutDown(closeConnectionReason, shutDownCompleteHandler);
@@ -536,7 +649,8 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
             capabilitiesListeners.clear();
 
             try {
-                protoInputStream.close();
+                if (protoInputStream != null)
+                    protoInputStream.close();
             } catch (IOException e) {
                 log.error(e.getMessage());
                 e.printStackTrace();
@@ -544,8 +658,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
 
             //noinspection UnstableApiUsage
             MoreExecutors.shutdownAndAwaitTermination(singleThreadExecutor, 500, TimeUnit.MILLISECONDS);
-            //noinspection UnstableApiUsage
-            MoreExecutors.shutdownAndAwaitTermination(bundleSender, 500, TimeUnit.MILLISECONDS);
 
             log.debug("Connection shutdown complete {}", this.toString());
             // Use UserThread.execute as its not clear if that is called from a non-UserThread
@@ -687,6 +799,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     // (including throttling limits, validity and statistics)
     // and delivers it to the message listener given in the constructor.
     private InputStream protoInputStream;
+    private NetworkEnvelopeFrameReader frameReader;
     private final NetworkProtoResolver networkProtoResolver;
 
     private long lastReadTimeStamp;
@@ -719,167 +832,245 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         Thread.sleep(20);
                     }
 
-                    // Reading the protobuffer message from the inputStream
-                    protobuf.NetworkEnvelope proto = protobuf.NetworkEnvelope.parseDelimitedFrom(protoInputStream);
+                    // Reading the protobuffer message from the inputStream. Frames exceeding the size budget of
+                    // their message type are rejected before they get allocated.
+                    protobuf.NetworkEnvelope proto;
+                    try {
+                        proto = frameReader.readEnvelope();
+                    } catch (OversizedFrameException e) {
+                        if (!onFrameRejected(e.getFrameSize(), e.isSkipped()))
+                            return;
+                        continue;
+                    }
 
                     if (proto == null) {
-                        if (protoInputStream.read() == -1)
-                            log.debug("proto is null because protoInputStream.read()=-1 (EOF). That is expected if client got stopped without proper shutdown.");
-                        else
-                            log.warn("proto is null. protoInputStream.read()=" + protoInputStream.read());
+                        log.debug("proto is null because protoInputStream.read()=-1 (EOF). That is expected if client got stopped without proper shutdown.");
                         shutDown(CloseConnectionReason.NO_PROTO_BUFFER_ENV);
                         return;
                     }
 
-                    NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
-                    lastReadTimeStamp = now;
-                    log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
-                    int size = proto.getSerializedSize();
-                    // We comment out that part as only debug and trace log level is used. For debugging purposes
-                    // we leave the code though.
-                        /*if (networkEnvelope instanceof Pong || networkEnvelope instanceof RefreshOfferMessage) {
-                            // We only log Pong and RefreshOfferMsg when in dev environment (trace)
-                            log.trace("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
-                                            "New data arrived at inputHandler of connection {}.\n" +
-                                            "Received object (truncated)={} / size={}"
-                                            + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
-                                    connection,
-                                    Utilities.toTruncatedString(proto.toString()),
-                                    size);
-                        } else {
-                            // We want to log all incoming network_messages (except Pong and RefreshOfferMsg)
-                            // so we log before the data type checks
-                            //log.info("size={}; object={}", size, Utilities.toTruncatedString(rawInputObject.toString(), 100));
-                            log.debug("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
-                                            "New data arrived at inputHandler of connection {}.\n" +
-                                            "Received object (truncated)={} / size={}"
-                                            + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
-                                    connection,
-                                    Utilities.toTruncatedString(proto.toString()),
-                                    size);
-                        }*/
-
-                    // We want to track the size of each object even if it is invalid data
-                    statistic.addReceivedBytes(size);
-
-                    // We want to track the network_messages also before the checks, so do it early...
-                    statistic.addReceivedMessage(networkEnvelope);
-
-                    // First we check the size
-                    boolean exceeds;
-                    if (networkEnvelope instanceof ExtendedDataSizePermission) {
-                        exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
-                    } else {
-                        exceeds = size > PERMITTED_MESSAGE_SIZE;
-                    }
+                    if (!onProtoReceived(proto, now))
+                        return;
+                } catch (Throwable t) {
+                    handleInputException(t);
+                }
+            }
+        } catch (Throwable t) {
+            handleException(t);
+        }
+    }
 
-                    if (networkEnvelope instanceof AddPersistableNetworkPayloadMessage &&
-                            !((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().verifyHashSize()) {
-                        log.warn("PersistableNetworkPayload.verifyHashSize failed. hashSize={}; object={}",
-                                ((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().getHash().length,
-                                Utilities.toTruncatedString(proto));
-                        if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
-                            return;
-                    }
+    // Performs several checks on the received message (including throttling limits, validity and statistics)
+    // and delivers it to the message listeners. Returns false if no further messages should be read.
+    private boolean onProtoReceived(protobuf.NetworkEnvelope proto, long now) throws IOException {
+        NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
+        lastReadTimeStamp = now;
+        log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
+        int size = proto.getSerializedSize();
+        // We comment out that part as only debug and trace log level is used. For debugging purposes
+        // we leave the code though.
+            /*if (networkEnvelope instanceof Pong || networkEnvelope instanceof RefreshOfferMessage) {
+                // We only log Pong and RefreshOfferMsg when in dev environment (trace)
+                log.trace("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
+                                "New data arrived at inputHandler of connection {}.\n" +
+                                "Received object (truncated)={} / size={}"
+                                + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
+                        connection,
+                        Utilities.toTruncatedString(proto.toString()),
+                        size);
+            } else {
+                // We want to log all incoming network_messages (except Pong and RefreshOfferMsg)
+                // so we log before the data type checks
+                //log.info("size={}; object={}", size, Utilities.toTruncatedString(rawInputObject.toString(), 100));
+                log.debug("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
+                                "New data arrived at inputHandler of connection {}.\n" +
+                                "Received object (truncated)={} / size={}"
+                                + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
+                        connection,
+                        Utilities.toTruncatedString(proto.toString()),
+                        size);
+            }*/
+
+        // We want to track the size of each object even if it is invalid data
+        statistic.addReceivedBytes(size);
+
+        // We want to track the network_messages also before the checks, so do it early...
+        statistic.addReceivedMessage(networkEnvelope);
+
+        // First we check the size
+        boolean exceeds;
+        if (networkEnvelope instanceof ExtendedDataSizePermission) {
+            exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
+        } else {
+            exceeds = size > PERMITTED_MESSAGE_SIZE;
+        }
 
-                    if (exceeds) {
-                        log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
+        if (networkEnvelope instanceof AddPersistableNetworkPayloadMessage &&
+                !((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().verifyHashSize()) {
+            log.warn("PersistableNetworkPayload.verifyHashSize failed. hashSize={}; object={}",
+                    ((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().getHash().length,
+                    Utilities.toTruncatedString(proto));
+            if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
+                return false;
+        }
 
-                        if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
-                            return;
-                    }
+        if (exceeds) {
+            log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
 
-                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
-                        return;
+            if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
+                return false;
+        }
 
-                    // Check P2P network ID
-                    if (proto.getMessageVersion() != Version.getP2PMessageVersion()
-                            && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
-                        log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
-                                        "proto.toTruncatedString={}", proto.getMessageVersion(),
-                                Version.getP2PMessageVersion(),
-                                Utilities.toTruncatedString(proto.toString()));
-                        return;
-                    }
+        if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
+            return false;
 
-                    boolean causedShutDown = maybeHandleSupportedCapabilitiesMessage(networkEnvelope);
-                    if (causedShutDown) {
-                        return;
-                    }
+        // Check P2P network ID
+        if (proto.getMessageVersion() != Version.getP2PMessageVersion()
+                && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
+            log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
+                            "proto.toTruncatedString={}", proto.getMessageVersion(),
+                    Version.getP2PMessageVersion(),
+                    Utilities.toTruncatedString(proto.toString()));
+            return false;
+        }
 
-                    if (networkEnvelope instanceof CloseConnectionMessage) {
-                        // If we get a CloseConnectionMessage we shut down
-                        log.debug("CloseConnectionMessage received. Reason={}\n\t" +
-                                "connection={}", proto.getCloseConnectionMessage().getReason(), this);
-
-                        if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
-                            log.warn("We got shut down because we are banned by the other peer. (InputHandler.run CloseConnectionMessage)");
-                            shutDown(CloseConnectionReason.PEER_BANNED);
-                        } else {
-                            shutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
-                        }
-                        return;
-                    } else if (!stopped) {
-                        // We don't want to get the activity ts updated by ping/pong msg
-                        if (!(networkEnvelope instanceof KeepAliveMessage))
-                            statistic.updateLastActivityTimestamp();
-
-                        if (networkEnvelope instanceof GetDataRequest)
-                            setPeerType(PeerType.INITIAL_DATA_REQUEST);
-
-                        // First a seed node gets a message from a peer (PreliminaryDataRequest using
-                        // AnonymousMessage interface) which does not have its hidden service
-                        // published, so it does not know its address. As the IncomingConnection does not have the
-                        // peersNodeAddress set that connection cannot be used for outgoing network_messages until we
-                        // get the address set.
-                        // At the data update message (DataRequest using SendersNodeAddressMessage interface)
-                        // after the HS is published we get the peer's address set.
-
-                        // There are only those network_messages used for new connections to a peer:
-                        // 1. PreliminaryDataRequest
-                        // 2. DataRequest (implements SendersNodeAddressMessage)
-                        // 3. GetPeersRequest (implements SendersNodeAddressMessage)
-                        // 4. DirectMessage (implements SendersNodeAddressMessage)
-                        if (networkEnvelope instanceof SendersNodeAddressMessage) {
-                            NodeAddress senderNodeAddress = ((SendersNodeAddressMessage) networkEnvelope).getSenderNodeAddress();
-                            if (senderNodeAddress != null) {
-                                Optional<NodeAddress> peersNodeAddressOptional = getPeersNodeAddressOptional();
-                                if (peersNodeAddressOptional.isPresent()) {
-                                    // If we have already the peers address we check again if it matches our stored one
-                                    checkArgument(peersNodeAddressOptional.get().equals(senderNodeAddress),
-                                            "senderNodeAddress not matching connections peer address.\n\t" +
-                                                    "message=" + networkEnvelope);
-                                } else {
-                                    // We must not shut down a banned peer at that moment as it would trigger a connection termination
-                                    // and we could not send the CloseConnectionMessage.
-                                    // We check for a banned peer inside setPeersNodeAddress() and shut down if banned.
-                                    setPeersNodeAddress(senderNodeAddress);
-                                }
-                            }
-                        }
+        boolean causedShutDown = maybeHandleSupportedCapabilitiesMessage(networkEnvelope);
+        if (causedShutDown) {
+            return false;
+        }
 
-                        if (networkEnvelope instanceof PrefixedSealedAndSignedMessage)
-                            setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
+        if (networkEnvelope instanceof CloseConnectionMessage) {
+            // If we get a CloseConnectionMessage we shut down
+            log.debug("CloseConnectionMessage received. Reason={}\n\t" +
+                    "connection={}", proto.getCloseConnectionMessage().getReason(), this);
 
-                        onMessage(networkEnvelope, this);
+            if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
+                log.warn("We got shut down because we are banned by the other peer. (InputHandler.run CloseConnectionMessage)");
+                shutDown(CloseConnectionReason.PEER_BANNED);
+            } else {
+                shutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
+            }
+            return false;
+        } else if (!stopped) {
+            // We don't want to get the activity ts updated by ping/pong msg
+            if (!(networkEnvelope instanceof KeepAliveMessage))
+                statistic.updateLastActivityTimestamp();
+
+            if (networkEnvelope instanceof GetDataRequest)
+                setPeerType(PeerType.INITIAL_DATA_REQUEST);
+
+            // First a seed node gets a message from a peer (PreliminaryDataRequest using
+            // AnonymousMessage interface) which does not have its hidden service
+            // published, so it does not know its address. As the IncomingConnection does not have the
+            // peersNodeAddress set that connection cannot be used for outgoing network_messages until we
+            // get the address set.
+            // At the data update message (DataRequest using SendersNodeAddressMessage interface)
+            // after the HS is published we get the peer's address set.
+
+            // There are only those network_messages used for new connections to a peer:
+            // 1. PreliminaryDataRequest
+            // 2. DataRequest (implements SendersNodeAddressMessage)
+            // 3. GetPeersRequest (implements SendersNodeAddressMessage)
+            // 4. DirectMessage (implements SendersNodeAddressMessage)
+            if (networkEnvelope instanceof SendersNodeAddressMessage) {
+                NodeAddress senderNodeAddress = ((SendersNodeAddressMessage) networkEnvelope).getSenderNodeAddress();
+                if (senderNodeAddress != null) {
+                    Optional<NodeAddress> peersNodeAddressOptional = getPeersNodeAddressOptional();
+                    if (peersNodeAddressOptional.isPresent()) {
+                        // If we have already the peers address we check again if it matches our stored one
+                        checkArgument(peersNodeAddressOptional.get().equals(senderNodeAddress),
+                                "senderNodeAddress not matching connections peer address.\n\t" +
+                                        "message=" + networkEnvelope);
+                    } else {
+                        // We must not shut down a banned peer at that moment as it would trigger a connection termination
+                        // and we could not send the CloseConnectionMessage.
+                        // We check for a banned peer inside setPeersNodeAddress() and shut down if banned.
+                        setPeersNodeAddress(senderNodeAddress);
                     }
-                } catch (InvalidClassException e) {
-                    log.error(e.getMessage());
-                    e.printStackTrace();
-                    reportInvalidRequest(RuleViolation.INVALID_CLASS);
-                } catch (ProtobufferException | NoClassDefFoundError | InvalidProtocolBufferException e) {
-                    log.error(e.getMessage());
-                    e.printStackTrace();
-                    reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE);
-                } catch (Throwable t) {
-                    handleException(t);
                 }
             }
-        } catch (Throwable t) {
+
+            if (networkEnvelope instanceof PrefixedSealedAndSignedMessage)
+                setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
+
+            onMessage(networkEnvelope, this);
+        }
+
+        return true;
+    }
+
+    // Returns false if no further messages should be read.
+    private boolean onFrameRejected(int frameSize, boolean skipped) {
+        log.warn("Received frame exceeds size budget and got rejected without parsing. frameSize={}; skipped={}",
+                frameSize, skipped);
+        statistic.addRejectedBytes(frameSize);
+
+        if (!skipped) {
+            // The stream is not positioned at a frame start anymore, so we cannot continue
+            ruleViolation = RuleViolation.MAX_MSG_SIZE_EXCEEDED;
+            shutDown(CloseConnectionReason.RULE_VIOLATION);
+            return false;
+        }
+
+        return !reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED);
+    }
+
+    private void handleInputException(Throwable t) {
+        if (t instanceof InvalidClassException) {
+            log.error(t.getMessage());
+            t.printStackTrace();
+            reportInvalidRequest(RuleViolation.INVALID_CLASS);
+        } else if (t instanceof ProtobufferException ||
+                t instanceof NoClassDefFoundError ||
+                t instanceof InvalidProtocolBufferException) {
+            log.error(t.getMessage());
+            t.printStackTrace();
+            reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE);
+        } else {
             handleException(t);
         }
     }
 
+    // Used instead of the InputHandler thread if the connection is handled by a NioSelectorPool.
+    // All methods are called on the selector thread.
+    private class InputFrameHandler implements NioSelectorPool.ChannelHandler {
+        private boolean stoppedReading;
+
+        @Override
+        public void onFrameReceived(byte[] frame) {
+            if (stopped || stoppedReading)
+                return;
+
+            try {
+                protobuf.NetworkEnvelope proto = protobuf.NetworkEnvelope.parseFrom(frame);
+                stoppedReading = !onProtoReceived(proto, System.currentTimeMillis());
+            } catch (Throwable t) {
+                handleInputException(t);
+            }
+        }
+
+        @Override
+        public void onFrameRejected(int frameSize) {
+            if (stopped || stoppedReading)
+                return;
+
+            stoppedReading = !Connection.this.onFrameRejected(frameSize, true);
+        }
+
+        @Override
+        public void onEndOfStream() {
+            if (!stopped) {
+                log.debug("Channel reached end of stream. That is expected if client got stopped without proper shutdown.");
+                shutDown(CloseConnectionReason.NO_PROTO_BUFFER_ENV);
+            }
+        }
+
+        @Override
+        public void onChannelFailure(Throwable throwable) {
+            handleException(throwable);
+        }
+    }
+
     public boolean maybeHandleSupportedCapabilitiesMessage(NetworkEnvelope networkEnvelope) {
         if (!(networkEnvelope instanceof SupportedCapabilitiesMessage)) {
             return false;
@@ -0,0 +1,139 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.network;
+
+import bisq.common.util.Utilities;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Node-wide scheduler for the delayed work of all connections of a {@link NetworkNode}: flushing of bundled
+ * envelopes, throttled sends and the close connection handshake at shutdown. It replaces the executor and the
+ * thread we used to create per connection, so the number of threads does not grow with the number of peers.
+ *
+ * The queue depth and the latency of tasks (time between the planned and the actual start) are logged every
+ * minute and can be read by the getters.
+ */
+@Slf4j
+class ConnectionScheduler {
+    private static final int NUM_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final long LOG_INTERVAL_SEC = 60;
+
+    private final String name;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final AtomicLong numExecutedTasks = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    ConnectionScheduler(String name) {
+        this(name, NUM_THREADS);
+    }
+
+    ConnectionScheduler(String name, int numThreads) {
+        this.name = name;
+        executor = Utilities.getScheduledThreadPoolExecutor(name + "-%d", numThreads, numThreads, 60);
+        // Pending close connection handshakes should still complete if we get shut down
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+        executor.scheduleAtFixedRate(this::logMetrics, LOG_INTERVAL_SEC, LOG_INTERVAL_SEC, TimeUnit.SECONDS);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return False if the scheduler was shut down already and the task did not get accepted.
+     */
+    boolean execute(Runnable task) {
+        return schedule(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return False if the scheduler was shut down already and the task did not get accepted.
+     */
+    boolean schedule(Runnable task, long delay, TimeUnit timeUnit) {
+        if (executor.isShutdown())
+            return false;
+
+        long plannedStart = System.currentTimeMillis() + timeUnit.toMillis(delay);
+        try {
+            executor.schedule(() -> run(task, plannedStart), delay, timeUnit);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // We got shut down after the check above
+            return false;
+        }
+    }
+
+    void shutDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return Number of scheduled tasks which have not been started yet.
+     */
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    long getNumExecutedTasks() {
+        return numExecutedTasks.get();
+    }
+
+    long getAverageLatency() {
+        long numTasks = numExecutedTasks.get();
+        return numTasks > 0 ? totalLatency.get() / numTasks : 0;
+    }
+
+    long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void run(Runnable task, long plannedStart) {
+        long latency = Math.max(0, System.currentTimeMillis() - plannedStart);
+        numExecutedTasks.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.error("Executing task at {} failed. {}", name, t.toString());
+        }
+    }
+
+    private void logMetrics() {
+        log.info("{}: queue depth={}, executed tasks={}, average latency={} ms, max. latency={} ms",
+                name, getQueueDepth(), getNumExecutedTasks(), getAverageLatency(), getMaxLatency());
+    }
+}
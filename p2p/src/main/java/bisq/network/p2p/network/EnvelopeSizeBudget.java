@@ -0,0 +1,93 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Decides how large a received frame may be before we allocate memory for it. As the message type is only known
+ * after parsing, we peek into the first bytes of the frame to read the tag of the message field of the
+ * NetworkEnvelope. Messages implementing {@link bisq.network.p2p.ExtendedDataSizePermission} get the larger
+ * budget, all others the normal one.
+ *
+ * The size checks after parsing in {@link Connection} are still applied, so a peer sending a misleading header can
+ * not get around the limits.
+ */
+final class EnvelopeSizeBudget {
+    // Enough for the tag and varint of the message_version field and the tag of the message field
+    static final int PEEK_SIZE = 16;
+
+    // Message types implementing ExtendedDataSizePermission. Some of those are defined in core, so we cannot use the
+    // Java classes here.
+    private static final Set<protobuf.NetworkEnvelope.MessageCase> EXTENDED_SIZE_MESSAGE_CASES = EnumSet.of(
+            protobuf.NetworkEnvelope.MessageCase.PRELIMINARY_GET_DATA_REQUEST,
+            protobuf.NetworkEnvelope.MessageCase.GET_DATA_RESPONSE,
+            protobuf.NetworkEnvelope.MessageCase.GET_UPDATED_DATA_REQUEST,
+            protobuf.NetworkEnvelope.MessageCase.GET_BLOCKS_RESPONSE,
+            protobuf.NetworkEnvelope.MessageCase.GET_DAO_STATE_HASHES_RESPONSE,
+            protobuf.NetworkEnvelope.MessageCase.GET_PROPOSAL_STATE_HASHES_RESPONSE,
+            protobuf.NetworkEnvelope.MessageCase.GET_BLIND_VOTE_STATE_HASHES_RESPONSE,
+            protobuf.NetworkEnvelope.MessageCase.BUNDLE_OF_ENVELOPES);
+
+    private EnvelopeSizeBudget() {
+    }
+
+    static boolean requiresPeek(int frameSize) {
+        return frameSize > Connection.PERMITTED_MESSAGE_SIZE;
+    }
+
+    static boolean exceedsMaxSize(int frameSize) {
+        return frameSize > Connection.MAX_PERMITTED_MESSAGE_SIZE;
+    }
+
+    static boolean isPermitted(int frameSize, protobuf.NetworkEnvelope.MessageCase messageCase) {
+        if (exceedsMaxSize(frameSize))
+            return false;
+
+        return !requiresPeek(frameSize) || EXTENDED_SIZE_MESSAGE_CASES.contains(messageCase);
+    }
+
+    /**
+     * @param header First bytes of a serialized NetworkEnvelope
+     * @return The message case or MESSAGE_NOT_SET if it cannot be derived from the header
+     */
+    static protobuf.NetworkEnvelope.MessageCase peekMessageCase(byte[] header, int length) {
+        try {
+            CodedInputStream codedInputStream = CodedInputStream.newInstance(header, 0, length);
+            int tag;
+            while ((tag = codedInputStream.readTag()) != 0) {
+                int fieldNumber = WireFormat.getTagFieldNumber(tag);
+                if (fieldNumber == protobuf.NetworkEnvelope.MESSAGE_VERSION_FIELD_NUMBER) {
+                    codedInputStream.skipField(tag);
+                } else {
+                    protobuf.NetworkEnvelope.MessageCase messageCase = protobuf.NetworkEnvelope.MessageCase.forNumber(fieldNumber);
+                    return messageCase != null ? messageCase : protobuf.NetworkEnvelope.MessageCase.MESSAGE_NOT_SET;
+                }
+            }
+        } catch (IOException ignore) {
+            // Header is truncated or malformed
+        }
+        return protobuf.NetworkEnvelope.MessageCase.MESSAGE_NOT_SET;
+    }
+}
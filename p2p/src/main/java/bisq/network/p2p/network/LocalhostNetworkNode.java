@@ -22,6 +22,10 @@ import bisq.network.p2p.NodeAddress;
 import bisq.common.UserThread;
 import bisq.common.proto.network.NetworkProtoResolver;
 
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 
@@ -54,8 +58,17 @@ public class LocalhostNetworkNode extends NetworkNode {
     // Constructor
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private final int nioSelectorThreads;
+
     public LocalhostNetworkNode(int port, NetworkProtoResolver networkProtoResolver) {
+        this(port, networkProtoResolver, 0);
+    }
+
+    // If nioSelectorThreads > 0 all connections are handled by a NioSelectorPool with that number of threads
+    // instead of using one InputHandler thread per connection.
+    public LocalhostNetworkNode(int port, NetworkProtoResolver networkProtoResolver, int nioSelectorThreads) {
         super(port, networkProtoResolver);
+        this.nioSelectorThreads = nioSelectorThreads;
     }
 
     @Override
@@ -64,6 +77,7 @@ public class LocalhostNetworkNode extends NetworkNode {
             addSetupListener(setupListener);
 
         createExecutorService();
+        maybeCreateNioSelectorPool();
 
         // simulate tor connection delay
         UserThread.runAfter(() -> {
@@ -74,7 +88,7 @@ public class LocalhostNetworkNode extends NetworkNode {
             // simulate tor HS publishing delay
             UserThread.runAfter(() -> {
                 try {
-                    startServer(new ServerSocket(servicePort));
+                    startServer(createServerSocket());
                 } catch (IOException e) {
                     e.printStackTrace();
                     log.error("Exception at startServer: " + e.getMessage());
@@ -87,6 +101,33 @@ public class LocalhostNetworkNode extends NetworkNode {
     // Called from NetworkNode thread
     @Override
     protected Socket createSocket(NodeAddress peerNodeAddress) throws IOException {
+        if (nioSelectorPool != null) {
+            // We connect in blocking mode, the selector pool switches to non-blocking mode at registration
+            return SocketChannel.open(new InetSocketAddress(peerNodeAddress.getHostName(), peerNodeAddress.getPort()))
+                    .socket();
+        }
         return new Socket(peerNodeAddress.getHostName(), peerNodeAddress.getPort());
     }
+
+    private ServerSocket createServerSocket() throws IOException {
+        if (nioSelectorPool != null) {
+            // The server accepts in blocking mode on its own thread, the accepted channels are passed to the pool
+            ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.bind(new InetSocketAddress(servicePort));
+            return serverSocketChannel.socket();
+        }
+        return new ServerSocket(servicePort);
+    }
+
+    private void maybeCreateNioSelectorPool() {
+        if (nioSelectorThreads > 0 && nioSelectorPool == null) {
+            try {
+                nioSelectorPool = new NioSelectorPool("NioSelector-" + servicePort,
+                        nioSelectorThreads,
+                        Connection.SOCKET_TIMEOUT);
+            } catch (IOException e) {
+                log.error("Could not create NioSelectorPool, we use blocking I/O instead. " + e.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Replacement for protobuf.NetworkEnvelope.parseDelimitedFrom which reads the varint length prefix first and checks
+ * it against the {@link EnvelopeSizeBudget} of the message type before the frame gets allocated and parsed.
+ */
+@NotThreadSafe
+class NetworkEnvelopeFrameReader {
+    private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    private final InputStream inputStream;
+    private final byte[] header = new byte[EnvelopeSizeBudget.PEEK_SIZE];
+    private byte[] skipBuffer;
+
+    NetworkEnvelopeFrameReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * @return The next envelope or null if the stream ended before a new frame started
+     * @throws OversizedFrameException if the frame exceeds the size budget of its message type
+     */
+    @Nullable
+    protobuf.NetworkEnvelope readEnvelope() throws IOException {
+        int firstByte = inputStream.read();
+        if (firstByte == -1)
+            return null;
+
+        int frameSize = CodedInputStream.readRawVarint32(firstByte, inputStream);
+        if (frameSize < 0)
+            throw new InvalidProtocolBufferException("Negative frame size " + frameSize);
+
+        if (EnvelopeSizeBudget.exceedsMaxSize(frameSize)) {
+            // We do not consume such a frame, the connection has to be closed
+            throw new OversizedFrameException(frameSize, false, protobuf.NetworkEnvelope.MessageCase.MESSAGE_NOT_SET);
+        }
+
+        int headerSize = 0;
+        if (EnvelopeSizeBudget.requiresPeek(frameSize)) {
+            headerSize = header.length;
+            readFully(header, 0, headerSize);
+            protobuf.NetworkEnvelope.MessageCase messageCase = EnvelopeSizeBudget.peekMessageCase(header, headerSize);
+            if (!EnvelopeSizeBudget.isPermitted(frameSize, messageCase)) {
+                skip(frameSize - headerSize);
+                throw new OversizedFrameException(frameSize, true, messageCase);
+            }
+        }
+
+        byte[] frame = new byte[frameSize];
+        System.arraycopy(header, 0, frame, 0, headerSize);
+        readFully(frame, headerSize, frameSize - headerSize);
+        return protobuf.NetworkEnvelope.parseFrom(frame);
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int numBytes = inputStream.read(buffer, offset, length);
+            if (numBytes == -1)
+                throw new EOFException("Stream ended within a frame");
+
+            offset += numBytes;
+            length -= numBytes;
+        }
+    }
+
+    // We read into a small buffer instead of using InputStream.skip as socket streams might not support skipping
+    private void skip(int length) throws IOException {
+        if (skipBuffer == null)
+            skipBuffer = new byte[SKIP_BUFFER_SIZE];
+
+        while (length > 0) {
+            int numBytes = inputStream.read(skipBuffer, 0, Math.min(length, skipBuffer.length));
+            if (numBytes == -1)
+                throw new EOFException("Stream ended within a skipped frame");
+
+            length -= numBytes;
+        }
+    }
+}
@@ -75,6 +75,12 @@ public abstract class NetworkNode implements MessageListener {
     private final CopyOnWriteArraySet<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
     final CopyOnWriteArraySet<SetupListener> setupListeners = new CopyOnWriteArraySet<>();
     ListeningExecutorService executorService;
+    // Runs the delayed work (bundle flushes, throttled sends, close handshakes) of all our connections
+    private final ConnectionScheduler connectionScheduler;
+    // Optional non-blocking I/O engine used instead of the InputHandler thread per connection. Set by subclasses
+    // which create sockets backed by channels.
+    @Nullable
+    NioSelectorPool nioSelectorPool;
     private Server server;
 
     private volatile boolean shutDownInProgress;
@@ -90,6 +96,7 @@ public abstract class NetworkNode implements MessageListener {
     NetworkNode(int servicePort, NetworkProtoResolver networkProtoResolver) {
         this.servicePort = servicePort;
         this.networkProtoResolver = networkProtoResolver;
+        connectionScheduler = new ConnectionScheduler("ConnectionScheduler-" + servicePort);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -190,7 +197,9 @@ public abstract class NetworkNode implements MessageListener {
                                 NetworkNode.this,
                                 connectionListener,
                                 peersNodeAddress,
-                                networkProtoResolver);
+                                networkProtoResolver,
+                                connectionScheduler,
+                                nioSelectorPool);
 
                         if (log.isDebugEnabled()) {
                             log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
@@ -334,6 +343,7 @@ public abstract class NetworkNode implements MessageListener {
 
             if (numConnections == 0) {
                 log.info("Shutdown immediately because no connections are open.");
+                shutDownConnectionResources();
                 if (shutDownCompleteHandler != null) {
                     shutDownCompleteHandler.run();
                 }
@@ -344,6 +354,7 @@ public abstract class NetworkNode implements MessageListener {
 
             AtomicInteger shutdownCompleted = new AtomicInteger();
             Timer timeoutHandler = UserThread.runAfter(() -> {
+                shutDownConnectionResources();
                 if (shutDownCompleteHandler != null) {
                     log.info("Shutdown completed due timeout");
                     shutDownCompleteHandler.run();
@@ -357,6 +368,7 @@ public abstract class NetworkNode implements MessageListener {
                         if (shutdownCompleted.get() == numConnections) {
                             log.info("Shutdown completed with all connections closed");
                             timeoutHandler.stop();
+                            shutDownConnectionResources();
                             if (shutDownCompleteHandler != null) {
                                 shutDownCompleteHandler.run();
                             }
@@ -365,6 +377,15 @@ public abstract class NetworkNode implements MessageListener {
         }
     }
 
+    private void shutDownConnectionResources() {
+        // Already scheduled close handshakes still get completed
+        connectionScheduler.shutDown();
+        if (nioSelectorPool != null) {
+            nioSelectorPool.shutDown();
+            nioSelectorPool = null;
+        }
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // SetupListener
@@ -457,7 +478,9 @@ public abstract class NetworkNode implements MessageListener {
         server = new Server(serverSocket,
                 NetworkNode.this,
                 connectionListener,
-                networkProtoResolver);
+                networkProtoResolver,
+                connectionScheduler,
+                nioSelectorPool);
         executorService.submit(server);
     }
 
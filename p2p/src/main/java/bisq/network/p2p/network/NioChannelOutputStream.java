@@ -0,0 +1,65 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import java.nio.ByteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Collects the bytes written for one envelope and hands them over as a single buffer to the write queue of the
+ * channel when flushed. Writing never blocks.
+ */
+@NotThreadSafe
+class NioChannelOutputStream extends OutputStream {
+    private final NioSelectorPool.NioChannel nioChannel;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    NioChannelOutputStream(NioSelectorPool.NioChannel nioChannel) {
+        this.nioChannel = nioChannel;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        buffer.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer.size() > 0) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer.toByteArray());
+            buffer.reset();
+            nioChannel.write(byteBuffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.reset();
+        nioChannel.close();
+    }
+}
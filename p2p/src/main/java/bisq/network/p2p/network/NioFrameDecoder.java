@@ -0,0 +1,134 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Incrementally decodes length-delimited frames as written by
+ * {@link com.google.protobuf.MessageLite#writeDelimitedTo(java.io.OutputStream)}: a base 128 varint holding the
+ * length followed by that many bytes. Data can be fed in arbitrary chunks as it arrives from a non-blocking channel;
+ * a frame is only handed out once it is complete.
+ *
+ * The length is checked against the {@link EnvelopeSizeBudget} before the frame gets allocated. Frames exceeding
+ * the budget of their message type are skipped, frames exceeding the max. size cause an exception.
+ */
+@NotThreadSafe
+class NioFrameDecoder {
+    interface FrameHandler {
+        void onFrameReceived(byte[] frame);
+
+        void onFrameRejected(int frameSize);
+    }
+
+    // State of the varint length prefix
+    private int length;
+    private int shift;
+    private boolean lengthComplete;
+
+    // Start of a frame we need to peek into to find out its message type
+    private final byte[] header = new byte[EnvelopeSizeBudget.PEEK_SIZE];
+    private int headerPosition;
+
+    // Body of the frame currently being read
+    private byte[] frame;
+    private int position;
+
+    // Remaining bytes of a rejected frame
+    private int bytesToSkip;
+
+    /**
+     * Consumes all remaining bytes of the buffer and calls the frameHandler for each completed or rejected frame.
+     *
+     * @throws InvalidProtocolBufferException if the length prefix is malformed or exceeds the max. size
+     */
+    void decode(ByteBuffer buffer, FrameHandler frameHandler) throws InvalidProtocolBufferException {
+        while (buffer.hasRemaining()) {
+            if (bytesToSkip > 0) {
+                int numBytes = Math.min(buffer.remaining(), bytesToSkip);
+                buffer.position(buffer.position() + numBytes);
+                bytesToSkip -= numBytes;
+                continue;
+            }
+
+            if (!lengthComplete) {
+                byte b = buffer.get();
+                length |= (b & 0x7F) << shift;
+                if ((b & 0x80) != 0) {
+                    shift += 7;
+                    if (shift >= 32)
+                        throw new InvalidProtocolBufferException("Malformed varint length prefix");
+                    continue;
+                }
+
+                if (length < 0 || EnvelopeSizeBudget.exceedsMaxSize(length))
+                    throw new InvalidProtocolBufferException("Frame size " + length + " exceeds max. frame size");
+
+                lengthComplete = true;
+                if (!EnvelopeSizeBudget.requiresPeek(length)) {
+                    frame = new byte[length];
+                    position = 0;
+                }
+            }
+
+            if (frame == null) {
+                int numBytes = Math.min(buffer.remaining(), header.length - headerPosition);
+                buffer.get(header, headerPosition, numBytes);
+                headerPosition += numBytes;
+                if (headerPosition < header.length)
+                    continue;
+
+                protobuf.NetworkEnvelope.MessageCase messageCase = EnvelopeSizeBudget.peekMessageCase(header, header.length);
+                if (!EnvelopeSizeBudget.isPermitted(length, messageCase)) {
+                    int frameSize = length;
+                    reset();
+                    bytesToSkip = frameSize - header.length;
+                    frameHandler.onFrameRejected(frameSize);
+                    continue;
+                }
+
+                frame = new byte[length];
+                System.arraycopy(header, 0, frame, 0, header.length);
+                position = header.length;
+            }
+
+            int numBytes = Math.min(buffer.remaining(), frame.length - position);
+            buffer.get(frame, position, numBytes);
+            position += numBytes;
+
+            if (position == frame.length) {
+                byte[] completed = frame;
+                reset();
+                frameHandler.onFrameReceived(completed);
+            }
+        }
+    }
+
+    private void reset() {
+        length = 0;
+        shift = 0;
+        lengthComplete = false;
+        headerPosition = 0;
+        frame = null;
+        position = 0;
+    }
+}
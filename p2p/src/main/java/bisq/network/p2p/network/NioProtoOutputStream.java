@@ -0,0 +1,45 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import bisq.common.proto.network.NetworkEnvelope;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Used instead of the {@link SynchronizedProtoOutputStream} for connections handled by the {@link NioSelectorPool}.
+ * As writes only enqueue the serialized envelope we do not need a dedicated write thread, synchronizing is enough to
+ * not interleave the bytes of concurrently written envelopes.
+ */
+@ThreadSafe
+class NioProtoOutputStream extends ProtoOutputStream {
+
+    NioProtoOutputStream(NioChannelOutputStream delegate, Statistic statistic) {
+        super(delegate, statistic);
+    }
+
+    @Override
+    synchronized void writeEnvelope(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) {
+        super.writeEnvelope(envelope, proto);
+    }
+
+    @Override
+    synchronized void onConnectionShutdown() {
+        super.onConnectionShutdown();
+    }
+}
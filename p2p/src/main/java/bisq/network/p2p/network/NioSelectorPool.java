@@ -0,0 +1,360 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.net.SocketTimeoutException;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-blocking alternative to the thread-per-connection InputHandler of {@link Connection}. All registered
+ * channels are multiplexed over a small, fixed number of selector threads. Incoming bytes are framed incrementally
+ * by a {@link NioFrameDecoder} and completed frames are handed to the {@link ChannelHandler} of the channel on the
+ * selector thread. Outgoing data is queued per channel and written whenever the channel is writable. If a peer does
+ * not read the data we send, the queue would grow without limit. So we fail the channel if more than
+ * {@link #MAX_QUEUED_BYTES} are queued, as a blocking write would time out.
+ *
+ * Only plain TCP sockets are supported, so it can be used by the {@link LocalhostNetworkNode} but not by the
+ * {@link TorNetworkNode} as the SOCKS sockets used for Tor do not expose a channel.
+ */
+@Slf4j
+class NioSelectorPool {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long SELECT_TIMEOUT = 1000;
+    // Several envelopes of the max. permitted size. A single envelope is always accepted if nothing is queued.
+    static final long MAX_QUEUED_BYTES = 4L * Connection.MAX_PERMITTED_MESSAGE_SIZE;
+
+    interface ChannelHandler extends NioFrameDecoder.FrameHandler {
+        // All methods are called on the selector thread the channel is assigned to.
+
+        void onEndOfStream();
+
+        void onChannelFailure(Throwable throwable);
+    }
+
+    private final SelectorLoop[] selectorLoops;
+    private final AtomicInteger nextSelectorLoop = new AtomicInteger();
+    private final long idleTimeout;
+    private final long maxQueuedBytes;
+    private volatile boolean stopped;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    NioSelectorPool(String name, int numThreads, long idleTimeout) throws IOException {
+        this(name, numThreads, idleTimeout, MAX_QUEUED_BYTES);
+    }
+
+    NioSelectorPool(String name, int numThreads, long idleTimeout, long maxQueuedBytes) throws IOException {
+        this.idleTimeout = idleTimeout;
+        this.maxQueuedBytes = maxQueuedBytes;
+
+        selectorLoops = new SelectorLoop[Math.max(1, numThreads)];
+        for (int i = 0; i < selectorLoops.length; i++) {
+            selectorLoops[i] = new SelectorLoop(Selector.open());
+            Thread thread = new Thread(selectorLoops[i], name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        log.info("Started NioSelectorPool {} with {} selector threads", name, selectorLoops.length);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Switches the connected socketChannel to non-blocking mode and assigns it to one of the selector threads.
+     * After that call the blocking streams of the channel's socket must not be used anymore.
+     *
+     * @return The output stream used for writing to the channel. Bytes are queued at flush.
+     */
+    NioChannelOutputStream register(SocketChannel socketChannel, ChannelHandler handler) throws IOException {
+        if (stopped)
+            throw new ClosedChannelException();
+
+        socketChannel.configureBlocking(false);
+        SelectorLoop selectorLoop = selectorLoops[Math.floorMod(nextSelectorLoop.getAndIncrement(), selectorLoops.length)];
+        NioChannel nioChannel = new NioChannel(socketChannel, handler, selectorLoop, new NioFrameDecoder(),
+                maxQueuedBytes);
+        selectorLoop.register(nioChannel);
+        return new NioChannelOutputStream(nioChannel);
+    }
+
+    void shutDown() {
+        if (!stopped) {
+            stopped = true;
+            for (SelectorLoop selectorLoop : selectorLoops) {
+                selectorLoop.shutDown();
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // NioChannel
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static class NioChannel {
+        private final SocketChannel socketChannel;
+        private final ChannelHandler handler;
+        private final SelectorLoop selectorLoop;
+        private final NioFrameDecoder decoder;
+        private final long maxQueuedBytes;
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong numQueuedBytes = new AtomicLong();
+        private volatile boolean writeQueueOverflow;
+        private volatile long lastActivityTimestamp = System.currentTimeMillis();
+        private SelectionKey selectionKey;
+
+        private NioChannel(SocketChannel socketChannel,
+                           ChannelHandler handler,
+                           SelectorLoop selectorLoop,
+                           NioFrameDecoder decoder,
+                           long maxQueuedBytes) {
+            this.socketChannel = socketChannel;
+            this.handler = handler;
+            this.selectorLoop = selectorLoop;
+            this.decoder = decoder;
+            this.maxQueuedBytes = maxQueuedBytes;
+        }
+
+        // Called from any thread
+        void write(ByteBuffer byteBuffer) throws IOException {
+            if (!socketChannel.isOpen())
+                throw new ClosedChannelException();
+
+            if (writeQueueOverflow)
+                return;
+
+            // We count the bytes from the position on, a slice starts at 0
+            ByteBuffer slice = byteBuffer.slice();
+            int numBytes = slice.remaining();
+            long numQueued = numQueuedBytes.addAndGet(numBytes);
+            if (numQueued > maxQueuedBytes && numQueued > numBytes) {
+                // The peer does not read the data we send. We drop the data and let the selector thread fail the
+                // channel.
+                numQueuedBytes.addAndGet(-numBytes);
+                writeQueueOverflow = true;
+            } else {
+                writeQueue.add(slice);
+            }
+            selectorLoop.requestWrite(this);
+        }
+
+        void close() throws IOException {
+            writeQueue.clear();
+            numQueuedBytes.set(0);
+            socketChannel.close();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // SelectorLoop
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<NioChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<NioChannel> pendingWrites = new ConcurrentLinkedQueue<>();
+        // Only accessed from the selector thread
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(NioChannel nioChannel) {
+            pendingRegistrations.add(nioChannel);
+            selector.wakeup();
+        }
+
+        void requestWrite(NioChannel nioChannel) {
+            pendingWrites.add(nioChannel);
+            selector.wakeup();
+        }
+
+        void shutDown() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    selector.select(SELECT_TIMEOUT);
+
+                    processPendingRegistrations();
+                    processPendingWrites();
+
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        NioChannel nioChannel = (NioChannel) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable())
+                                read(nioChannel);
+
+                            if (key.isValid() && key.isWritable())
+                                flush(nioChannel);
+                        } catch (CancelledKeyException ignore) {
+                            // Channel got closed by the connection in the meantime
+                        }
+                    }
+
+                    maybeCloseIdleChannels();
+                } catch (Throwable t) {
+                    if (!stopped) {
+                        log.error("Error at selector loop", t);
+                    }
+                }
+            }
+
+            selector.keys().forEach(key -> {
+                try {
+                    key.channel().close();
+                } catch (IOException ignore) {
+                }
+            });
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Exception at closing selector. " + e.getMessage());
+            }
+        }
+
+        private void processPendingRegistrations() {
+            NioChannel nioChannel;
+            while ((nioChannel = pendingRegistrations.poll()) != null) {
+                try {
+                    nioChannel.selectionKey = nioChannel.socketChannel.register(selector, SelectionKey.OP_READ, nioChannel);
+                    // Data might have been queued before the channel got registered
+                    if (!nioChannel.writeQueue.isEmpty() || nioChannel.writeQueueOverflow)
+                        flush(nioChannel);
+                } catch (Throwable t) {
+                    nioChannel.handler.onChannelFailure(t);
+                }
+            }
+        }
+
+        private void processPendingWrites() {
+            NioChannel nioChannel;
+            while ((nioChannel = pendingWrites.poll()) != null) {
+                // Not registered yet, will be flushed at registration
+                if (nioChannel.selectionKey != null && nioChannel.selectionKey.isValid())
+                    flush(nioChannel);
+            }
+        }
+
+        private void read(NioChannel nioChannel) {
+            try {
+                readBuffer.clear();
+                int numBytes = nioChannel.socketChannel.read(readBuffer);
+                if (numBytes == -1) {
+                    nioChannel.selectionKey.cancel();
+                    nioChannel.handler.onEndOfStream();
+                    return;
+                }
+
+                nioChannel.lastActivityTimestamp = System.currentTimeMillis();
+                readBuffer.flip();
+                nioChannel.decoder.decode(readBuffer, nioChannel.handler);
+            } catch (Throwable t) {
+                nioChannel.selectionKey.cancel();
+                nioChannel.handler.onChannelFailure(t);
+            }
+        }
+
+        private void flush(NioChannel nioChannel) {
+            if (nioChannel.writeQueueOverflow) {
+                failOnWriteQueueOverflow(nioChannel);
+                return;
+            }
+
+            try {
+                ByteBuffer byteBuffer;
+                while ((byteBuffer = nioChannel.writeQueue.peek()) != null) {
+                    nioChannel.socketChannel.write(byteBuffer);
+                    if (byteBuffer.hasRemaining()) {
+                        // Socket send buffer is full, we continue when the channel becomes writable again
+                        break;
+                    }
+                    nioChannel.writeQueue.poll();
+                    nioChannel.numQueuedBytes.addAndGet(-byteBuffer.limit());
+                }
+
+                int interestOps = nioChannel.writeQueue.isEmpty() ?
+                        SelectionKey.OP_READ :
+                        SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+                nioChannel.selectionKey.interestOps(interestOps);
+            } catch (CancelledKeyException ignore) {
+                // Channel got closed by the connection in the meantime
+            } catch (Throwable t) {
+                nioChannel.selectionKey.cancel();
+                nioChannel.handler.onChannelFailure(t);
+            }
+        }
+
+        private void failOnWriteQueueOverflow(NioChannel nioChannel) {
+            if (nioChannel.selectionKey != null)
+                nioChannel.selectionKey.cancel();
+            nioChannel.writeQueue.clear();
+            nioChannel.handler.onChannelFailure(new SocketTimeoutException("Peer does not read the data we send. " +
+                    "More than " + nioChannel.maxQueuedBytes + " bytes are queued"));
+        }
+
+        // Replaces the socket timeout we use with blocking sockets
+        private void maybeCloseIdleChannels() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < SELECT_TIMEOUT)
+                return;
+
+            lastIdleCheck = now;
+            new ArrayList<>(selector.keys()).forEach(key -> {
+                NioChannel nioChannel = (NioChannel) key.attachment();
+                if (key.isValid() && now - nioChannel.lastActivityTimestamp > idleTimeout) {
+                    key.cancel();
+                    nioChannel.handler.onChannelFailure(new SocketTimeoutException("No data received for " +
+                            idleTimeout + " ms"));
+                }
+            });
+        }
+    }
+}
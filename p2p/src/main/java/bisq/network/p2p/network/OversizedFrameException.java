@@ -0,0 +1,41 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import java.io.IOException;
+
+import lombok.Getter;
+
+/**
+ * Thrown if the length prefix of a received frame exceeds the size budget of its message type. The frame was not
+ * materialized. If it was skipped the stream is positioned at the next frame, otherwise the connection has to be
+ * closed.
+ */
+@Getter
+class OversizedFrameException extends IOException {
+    private final int frameSize;
+    private final boolean skipped;
+    private final protobuf.NetworkEnvelope.MessageCase messageCase;
+
+    OversizedFrameException(int frameSize, boolean skipped, protobuf.NetworkEnvelope.MessageCase messageCase) {
+        super("Frame of size " + frameSize + " with message type " + messageCase + " exceeds size budget");
+        this.frameSize = frameSize;
+        this.skipped = skipped;
+        this.messageCase = messageCase;
+    }
+}
@@ -24,6 +24,8 @@ import bisq.common.proto.network.NetworkEnvelope;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,14 +44,31 @@ class ProtoOutputStream {
     }
 
     void writeEnvelope(NetworkEnvelope envelope) {
+        writeEnvelope(envelope, envelope.toProtoNetworkEnvelope());
+    }
+
+    // Callers which have built the proto already (e.g. for a size check) pass it in to avoid building it again
+    void writeEnvelope(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) {
         try {
-            writeEnvelopeOrThrow(envelope);
+            writeEnvelopeOrThrow(envelope, proto);
         } catch (IOException e) {
             log.error("Failed to write envelope", e);
             throw new BisqRuntimeException("Failed to write envelope", e);
         }
     }
 
+    // Writes without waiting for the write to complete if the stream has its own write thread. The errorHandler is
+    // called on the thread doing the write.
+    void writeEnvelopeAsync(NetworkEnvelope envelope,
+                            protobuf.NetworkEnvelope proto,
+                            Consumer<Throwable> errorHandler) {
+        try {
+            writeEnvelope(envelope, proto);
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+        }
+    }
+
     void onConnectionShutdown() {
         try {
             delegate.close();
@@ -58,8 +77,7 @@ class ProtoOutputStream {
         }
     }
 
-    private void writeEnvelopeOrThrow(NetworkEnvelope envelope) throws IOException {
-        protobuf.NetworkEnvelope proto = envelope.toProtoNetworkEnvelope();
+    private void writeEnvelopeOrThrow(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) throws IOException {
         proto.writeDelimitedTo(delegate);
         delegate.flush();
 
@@ -31,6 +31,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.jetbrains.annotations.Nullable;
+
 // Runs in UserThread
 class Server implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(Server.class);
@@ -43,13 +45,22 @@ class Server implements Runnable {
     private final Set<Connection> connections = new CopyOnWriteArraySet<>();
     private volatile boolean stopped;
     private final NetworkProtoResolver networkProtoResolver;
+    private final ConnectionScheduler connectionScheduler;
+    @Nullable
+    private final NioSelectorPool nioSelectorPool;
 
 
+    // If a nioSelectorPool is passed and the serverSocket is backed by a ServerSocketChannel the accepted sockets
+    // are handled by the selector pool instead of a dedicated InputHandler thread.
     public Server(ServerSocket serverSocket,
                   MessageListener messageListener,
                   ConnectionListener connectionListener,
-                  NetworkProtoResolver networkProtoResolver) {
+                  NetworkProtoResolver networkProtoResolver,
+                  ConnectionScheduler connectionScheduler,
+                  @Nullable NioSelectorPool nioSelectorPool) {
         this.networkProtoResolver = networkProtoResolver;
+        this.connectionScheduler = connectionScheduler;
+        this.nioSelectorPool = nioSelectorPool;
         this.serverSocket = serverSocket;
         this.messageListener = messageListener;
         this.connectionListener = connectionListener;
@@ -69,7 +80,9 @@ class Server implements Runnable {
                         InboundConnection connection = new InboundConnection(socket,
                                 messageListener,
                                 connectionListener,
-                                networkProtoResolver);
+                                networkProtoResolver,
+                                connectionScheduler,
+                                nioSelectorPool);
 
                         log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
                                 "Server created new inbound connection:"
@@ -50,6 +50,8 @@ public class Statistic {
     private final static DoubleProperty totalSentBytesPerSec = new SimpleDoubleProperty(0);
     private final static LongProperty totalReceivedBytes = new SimpleLongProperty(0);
     private final static DoubleProperty totalReceivedBytesPerSec = new SimpleDoubleProperty(0);
+    // Bytes of received frames which got rejected before parsing because they exceeded the size budget
+    private final static LongProperty totalRejectedBytes = new SimpleLongProperty(0);
     private final static Map<String, Integer> totalReceivedMessages = new ConcurrentHashMap<>();
     private final static Map<String, Integer> totalSentMessages = new ConcurrentHashMap<>();
     private final static LongProperty numTotalSentMessages = new SimpleLongProperty(0);
@@ -78,13 +80,15 @@ public class Statistic {
                             "Number of sent messages per sec: {};\n" +
                             "Bytes received: {} kb\n" +
                             "Number of received messages/Received messages: {} / {};\n" +
-                            "Number of received messages per sec: {};",
+                            "Number of received messages per sec: {};\n" +
+                            "Bytes rejected before parsing: {} kb;",
                     totalSentBytes.get() / 1024d,
                     numTotalSentMessages.get(), totalSentMessages,
                     numTotalSentMessagesPerSec.get(),
                     totalReceivedBytes.get() / 1024d,
                     numTotalReceivedMessages.get(), totalReceivedMessages,
-                    numTotalReceivedMessagesPerSec.get());
+                    numTotalReceivedMessagesPerSec.get(),
+                    totalRejectedBytes.get() / 1024d);
         }, 60);
     }
 
@@ -104,6 +108,10 @@ public class Statistic {
         return totalReceivedBytesPerSec;
     }
 
+    public static LongProperty totalRejectedBytesProperty() {
+        return totalRejectedBytes;
+    }
+
     public static LongProperty numTotalSentMessagesProperty() {
         return numTotalSentMessages;
     }
@@ -129,6 +137,7 @@ public class Statistic {
     private long lastActivityTimestamp = System.currentTimeMillis();
     private final LongProperty sentBytes = new SimpleLongProperty(0);
     private final LongProperty receivedBytes = new SimpleLongProperty(0);
+    private final LongProperty rejectedBytes = new SimpleLongProperty(0);
     private final Map<String, Integer> receivedMessages = new ConcurrentHashMap<>();
     private final Map<String, Integer> sentMessages = new ConcurrentHashMap<>();
     private final IntegerProperty roundTripTime = new SimpleIntegerProperty(0);
@@ -164,6 +173,13 @@ public class Statistic {
         });
     }
 
+    void addRejectedBytes(int value) {
+        UserThread.execute(() -> {
+            rejectedBytes.set(rejectedBytes.get() + value);
+            totalRejectedBytes.set(totalRejectedBytes.get() + value);
+        });
+    }
+
     // TODO would need msg inspection to get useful information...
     void addReceivedMessage(NetworkEnvelope networkEnvelope) {
         String messageClassName = networkEnvelope.getClass().getSimpleName();
@@ -227,6 +243,10 @@ public class Statistic {
         return receivedBytes;
     }
 
+    public long getRejectedBytes() {
+        return rejectedBytes.get();
+    }
+
     public Date getCreationDate() {
         return creationDate;
     }
@@ -242,6 +262,7 @@ public class Statistic {
                 ",\n     lastActivityTimestamp=" + lastActivityTimestamp +
                 ",\n     sentBytes=" + sentBytes +
                 ",\n     receivedBytes=" + receivedBytes +
+                ",\n     rejectedBytes=" + rejectedBytes +
                 ",\n     receivedMessages=" + receivedMessages +
                 ",\n     sentMessages=" + sentMessages +
                 ",\n     roundTripTime=" + roundTripTime +
@@ -25,6 +25,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,8 +45,8 @@ class SynchronizedProtoOutputStream extends ProtoOutputStream {
     }
 
     @Override
-    void writeEnvelope(NetworkEnvelope envelope) {
-        Future<?> future = executorService.submit(() -> super.writeEnvelope(envelope));
+    void writeEnvelope(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) {
+        Future<?> future = executorService.submit(() -> super.writeEnvelope(envelope, proto));
         try {
             future.get();
         } catch (InterruptedException e) {
@@ -60,6 +62,25 @@ class SynchronizedProtoOutputStream extends ProtoOutputStream {
         }
     }
 
+    // The write gets queued behind the envelopes written before, so the order is kept
+    @Override
+    void writeEnvelopeAsync(NetworkEnvelope envelope,
+                            protobuf.NetworkEnvelope proto,
+                            Consumer<Throwable> errorHandler) {
+        try {
+            executorService.execute(() -> {
+                try {
+                    super.writeEnvelope(envelope, proto);
+                } catch (Throwable t) {
+                    errorHandler.accept(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Connection got shut down already
+            errorHandler.accept(e);
+        }
+    }
+
     void onConnectionShutdown() {
         try {
             executorService.shutdownNow();
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Simple token bucket used for throttling outbound messages. It holds up to capacity tokens and gets refilled with
+ * one token per refillInterval. Time is passed in by the caller to keep it deterministic.
+ */
+@NotThreadSafe
+class TokenBucket {
+    private final int capacity;
+    private final long refillInterval;
+    private int tokens;
+    private long lastRefillTime;
+
+    TokenBucket(int capacity, long refillInterval, long now) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        checkArgument(refillInterval > 0, "refillInterval must be positive");
+        this.capacity = capacity;
+        this.refillInterval = refillInterval;
+        this.tokens = capacity;
+        this.lastRefillTime = now;
+    }
+
+    boolean tryConsume(long now) {
+        refill(now);
+        if (tokens == 0)
+            return false;
+
+        tokens--;
+        return true;
+    }
+
+    long getMillisUntilNextToken(long now) {
+        refill(now);
+        if (tokens > 0)
+            return 0;
+
+        return Math.max(0, lastRefillTime + refillInterval - now);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillTime;
+        if (elapsed < refillInterval)
+            return;
+
+        long newTokens = elapsed / refillInterval;
+        if (tokens + newTokens >= capacity) {
+            tokens = capacity;
+            lastRefillTime = now;
+        } else {
+            tokens += (int) newTokens;
+            lastRefillTime += newTokens * refillInterval;
+        }
+    }
+}
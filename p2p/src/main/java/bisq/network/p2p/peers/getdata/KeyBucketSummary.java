@@ -0,0 +1,204 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.peers.getdata;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.persistence.ByteArrayMap;
+
+import bisq.common.proto.network.NetworkPayload;
+
+import com.google.protobuf.ByteString;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compact summary of a set of keys used by the COMPACT_DATA_SYNC mode of GetDataRequests instead of sending all
+ * keys as excludedKeys.
+ *
+ * The keys are distributed into numBuckets buckets and for each bucket we keep the XOR of the hashes of its keys as
+ * digest. The responder computes the digests over its own keys the same way. If the digests of a bucket match both
+ * sides have the same keys in that bucket and the responder does not need to send anything from it. Otherwise it
+ * sends all items of the bucket and the requester ignores the ones it has already.
+ *
+ * The number of buckets is chosen so that a bucket holds about TARGET_KEYS_PER_BUCKET keys. The summary costs
+ * 8 bytes per bucket (about 1 byte per key compared to 20 or 32 bytes with excluded keys) and a missing item costs
+ * the other items of its bucket. Keys are hashed with a random salt per request, so digest collisions cannot be
+ * prepared in advance.
+ */
+@Slf4j
+@EqualsAndHashCode
+@Getter
+public final class KeyBucketSummary implements NetworkPayload {
+    static final int TARGET_KEYS_PER_BUCKET = 8;
+    // 512 kB of digests
+    static final int MAX_NUM_BUCKETS = 1 << 16;
+
+    private final long salt;
+    private final int numBuckets;
+    private final long[] digests;
+
+    public static KeyBucketSummary fromKeys(Collection<P2PDataStorage.ByteArray> keys, long salt) {
+        int numBuckets = getNumBuckets(keys.size());
+        return new KeyBucketSummary(salt, numBuckets, computeDigests(keys, salt, numBuckets));
+    }
+
+    // Walks the keys of the map without creating a ByteArray per key, see ByteArrayMap.forEachEntry
+    public static KeyBucketSummary fromKeysOf(Map<P2PDataStorage.ByteArray, ?> map, long salt) {
+        int numBuckets = getNumBuckets(map.size());
+        return new KeyBucketSummary(salt, numBuckets, computeDigests(map, salt, numBuckets));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private KeyBucketSummary(long salt, int numBuckets, long[] digests) {
+        this.salt = salt;
+        this.numBuckets = numBuckets;
+        this.digests = digests;
+    }
+
+    @Override
+    public protobuf.KeyBucketSummary toProtoMessage() {
+        ByteBuffer buffer = ByteBuffer.allocate(digests.length * Long.BYTES);
+        Arrays.stream(digests).forEach(buffer::putLong);
+        return protobuf.KeyBucketSummary.newBuilder()
+                .setSalt(salt)
+                .setNumBuckets(numBuckets)
+                .setDigests(ByteString.copyFrom(buffer.array()))
+                .build();
+    }
+
+    // Returns null if the summary is malformed. The requester will get the data as if it had no keys in that case.
+    @Nullable
+    public static KeyBucketSummary fromProto(protobuf.KeyBucketSummary proto) {
+        int numBuckets = proto.getNumBuckets();
+        if (numBuckets <= 0 ||
+                numBuckets > MAX_NUM_BUCKETS ||
+                Integer.bitCount(numBuckets) != 1 ||
+                proto.getDigests().size() != numBuckets * Long.BYTES) {
+            log.warn("Received invalid KeyBucketSummary with numBuckets={} and {} bytes of digests",
+                    numBuckets, proto.getDigests().size());
+            return null;
+        }
+
+        long[] digests = new long[numBuckets];
+        proto.getDigests().asReadOnlyByteBuffer().asLongBuffer().get(digests);
+        return new KeyBucketSummary(proto.getSalt(), numBuckets, digests);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param ourKeys All keys of the responder which are covered by the summary
+     * @return Predicate which is true for keys in buckets where our keys match the keys of the requester, so the
+     * requester has the items for those keys already.
+     */
+    public Predicate<P2PDataStorage.ByteArray> getKnownKeysPredicate(Collection<P2PDataStorage.ByteArray> ourKeys) {
+        ByteArrayMap.KeyPredicate isKnown = getKnownKeysPredicate(computeDigests(ourKeys, salt, numBuckets));
+        return key -> isKnown.test(key.bytes, 0, key.bytes.length);
+    }
+
+    /**
+     * Same as getKnownKeysPredicate but walks the keys of ourMap and tests the keys without creating ByteArrays.
+     */
+    public ByteArrayMap.KeyPredicate getKnownKeysPredicateForKeysOf(Map<P2PDataStorage.ByteArray, ?> ourMap) {
+        return getKnownKeysPredicate(computeDigests(ourMap, salt, numBuckets));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private ByteArrayMap.KeyPredicate getKnownKeysPredicate(long[] ourDigests) {
+        boolean[] isBucketInSync = new boolean[numBuckets];
+        int numBucketsInSync = 0;
+        for (int i = 0; i < numBuckets; i++) {
+            isBucketInSync[i] = ourDigests[i] == digests[i];
+            if (isBucketInSync[i])
+                numBucketsInSync++;
+        }
+        log.info("{} of {} buckets are in sync with the requesters KeyBucketSummary", numBucketsInSync, numBuckets);
+
+        HashFunction hashFunction = getHashFunction(salt);
+        return (keyBytes, offset, length) ->
+                isBucketInSync[getBucketIndex(hashKey(hashFunction, keyBytes, offset, length), numBuckets)];
+    }
+
+    private static int getNumBuckets(int numKeys) {
+        return Math.min(MAX_NUM_BUCKETS, Integer.highestOneBit(Math.max(1, numKeys / TARGET_KEYS_PER_BUCKET)));
+    }
+
+    private static long[] computeDigests(Collection<P2PDataStorage.ByteArray> keys, long salt, int numBuckets) {
+        HashFunction hashFunction = getHashFunction(salt);
+        long[] digests = new long[numBuckets];
+        keys.forEach(key -> addToDigests(digests, hashKey(hashFunction, key.bytes, 0, key.bytes.length)));
+        return digests;
+    }
+
+    private static long[] computeDigests(Map<P2PDataStorage.ByteArray, ?> map, long salt, int numBuckets) {
+        HashFunction hashFunction = getHashFunction(salt);
+        long[] digests = new long[numBuckets];
+        ByteArrayMap.forEachEntry(map, (keyBytes, offset, length, value) ->
+                addToDigests(digests, hashKey(hashFunction, keyBytes, offset, length)));
+        return digests;
+    }
+
+    private static void addToDigests(long[] digests, long hash) {
+        digests[getBucketIndex(hash, digests.length)] ^= hash;
+    }
+
+    private static HashFunction getHashFunction(long salt) {
+        return Hashing.sipHash24(salt, ~salt);
+    }
+
+    private static long hashKey(HashFunction hashFunction, byte[] keyBytes, int offset, int length) {
+        return hashFunction.hashBytes(keyBytes, offset, length).asLong();
+    }
+
+    // We use the upper bits for the bucket index
+    private static int getBucketIndex(long hash, int numBuckets) {
+        return (int) (hash >>> 32) & (numBuckets - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "KeyBucketSummary{" +
+                "\n     salt=" + salt +
+                ",\n     numBuckets=" + numBuckets +
+                "\n}";
+    }
+}
@@ -18,6 +18,7 @@
 package bisq.network.p2p.peers.getdata.messages;
 
 import bisq.network.p2p.ExtendedDataSizePermission;
+import bisq.network.p2p.peers.getdata.KeyBucketSummary;
 
 import bisq.common.proto.network.NetworkEnvelope;
 
@@ -42,13 +43,24 @@ public abstract class GetDataRequest extends NetworkEnvelope implements Extended
     @Nullable
     protected final String version;
 
+    // Only set if the peer supports Capability.COMPACT_DATA_SYNC. In that case the excludedKeys are empty and
+    // the summaries are used to find out which data the requester is missing.
+    @Nullable
+    protected final KeyBucketSummary persistableNetworkPayloadSummary;
+    @Nullable
+    protected final KeyBucketSummary protectedStorageEntrySummary;
+
     public GetDataRequest(int messageVersion,
                           int nonce,
                           Set<byte[]> excludedKeys,
-                          @Nullable String version) {
+                          @Nullable String version,
+                          @Nullable KeyBucketSummary persistableNetworkPayloadSummary,
+                          @Nullable KeyBucketSummary protectedStorageEntrySummary) {
         super(messageVersion);
         this.nonce = nonce;
         this.excludedKeys = excludedKeys;
         this.version = version;
+        this.persistableNetworkPayloadSummary = persistableNetworkPayloadSummary;
+        this.protectedStorageEntrySummary = protectedStorageEntrySummary;
     }
 }
@@ -28,15 +28,28 @@ import bisq.common.app.Version;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkProtoResolver;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+
+import java.io.IOException;
+
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @Slf4j
 @EqualsAndHashCode(callSuper = true)
@@ -53,12 +66,42 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     private final boolean isGetUpdatedDataResponse;
     private final Capabilities supportedCapabilities;
 
+    // Optional providers of the already serialized items of dataSet (as protobuf.StorageEntryWrapper) and
+    // persistableNetworkPayloadSet. If set, they are used at toProtoNetworkEnvelope instead of serializing each item.
+    // Only used at the sender side.
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private final Function<ProtectedStorageEntry, ByteString> dataSetItemSerializer;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private final Function<PersistableNetworkPayload, ByteString> persistableNetworkPayloadSerializer;
+
+    public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
+                           @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
+                           int requestNonce,
+                           boolean isGetUpdatedDataResponse) {
+        this(dataSet,
+                persistableNetworkPayloadSet,
+                null,
+                null,
+                requestNonce,
+                isGetUpdatedDataResponse);
+    }
+
     public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
                            @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
+                           @Nullable Function<ProtectedStorageEntry, ByteString> dataSetItemSerializer,
+                           @Nullable Function<PersistableNetworkPayload, ByteString> persistableNetworkPayloadSerializer,
                            int requestNonce,
                            boolean isGetUpdatedDataResponse) {
         this(dataSet,
                 persistableNetworkPayloadSet,
+                dataSetItemSerializer,
+                persistableNetworkPayloadSerializer,
                 requestNonce,
                 isGetUpdatedDataResponse,
                 Capabilities.app,
@@ -71,6 +114,8 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
 
     private GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
                             @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
+                            @Nullable Function<ProtectedStorageEntry, ByteString> dataSetItemSerializer,
+                            @Nullable Function<PersistableNetworkPayload, ByteString> persistableNetworkPayloadSerializer,
                             int requestNonce,
                             boolean isGetUpdatedDataResponse,
                             @NotNull Capabilities supportedCapabilities,
@@ -79,6 +124,8 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
 
         this.dataSet = dataSet;
         this.persistableNetworkPayloadSet = persistableNetworkPayloadSet;
+        this.dataSetItemSerializer = dataSetItemSerializer;
+        this.persistableNetworkPayloadSerializer = persistableNetworkPayloadSerializer;
         this.requestNonce = requestNonce;
         this.isGetUpdatedDataResponse = isGetUpdatedDataResponse;
         this.supportedCapabilities = supportedCapabilities;
@@ -87,22 +134,31 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     @Override
     public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
         final protobuf.GetDataResponse.Builder builder = protobuf.GetDataResponse.newBuilder()
-                .addAllDataSet(dataSet.stream()
-                        .map(protectedStorageEntry -> protectedStorageEntry instanceof ProtectedMailboxStorageEntry ?
-                                protobuf.StorageEntryWrapper.newBuilder()
-                                        .setProtectedMailboxStorageEntry((protobuf.ProtectedMailboxStorageEntry) protectedStorageEntry.toProtoMessage())
-                                        .build()
-                                :
-                                protobuf.StorageEntryWrapper.newBuilder()
-                                        .setProtectedStorageEntry((protobuf.ProtectedStorageEntry) protectedStorageEntry.toProtoMessage())
-                                        .build())
-                        .collect(Collectors.toList()))
-                .addAllPersistableNetworkPayloadItems(persistableNetworkPayloadSet.stream()
-                        .map(PersistableNetworkPayload::toProtoMessage)
-                        .collect(Collectors.toList()))
                 .setRequestNonce(requestNonce)
-                .setIsGetUpdatedDataResponse(isGetUpdatedDataResponse)
-                .addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
+                .setIsGetUpdatedDataResponse(isGetUpdatedDataResponse);
+
+        if (dataSetItemSerializer != null && persistableNetworkPayloadSerializer != null) {
+            // The items are serialized already, so we add them as raw length delimited fields. Unknown fields are
+            // written after the known fields, so the supported capabilities (field 4, between the data set and the
+            // payload items) are added as unknown field as well. That results in the same bytes on the wire as if we
+            // had added the messages.
+            builder.setUnknownFields(UnknownFieldSet.newBuilder()
+                    .addField(protobuf.GetDataResponse.DATA_SET_FIELD_NUMBER,
+                            toLengthDelimitedField(dataSet, dataSetItemSerializer))
+                    .addField(protobuf.GetDataResponse.SUPPORTED_CAPABILITIES_FIELD_NUMBER,
+                            toPackedInt32Field(Capabilities.toIntList(supportedCapabilities)))
+                    .addField(protobuf.GetDataResponse.PERSISTABLE_NETWORK_PAYLOAD_ITEMS_FIELD_NUMBER,
+                            toLengthDelimitedField(persistableNetworkPayloadSet, persistableNetworkPayloadSerializer))
+                    .build());
+        } else {
+            builder.addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
+            builder.addAllDataSet(dataSet.stream()
+                    .map(GetDataResponse::toStorageEntryWrapper)
+                    .collect(Collectors.toList()))
+                    .addAllPersistableNetworkPayloadItems(persistableNetworkPayloadSet.stream()
+                            .map(PersistableNetworkPayload::toProtoMessage)
+                            .collect(Collectors.toList()));
+        }
 
         protobuf.NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setGetDataResponse(builder)
@@ -111,6 +167,44 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
         return proto;
     }
 
+    public static protobuf.StorageEntryWrapper toStorageEntryWrapper(ProtectedStorageEntry protectedStorageEntry) {
+        return protectedStorageEntry instanceof ProtectedMailboxStorageEntry ?
+                protobuf.StorageEntryWrapper.newBuilder()
+                        .setProtectedMailboxStorageEntry((protobuf.ProtectedMailboxStorageEntry) protectedStorageEntry.toProtoMessage())
+                        .build()
+                :
+                protobuf.StorageEntryWrapper.newBuilder()
+                        .setProtectedStorageEntry((protobuf.ProtectedStorageEntry) protectedStorageEntry.toProtoMessage())
+                        .build();
+    }
+
+    private static <T> UnknownFieldSet.Field toLengthDelimitedField(Collection<T> items,
+                                                                    Function<T, ByteString> serializer) {
+        UnknownFieldSet.Field.Builder builder = UnknownFieldSet.Field.newBuilder();
+        items.forEach(item -> builder.addLengthDelimited(serializer.apply(item)));
+        return builder.build();
+    }
+
+    // Repeated scalar fields are packed in proto3, so they are written as one length delimited field
+    private static UnknownFieldSet.Field toPackedInt32Field(List<Integer> values) {
+        UnknownFieldSet.Field.Builder builder = UnknownFieldSet.Field.newBuilder();
+        if (values.isEmpty())
+            return builder.build();
+
+        try {
+            ByteString.Output output = ByteString.newOutput();
+            CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(output);
+            for (int value : values) {
+                codedOutputStream.writeInt32NoTag(value);
+            }
+            codedOutputStream.flush();
+            return builder.addLengthDelimited(output.toByteString()).build();
+        } catch (IOException e) {
+            // Cannot happen when writing to a ByteString.Output
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static GetDataResponse fromProto(protobuf.GetDataResponse proto,
                                             NetworkProtoResolver resolver,
                                             int messageVersion) {
@@ -127,6 +221,8 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
 
         return new GetDataResponse(dataSet,
                 persistableNetworkPayloadSet,
+                null,
+                null,
                 proto.getRequestNonce(),
                 proto.getIsGetUpdatedDataResponse(),
                 Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
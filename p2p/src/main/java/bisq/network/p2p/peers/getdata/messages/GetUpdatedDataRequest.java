@@ -19,6 +19,7 @@ package bisq.network.p2p.peers.getdata.messages;
 
 import bisq.network.p2p.NodeAddress;
 import bisq.network.p2p.SendersNodeAddressMessage;
+import bisq.network.p2p.peers.getdata.KeyBucketSummary;
 
 import bisq.common.app.Version;
 import bisq.common.proto.ProtoUtil;
@@ -46,10 +47,20 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
     public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
                                  int nonce,
                                  Set<byte[]> excludedKeys) {
+        this(senderNodeAddress, nonce, excludedKeys, null, null);
+    }
+
+    public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                 int nonce,
+                                 Set<byte[]> excludedKeys,
+                                 @Nullable KeyBucketSummary persistableNetworkPayloadSummary,
+                                 @Nullable KeyBucketSummary protectedStorageEntrySummary) {
         this(senderNodeAddress,
                 nonce,
                 excludedKeys,
                 Version.VERSION,
+                persistableNetworkPayloadSummary,
+                protectedStorageEntrySummary,
                 Version.getP2PMessageVersion());
     }
 
@@ -62,11 +73,15 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
                                   int nonce,
                                   Set<byte[]> excludedKeys,
                                   @Nullable String version,
+                                  @Nullable KeyBucketSummary persistableNetworkPayloadSummary,
+                                  @Nullable KeyBucketSummary protectedStorageEntrySummary,
                                   int messageVersion) {
         super(messageVersion,
                 nonce,
                 excludedKeys,
-                version);
+                version,
+                persistableNetworkPayloadSummary,
+                protectedStorageEntrySummary);
         this.senderNodeAddress = senderNodeAddress;
     }
 
@@ -79,6 +94,10 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
                         .map(ByteString::copyFrom)
                         .collect(Collectors.toList()));
         Optional.ofNullable(version).ifPresent(builder::setVersion);
+        Optional.ofNullable(persistableNetworkPayloadSummary)
+                .ifPresent(e -> builder.setPersistableNetworkPayloadSummary(e.toProtoMessage()));
+        Optional.ofNullable(protectedStorageEntrySummary)
+                .ifPresent(e -> builder.setProtectedStorageEntrySummary(e.toProtoMessage()));
         NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setGetUpdatedDataRequest(builder)
                 .build();
@@ -96,6 +115,12 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
                 proto.getNonce(),
                 excludedKeys,
                 requestersVersion,
+                proto.hasPersistableNetworkPayloadSummary() ?
+                        KeyBucketSummary.fromProto(proto.getPersistableNetworkPayloadSummary()) :
+                        null,
+                proto.hasProtectedStorageEntrySummary() ?
+                        KeyBucketSummary.fromProto(proto.getProtectedStorageEntrySummary()) :
+                        null,
                 messageVersion);
     }
 }
@@ -19,6 +19,7 @@ package bisq.network.p2p.peers.getdata.messages;
 
 import bisq.network.p2p.AnonymousMessage;
 import bisq.network.p2p.SupportedCapabilitiesMessage;
+import bisq.network.p2p.peers.getdata.KeyBucketSummary;
 
 import bisq.common.app.Capabilities;
 import bisq.common.app.Version;
@@ -45,9 +46,18 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
     private final Capabilities supportedCapabilities;
 
     public PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys) {
+        this(nonce, excludedKeys, null, null);
+    }
+
+    public PreliminaryGetDataRequest(int nonce,
+                                     Set<byte[]> excludedKeys,
+                                     @Nullable KeyBucketSummary persistableNetworkPayloadSummary,
+                                     @Nullable KeyBucketSummary protectedStorageEntrySummary) {
         this(nonce,
                 excludedKeys,
                 Version.VERSION,
+                persistableNetworkPayloadSummary,
+                protectedStorageEntrySummary,
                 Capabilities.app,
                 Version.getP2PMessageVersion());
     }
@@ -60,9 +70,16 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
     private PreliminaryGetDataRequest(int nonce,
                                       Set<byte[]> excludedKeys,
                                       @Nullable String version,
+                                      @Nullable KeyBucketSummary persistableNetworkPayloadSummary,
+                                      @Nullable KeyBucketSummary protectedStorageEntrySummary,
                                       Capabilities supportedCapabilities,
                                       int messageVersion) {
-        super(messageVersion, nonce, excludedKeys, version);
+        super(messageVersion,
+                nonce,
+                excludedKeys,
+                version,
+                persistableNetworkPayloadSummary,
+                protectedStorageEntrySummary);
 
         this.supportedCapabilities = supportedCapabilities;
     }
@@ -76,6 +93,10 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
                         .map(ByteString::copyFrom)
                         .collect(Collectors.toList()));
         Optional.ofNullable(version).ifPresent(builder::setVersion);
+        Optional.ofNullable(persistableNetworkPayloadSummary)
+                .ifPresent(e -> builder.setPersistableNetworkPayloadSummary(e.toProtoMessage()));
+        Optional.ofNullable(protectedStorageEntrySummary)
+                .ifPresent(e -> builder.setProtectedStorageEntrySummary(e.toProtoMessage()));
         NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setPreliminaryGetDataRequest(builder)
                 .build();
@@ -92,6 +113,12 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
         return new PreliminaryGetDataRequest(proto.getNonce(),
                 excludedKeys,
                 requestersVersion,
+                proto.hasPersistableNetworkPayloadSummary() ?
+                        KeyBucketSummary.fromProto(proto.getPersistableNetworkPayloadSummary()) :
+                        null,
+                proto.hasProtectedStorageEntrySummary() ?
+                        KeyBucketSummary.fromProto(proto.getProtectedStorageEntrySummary()) :
+                        null,
                 Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
                 messageVersion);
     }
@@ -25,6 +25,7 @@ import bisq.network.p2p.network.MessageListener;
 import bisq.network.p2p.network.NetworkNode;
 import bisq.network.p2p.peers.BroadcastHandler;
 import bisq.network.p2p.peers.Broadcaster;
+import bisq.network.p2p.peers.getdata.KeyBucketSummary;
 import bisq.network.p2p.peers.getdata.messages.GetDataRequest;
 import bisq.network.p2p.peers.getdata.messages.GetDataResponse;
 import bisq.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
@@ -48,19 +49,23 @@ import bisq.network.p2p.storage.payload.ProtectedStoragePayload;
 import bisq.network.p2p.storage.payload.RequiresOwnerIsOnlinePayload;
 import bisq.network.p2p.storage.persistence.AppendOnlyDataStoreListener;
 import bisq.network.p2p.storage.persistence.AppendOnlyDataStoreService;
+import bisq.network.p2p.storage.persistence.ByteArrayMap;
 import bisq.network.p2p.storage.persistence.HistoricalDataStoreService;
 import bisq.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
 import bisq.network.p2p.storage.persistence.ProtectedDataStoreService;
+import bisq.network.p2p.storage.persistence.ReadOnlyMapUnion;
 import bisq.network.p2p.storage.persistence.ResourceDataStoreService;
 import bisq.network.p2p.storage.persistence.SequenceNumberMap;
 
 import bisq.common.Timer;
 import bisq.common.UserThread;
 import bisq.common.app.Capabilities;
+import bisq.common.config.Config;
 import bisq.common.crypto.CryptoException;
 import bisq.common.crypto.Hash;
 import bisq.common.crypto.Sig;
 import bisq.common.persistence.PersistenceManager;
+import bisq.common.persistence.StartupTimeline;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkPayload;
 import bisq.common.proto.persistable.PersistablePayload;
@@ -77,6 +82,7 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 
 import org.fxmisc.easybind.EasyBind;
 import org.fxmisc.easybind.monadic.MonadicBinding;
@@ -94,16 +100,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import lombok.EqualsAndHashCode;
@@ -124,6 +134,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @VisibleForTesting
     public static final int CHECK_TTL_INTERVAL_SEC = 60;
 
+    private static final int NUM_PAYLOAD_LOCKS = 64;
+
     private boolean initialRequestApplied = false;
 
     private final Broadcaster broadcaster;
@@ -131,10 +143,25 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     private final ProtectedDataStoreService protectedDataStoreService;
     private final ResourceDataStoreService resourceDataStoreService;
 
+    // We do not use a ByteArrayMap here and in the SequenceNumberMap. Both maps share the ByteArray instances of the
+    // payload hashes as keys, so the wrapper costs nothing extra. They only hold the live offers and mailbox messages,
+    // and their entries get removed and added all the time, which a ByteArrayMap only compacts when it grows. Both
+    // maps are also iterated with their keys by many callers (e.g. removeExpiredEntries and the persistence), where a
+    // ByteArrayMap would need to create a new ByteArray for each key.
     @Getter
     private final Map<ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
-    private final Set<ByteArray> removedAddOncePayloads = new HashSet<>();
+    private final Set<ByteArray> removedAddOncePayloads = ConcurrentHashMap.newKeySet();
     private final Set<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
+    // Changes of a ProtectedStorageEntry are done while holding the lock of its payload hash. Its side effects are
+    // executed on the user thread by the storageEventDispatcher.
+    private final Striped<Lock> payloadLocks = Striped.lock(NUM_PAYLOAD_LOCKS);
+    private final Set<AppendOnlyDataStoreListener> appendOnlyDataStoreListeners = new CopyOnWriteArraySet<>();
+    private final StorageEventDispatcher storageEventDispatcher = new StorageEventDispatcher(hashMapChangedListeners,
+            appendOnlyDataStoreListeners);
+    // If not empty the ProtectedStorageEntry messages from the network are validated and applied on those single
+    // threaded executors. The executor is selected by the payload hash, so the messages for a payload are applied in
+    // the order we have received them.
+    private final ExecutorService[] storageShardExecutors;
     private Timer removeExpiredEntriesTimer;
 
     private final PersistenceManager<SequenceNumberMap> persistenceManager;
@@ -142,15 +169,21 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @VisibleForTesting
     final SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
 
-    private final Set<AppendOnlyDataStoreListener> appendOnlyDataStoreListeners = new CopyOnWriteArraySet<>();
     private final Clock clock;
 
+    // Serialized bytes of the items we have delivered with a GetDataResponse
+    private final SerializedPayloadCache serializedPayloadCache = new SerializedPayloadCache();
+
     /// The maximum number of items that must exist in the SequenceNumberMap before it is scheduled for a purge
     /// which removes entries after PURGE_AGE_DAYS.
     private final int maxSequenceNumberMapSizeBeforePurge;
 
     // Don't convert to local variable as it might get GC'ed.
     private MonadicBinding<Boolean> readFromResourcesCompleteBinding;
+    // Handlers waiting for readFromResources. Null if it was not called yet.
+    @Nullable
+    private List<Runnable> readFromResourcesCompleteHandlers;
+    private boolean readFromResourcesCompleted;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -165,7 +198,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                           ResourceDataStoreService resourceDataStoreService,
                           PersistenceManager<SequenceNumberMap> persistenceManager,
                           Clock clock,
-                          @Named("MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE") int maxSequenceNumberBeforePurge) {
+                          @Named("MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE") int maxSequenceNumberBeforePurge,
+                          @Named(Config.STORAGE_VALIDATION_THREADS) int storageValidationThreads) {
         this.broadcaster = broadcaster;
         this.appendOnlyDataStoreService = appendOnlyDataStoreService;
         this.protectedDataStoreService = protectedDataStoreService;
@@ -174,6 +208,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         this.clock = clock;
         this.maxSequenceNumberMapSizeBeforePurge = maxSequenceNumberBeforePurge;
 
+        storageShardExecutors = new ExecutorService[Math.max(0, storageValidationThreads)];
+        for (int i = 0; i < storageShardExecutors.length; i++) {
+            storageShardExecutors[i] = Utilities.getSingleThreadExecutor("P2PDataStorage-" + i);
+        }
+
         networkNode.addMessageListener(this);
         networkNode.addConnectionListener(this);
 
@@ -198,8 +237,20 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
     }
 
-    // Threading is done on the persistenceManager level
+    // Threading is done on the persistenceManager level. It can be called early at startup to read the stores in
+    // parallel with other startup tasks. Later calls only get their completeHandler called once reading is completed.
     public void readFromResources(String postFix, Runnable completeHandler) {
+        if (readFromResourcesCompleteHandlers != null) {
+            if (readFromResourcesCompleted) {
+                completeHandler.run();
+            } else {
+                readFromResourcesCompleteHandlers.add(completeHandler);
+            }
+            return;
+        }
+        readFromResourcesCompleteHandlers = new ArrayList<>();
+        readFromResourcesCompleteHandlers.add(completeHandler);
+
         BooleanProperty appendOnlyDataStoreServiceReady = new SimpleBooleanProperty();
         BooleanProperty protectedDataStoreServiceReady = new SimpleBooleanProperty();
         BooleanProperty resourceDataStoreServiceReady = new SimpleBooleanProperty();
@@ -217,7 +268,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 (a, b, c) -> a && b && c);
         readFromResourcesCompleteBinding.subscribe((observable, oldValue, newValue) -> {
             if (newValue) {
-                completeHandler.run();
+                readFromResourcesCompleted = true;
+                StartupTimeline.addMilestone("P2P data stores read");
+                StartupTimeline.log();
+                readFromResourcesCompleteHandlers.forEach(Runnable::run);
+                readFromResourcesCompleteHandlers.clear();
             }
         });
     }
@@ -241,6 +296,22 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce) {
+        return buildPreliminaryGetDataRequest(nonce, false);
+    }
+
+    /**
+     * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
+     * If useCompactDataSync is set the known payloads are described by KeyBucketSummaries instead of sending all
+     * their hashes. Must only be used if the peer supports Capability.COMPACT_DATA_SYNC.
+     */
+    public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce, boolean useCompactDataSync) {
+        if (useCompactDataSync) {
+            long salt = new Random().nextLong();
+            return new PreliminaryGetDataRequest(nonce,
+                    new HashSet<>(),
+                    KeyBucketSummary.fromKeysOf(getMapForDataRequest(), salt),
+                    KeyBucketSummary.fromKeysOf(map, salt));
+        }
         return new PreliminaryGetDataRequest(nonce, getKnownPayloadHashes());
     }
 
@@ -248,6 +319,24 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress, int nonce) {
+        return buildGetUpdatedDataRequest(senderNodeAddress, nonce, false);
+    }
+
+    /**
+     * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
+     * See buildPreliminaryGetDataRequest for useCompactDataSync.
+     */
+    public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                                            int nonce,
+                                                            boolean useCompactDataSync) {
+        if (useCompactDataSync) {
+            long salt = new Random().nextLong();
+            return new GetUpdatedDataRequest(senderNodeAddress,
+                    nonce,
+                    new HashSet<>(),
+                    KeyBucketSummary.fromKeysOf(getMapForDataRequest(), salt),
+                    KeyBucketSummary.fromKeysOf(map, salt));
+        }
         return new GetUpdatedDataRequest(senderNodeAddress, nonce, getKnownPayloadHashes());
     }
 
@@ -277,50 +366,67 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             AtomicBoolean wasProtectedStorageEntriesTruncated,
             Capabilities peerCapabilities) {
 
-        Set<P2PDataStorage.ByteArray> excludedKeysAsByteArray =
-                P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
+        // We look the excluded keys up by their bytes, so we do not need to wrap each of them into a ByteArray
+        ByteArrayMap<Boolean> excludedKeys = new ByteArrayMap<>();
+        getDataRequest.getExcludedKeys().forEach(key -> excludedKeys.put(key, Boolean.TRUE));
 
         // Pre v 1.4.0 requests do not have set the requesters version field so it is null.
         // The methods in HistoricalDataStoreService will return all historical data in that case.
         // mapForDataResponse contains the filtered by version data from HistoricalDataStoreService as well as all other
         // maps of the remaining appendOnlyDataStoreServices.
         Map<ByteArray, PersistableNetworkPayload> mapForDataResponse = getMapForDataResponse(getDataRequest.getVersion());
-        Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads =
+        List<PersistableNetworkPayload> filteredPersistableNetworkPayloads =
                 filterKnownHashes(
                         mapForDataResponse,
                         Function.identity(),
-                        excludedKeysAsByteArray,
+                        getKnownKeysPredicate(excludedKeys,
+                                getDataRequest.getPersistableNetworkPayloadSummary(),
+                                mapForDataResponse),
                         peerCapabilities,
                         maxEntriesPerType,
                         wasPersistableNetworkPayloadsTruncated);
         log.info("{} PersistableNetworkPayload entries remained after filtered by excluded keys. Original map had {} entries.",
                 filteredPersistableNetworkPayloads.size(), mapForDataResponse.size());
 
-        Set<ProtectedStorageEntry> filteredProtectedStorageEntries =
+        List<ProtectedStorageEntry> filteredProtectedStorageEntries =
                 filterKnownHashes(
                         map,
                         ProtectedStorageEntry::getProtectedStoragePayload,
-                        excludedKeysAsByteArray,
+                        getKnownKeysPredicate(excludedKeys,
+                                getDataRequest.getProtectedStorageEntrySummary(),
+                                map),
                         peerCapabilities,
                         maxEntriesPerType,
                         wasProtectedStorageEntriesTruncated);
         log.info("{} ProtectedStorageEntry entries remained after filtered by excluded keys. Original map had {} entries.",
                 filteredProtectedStorageEntries.size(), map.size());
 
+        // The items get serialized when the response is sent. We use the cached bytes of items we have delivered
+        // before so that each item is serialized only once.
         return new GetDataResponse(
-                filteredProtectedStorageEntries,
-                filteredPersistableNetworkPayloads,
+                new HashSet<>(filteredProtectedStorageEntries),
+                new HashSet<>(filteredPersistableNetworkPayloads),
+                serializedPayloadCache::getSerializedStorageEntryWrapper,
+                this::getSerializedPersistableNetworkPayload,
                 getDataRequest.getNonce(),
                 getDataRequest instanceof GetUpdatedDataRequest);
     }
 
+    // The payloads of the memory-mapped historical stores are new instances at each access, so the cache would never
+    // find them. We send the bytes from the mapped file instead and keep them out of the cache.
+    private ByteString getSerializedPersistableNetworkPayload(PersistableNetworkPayload payload) {
+        ByteString serialized = appendOnlyDataStoreService.getSerializedHistoricalPayload(payload);
+        return serialized != null ? serialized : serializedPayloadCache.getSerializedPersistableNetworkPayload(payload);
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Utils for collecting the exclude hashes
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Like getMapForDataResponse we return a read-only view instead of copying the maps of all stores
     private Map<ByteArray, PersistableNetworkPayload> getMapForDataRequest() {
-        Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
+        List<Map<ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
         appendOnlyDataStoreService.getServices()
                 .forEach(service -> {
                     Map<ByteArray, PersistableNetworkPayload> serviceMap;
@@ -332,15 +438,17 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                     } else {
                         serviceMap = service.getMap();
                     }
-                    map.putAll(serviceMap);
+                    maps.add(serviceMap);
                     log.info("We added {} entries from {} to the excluded key set of our request",
                             serviceMap.size(), service.getClass().getSimpleName());
                 });
-        return map;
+        return new ReadOnlyMapUnion<>(maps);
     }
 
+    // Returns a read-only view on the maps of the appendOnlyDataStoreServices. The services handle different payload
+    // types, so their keys do not overlap and we do not need to copy the data into a new map.
     public Map<ByteArray, PersistableNetworkPayload> getMapForDataResponse(String requestersVersion) {
-        Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
+        List<Map<ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
         appendOnlyDataStoreService.getServices()
                 .forEach(service -> {
                     Map<ByteArray, PersistableNetworkPayload> serviceMap;
@@ -350,35 +458,55 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                     } else {
                         serviceMap = service.getMap();
                     }
-                    map.putAll(serviceMap);
+                    maps.add(serviceMap);
                     log.info("We added {} entries from {} to be filtered by excluded keys",
                             serviceMap.size(), service.getClass().getSimpleName());
                 });
-        return map;
+        return new ReadOnlyMapUnion<>(maps);
+    }
+
+    /**
+     * Returns the predicate for the keys the requester has already. Those are the excluded keys and, if the requester
+     * sent a KeyBucketSummary, the keys in the buckets which are in sync with the keys of ourMap.
+     */
+    private static ByteArrayMap.KeyPredicate getKnownKeysPredicate(ByteArrayMap<?> excludedKeys,
+                                                                   @Nullable KeyBucketSummary keyBucketSummary,
+                                                                   Map<ByteArray, ?> ourMap) {
+        log.info("Num excludedKeys {}", excludedKeys.size());
+        ByteArrayMap.KeyPredicate isKnown = excludedKeys::containsKey;
+        if (keyBucketSummary != null) {
+            isKnown = isKnown.or(keyBucketSummary.getKnownKeysPredicateForKeysOf(ourMap));
+        }
+        return isKnown;
     }
 
     /**
      * Generic function that can be used to filter a Map<ByteArray, ProtectedStorageEntry || PersistableNetworkPayload>
-     * by a given set of keys and peer capabilities.
+     * by a predicate for known keys and peer capabilities. Only the remaining values are returned, so the keys are
+     * tested in place and we do not create a ByteArray per key.
      */
-    static private <T extends NetworkPayload> Set<T> filterKnownHashes(
+    static private <T extends NetworkPayload> List<T> filterKnownHashes(
             Map<ByteArray, T> toFilter,
             Function<T, ? extends NetworkPayload> objToPayload,
-            Set<ByteArray> knownHashes,
+            ByteArrayMap.KeyPredicate isKnownHash,
             Capabilities peerCapabilities,
             int maxEntries,
             AtomicBoolean outTruncated) {
 
-        log.info("Num knownHashes {}", knownHashes.size());
+        List<T> dateSortedTruncatablePayloads = new ArrayList<>();
+        List<T> filteredResults = new ArrayList<>();
+        ByteArrayMap.forEachEntry(toFilter, (keyBytes, offset, length, value) -> {
+            if (!isKnownHash.test(keyBytes, offset, length) &&
+                    shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(value))) {
+                if (value instanceof DateSortedTruncatablePayload)
+                    dateSortedTruncatablePayloads.add(value);
+                else
+                    filteredResults.add(value);
+            }
+        });
 
-        Set<Map.Entry<ByteArray, T>> entries = toFilter.entrySet();
-        List<T> dateSortedTruncatablePayloads = entries.stream()
-                .filter(entry -> entry.getValue() instanceof DateSortedTruncatablePayload)
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .filter(payload -> shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(payload)))
-                .sorted(Comparator.comparing(payload -> ((DateSortedTruncatablePayload) payload).getDate()))
-                .collect(Collectors.toList());
+        dateSortedTruncatablePayloads.sort(
+                Comparator.comparing(payload -> ((DateSortedTruncatablePayload) payload).getDate()));
         log.info("Num filtered dateSortedTruncatablePayloads {}", dateSortedTruncatablePayloads.size());
         if (!dateSortedTruncatablePayloads.isEmpty()) {
             int maxItems = ((DateSortedTruncatablePayload) dateSortedTruncatablePayloads.get(0)).maxItems();
@@ -389,13 +517,6 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 log.info("Num truncated dateSortedTruncatablePayloads {}", dateSortedTruncatablePayloads.size());
             }
         }
-
-        List<T> filteredResults = entries.stream()
-                .filter(entry -> !(entry.getValue() instanceof DateSortedTruncatablePayload))
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .filter(payload -> shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(payload)))
-                .collect(Collectors.toList());
         log.info("Num filtered non-dateSortedTruncatablePayloads {}", filteredResults.size());
 
         // The non-dateSortedTruncatablePayloads have higher prio, so we added dateSortedTruncatablePayloads
@@ -409,8 +530,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         } else {
             log.info("Num filteredResults {}", filteredResults.size());
         }
-
-        return new HashSet<>(filteredResults);
+        return filteredResults;
     }
 
 
@@ -458,6 +578,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             addProtectedStorageEntry(e, sender, null, false);
 
         });
+        storageEventDispatcher.dispatch();
         log.info("Processing {} protectedStorageEntries took {} ms.", dataSet.size(), this.clock.millis() - ts2);
 
         ts2 = this.clock.millis();
@@ -479,6 +600,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 addPersistableNetworkPayload(e, sender, false, false, false);
             }
         });
+        // The listeners get all payloads of the response with one call
+        storageEventDispatcher.dispatch();
         log.info("Processing {} persistableNetworkPayloads took {} ms.",
                 persistableNetworkPayloadSet.size(), this.clock.millis() - ts2);
 
@@ -495,6 +618,12 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public void shutDown() {
         if (removeExpiredEntriesTimer != null)
             removeExpiredEntriesTimer.stop();
+
+        for (ExecutorService executor : storageShardExecutors) {
+            executor.shutdownNow();
+        }
+
+        appendOnlyDataStoreService.shutDown();
     }
 
     @VisibleForTesting
@@ -510,17 +639,30 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                         .collect(Collectors.toCollection(ArrayList::new));
 
         // Batch processing can cause performance issues, so do all of the removes first, then update the listeners
-        // to let them know about the removes.
+        // to let them know about the removes. The listener notifications get merged by the storageEventDispatcher.
         toRemoveList.forEach(toRemoveItem -> {
-            log.debug("We found an expired data entry. We remove the protectedData:\n\t" +
-                    Utilities.toTruncatedString(toRemoveItem.getValue()));
+            ByteArray hashOfPayload = toRemoveItem.getKey();
+            Lock lock = payloadLocks.get(hashOfPayload);
+            lock.lock();
+            try {
+                // The entry might have been refreshed in the meantime by a message applied off the user thread
+                if (map.get(hashOfPayload) == toRemoveItem.getValue()) {
+                    log.debug("We found an expired data entry. We remove the protectedData:\n\t" +
+                            Utilities.toTruncatedString(toRemoveItem.getValue()));
+                    removeFromMapAndDataStore(toRemoveItem.getValue(), hashOfPayload);
+                }
+            } finally {
+                lock.unlock();
+            }
         });
-        removeFromMapAndDataStore(toRemoveList);
 
         if (sequenceNumberMap.size() > this.maxSequenceNumberMapSizeBeforePurge) {
-            sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap()));
+            // We must not lose sequence numbers which get recorded while we purge
+            runWithAllPayloadLocks(() ->
+                    sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap())));
             requestPersistence();
         }
+        storageEventDispatcher.dispatch();
     }
 
     public void onBootstrapComplete() {
@@ -541,16 +683,36 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         if (networkEnvelope instanceof BroadcastMessage) {
             connection.getPeersNodeAddressOptional().ifPresent(peersNodeAddress -> {
                 if (networkEnvelope instanceof AddDataMessage) {
-                    addProtectedStorageEntry(((AddDataMessage) networkEnvelope).getProtectedStorageEntry(), peersNodeAddress, null, true);
+                    // We need the payload hash to select the storage shard. It gets passed to the task, so the
+                    // payload is hashed only once.
+                    ProtectedStorageEntry protectedStorageEntry = ((AddDataMessage) networkEnvelope).getProtectedStorageEntry();
+                    ByteArray hashOfPayload =
+                            get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+                    executeForPayload(hashOfPayload, () -> withPayloadLock(hashOfPayload, () ->
+                            addProtectedStorageEntry(protectedStorageEntry, hashOfPayload, peersNodeAddress, null,
+                                    true)));
                 } else if (networkEnvelope instanceof RemoveDataMessage) {
-                    remove(((RemoveDataMessage) networkEnvelope).getProtectedStorageEntry(), peersNodeAddress);
+                    ProtectedStorageEntry protectedStorageEntry = ((RemoveDataMessage) networkEnvelope).getProtectedStorageEntry();
+                    ByteArray hashOfPayload =
+                            get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+                    executeForPayload(hashOfPayload, () -> withPayloadLock(hashOfPayload, () ->
+                            applyRemove(protectedStorageEntry, hashOfPayload, peersNodeAddress)));
                 } else if (networkEnvelope instanceof RemoveMailboxDataMessage) {
-                    remove(((RemoveMailboxDataMessage) networkEnvelope).getProtectedMailboxStorageEntry(), peersNodeAddress);
+                    ProtectedStorageEntry protectedStorageEntry = ((RemoveMailboxDataMessage) networkEnvelope).getProtectedMailboxStorageEntry();
+                    ByteArray hashOfPayload =
+                            get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+                    executeForPayload(hashOfPayload, () -> withPayloadLock(hashOfPayload, () ->
+                            applyRemove(protectedStorageEntry, hashOfPayload, peersNodeAddress)));
                 } else if (networkEnvelope instanceof RefreshOfferMessage) {
-                    refreshTTL((RefreshOfferMessage) networkEnvelope, peersNodeAddress);
+                    RefreshOfferMessage refreshOfferMessage = (RefreshOfferMessage) networkEnvelope;
+                    ByteArray hashOfPayload = new ByteArray(refreshOfferMessage.getHashOfPayload());
+                    executeForPayload(hashOfPayload, () -> withPayloadLock(hashOfPayload, () ->
+                            applyRefreshTTL(refreshOfferMessage, hashOfPayload, peersNodeAddress)));
                 } else if (networkEnvelope instanceof AddPersistableNetworkPayloadMessage) {
                     addPersistableNetworkPayload(((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload(),
                             peersNodeAddress, true, false, true);
+                    // All payloads of a BundleOfEnvelopes get delivered to the listeners together
+                    storageEventDispatcher.scheduleDispatch();
                 }
             });
         }
@@ -617,10 +779,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public boolean addPersistableNetworkPayload(PersistableNetworkPayload payload,
                                                 @Nullable NodeAddress sender,
                                                 boolean allowReBroadcast) {
-        return addPersistableNetworkPayload(
+        boolean result = addPersistableNetworkPayload(
                 payload, sender, true, allowReBroadcast, false);
+        storageEventDispatcher.dispatch();
+        return result;
     }
 
+    // The appendOnlyDataStoreListeners get notified by the storageEventDispatcher
+
     private boolean addPersistableNetworkPayload(PersistableNetworkPayload payload,
                                                  @Nullable NodeAddress sender,
                                                  boolean allowBroadcast,
@@ -654,7 +820,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         // Add the payload and publish the state update to the appendOnlyDataStoreListeners
         if (!payloadHashAlreadyInStore) {
             appendOnlyDataStoreService.put(hashAsByteArray, payload);
-            appendOnlyDataStoreListeners.forEach(e -> e.onAdded(payload));
+            storageEventDispatcher.onAdded(payload);
         }
 
         // Broadcast the payload if requested by caller
@@ -690,15 +856,27 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      */
     public boolean addProtectedStorageEntry(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender,
                                             @Nullable BroadcastHandler.Listener listener) {
-        return addProtectedStorageEntry(protectedStorageEntry, sender, listener, true);
+        boolean result = addProtectedStorageEntry(protectedStorageEntry, sender, listener, true);
+        storageEventDispatcher.dispatch();
+        return result;
+    }
+
+    // Side effects are left to the storageEventDispatcher
+    private boolean addProtectedStorageEntry(ProtectedStorageEntry protectedStorageEntry,
+                                             @Nullable NodeAddress sender,
+                                             @Nullable BroadcastHandler.Listener listener,
+                                             boolean allowBroadcast) {
+        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+        return withPayloadLock(hashOfPayload, () ->
+                addProtectedStorageEntry(protectedStorageEntry, hashOfPayload, sender, listener, allowBroadcast));
     }
 
     private boolean addProtectedStorageEntry(ProtectedStorageEntry protectedStorageEntry,
+                                             ByteArray hashOfPayload,
                                              @Nullable NodeAddress sender,
                                              @Nullable BroadcastHandler.Listener listener,
                                              boolean allowBroadcast) {
         ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
-        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
 
         if (protectedStoragePayload instanceof AddOncePayload &&
                 removedAddOncePayloads.contains(hashOfPayload)) {
@@ -741,19 +919,20 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         // This is an updated entry. Record it and signal listeners.
         map.put(hashOfPayload, protectedStorageEntry);
-        hashMapChangedListeners.forEach(e -> e.onAdded(Collections.singletonList(protectedStorageEntry)));
+        storageEventDispatcher.onAdded(protectedStorageEntry);
 
         // Record the updated sequence number and persist it. Higher delay so we can batch more items.
         sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), this.clock.millis()));
-        requestPersistence();
+        storageEventDispatcher.execute(this::requestPersistence);
 
         // Optionally, broadcast the add/update depending on the calling environment
         if (allowBroadcast)
-            broadcaster.broadcast(new AddDataMessage(protectedStorageEntry), sender, listener);
+            storageEventDispatcher.execute(() ->
+                    broadcaster.broadcast(new AddDataMessage(protectedStorageEntry), sender, listener));
 
         // Persist ProtectedStorageEntries carrying PersistablePayload payloads
         if (protectedStoragePayload instanceof PersistablePayload)
-            protectedDataStoreService.put(hashOfPayload, protectedStorageEntry);
+            storageEventDispatcher.execute(() -> protectedDataStoreService.put(hashOfPayload, protectedStorageEntry));
 
         return true;
     }
@@ -767,8 +946,20 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      */
     public boolean refreshTTL(RefreshOfferMessage refreshTTLMessage,
                               @Nullable NodeAddress sender) {
+        boolean result = applyRefreshTTL(refreshTTLMessage, sender);
+        storageEventDispatcher.dispatch();
+        return result;
+    }
 
+    // Side effects are left to the storageEventDispatcher
+    private boolean applyRefreshTTL(RefreshOfferMessage refreshTTLMessage, @Nullable NodeAddress sender) {
         ByteArray hashOfPayload = new ByteArray(refreshTTLMessage.getHashOfPayload());
+        return withPayloadLock(hashOfPayload, () -> applyRefreshTTL(refreshTTLMessage, hashOfPayload, sender));
+    }
+
+    private boolean applyRefreshTTL(RefreshOfferMessage refreshTTLMessage,
+                                    ByteArray hashOfPayload,
+                                    @Nullable NodeAddress sender) {
         ProtectedStorageEntry storedData = map.get(hashOfPayload);
 
         if (storedData == null) {
@@ -799,10 +990,10 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         // Record the latest sequence number and persist it
         sequenceNumberMap.put(hashOfPayload, new MapValue(updatedEntry.getSequenceNumber(), this.clock.millis()));
-        requestPersistence();
+        storageEventDispatcher.execute(this::requestPersistence);
 
         // Always broadcast refreshes
-        broadcaster.broadcast(refreshTTLMessage, sender);
+        storageEventDispatcher.execute(() -> broadcaster.broadcast(refreshTTLMessage, sender));
 
         return true;
     }
@@ -817,8 +1008,21 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      */
     public boolean remove(ProtectedStorageEntry protectedStorageEntry,
                           @Nullable NodeAddress sender) {
+        boolean result = applyRemove(protectedStorageEntry, sender);
+        storageEventDispatcher.dispatch();
+        return result;
+    }
+
+    // Side effects are left to the storageEventDispatcher
+    private boolean applyRemove(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender) {
+        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+        return withPayloadLock(hashOfPayload, () -> applyRemove(protectedStorageEntry, hashOfPayload, sender));
+    }
+
+    private boolean applyRemove(ProtectedStorageEntry protectedStorageEntry,
+                                ByteArray hashOfPayload,
+                                @Nullable NodeAddress sender) {
         ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
-        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
 
         // If we have seen a more recent operation for this payload, ignore this one
         if (!hasSequenceNrIncreased(protectedStorageEntry.getSequenceNumber(), hashOfPayload))
@@ -835,7 +1039,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         // Record the latest sequence number and persist it
         sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), this.clock.millis()));
-        requestPersistence();
+        storageEventDispatcher.execute(this::requestPersistence);
 
         // Update that we have seen this AddOncePayload so the next time it is seen it fails verification
         if (protectedStoragePayload instanceof AddOncePayload)
@@ -852,9 +1056,10 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         printData("after remove");
 
         if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
-            broadcaster.broadcast(new RemoveMailboxDataMessage((ProtectedMailboxStorageEntry) protectedStorageEntry), sender);
+            storageEventDispatcher.execute(() -> broadcaster.broadcast(
+                    new RemoveMailboxDataMessage((ProtectedMailboxStorageEntry) protectedStorageEntry), sender));
         } else {
-            broadcaster.broadcast(new RemoveDataMessage(protectedStorageEntry), sender);
+            storageEventDispatcher.execute(() -> broadcaster.broadcast(new RemoveDataMessage(protectedStorageEntry), sender));
         }
 
         return true;
@@ -942,18 +1147,76 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             ByteArray hashOfPayload = entryToRemoveWithPayloadHash.getKey();
             ProtectedStorageEntry protectedStorageEntry = entryToRemoveWithPayloadHash.getValue();
 
-            map.remove(hashOfPayload);
+            ProtectedStorageEntry removed = map.remove(hashOfPayload);
+            if (removed != null)
+                serializedPayloadCache.removeProtectedStorageEntry(removed);
             entriesForSignal.add(protectedStorageEntry);
 
             ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
             if (protectedStoragePayload instanceof PersistablePayload) {
-                ProtectedStorageEntry previous = protectedDataStoreService.remove(hashOfPayload, protectedStorageEntry);
-                if (previous == null)
-                    log.warn("We cannot remove the protectedStorageEntry from the persistedEntryMap as it does not exist.");
+                storageEventDispatcher.execute(() -> {
+                    ProtectedStorageEntry previous = protectedDataStoreService.remove(hashOfPayload, protectedStorageEntry);
+                    if (previous == null)
+                        log.warn("We cannot remove the protectedStorageEntry from the persistedEntryMap as it does not exist.");
+                });
             }
         });
 
-        hashMapChangedListeners.forEach(e -> e.onRemoved(entriesForSignal));
+        storageEventDispatcher.onRemoved(entriesForSignal);
+    }
+
+    /**
+     * Runs the task on the storage shard of the payload if we apply the messages from the network off the user
+     * thread, otherwise on the calling thread. The side effects are executed on the user thread in both cases, but
+     * not before the current user thread task is completed. So the changes of all envelopes of a BundleOfEnvelopes
+     * get delivered to the listeners together, also without storage shards.
+     */
+    private void executeForPayload(ByteArray hashOfPayload, Runnable task) {
+        if (storageShardExecutors.length == 0) {
+            task.run();
+            // We dispatch after the messages already queued for the user thread (e.g. the other envelopes of a
+            // BundleOfEnvelopes) got applied, so their changes get delivered to the listeners as one batch
+            storageEventDispatcher.scheduleDispatch();
+            return;
+        }
+
+        ExecutorService executor = storageShardExecutors[Math.floorMod(hashOfPayload.hashCode(), storageShardExecutors.length)];
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Exception at applying storage message", t);
+                } finally {
+                    storageEventDispatcher.scheduleDispatch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Storage shard executor is shut down, we ignore the message");
+        }
+    }
+
+    private <T> T withPayloadLock(ByteArray hashOfPayload, Supplier<T> task) {
+        Lock lock = payloadLocks.get(hashOfPayload);
+        lock.lock();
+        try {
+            return task.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWithAllPayloadLocks(Runnable task) {
+        for (int i = 0; i < payloadLocks.size(); i++) {
+            payloadLocks.getAt(i).lock();
+        }
+        try {
+            task.run();
+        } finally {
+            for (int i = payloadLocks.size() - 1; i >= 0; i--) {
+                payloadLocks.getAt(i).unlock();
+            }
+        }
     }
 
     private boolean hasSequenceNrIncreased(int newSequenceNumber, ByteArray hashOfData) {
@@ -993,9 +1256,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return new ByteArray(P2PDataStorage.get32ByteHash(data));
     }
 
-    // Get a new map with entries older than PURGE_AGE_DAYS purged from the given map.
+    // Get a new map with entries older than PURGE_AGE_DAYS purged from the given map. The map gets installed into the
+    // sequenceNumberMap, which is written by the threads applying messages and copied by the persistence, so it
+    // needs to be a concurrent map.
     private Map<ByteArray, MapValue> getPurgedSequenceNumberMap(Map<ByteArray, MapValue> persisted) {
-        Map<ByteArray, MapValue> purged = new HashMap<>();
+        Map<ByteArray, MapValue> purged = new ConcurrentHashMap<>();
         long maxAgeTs = this.clock.millis() - TimeUnit.DAYS.toMillis(PURGE_AGE_DAYS);
         persisted.forEach((key, value) -> {
             if (value.timeStamp > maxAgeTs)
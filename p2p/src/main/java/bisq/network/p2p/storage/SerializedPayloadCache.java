@@ -0,0 +1,111 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.peers.getdata.messages.GetDataResponse;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+
+import com.google.protobuf.ByteString;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Caches the serialized protobuf bytes of the items we deliver with a GetDataResponse. Seed nodes answer
+ * GetDataRequests all the time and mostly deliver the same items, so we serialize each item only once and assemble
+ * the response from the cached bytes.
+ *
+ * The caches use weak keys, which are compared by identity. So an entry is only used for the instance it got created
+ * from and it gets dropped once that instance is not referenced anymore, e.g. after it got removed from our maps or
+ * replaced by another instance. ProtectedStorageEntries can get back dated, so for those we compare the creation date
+ * as well.
+ * The caches are bounded as well, so the cached bytes cannot grow with the number of items in our maps. A response
+ * contains at most 10000 items per type, so the bound covers the items of several responses.
+ */
+@ThreadSafe
+class SerializedPayloadCache {
+    private static class CacheEntry {
+        private final long creationTimeStamp;
+        private final ByteString bytes;
+
+        private CacheEntry(long creationTimeStamp, ByteString bytes) {
+            this.creationTimeStamp = creationTimeStamp;
+            this.bytes = bytes;
+        }
+    }
+
+    // Max. number of entries per cache. Most items have a few hundred bytes, so a cache holds some 10 MB.
+    static final int MAX_NUM_ENTRIES = 100_000;
+
+    private final Cache<PersistableNetworkPayload, ByteString> persistableNetworkPayloads;
+    private final Cache<ProtectedStorageEntry, CacheEntry> protectedStorageEntries;
+
+    SerializedPayloadCache() {
+        this(MAX_NUM_ENTRIES);
+    }
+
+    SerializedPayloadCache(int maxNumEntries) {
+        persistableNetworkPayloads = CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumSize(maxNumEntries)
+                .build();
+        protectedStorageEntries = CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumSize(maxNumEntries)
+                .build();
+    }
+
+    /**
+     * @return The serialized protobuf.PersistableNetworkPayload
+     */
+    ByteString getSerializedPersistableNetworkPayload(PersistableNetworkPayload payload) {
+        ByteString bytes = persistableNetworkPayloads.getIfPresent(payload);
+        if (bytes == null) {
+            bytes = payload.toProtoMessage().toByteString();
+            persistableNetworkPayloads.put(payload, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The serialized protobuf.StorageEntryWrapper
+     */
+    ByteString getSerializedStorageEntryWrapper(ProtectedStorageEntry protectedStorageEntry) {
+        CacheEntry cacheEntry = protectedStorageEntries.getIfPresent(protectedStorageEntry);
+        if (cacheEntry == null || cacheEntry.creationTimeStamp != protectedStorageEntry.getCreationTimeStamp()) {
+            cacheEntry = new CacheEntry(protectedStorageEntry.getCreationTimeStamp(),
+                    GetDataResponse.toStorageEntryWrapper(protectedStorageEntry).toByteString());
+            protectedStorageEntries.put(protectedStorageEntry, cacheEntry);
+        }
+        return cacheEntry.bytes;
+    }
+
+    // Not required for correctness as entries of unreferenced instances get dropped anyway, but it releases the
+    // bytes without waiting for the garbage collector.
+    void removeProtectedStorageEntry(ProtectedStorageEntry protectedStorageEntry) {
+        protectedStorageEntries.invalidate(protectedStorageEntry);
+    }
+
+    long size() {
+        persistableNetworkPayloads.cleanUp();
+        protectedStorageEntries.cleanUp();
+        return persistableNetworkPayloads.size() + protectedStorageEntries.size();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import bisq.network.p2p.storage.persistence.AppendOnlyDataStoreListener;
+import bisq.network.p2p.storage.persistence.BatchedAppendOnlyDataStoreListener;
+
+import bisq.common.UserThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Collects the side effects of changes of the P2PDataStorage (HashMapChangedListener and AppendOnlyDataStoreListener
+ * notifications, broadcasts, persistence requests) so that changes can be applied on other threads while the side
+ * effects get executed in batches on the user thread.
+ *
+ * Events are executed in the order they got added. Changes of the same payload are done while holding the lock of its
+ * hash, so the events of a payload are in the order of its changes. The listeners get notified after the other side
+ * effects of a batch, with consecutive notifications of the same kind merged into one call. Changes received with one
+ * GetDataResponse or BundleOfEnvelopes are dispatched as one batch. BatchedAppendOnlyDataStoreListeners get the
+ * merged payloads with one call, other AppendOnlyDataStoreListeners get one call per payload.
+ */
+@ThreadSafe
+@Slf4j
+class StorageEventDispatcher {
+    private enum NotificationType {
+        ENTRIES_ADDED,
+        ENTRIES_REMOVED,
+        PAYLOADS_ADDED
+    }
+
+    private static class ListenerNotification {
+        private final NotificationType type;
+        private final Collection<?> items;
+
+        private ListenerNotification(NotificationType type, Collection<?> items) {
+            this.type = type;
+            this.items = items;
+        }
+    }
+
+    private final Set<HashMapChangedListener> hashMapChangedListeners;
+    private final Set<AppendOnlyDataStoreListener> appendOnlyDataStoreListeners;
+    // Contains Runnables and ListenerNotifications
+    private final Queue<Object> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    // Guarded by this
+    private boolean dispatching;
+
+    StorageEventDispatcher(Set<HashMapChangedListener> hashMapChangedListeners,
+                           Set<AppendOnlyDataStoreListener> appendOnlyDataStoreListeners) {
+        this.hashMapChangedListeners = hashMapChangedListeners;
+        this.appendOnlyDataStoreListeners = appendOnlyDataStoreListeners;
+    }
+
+    void execute(Runnable sideEffect) {
+        events.add(sideEffect);
+    }
+
+    void onAdded(ProtectedStorageEntry protectedStorageEntry) {
+        events.add(new ListenerNotification(NotificationType.ENTRIES_ADDED, List.of(protectedStorageEntry)));
+    }
+
+    void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+        if (!protectedStorageEntries.isEmpty())
+            events.add(new ListenerNotification(NotificationType.ENTRIES_REMOVED, protectedStorageEntries));
+    }
+
+    void onAdded(PersistableNetworkPayload persistableNetworkPayload) {
+        events.add(new ListenerNotification(NotificationType.PAYLOADS_ADDED, List.of(persistableNetworkPayload)));
+    }
+
+    // Called from the threads applying changes off the user thread and from the network message handlers, so all changes
+    // of the messages already queued for the user thread get dispatched together
+    void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            UserThread.execute(() -> {
+                dispatchScheduled.set(false);
+                dispatch();
+            });
+        }
+    }
+
+    /**
+     * Executes all pending events. Must be called on the user thread. If a listener causes new events they are
+     * executed after the current batch.
+     */
+    synchronized void dispatch() {
+        if (dispatching)
+            return;
+
+        dispatching = true;
+        try {
+            while (!events.isEmpty()) {
+                List<ListenerNotification> notifications = new ArrayList<>();
+                Object event;
+                while ((event = events.poll()) != null) {
+                    if (event instanceof ListenerNotification) {
+                        notifications.add((ListenerNotification) event);
+                    } else {
+                        runSafely((Runnable) event);
+                    }
+                }
+                notifyListeners(notifications);
+            }
+        } finally {
+            dispatching = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyListeners(List<ListenerNotification> notifications) {
+        int i = 0;
+        while (i < notifications.size()) {
+            NotificationType type = notifications.get(i).type;
+            List<Object> mergedItems = new ArrayList<>();
+            while (i < notifications.size() && notifications.get(i).type == type) {
+                mergedItems.addAll(notifications.get(i).items);
+                i++;
+            }
+            List<?> items = Collections.unmodifiableList(mergedItems);
+
+            switch (type) {
+                case ENTRIES_ADDED:
+                    hashMapChangedListeners.forEach(listener ->
+                            runSafely(() -> listener.onAdded((List<ProtectedStorageEntry>) items)));
+                    break;
+                case ENTRIES_REMOVED:
+                    hashMapChangedListeners.forEach(listener ->
+                            runSafely(() -> listener.onRemoved((List<ProtectedStorageEntry>) items)));
+                    break;
+                case PAYLOADS_ADDED:
+                    notifyAppendOnlyDataStoreListeners((List<PersistableNetworkPayload>) items);
+                    break;
+            }
+        }
+    }
+
+    private void notifyAppendOnlyDataStoreListeners(List<PersistableNetworkPayload> payloads) {
+        appendOnlyDataStoreListeners.forEach(listener -> {
+            if (listener instanceof BatchedAppendOnlyDataStoreListener) {
+                runSafely(() -> ((BatchedAppendOnlyDataStoreListener) listener).onAdded(payloads));
+            } else {
+                payloads.forEach(payload -> runSafely(() -> listener.onAdded(payload)));
+            }
+        });
+    }
+
+    // An exception of one event must not prevent the execution of the others
+    private static void runSafely(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Throwable t) {
+            log.error("Exception at dispatching storage event", t);
+        }
+    }
+}
@@ -22,6 +22,8 @@ import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 
 import javax.inject.Inject;
 
+import com.google.protobuf.ByteString;
+
 import com.google.common.annotations.VisibleForTesting;
 
 import java.util.ArrayList;
@@ -33,6 +35,8 @@ import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Used for PersistableNetworkPayload data which gets appended to a map storage.
  */
@@ -72,12 +76,30 @@ public class AppendOnlyDataStoreService {
     }
 
 
+    public void shutDown() {
+        services.forEach(MapStoreService::shutDown);
+    }
+
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMap() {
         return services.stream()
                 .flatMap(service -> service.getMap().entrySet().stream())
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
+    // Returns the serialized payload if it is in one of the memory-mapped historical stores, otherwise null
+    @Nullable
+    public ByteString getSerializedHistoricalPayload(PersistableNetworkPayload payload) {
+        for (MapStoreService<?, PersistableNetworkPayload> service : services) {
+            if (service instanceof HistoricalDataStoreService && service.canHandle(payload)) {
+                var historicalDataStoreService = (HistoricalDataStoreService<?>) service;
+                ByteString serialized = historicalDataStoreService.getSerializedHistoricalPayload(payload.getHash());
+                if (serialized != null)
+                    return serialized;
+            }
+        }
+        return null;
+    }
+
     public void put(P2PDataStorage.ByteArray hashAsByteArray, PersistableNetworkPayload payload) {
         services.stream()
                 .filter(service -> service.canHandle(payload))
@@ -0,0 +1,412 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+import bisq.common.util.Utilities;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Segment based append-only log for the PersistableNetworkPayloads of a MapStoreService. Instead of rewriting the
+ * whole store at each change we only append the new payloads.
+ *
+ * The log is stored in a directory with an optional base file holding a compacted snapshot of all payloads and the
+ * segments appended after it. The files are numbered and only the newest base file and the segments with a higher
+ * number are valid, so a compaction gets committed by renaming its temp file to the new base file.
+ *
+ * A record consists of the length (int) and the CRC32 (int) of the payload followed by the serialized
+ * protobuf.PersistableNetworkPayload. Records of a segment with an invalid checksum or length stop the replay of the
+ * segment, so a torn write at a crash only loses the last records.
+ *
+ * All file operations are done on a single thread. New payloads are queued and written in batches with one fsync
+ * per batch. If there are more than MAX_NUM_SEGMENTS segments they get compacted in the background. If a write
+ * failed we compact as well, so the payloads which have not been written get persisted with the snapshot.
+ */
+@ThreadSafe
+@Slf4j
+class AppendOnlyLog {
+    private static final String BASE_PREFIX = "base_";
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String SUFFIX = ".log";
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("(" + BASE_PREFIX + "|" + SEGMENT_PREFIX + ")(\\d+)" +
+            Pattern.quote(SUFFIX));
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 10 * 1024 * 1024;
+    @VisibleForTesting
+    static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+    @VisibleForTesting
+    static final int MAX_NUM_SEGMENTS = 8;
+
+    private final File dir;
+    private final Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder;
+    // Delivers all payloads of the store for compaction. Must be safe to be called from the log thread.
+    private final Supplier<Collection<PersistableNetworkPayload>> snapshotSupplier;
+    private final Queue<PersistableNetworkPayload> pendingPayloads = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ExecutorService executor;
+
+    // Only accessed from the log thread
+    @Nullable
+    private FileChannel segmentChannel;
+    private int segmentIndex;
+    private long segmentSize;
+    private int numSegments;
+    private boolean writeFailed;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    AppendOnlyLog(File dir,
+                  Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder,
+                  Supplier<Collection<PersistableNetworkPayload>> snapshotSupplier) {
+        this.dir = dir;
+        this.decoder = decoder;
+        this.snapshotSupplier = snapshotSupplier;
+        executor = Utilities.getSingleThreadExecutor("AppendOnlyLog-" + dir.getName());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    boolean exists() {
+        return !getValidFiles().isEmpty();
+    }
+
+    /**
+     * Reads all valid records. Torn records at the end of a segment are truncated. Must be called before the log
+     * gets opened.
+     */
+    List<PersistableNetworkPayload> replay() {
+        long ts = System.currentTimeMillis();
+        List<PersistableNetworkPayload> result = new ArrayList<>();
+        TreeMap<Integer, File> validFiles = getValidFiles();
+        validFiles.values().forEach(file -> readRecords(file, result));
+        log.info("Replaying {} payloads from {} files of {} took {} ms",
+                result.size(), validFiles.size(), dir.getName(), System.currentTimeMillis() - ts);
+        return result;
+    }
+
+    /**
+     * Starts a new segment for appending. If there is no valid file yet (e.g. if we migrate from the single file
+     * format) we write the current snapshot as base file first.
+     */
+    void open() {
+        executeOnLogThread(() -> {
+            if (!dir.exists() && !dir.mkdirs())
+                log.warn("make dir failed {}", dir);
+
+            TreeMap<Integer, File> validFiles = getValidFiles();
+            if (validFiles.isEmpty()) {
+                segmentIndex = 0;
+                writeBase();
+            } else {
+                segmentIndex = validFiles.lastKey() + 1;
+                numSegments = validFiles.size();
+                deleteFilesOlderThan(validFiles.firstKey());
+            }
+            if (numSegments > MAX_NUM_SEGMENTS)
+                requestCompaction();
+        });
+    }
+
+    // Payloads are serialized and written on the log thread, PersistableNetworkPayloads are immutable
+    void append(PersistableNetworkPayload payload) {
+        pendingPayloads.add(payload);
+        if (flushScheduled.compareAndSet(false, true)) {
+            executeOnLogThread(() -> {
+                flushScheduled.set(false);
+                flushPendingPayloads();
+            });
+        }
+    }
+
+    /**
+     * Replaces all files by a base file holding the snapshot. Used after removals and if there are too many segments.
+     */
+    void requestCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            executeOnLogThread(() -> {
+                compactionScheduled.set(false);
+                writePendingPayloads();
+                writeBase();
+            });
+        }
+    }
+
+    // Blocks until all pending payloads are written
+    void close() {
+        executeOnLogThread(() -> {
+            writePendingPayloads();
+            if (writeFailed)
+                writeBase();
+            closeSegment();
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                log.warn("Closing the append-only log {} timed out", dir.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void executeOnLogThread(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Error at append-only log {}", dir.getName(), t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Append-only log {} is closed already", dir.getName());
+        }
+    }
+
+    private void flushPendingPayloads() {
+        writePendingPayloads();
+        if (writeFailed || numSegments > MAX_NUM_SEGMENTS)
+            requestCompaction();
+    }
+
+    private void writePendingPayloads() {
+        if (pendingPayloads.isEmpty())
+            return;
+
+        int numRecords = 0;
+        try {
+            PersistableNetworkPayload payload;
+            while ((payload = pendingPayloads.poll()) != null) {
+                if (segmentChannel == null || segmentSize >= MAX_SEGMENT_SIZE)
+                    openNextSegment();
+
+                segmentSize += writeRecord(segmentChannel, payload);
+                numRecords++;
+            }
+            // One fsync for the whole batch
+            segmentChannel.force(false);
+        } catch (IOException e) {
+            log.error("Writing {} records to {} failed. We persist all payloads with the next compaction.",
+                    numRecords, dir.getName(), e);
+            // We continue with a new segment, so a partially written record is at the end of a segment
+            closeSegment();
+            writeFailed = true;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        File file = new File(dir, SEGMENT_PREFIX + segmentIndex + SUFFIX);
+        segmentIndex++;
+        segmentChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segmentSize = 0;
+        numSegments++;
+        FileUtil.syncDirectory(dir);
+    }
+
+    private void closeSegment() {
+        if (segmentChannel != null) {
+            try {
+                segmentChannel.close();
+            } catch (IOException e) {
+                log.warn("Closing segment of {} failed", dir.getName(), e);
+            }
+            segmentChannel = null;
+        }
+    }
+
+    private void writeBase() {
+        long ts = System.currentTimeMillis();
+        closeSegment();
+        int baseIndex = segmentIndex++;
+        Path tempPath = new File(dir, BASE_PREFIX + baseIndex + SUFFIX + ".tmp").toPath();
+        Path basePath = new File(dir, BASE_PREFIX + baseIndex + SUFFIX).toPath();
+        Collection<PersistableNetworkPayload> snapshot = snapshotSupplier.get();
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (PersistableNetworkPayload payload : snapshot) {
+                    writeRecord(channel, payload);
+                }
+                channel.force(true);
+            }
+            Files.move(tempPath, basePath, StandardCopyOption.ATOMIC_MOVE);
+            FileUtil.syncDirectory(dir);
+        } catch (IOException e) {
+            log.error("Writing base file of {} failed", dir.getName(), e);
+            writeFailed = true;
+            return;
+        }
+
+        deleteFilesOlderThan(baseIndex);
+        numSegments = 0;
+        writeFailed = false;
+        log.info("Compacting {} to {} payloads took {} ms", dir.getName(), snapshot.size(),
+                System.currentTimeMillis() - ts);
+    }
+
+    private static int writeRecord(FileChannel channel, PersistableNetworkPayload payload) throws IOException {
+        byte[] bytes = payload.toProtoMessage().toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(bytes);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return HEADER_SIZE + bytes.length;
+    }
+
+    private void readRecords(File file, List<PersistableNetworkPayload> result) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                header.clear();
+                if (!readFully(channel, header, position))
+                    break;
+
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || length > MAX_RECORD_SIZE)
+                    break;
+
+                ByteBuffer data = ByteBuffer.allocate(length);
+                if (!readFully(channel, data, position + HEADER_SIZE))
+                    break;
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(data.array());
+                if ((int) crc32.getValue() != checksum)
+                    break;
+
+                position += HEADER_SIZE + length;
+                try {
+                    PersistableNetworkPayload payload = decoder.apply(
+                            protobuf.PersistableNetworkPayload.parseFrom(data.array()));
+                    if (payload != null)
+                        result.add(payload);
+                } catch (Throwable t) {
+                    // Can happen with payloads we do not support anymore, we skip those
+                    log.warn("Could not decode record of {}. {}", file.getName(), t.toString());
+                }
+            }
+
+            if (position < size) {
+                log.warn("Found invalid record at position {} of {} with size {}. We truncate the file.",
+                        position, file.getName(), size);
+                channel.truncate(position);
+            }
+        } catch (IOException e) {
+            log.error("Reading {} failed", file.getName(), e);
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int numBytes = channel.read(buffer, position);
+            if (numBytes < 0)
+                return false;
+            position += numBytes;
+        }
+        return true;
+    }
+
+    // Newest base file and all segments after it, sorted by their index
+    private TreeMap<Integer, File> getValidFiles() {
+        TreeMap<Integer, File> segments = new TreeMap<>();
+        int baseIndex = -1;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+                if (matcher.matches()) {
+                    int index = Integer.parseInt(matcher.group(2));
+                    if (matcher.group(1).equals(BASE_PREFIX))
+                        baseIndex = Math.max(baseIndex, index);
+                    segments.put(index, file);
+                }
+            }
+        }
+        return new TreeMap<>(segments.tailMap(Math.max(baseIndex, 0)));
+    }
+
+    private void deleteFilesOlderThan(int index) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+            boolean isOutdated = matcher.matches() && Integer.parseInt(matcher.group(2)) < index;
+            if ((isOutdated || file.getName().endsWith(".tmp")) && !file.delete())
+                log.warn("Could not delete {}", file);
+        }
+    }
+}
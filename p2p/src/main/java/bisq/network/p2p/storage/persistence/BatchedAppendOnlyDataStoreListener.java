@@ -0,0 +1,36 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * AppendOnlyDataStoreListener which gets all payloads added with one GetDataResponse or BundleOfEnvelopes delivered
+ * with one call instead of one call per payload. Listeners doing expensive work per change (e.g. updating observable
+ * collections or UI state) should implement it. The collection is immutable.
+ */
+public interface BatchedAppendOnlyDataStoreListener extends AppendOnlyDataStoreListener {
+    void onAdded(Collection<PersistableNetworkPayload> payloads);
+
+    @Override
+    default void onAdded(PersistableNetworkPayload payload) {
+        onAdded(List.of(payload));
+    }
+}
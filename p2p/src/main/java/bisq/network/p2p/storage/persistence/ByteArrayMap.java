@@ -0,0 +1,535 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Map for the fixed length hashes we use as keys in our data stores. The keys are not kept as ByteArray objects but
+ * copied into one contiguous byte array together with their precomputed hashes. The entries are kept in insertion
+ * order and found by an open addressing index with linear probing. Lookups with a byte[] do not need to wrap the key.
+ *
+ * The key length is defined by the first key. Keys of another length are unexpected but supported by a fallback map.
+ *
+ * Memory footprint for 200 000 entries with 20 byte keys (e.g. AccountAgeWitness or TradeStatistics3) and
+ * compressed oops: 4.1 MB keys, 0.8 MB hashes, 0.8 MB value references (capacity 207 379) and 2.1 MB index, in
+ * total 7.9 MB. A ConcurrentHashMap needs 6.4 MB for its nodes, 3.2 MB for the ByteArray wrappers and 2.1 MB for
+ * its table, in total 11.7 MB if the key shares its byte[] with the payload and 19.7 MB if it does not. It also
+ * saves the garbage collector two objects per entry to trace.
+ *
+ * Readers do not block. Writers are serialized. Removed entries are only marked and get dropped when the entry
+ * arrays are rebuilt. Iteration is weakly consistent like with ConcurrentHashMap. Iterating keys or entries needs
+ * to create a ByteArray per key, so callers which walk the whole map should use values() or forEachEntry, which
+ * passes the keys in place.
+ */
+@ThreadSafe
+public final class ByteArrayMap<V> extends AbstractMap<P2PDataStorage.ByteArray, V>
+        implements ConcurrentMap<P2PDataStorage.ByteArray, V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Receives a key as the range of keyBytes from offset with the given length. The array must not be changed and is
+     * only valid during the call.
+     */
+    @FunctionalInterface
+    public interface KeyPredicate {
+        boolean test(byte[] keyBytes, int offset, int length);
+
+        default KeyPredicate or(KeyPredicate other) {
+            return (keyBytes, offset, length) -> test(keyBytes, offset, length) || other.test(keyBytes, offset, length);
+        }
+    }
+
+    /**
+     * Receives an entry with its key as the range of keyBytes from offset with the given length. The array must not be
+     * changed and is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(byte[] keyBytes, int offset, int length, V value);
+    }
+
+    private static final class Table {
+        private final int keyLength;
+        private final byte[] keys;
+        private final int[] hashes;
+        // A value is set after its key and hash got written, REMOVED marks removed entries and null unused entries
+        private final AtomicReferenceArray<Object> values;
+        // Entry index + 1 of the entry with the hash at that slot, 0 for empty slots
+        private final AtomicIntegerArray index;
+        // Only accessed by writers
+        private int numEntries;
+
+        private Table(int keyLength, int capacity) {
+            this.keyLength = keyLength;
+            keys = new byte[capacity * keyLength];
+            hashes = new int[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            // We keep the load of the index below 0.75
+            int indexCapacity = MIN_CAPACITY;
+            while (indexCapacity * 3L < capacity * 4L) {
+                indexCapacity <<= 1;
+            }
+            index = new AtomicIntegerArray(indexCapacity);
+        }
+
+        private int getCapacity() {
+            return hashes.length;
+        }
+    }
+
+    // Random seed so that peers cannot prepare keys which collide in our index
+    private final int seed = ThreadLocalRandom.current().nextInt();
+    private final Map<P2PDataStorage.ByteArray, V> otherKeys = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile Table table;
+    private volatile int tableSize;
+    private final EntrySet entrySet = new EntrySet();
+    private final Values values = new Values();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Lookup by byte[]
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Nullable
+    public V get(byte[] key) {
+        return get(key, 0, key.length);
+    }
+
+    @Nullable
+    public V get(byte[] keyBytes, int offset, int length) {
+        Table t = table;
+        if (t != null && length == t.keyLength) {
+            int entry = findEntry(t, keyBytes, offset, hash(keyBytes, offset, length));
+            return entry >= 0 ? valueOrNull(t.values.get(entry)) : null;
+        }
+        return otherKeys.isEmpty() ?
+                null :
+                otherKeys.get(new P2PDataStorage.ByteArray(Arrays.copyOfRange(keyBytes, offset, offset + length)));
+    }
+
+    public boolean containsKey(byte[] key) {
+        return get(key) != null;
+    }
+
+    public boolean containsKey(byte[] keyBytes, int offset, int length) {
+        return get(keyBytes, offset, length) != null;
+    }
+
+    @Nullable
+    public V put(byte[] key, V value) {
+        return put(key, value, false);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Iteration without ByteArray keys
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Calls the consumer for all entries in the same order and with the same consistency as the iterators, but
+     * without creating a ByteArray for the keys.
+     */
+    public void forEachEntry(EntryConsumer<? super V> consumer) {
+        Table t = table;
+        if (t != null) {
+            // Entries are appended, so the first unused entry marks the end
+            for (int entry = 0; entry < t.getCapacity(); entry++) {
+                Object value = t.values.get(entry);
+                if (value == null)
+                    break;
+
+                if (value != REMOVED)
+                    consumer.accept(t.keys, entry * t.keyLength, t.keyLength, valueOrNull(value));
+            }
+        }
+        otherKeys.forEach((key, value) -> consumer.accept(key.bytes, 0, key.bytes.length, value));
+    }
+
+    /**
+     * Calls the consumer for all entries of the map. ByteArrayMaps, also inside a ReadOnlyMapUnion, pass their keys
+     * in place. Other maps pass the bytes of their ByteArray keys.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void forEachEntry(Map<P2PDataStorage.ByteArray, V> map, EntryConsumer<? super V> consumer) {
+        if (map instanceof ByteArrayMap) {
+            ((ByteArrayMap<V>) map).forEachEntry(consumer);
+        } else if (map instanceof ReadOnlyMapUnion) {
+            ((ReadOnlyMapUnion<P2PDataStorage.ByteArray, V>) map).getMaps()
+                    .forEach(unitedMap -> forEachEntry(unitedMap, consumer));
+        } else {
+            map.forEach((key, value) -> consumer.accept(key.bytes, 0, key.bytes.length, value));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Map
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int size() {
+        return tableSize + otherKeys.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof P2PDataStorage.ByteArray ? get(((P2PDataStorage.ByteArray) key).bytes) : null;
+    }
+
+    @Override
+    public V put(P2PDataStorage.ByteArray key, V value) {
+        return put(key.bytes, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(P2PDataStorage.ByteArray key, V value) {
+        return put(key.bytes, value, true);
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        if (!(key instanceof P2PDataStorage.ByteArray))
+            return null;
+
+        byte[] bytes = ((P2PDataStorage.ByteArray) key).bytes;
+        Table t = table;
+        if (t != null && bytes.length == t.keyLength) {
+            int entry = findEntry(t, bytes, 0, hash(bytes, 0, bytes.length));
+            if (entry < 0)
+                return null;
+
+            V previous = valueOrNull(t.values.get(entry));
+            t.values.set(entry, REMOVED);
+            tableSize--;
+            return previous;
+        }
+        return otherKeys.remove(key);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        if (value != null && value.equals(get(key))) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean replace(P2PDataStorage.ByteArray key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue);
+        if (oldValue != null && oldValue.equals(get(key))) {
+            put(key, newValue);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized V replace(P2PDataStorage.ByteArray key, V value) {
+        Objects.requireNonNull(value);
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Table t = table;
+        if (t != null)
+            table = new Table(t.keyLength, MIN_CAPACITY);
+        tableSize = 0;
+        otherKeys.clear();
+    }
+
+    @Override
+    public Set<Entry<P2PDataStorage.ByteArray, V>> entrySet() {
+        return entrySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return values;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized V put(byte[] key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+
+        if (table == null)
+            table = new Table(key.length, MIN_CAPACITY);
+
+        Table t = table;
+        if (key.length != t.keyLength) {
+            P2PDataStorage.ByteArray byteArray = new P2PDataStorage.ByteArray(key);
+            return onlyIfAbsent ? otherKeys.putIfAbsent(byteArray, value) : otherKeys.put(byteArray, value);
+        }
+
+        int hash = hash(key, 0, key.length);
+        int entry = findEntry(t, key, 0, hash);
+        if (entry >= 0) {
+            V previous = valueOrNull(t.values.get(entry));
+            if (!onlyIfAbsent)
+                t.values.set(entry, value);
+            return previous;
+        }
+
+        if (t.numEntries == t.getCapacity()) {
+            // Readers which still use the old table see the state before that put
+            t = rebuild(t, tableSize + 1);
+            table = t;
+        }
+        append(t, key, 0, hash, value);
+        tableSize++;
+        return null;
+    }
+
+    // Copies the entries which are not removed into a new table with room for at least minSize entries
+    private static Table rebuild(Table table, int minSize) {
+        Table newTable = new Table(table.keyLength, Math.max(MIN_CAPACITY, minSize + minSize / 2));
+        for (int entry = 0; entry < table.numEntries; entry++) {
+            Object value = table.values.get(entry);
+            if (value != REMOVED)
+                append(newTable, table.keys, entry * table.keyLength, table.hashes[entry], value);
+        }
+        return newTable;
+    }
+
+    private static void append(Table table, byte[] key, int keyOffset, int hash, Object value) {
+        int entry = table.numEntries++;
+        System.arraycopy(key, keyOffset, table.keys, entry * table.keyLength, table.keyLength);
+        table.hashes[entry] = hash;
+        table.values.set(entry, value);
+
+        // The volatile write to the index publishes the entry to readers
+        int mask = table.index.length() - 1;
+        int slot = hash & mask;
+        while (table.index.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.index.set(slot, entry + 1);
+    }
+
+    private static int findEntry(Table table, byte[] key, int keyOffset, int hash) {
+        int mask = table.index.length() - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table.index.get(slot) - 1;
+            if (entry < 0)
+                return -1;
+
+            if (table.hashes[entry] == hash && table.values.get(entry) != REMOVED) {
+                int offset = entry * table.keyLength;
+                if (Arrays.equals(table.keys, offset, offset + table.keyLength,
+                        key, keyOffset, keyOffset + table.keyLength))
+                    return entry;
+            }
+        }
+    }
+
+    // Seeded FNV-1a followed by the murmur3 finalizer as we use the lower bits for the index
+    private int hash(byte[] key, int offset, int length) {
+        int hash = seed;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ key[i]) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static <V> V valueOrNull(Object value) {
+        return value == null || value == REMOVED ? null : (V) value;
+    }
+
+    private abstract class BaseIterator<E> implements Iterator<E> {
+        @Nullable
+        private final Table iteratedTable = table;
+        private final Iterator<Entry<P2PDataStorage.ByteArray, V>> otherKeysIterator = otherKeys.entrySet().iterator();
+        private int nextEntry;
+        @Nullable
+        private V nextValue;
+        private int lastEntry = -1;
+        private boolean lastFromOtherKeys;
+
+        BaseIterator() {
+            nextEntry = findNextEntry(0);
+        }
+
+        abstract E fromTable(Table table, int entry, V value);
+
+        abstract E fromOtherKeys(Entry<P2PDataStorage.ByteArray, V> entry);
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry >= 0 || otherKeysIterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if (nextEntry >= 0) {
+                int entry = nextEntry;
+                V value = nextValue;
+                nextEntry = findNextEntry(entry + 1);
+                lastEntry = entry;
+                lastFromOtherKeys = false;
+                return fromTable(iteratedTable, entry, value);
+            }
+
+            Entry<P2PDataStorage.ByteArray, V> entry = otherKeysIterator.next();
+            lastEntry = -1;
+            lastFromOtherKeys = true;
+            return fromOtherKeys(entry);
+        }
+
+        @Override
+        public void remove() {
+            if (lastEntry >= 0) {
+                ByteArrayMap.this.remove(getKey(iteratedTable, lastEntry));
+            } else if (lastFromOtherKeys) {
+                otherKeysIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+            lastEntry = -1;
+            lastFromOtherKeys = false;
+        }
+
+        // Entries are appended, so the first unused entry marks the end
+        private int findNextEntry(int from) {
+            if (iteratedTable == null)
+                return -1;
+
+            for (int entry = from; entry < iteratedTable.getCapacity(); entry++) {
+                Object value = iteratedTable.values.get(entry);
+                if (value == null)
+                    return -1;
+
+                if (value != REMOVED) {
+                    nextValue = valueOrNull(value);
+                    return entry;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static P2PDataStorage.ByteArray getKey(Table table, int entry) {
+        int offset = entry * table.keyLength;
+        return new P2PDataStorage.ByteArray(Arrays.copyOfRange(table.keys, offset, offset + table.keyLength));
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<P2PDataStorage.ByteArray, V>> {
+        @Override
+        public Iterator<Entry<P2PDataStorage.ByteArray, V>> iterator() {
+            return new BaseIterator<Entry<P2PDataStorage.ByteArray, V>>() {
+                @Override
+                Entry<P2PDataStorage.ByteArray, V> fromTable(Table table, int entry, V value) {
+                    return new SimpleImmutableEntry<>(getKey(table, entry), value);
+                }
+
+                @Override
+                Entry<P2PDataStorage.ByteArray, V> fromOtherKeys(Entry<P2PDataStorage.ByteArray, V> entry) {
+                    return new SimpleImmutableEntry<>(entry);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            V value = get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public int size() {
+            return ByteArrayMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ByteArrayMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new BaseIterator<V>() {
+                @Override
+                V fromTable(Table table, int entry, V value) {
+                    return value;
+                }
+
+                @Override
+                V fromOtherKeys(Entry<P2PDataStorage.ByteArray, V> entry) {
+                    return entry.getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ByteArrayMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ByteArrayMap.this.clear();
+        }
+    }
+}
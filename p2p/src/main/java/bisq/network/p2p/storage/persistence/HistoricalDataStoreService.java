@@ -20,30 +20,51 @@ package bisq.network.p2p.storage.persistence;
 import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 
+import bisq.common.UserThread;
 import bisq.common.app.Version;
 import bisq.common.persistence.PersistenceManager;
+import bisq.common.persistence.StartupTimeline;
 
+import com.google.protobuf.ByteString;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.io.File;
+import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Manages historical data stores tagged with the release versions.
  * New data is added to the default map in the store (live data). Historical data is created from resource files.
  * For initial data requests we only use the live data as the users version is sent with the
  * request so the responding (seed)node can figure out if we miss any of the historical data.
+ *
+ * The historical stores are converted once to a {@link MappedPayloadMap} file, so later we only map that file
+ * instead of parsing the whole store into the heap.
  */
 @Slf4j
 public abstract class HistoricalDataStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> extends MapStoreService<T, PersistableNetworkPayload> {
-    private ImmutableMap<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion;
-    // Cache to avoid that we have to recreate the historical data at each request
-    private ImmutableMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads;
+    private static final String MAPPED_FILE_POSTFIX = "_mapped";
+
+    private ImmutableMap<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion;
+    // View on all historical data to avoid that we have to recreate it at each request
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads;
+    // Versions of our historical stores, oldest first
+    private ImmutableList<String> sortedStoreVersions;
+    // Element i is a view on the data of the historical stores from index i of sortedStoreVersions on. The last
+    // element is empty. Used to deliver the historical data since a version without copying it.
+    private ImmutableList<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> historicalPayloadsSinceIndex;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -61,34 +82,23 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
 
     // We give back a map of our live map and all historical maps newer than the requested version.
     // If requestersVersion is null we return all historical data.
+    // The result is a read-only view on our maps and reflects later changes of the live data.
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapSinceVersion(String requestersVersion) {
-        // We add all our live data
-        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(store.getMap());
-
-        // If we have a store with a newer version than the requesters version we will add those as well.
-        storesByVersion.entrySet().stream()
-                .filter(entry -> {
-                    // Old nodes not sending the version will get delivered all data
-                    if (requestersVersion == null) {
-                        log.info("The requester did not send a version. This is expected for not updated nodes.");
-                        return true;
-                    }
-
-                    // Otherwise we only add data if the requesters version is older then
-                    // the version of the particular store.
-                    String storeVersion = entry.getKey();
-                    boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
-                    String details = newVersion ?
-                            "As our historical store is a newer version we add the data to our result map." :
-                            "As the requester version is not older as our historical store we do not " +
-                                    "add the data to the result map.";
-                    log.info("The requester had version {}. Our historical data store has version {}.\n{}",
-                            requestersVersion, storeVersion, details);
-                    return newVersion;
-                })
-                .map(e -> e.getValue().getMap())
-                .forEach(result::putAll);
+        int index;
+        if (requestersVersion == null) {
+            // Old nodes not sending the version will get delivered all data
+            log.info("The requester did not send a version. This is expected for not updated nodes.");
+            index = 0;
+        } else {
+            // Otherwise we only add data of stores with a newer version than the requesters version.
+            index = getIndexOfFirstNewerStore(requestersVersion);
+            log.info("The requester had version {}. We add the data of our historical data stores with versions {}.",
+                    requestersVersion, sortedStoreVersions.subList(index, sortedStoreVersions.size()));
+        }
 
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new ReadOnlyMapUnion<>(Arrays.asList(
+                getMapOfLiveData(),
+                historicalPayloadsSinceIndex.get(index)));
         log.info("We found {} entries since requesters version {}",
                 result.size(), requestersVersion);
         return result;
@@ -104,6 +114,23 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         return result;
     }
 
+    // The payloads of the mapped historical stores are decoded at each access, so we give the bytes from the file to
+    // the callers which send them.
+    @Nullable
+    public ByteString getSerializedHistoricalPayload(byte[] hash) {
+        if (storesByVersion == null)
+            return null;
+
+        for (Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap : storesByVersion.values()) {
+            if (historicalMap instanceof MappedPayloadMap) {
+                ByteString serialized = ((MappedPayloadMap) historicalMap).getSerializedPayload(hash);
+                if (serialized != null)
+                    return serialized;
+            }
+        }
+        return null;
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // MapStoreService
@@ -127,7 +154,7 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         }
 
         getMapOfLiveData().put(hash, payload);
-        requestPersistence();
+        persistAdded(payload);
     }
 
     @Override
@@ -140,34 +167,41 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         // So it will be always null. We still keep the return type as we override the method from MapStoreService which
         // follow the Map.putIfAbsent signature.
         getMapOfLiveData().put(hash, payload);
-        requestPersistence();
+        persistAdded(payload);
         return null;
     }
 
 
+    // The historical stores do not depend on the live data, so we read them in parallel with the live store. Only
+    // the pruning of the live data has to wait until all are read.
     @Override
     protected void readFromResources(String postFix, Runnable completeHandler) {
+        // As the historical stores are immutable after created we use an ImmutableMap
+        ImmutableMap.Builder<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersionBuilder = ImmutableMap.builder();
+        List<String> versionsCreatedFromResources = new ArrayList<>();
+
+        AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size() + 1);
+        Runnable onFileRead = () -> {
+            if (numFiles.decrementAndGet() == 0) {
+                storesByVersion = storesByVersionBuilder.build();
+                Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.stream()
+                        .filter(versionsCreatedFromResources::contains)
+                        .forEach(version -> pruneStore(storesByVersion.get(version), version));
+                buildHistoricalPayloadsSinceIndex();
+                completeHandler.run();
+            }
+        };
+
         readStore(persisted -> {
             log.info("We have created the {} store for the live data and filled it with {} entries from the persisted data.",
                     getFileName(), getMapOfLiveData().size());
-
-            // Now we add our historical data stores. As they are immutable after created we use an ImmutableMap
-            ImmutableMap.Builder<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloadsBuilder = ImmutableMap.builder();
-            ImmutableMap.Builder<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersionBuilder = ImmutableMap.builder();
-
-            AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size());
-            Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
-                    postFix,
-                    allHistoricalPayloadsBuilder,
-                    storesByVersionBuilder,
-                    () -> {
-                        if (numFiles.decrementAndGet() == 0) {
-                            allHistoricalPayloads = allHistoricalPayloadsBuilder.build();
-                            storesByVersion = storesByVersionBuilder.build();
-                            completeHandler.run();
-                        }
-                    }));
+            onFileRead.run();
         });
+        Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
+                postFix,
+                storesByVersionBuilder,
+                versionsCreatedFromResources,
+                onFileRead));
     }
 
 
@@ -177,41 +211,109 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
 
     private void readHistoricalStoreFromResources(String version,
                                                   String postFix,
-                                                  ImmutableMap.Builder<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalDataBuilder,
-                                                  ImmutableMap.Builder<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersionBuilder,
+                                                  ImmutableMap.Builder<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersionBuilder,
+                                                  List<String> versionsCreatedFromResources,
                                                   Runnable completeHandler) {
         String fileName = getFileName() + "_" + version;
-        boolean wasCreatedFromResources = makeFileFromResourceFile(fileName, postFix);
-
-        // If resource file does not exist we do not create a new store as it would never get filled.
-        persistenceManager.readPersisted(fileName, persisted -> {
-                    storesByVersionBuilder.put(version, persisted);
-                    allHistoricalDataBuilder.putAll(persisted.getMap());
-                    log.info("We have read from {} {} historical items.", fileName, persisted.getMap().size());
+        StartupTimeline.record(fileName, StartupTimeline.Phase.QUEUED);
+        PersistenceManager.getReadExecutor().execute(() -> {
+            StartupTimeline.record(fileName, StartupTimeline.Phase.READ_STARTED);
+            boolean wasCreatedFromResources = makeFileFromResourceFile(fileName, postFix);
+            File mappedFile = new File(absolutePathOfStorageDir, fileName + MAPPED_FILE_POSTFIX);
+            if (wasCreatedFromResources && mappedFile.exists() && !mappedFile.delete()) {
+                log.warn("Could not delete outdated {}", mappedFile);
+            }
+
+            Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap = readHistoricalMap(fileName, mappedFile);
+            StartupTimeline.record(fileName, StartupTimeline.Phase.PARSED);
+            UserThread.execute(() -> {
+                // If resource file does not exist we do not create a new store as it would never get filled.
+                if (historicalMap != null) {
+                    storesByVersionBuilder.put(version, historicalMap);
+                    log.info("We have read from {} {} historical items.", fileName, historicalMap.size());
                     if (wasCreatedFromResources) {
-                        pruneStore(persisted, version);
+                        versionsCreatedFromResources.add(version);
                     }
-                    completeHandler.run();
-                },
-                () -> {
+                } else {
                     log.warn("Resource file with file name {} does not exits.", fileName);
-                    completeHandler.run();
-                });
+                }
+                StartupTimeline.record(fileName, StartupTimeline.Phase.PUBLISHED);
+                completeHandler.run();
+            });
+        });
+    }
+
+    // We map the converted file if we have it. Otherwise we parse the store and convert it. If the conversion fails
+    // we use the parsed store.
+    @Nullable
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> readHistoricalMap(String fileName, File mappedFile) {
+        long ts = System.currentTimeMillis();
+        if (mappedFile.exists()) {
+            try {
+                MappedPayloadMap mappedPayloadMap = MappedPayloadMap.map(mappedFile, this::decodePayload);
+                log.info("Mapping {} took {} ms", mappedFile.getName(), System.currentTimeMillis() - ts);
+                return mappedPayloadMap;
+            } catch (IOException e) {
+                log.warn("Could not map {}, we create it again. {}", mappedFile.getName(), e.toString());
+            }
+        }
+
+        T persisted = persistenceManager.getPersisted(fileName);
+        if (persisted == null) {
+            return null;
+        }
+
+        try {
+            MappedPayloadMap.write(mappedFile, persisted.getMap(), this::decodePayload);
+            MappedPayloadMap mappedPayloadMap = MappedPayloadMap.map(mappedFile, this::decodePayload);
+            log.info("Converting {} to {} took {} ms", fileName, mappedFile.getName(), System.currentTimeMillis() - ts);
+            return mappedPayloadMap;
+        } catch (IOException e) {
+            log.warn("Could not convert {}, we keep the parsed store. {}", fileName, e.toString());
+            return persisted.getMap();
+        }
     }
 
-    private void pruneStore(PersistableNetworkPayloadStore<? extends PersistableNetworkPayload> historicalStore,
-                            String version) {
+    private PersistableNetworkPayload decodePayload(protobuf.PersistableNetworkPayload proto) {
+        return (PersistableNetworkPayload) persistenceManager.getPersistenceProtoResolver().fromProto(proto);
+    }
+
+    private void pruneStore(Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap, String version) {
         int preLive = getMapOfLiveData().size();
-        getMapOfLiveData().keySet().removeAll(historicalStore.getMap().keySet());
+        getMapOfLiveData().keySet().removeAll(historicalMap.keySet());
         int postLive = getMapOfLiveData().size();
         if (preLive > postLive) {
             log.info("We pruned data from our live data store which are already contained in the historical data store with version {}. " +
                             "The live map had {} entries before pruning and has {} entries afterwards.",
                     version, preLive, postLive);
+            persistRemoved();
         } else {
             log.info("No pruning from historical data store with version {} was applied", version);
         }
-        requestPersistence();
+    }
+
+    // Historical stores are immutable, so we build the views only once after we have read them
+    private void buildHistoricalPayloadsSinceIndex() {
+        List<String> versions = new ArrayList<>(storesByVersion.keySet());
+        versions.sort((v1, v2) -> v1.equals(v2) ? 0 : Version.isNewVersion(v1, v2) ? 1 : -1);
+        sortedStoreVersions = ImmutableList.copyOf(versions);
+
+        ImmutableList.Builder<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> builder = ImmutableList.builder();
+        for (int i = 0; i <= versions.size(); i++) {
+            List<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
+            versions.subList(i, versions.size()).forEach(version -> maps.add(storesByVersion.get(version)));
+            builder.add(new ReadOnlyMapUnion<>(maps));
+        }
+        historicalPayloadsSinceIndex = builder.build();
+        allHistoricalPayloads = historicalPayloadsSinceIndex.get(0);
+    }
+
+    private int getIndexOfFirstNewerStore(String requestersVersion) {
+        for (int i = 0; i < sortedStoreVersions.size(); i++) {
+            if (Version.isNewVersion(sortedStoreVersions.get(i), requestersVersion))
+                return i;
+        }
+        return sortedStoreVersions.size();
     }
 
     private boolean anyMapContainsKey(P2PDataStorage.ByteArray hash) {
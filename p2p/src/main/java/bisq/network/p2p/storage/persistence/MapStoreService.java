@@ -18,26 +18,43 @@
 package bisq.network.p2p.storage.persistence;
 
 import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 
+import bisq.common.UserThread;
 import bisq.common.persistence.PersistenceManager;
 import bisq.common.proto.persistable.PersistableEnvelope;
 import bisq.common.proto.persistable.PersistablePayload;
 
+import java.nio.file.Paths;
+
 import java.io.File;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Handles persisted data which is stored in a map.
  *
+ * Services for PersistableNetworkPayloads can use an {@link AppendOnlyLog} instead of the single protobuf file by
+ * overriding useAppendOnlyLog. Then added payloads are appended to the log and the whole store is only written at
+ * removals (as compacted base file of the log). At the first start with the log we migrate the data of the single
+ * file to the log. The single file is not written anymore after that but we keep it for a downgrade.
+ *
  * @param <T>
  * @param <R>
  */
 @Slf4j
 public abstract class MapStoreService<T extends PersistableEnvelope, R extends PersistablePayload> extends StoreService<T> {
+    private static final String LOG_DIR_POSTFIX = "_log";
 
+    @Nullable
+    private AppendOnlyLog appendOnlyLog;
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
@@ -58,22 +75,140 @@ public abstract class MapStoreService<T extends PersistableEnvelope, R extends P
 
     void put(P2PDataStorage.ByteArray hash, R payload) {
         getMap().put(hash, payload);
-        requestPersistence();
+        persistAdded(payload);
     }
 
     protected R putIfAbsent(P2PDataStorage.ByteArray hash, R payload) {
         R previous = getMap().putIfAbsent(hash, payload);
-        requestPersistence();
+        if (previous == null) {
+            persistAdded(payload);
+        }
         return previous;
     }
 
     R remove(P2PDataStorage.ByteArray hash) {
         R result = getMap().remove(hash);
-        requestPersistence();
+        persistRemoved();
         return result;
     }
 
     boolean containsKey(P2PDataStorage.ByteArray hash) {
         return getMap().containsKey(hash);
     }
+
+    public void shutDown() {
+        if (appendOnlyLog != null) {
+            appendOnlyLog.close();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Protected
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Only supported if R is PersistableNetworkPayload and the map of the store is a concurrent map (as the one of
+    // PersistableNetworkPayloadStore), as the log reads it from its own thread for compaction
+    protected boolean useAppendOnlyLog() {
+        return false;
+    }
+
+    protected void persistAdded(R payload) {
+        if (appendOnlyLog != null) {
+            appendOnlyLog.append((PersistableNetworkPayload) payload);
+        } else {
+            requestPersistence();
+        }
+    }
+
+    protected void persistRemoved() {
+        if (appendOnlyLog != null) {
+            appendOnlyLog.requestCompaction();
+        } else {
+            requestPersistence();
+        }
+    }
+
+    // Persists the whole map, e.g. after it got changed directly
+    protected void persistAll() {
+        if (appendOnlyLog != null) {
+            appendOnlyLog.requestCompaction();
+        } else {
+            persistenceManager.persistNow(() -> {
+            });
+        }
+    }
+
+    @Override
+    protected void readStore(Consumer<T> consumer) {
+        if (!useAppendOnlyLog()) {
+            super.readStore(consumer);
+            return;
+        }
+
+        AppendOnlyLog segmentLog = createAppendOnlyLog();
+        if (!segmentLog.exists()) {
+            // We migrate from the single file
+            super.readStore(persisted -> {
+                openAppendOnlyLog(segmentLog);
+                consumer.accept(persisted);
+            });
+            return;
+        }
+
+        new Thread(() -> {
+            List<PersistableNetworkPayload> payloads = segmentLog.replay();
+            UserThread.execute(() -> {
+                applyReplayedPayloads(payloads);
+                openAppendOnlyLog(segmentLog);
+                consumer.accept(store);
+            });
+        }, "AppendOnlyLog-read-" + getFileName()).start();
+    }
+
+    // Uses synchronous execution on the userThread. Only used by tests. The async methods should be used by app code.
+    @Override
+    protected void readStoreSync() {
+        if (!useAppendOnlyLog()) {
+            super.readStoreSync();
+            return;
+        }
+
+        AppendOnlyLog segmentLog = createAppendOnlyLog();
+        if (segmentLog.exists()) {
+            applyReplayedPayloads(segmentLog.replay());
+        } else {
+            super.readStoreSync();
+        }
+        openAppendOnlyLog(segmentLog);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private AppendOnlyLog createAppendOnlyLog() {
+        File dir = Paths.get(absolutePathOfStorageDir, getFileName() + LOG_DIR_POSTFIX).toFile();
+        return new AppendOnlyLog(dir,
+                proto -> (PersistableNetworkPayload) persistenceManager.getPersistenceProtoResolver().fromProto(proto),
+                // The map is a concurrent map, so it is safe to copy its values from the thread of the log
+                () -> {
+                    List<PersistableNetworkPayload> snapshot = new ArrayList<>();
+                    getMap().values().forEach(payload -> snapshot.add((PersistableNetworkPayload) payload));
+                    return snapshot;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyReplayedPayloads(List<PersistableNetworkPayload> payloads) {
+        store = createStore();
+        payloads.forEach(payload -> getMap().put(new P2PDataStorage.ByteArray(payload.getHash()), (R) payload));
+        initializePersistenceManager();
+    }
+
+    private void openAppendOnlyLog(AppendOnlyLog segmentLog) {
+        appendOnlyLog = segmentLog;
+        segmentLog.open();
+    }
 }
@@ -0,0 +1,413 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.util.Utilities;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Read-only map of PersistableNetworkPayloads backed by a memory-mapped file. Used for the historical data stores
+ * which never change after they got created from the resource files.
+ *
+ * The file holds a header, an index of all hashes sorted in unsigned lexicographic order with the offset and length
+ * of the serialized payload and the serialized protobuf.PersistableNetworkPayloads. Lookups of keys are done by a
+ * binary search directly on the mapped index, so containsKey does not allocate. Payloads are only decoded on access
+ * and not cached, so the heap only holds what the callers keep. As each access returns a new instance, callers which
+ * send the payloads should use the serialized payloads from getSerializedPayload instead of serializing them again.
+ *
+ * The file is written once from the parsed store and is replaced atomically, so an existing file is complete.
+ * Payloads which cannot be decoded again are not written, and a checksum of the index and the payloads is verified
+ * when the file gets mapped. So every key in the index has a payload we can decode and containsKey and get agree.
+ * The file is limited to the 2 GB a single mapping supports, a larger store is kept in memory by the caller.
+ */
+@ThreadSafe
+@Slf4j
+final class MappedPayloadMap extends AbstractMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+    private static final int MAGIC = 0x4251504d;
+    private static final int FORMAT_VERSION = 2;
+    // magic, format version, number of entries, hash length, CRC32 of the rest of the file
+    private static final int HEADER_SIZE = 20;
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+    // hash followed by offset (long) and length (int) of the serialized payload
+    private static final int INDEX_ENTRY_OVERHEAD = 12;
+
+    private final ByteBuffer buffer;
+    private final int numEntries;
+    private final int hashLength;
+    private final int indexEntrySize;
+    private final Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder;
+    private final Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet = new EntrySet();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the payloads to the file in the format used by the MappedPayloadMap. Payloads which cannot be decoded
+     * by the decoder are not written.
+     *
+     * @throws IOException if writing fails, the hashes of the payloads have different lengths or the file would
+     * exceed the max. size we can map
+     */
+    static void write(File file,
+                      Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads,
+                      Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder)
+            throws IOException {
+        List<P2PDataStorage.ByteArray> sortedHashes = new ArrayList<>(payloads.keySet());
+        sortedHashes.sort((hash1, hash2) -> Arrays.compareUnsigned(hash1.bytes, hash2.bytes));
+        int hashLength = sortedHashes.isEmpty() ? 0 : sortedHashes.get(0).bytes.length;
+
+        List<P2PDataStorage.ByteArray> hashes = new ArrayList<>(sortedHashes.size());
+        List<byte[]> serializedPayloads = new ArrayList<>(sortedHashes.size());
+        long payloadsSize = 0;
+        for (P2PDataStorage.ByteArray hash : sortedHashes) {
+            if (hash.bytes.length != hashLength)
+                throw new IOException("Hashes of different length are not supported");
+
+            byte[] serializedPayload = payloads.get(hash).toProtoMessage().toByteArray();
+            if (decode(serializedPayload, decoder) == null) {
+                log.warn("We do not write payload {} as it cannot be decoded", Utilities.bytesAsHexString(hash.bytes));
+                continue;
+            }
+            hashes.add(hash);
+            serializedPayloads.add(serializedPayload);
+            payloadsSize += serializedPayload.length;
+        }
+
+        long dataOffset = HEADER_SIZE + (long) hashes.size() * (hashLength + INDEX_ENTRY_OVERHEAD);
+        if (dataOffset + payloadsSize > MAX_FILE_SIZE)
+            throw new IOException("The payloads exceed the max. size of a mapped file");
+
+        ByteBuffer index = ByteBuffer.allocate((int) (dataOffset - HEADER_SIZE));
+        long offset = dataOffset;
+        for (int i = 0; i < hashes.size(); i++) {
+            index.put(hashes.get(i).bytes);
+            index.putLong(offset);
+            index.putInt(serializedPayloads.get(i).length);
+            offset += serializedPayloads.get(i).length;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(index.array());
+        serializedPayloads.forEach(crc32::update);
+
+        Path tempPath = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempPath.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(hashes.size());
+            out.writeInt(hashLength);
+            out.writeInt((int) crc32.getValue());
+            out.write(index.array());
+            for (byte[] serializedPayload : serializedPayloads) {
+                out.write(serializedPayload);
+            }
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+        Files.move(tempPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the file written by {@link #write(File, Map, Function)}.
+     *
+     * @throws IOException if the file cannot be mapped or is not a valid file of the current format
+     */
+    static MappedPayloadMap map(File file,
+                                Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // A single mapping is limited to 2 GB, FileChannel.map would throw an IllegalArgumentException
+            if (channel.size() > MAX_FILE_SIZE)
+                throw new IOException(file.getName() + " exceeds the max. size of a mapped file");
+
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+                throw new IOException("Invalid header of " + file.getName());
+
+            int numEntries = buffer.getInt(8);
+            int hashLength = buffer.getInt(12);
+            long dataOffset = HEADER_SIZE + (long) numEntries * (hashLength + INDEX_ENTRY_OVERHEAD);
+            if (numEntries < 0 || hashLength < 0 || dataOffset > buffer.capacity())
+                throw new IOException("Invalid index of " + file.getName());
+
+            // A corrupted file could contain keys of payloads we cannot decode, so we verify the checksum
+            CRC32 crc32 = new CRC32();
+            crc32.update(buffer.duplicate().position(HEADER_SIZE));
+            if ((int) crc32.getValue() != buffer.getInt(16))
+                throw new IOException("Invalid checksum of " + file.getName());
+
+            MappedPayloadMap mappedPayloadMap = new MappedPayloadMap(buffer, numEntries, hashLength, decoder);
+            for (int i = 0; i < numEntries; i++) {
+                long offset = mappedPayloadMap.getPayloadOffset(i);
+                int length = mappedPayloadMap.getPayloadLength(i);
+                if (offset < dataOffset || length < 0 || offset + length > buffer.capacity())
+                    throw new IOException("Invalid index entry " + i + " of " + file.getName());
+            }
+            return mappedPayloadMap;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private MappedPayloadMap(ByteBuffer buffer,
+                             int numEntries,
+                             int hashLength,
+                             Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder) {
+        this.buffer = buffer;
+        this.numEntries = numEntries;
+        this.hashLength = hashLength;
+        this.indexEntrySize = hashLength + INDEX_ENTRY_OVERHEAD;
+        this.decoder = decoder;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Map
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public PersistableNetworkPayload get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? decode(index) : null;
+    }
+
+    @Override
+    public Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet() {
+        return entrySet;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return The serialized protobuf.PersistableNetworkPayload of the payload with that hash as stored in the file,
+     * without copying it, or null if we do not have the payload
+     */
+    @Nullable
+    ByteString getSerializedPayload(byte[] hash) {
+        int index = indexOf(hash);
+        return index >= 0 ? UnsafeByteOperations.unsafeWrap(getPayloadBuffer(index)) : null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // We only use absolute reads of the buffer, so it can be shared by all threads
+    private int indexOf(Object key) {
+        return key instanceof P2PDataStorage.ByteArray ? indexOf(((P2PDataStorage.ByteArray) key).bytes) : -1;
+    }
+
+    private int indexOf(byte[] hash) {
+        if (hash.length != hashLength)
+            return -1;
+
+        int low = 0;
+        int high = numEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareHashAt(mid, hash);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareHashAt(int index, byte[] hash) {
+        int position = HEADER_SIZE + index * indexEntrySize;
+        for (int i = 0; i < hashLength; i++) {
+            int comparison = Integer.compare(buffer.get(position + i) & 0xFF, hash[i] & 0xFF);
+            if (comparison != 0)
+                return comparison;
+        }
+        return 0;
+    }
+
+    private P2PDataStorage.ByteArray getHash(int index) {
+        byte[] hash = new byte[hashLength];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(HEADER_SIZE + index * indexEntrySize);
+        duplicate.get(hash);
+        return new P2PDataStorage.ByteArray(hash);
+    }
+
+    private long getPayloadOffset(int index) {
+        return buffer.getLong(HEADER_SIZE + index * indexEntrySize + hashLength);
+    }
+
+    private int getPayloadLength(int index) {
+        return buffer.getInt(HEADER_SIZE + index * indexEntrySize + hashLength + 8);
+    }
+
+    // Read-only view on the serialized payload at that index. The offsets got verified to be within the buffer, so
+    // they fit into an int.
+    private ByteBuffer getPayloadBuffer(int index) {
+        int offset = (int) getPayloadOffset(index);
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + getPayloadLength(index));
+        return duplicate.slice().asReadOnlyBuffer();
+    }
+
+    @Nullable
+    private PersistableNetworkPayload decode(int index) {
+        try {
+            return decoder.apply(protobuf.PersistableNetworkPayload.parseFrom(getPayloadBuffer(index)));
+        } catch (Throwable t) {
+            // We have verified at writing that all payloads can be decoded, so that is not expected
+            log.error("Could not decode payload at index {}. {}", index, t.toString());
+            return null;
+        }
+    }
+
+    @Nullable
+    private static PersistableNetworkPayload decode(
+            byte[] serializedPayload,
+            Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> decoder) {
+        try {
+            return decoder.apply(protobuf.PersistableNetworkPayload.parseFrom(serializedPayload));
+        } catch (Throwable t) {
+            log.warn("Could not decode payload. {}", t.toString());
+            return null;
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> {
+        @Override
+        public Iterator<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> iterator() {
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < numEntries;
+                }
+
+                @Override
+                public Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload> next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return new MappedEntry(index++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return numEntries;
+        }
+    }
+
+    // The payload is decoded when getValue is called, so iterating the keys does not decode any payload
+    private class MappedEntry implements Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+        private final int index;
+        private final P2PDataStorage.ByteArray key;
+
+        private MappedEntry(int index) {
+            this.index = index;
+            this.key = getHash(index);
+        }
+
+        @Override
+        public P2PDataStorage.ByteArray getKey() {
+            return key;
+        }
+
+        @Override
+        public PersistableNetworkPayload getValue() {
+            return decode(index);
+        }
+
+        @Override
+        public PersistableNetworkPayload setValue(PersistableNetworkPayload value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
@@ -21,10 +21,17 @@ import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 
 import bisq.common.proto.persistable.PersistableEnvelope;
+import bisq.common.proto.persistable.StreamingEnvelopeDecoder;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -35,8 +42,9 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public abstract class PersistableNetworkPayloadStore<T extends PersistableNetworkPayload> implements PersistableEnvelope {
+    // Those stores hold up to a few 100 000 entries, so we use a map which does not need a ByteArray object per key
     @Getter
-    protected final Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = new ConcurrentHashMap<>();
+    protected final Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = new ByteArrayMap<>();
 
     protected PersistableNetworkPayloadStore() {
     }
@@ -45,7 +53,25 @@ public abstract class PersistableNetworkPayloadStore<T extends PersistableNetwor
         collection.forEach(item -> map.put(new P2PDataStorage.ByteArray(item.getHash()), item));
     }
 
+    // Adds the items of the store message one by one, so we never hold the protobuf objects of all items at once.
+    // The items are field 1 in all store messages.
+    protected static <S extends PersistableNetworkPayloadStore<T>, T extends PersistableNetworkPayload, M extends MessageLite>
+    S readItems(CodedInputStream inputStream, S store, Parser<M> parser, Function<M, T> fromProto) throws IOException {
+        StreamingEnvelopeDecoder.readRepeatedField(inputStream, 1, parser, proto -> {
+            T item = fromProto.apply(proto);
+            store.map.put(new P2PDataStorage.ByteArray(item.getHash()), item);
+        });
+        return store;
+    }
+
     public boolean containsKey(P2PDataStorage.ByteArray hash) {
         return map.containsKey(hash);
     }
+
+    // The payloads are immutable and the map can be iterated from any thread, so the store itself can be serialized
+    // on the write thread. Payloads added in the meantime might get included already.
+    @Override
+    public PersistableEnvelope toPersistableSnapshot() {
+        return this;
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of the union of maps with disjoint key sets. It is used to deliver the data of several stores
+ * without copying them into a new map. Changes of the underlying maps are reflected by the view, so the underlying
+ * maps need to support concurrent iteration if they get changed while the view is in use.
+ *
+ * The entries must not be modified by the caller.
+ */
+public final class ReadOnlyMapUnion<K, V> extends AbstractMap<K, V> {
+    private final ImmutableList<Map<K, V>> maps;
+    private final Set<Entry<K, V>> entrySet = new AbstractSet<Entry<K, V>>() {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return Iterators.unmodifiableIterator(Iterators.concat(maps.stream()
+                    .map(map -> map.entrySet().iterator())
+                    .iterator()));
+        }
+
+        @Override
+        public int size() {
+            return ReadOnlyMapUnion.this.size();
+        }
+    };
+
+    public ReadOnlyMapUnion(List<Map<K, V>> maps) {
+        this.maps = ImmutableList.copyOf(maps);
+    }
+
+    @Override
+    public int size() {
+        return maps.stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return maps.stream().allMatch(Map::isEmpty);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return maps.stream().anyMatch(map -> map.containsKey(key));
+    }
+
+    @Override
+    public V get(Object key) {
+        for (Map<K, V> map : maps) {
+            V value = map.get(key);
+            if (value != null)
+                return value;
+        }
+        return null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+
+    List<Map<K, V>> getMaps() {
+        return maps;
+    }
+}
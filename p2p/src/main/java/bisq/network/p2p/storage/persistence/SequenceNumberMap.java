@@ -35,9 +35,11 @@ import lombok.Setter;
  * Hence this Persistable class.
  */
 public class SequenceNumberMap implements PersistableEnvelope {
+    // Replaced by the purge while other threads put entries or copy the map for persistence. The map must support
+    // concurrent access, see P2PDataStorage.getPurgedSequenceNumberMap.
     @Getter
     @Setter
-    private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
+    private volatile Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
 
     public SequenceNumberMap() {
     }
@@ -72,6 +74,13 @@ public class SequenceNumberMap implements PersistableEnvelope {
     }
 
 
+    // MapValue is immutable, so a copy of the map is enough to serialize it on the write thread
+    @Override
+    public PersistableEnvelope toPersistableSnapshot() {
+        return new SequenceNumberMap(map);
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p;
+
+import bisq.network.p2p.peers.keepalive.messages.Ping;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BundleOfEnvelopesTest {
+
+    @Test
+    public void testSerializedSizeMatchesProto() {
+        BundleOfEnvelopes bundle = new BundleOfEnvelopes();
+        assertEquals(bundle.toProtoNetworkEnvelope().getSerializedSize(), bundle.getSerializedSize());
+
+        for (int i = 0; i < 200; i++) {
+            if (i % 2 == 0) {
+                bundle.add(new Ping(i, i * 1000));
+            } else {
+                CloseConnectionMessage message = new CloseConnectionMessage("reason " + i);
+                bundle.add(message, message.toProtoNetworkEnvelope());
+            }
+            assertEquals(bundle.toProtoNetworkEnvelope().getSerializedSize(), bundle.getSerializedSize());
+        }
+    }
+
+    @Test
+    public void testEnvelopeProtoIsReused() {
+        BundleOfEnvelopes bundle = new BundleOfEnvelopes();
+        CloseConnectionMessage message = new CloseConnectionMessage("reason");
+        protobuf.NetworkEnvelope proto = message.toProtoNetworkEnvelope();
+        bundle.add(message, proto);
+
+        assertEquals(proto, bundle.getEnvelopeProto(0));
+        assertEquals(proto, bundle.toProtoNetworkEnvelope().getBundleOfEnvelopes().getEnvelopes(0));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.network;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionSchedulerTest {
+    private ConnectionScheduler connectionScheduler;
+
+    @Before
+    public void setUp() {
+        connectionScheduler = new ConnectionScheduler("ConnectionSchedulerTest", 2);
+    }
+
+    @After
+    public void tearDown() {
+        connectionScheduler.shutDown();
+    }
+
+    @Test
+    public void testTasksGetExecuted() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        assertTrue(connectionScheduler.execute(latch::countDown));
+        assertTrue(connectionScheduler.schedule(latch::countDown, 10, TimeUnit.MILLISECONDS));
+        assertTrue(connectionScheduler.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, connectionScheduler.getNumExecutedTasks());
+        assertTrue(connectionScheduler.getMaxLatency() >= connectionScheduler.getAverageLatency());
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopScheduler() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        connectionScheduler.execute(() -> {
+            throw new RuntimeException("test");
+        });
+        connectionScheduler.execute(latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDelayedTasksCompleteAfterShutDown() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        connectionScheduler.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+        connectionScheduler.shutDown();
+
+        assertFalse(connectionScheduler.execute(() -> {
+        }));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import bisq.network.p2p.CloseConnectionMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static bisq.network.p2p.network.NioFrameDecoderTest.getString;
+import static bisq.network.p2p.network.NioFrameDecoderTest.writeDelimited;
+
+public class NetworkEnvelopeFrameReaderTest {
+
+    @Test
+    public void readEnvelope() throws IOException {
+        protobuf.NetworkEnvelope envelope = new CloseConnectionMessage("reason").toProtoNetworkEnvelope();
+        NetworkEnvelopeFrameReader reader = new NetworkEnvelopeFrameReader(new ByteArrayInputStream(writeDelimited(envelope)));
+
+        Assert.assertEquals(envelope, reader.readEnvelope());
+        Assert.assertNull(reader.readEnvelope());
+    }
+
+    @Test
+    public void readEnvelope_oversizedFrameIsSkipped() throws IOException {
+        protobuf.NetworkEnvelope oversized = new CloseConnectionMessage(getString(Connection.PERMITTED_MESSAGE_SIZE))
+                .toProtoNetworkEnvelope();
+        protobuf.NetworkEnvelope next = new CloseConnectionMessage("next").toProtoNetworkEnvelope();
+        NetworkEnvelopeFrameReader reader = new NetworkEnvelopeFrameReader(new ByteArrayInputStream(writeDelimited(oversized, next)));
+
+        try {
+            reader.readEnvelope();
+            Assert.fail("Expected OversizedFrameException");
+        } catch (OversizedFrameException e) {
+            Assert.assertTrue(e.isSkipped());
+            Assert.assertEquals(oversized.getSerializedSize(), e.getFrameSize());
+            Assert.assertEquals(protobuf.NetworkEnvelope.MessageCase.CLOSE_CONNECTION_MESSAGE, e.getMessageCase());
+        }
+
+        Assert.assertEquals(next, reader.readEnvelope());
+    }
+}
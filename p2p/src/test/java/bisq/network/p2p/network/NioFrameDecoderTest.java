@@ -0,0 +1,145 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import bisq.network.p2p.BundleOfEnvelopes;
+import bisq.network.p2p.CloseConnectionMessage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.nio.ByteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NioFrameDecoderTest {
+
+    static byte[] writeDelimited(protobuf.NetworkEnvelope... envelopes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (protobuf.NetworkEnvelope envelope : envelopes) {
+            envelope.writeDelimitedTo(outputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    static String getString(int length) {
+        return String.join("", Collections.nCopies(length, "a"));
+    }
+
+    private static class CollectingFrameHandler implements NioFrameDecoder.FrameHandler {
+        private final List<protobuf.NetworkEnvelope> envelopes = new ArrayList<>();
+        private final List<Integer> rejectedFrameSizes = new ArrayList<>();
+
+        @Override
+        public void onFrameReceived(byte[] frame) {
+            try {
+                envelopes.add(protobuf.NetworkEnvelope.parseFrom(frame));
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void onFrameRejected(int frameSize) {
+            rejectedFrameSizes.add(frameSize);
+        }
+    }
+
+    @Test
+    public void decode_singleByteChunks() throws IOException {
+        protobuf.NetworkEnvelope first = new CloseConnectionMessage("first").toProtoNetworkEnvelope();
+        protobuf.NetworkEnvelope second = new CloseConnectionMessage(getString(300)).toProtoNetworkEnvelope();
+        byte[] bytes = writeDelimited(first, second);
+
+        NioFrameDecoder decoder = new NioFrameDecoder();
+        CollectingFrameHandler handler = new CollectingFrameHandler();
+        for (byte b : bytes) {
+            decoder.decode(ByteBuffer.wrap(new byte[]{b}), handler);
+        }
+
+        Assert.assertEquals(2, handler.envelopes.size());
+        Assert.assertEquals(first, handler.envelopes.get(0));
+        Assert.assertEquals(second, handler.envelopes.get(1));
+    }
+
+    @Test
+    public void decode_multipleFramesInOneChunk() throws IOException {
+        protobuf.NetworkEnvelope envelope = new CloseConnectionMessage("reason").toProtoNetworkEnvelope();
+        byte[] bytes = writeDelimited(envelope, envelope, envelope);
+
+        NioFrameDecoder decoder = new NioFrameDecoder();
+        CollectingFrameHandler handler = new CollectingFrameHandler();
+        decoder.decode(ByteBuffer.wrap(bytes), handler);
+
+        Assert.assertEquals(3, handler.envelopes.size());
+        Assert.assertEquals(envelope, handler.envelopes.get(2));
+    }
+
+    @Test
+    public void decode_oversizedFrameIsSkipped() throws IOException {
+        protobuf.NetworkEnvelope oversized = new CloseConnectionMessage(getString(Connection.PERMITTED_MESSAGE_SIZE))
+                .toProtoNetworkEnvelope();
+        protobuf.NetworkEnvelope next = new CloseConnectionMessage("next").toProtoNetworkEnvelope();
+        byte[] bytes = writeDelimited(oversized, next);
+
+        NioFrameDecoder decoder = new NioFrameDecoder();
+        CollectingFrameHandler handler = new CollectingFrameHandler();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            ByteBuffer chunk = buffer.slice();
+            chunk.limit(Math.min(chunk.remaining(), 1000));
+            decoder.decode(chunk, handler);
+            buffer.position(buffer.position() + chunk.position());
+        }
+
+        Assert.assertEquals(Collections.singletonList(oversized.getSerializedSize()), handler.rejectedFrameSizes);
+        Assert.assertEquals(Collections.singletonList(next), handler.envelopes);
+    }
+
+    @Test
+    public void decode_extendedSizePermission() throws IOException {
+        BundleOfEnvelopes bundle = new BundleOfEnvelopes();
+        bundle.add(new CloseConnectionMessage(getString(Connection.PERMITTED_MESSAGE_SIZE)));
+        protobuf.NetworkEnvelope envelope = bundle.toProtoNetworkEnvelope();
+
+        NioFrameDecoder decoder = new NioFrameDecoder();
+        CollectingFrameHandler handler = new CollectingFrameHandler();
+        decoder.decode(ByteBuffer.wrap(writeDelimited(envelope)), handler);
+
+        Assert.assertTrue(handler.rejectedFrameSizes.isEmpty());
+        Assert.assertEquals(Collections.singletonList(envelope), handler.envelopes);
+    }
+
+    @Test(expected = InvalidProtocolBufferException.class)
+    public void decode_frameExceedsMaxSize() throws IOException {
+        // Length prefix of MAX_PERMITTED_MESSAGE_SIZE + 1 without any body
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        com.google.protobuf.CodedOutputStream codedOutputStream = com.google.protobuf.CodedOutputStream.newInstance(outputStream);
+        codedOutputStream.writeUInt32NoTag(Connection.MAX_PERMITTED_MESSAGE_SIZE + 1);
+        codedOutputStream.flush();
+
+        new NioFrameDecoder().decode(ByteBuffer.wrap(outputStream.toByteArray()), new CollectingFrameHandler());
+    }
+}
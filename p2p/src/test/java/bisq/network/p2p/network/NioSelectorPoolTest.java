@@ -0,0 +1,116 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+
+import java.io.IOException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NioSelectorPoolTest {
+    private static final int MAX_QUEUED_BYTES = 1024 * 1024;
+
+    private NioSelectorPool nioSelectorPool;
+    private ServerSocketChannel serverSocketChannel;
+    private SocketChannel clientChannel;
+    private SocketChannel peerChannel;
+    private final CompletableFuture<Throwable> channelFailure = new CompletableFuture<>();
+
+    @Before
+    public void setUp() throws IOException {
+        nioSelectorPool = new NioSelectorPool("NioSelectorPoolTest", 1, 60_000, MAX_QUEUED_BYTES);
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        clientChannel = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        peerChannel = serverSocketChannel.accept();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        nioSelectorPool.shutDown();
+        clientChannel.close();
+        peerChannel.close();
+        serverSocketChannel.close();
+    }
+
+    @Test
+    public void testChannelFailsIfPeerDoesNotRead() throws Exception {
+        NioChannelOutputStream outputStream = nioSelectorPool.register(clientChannel, new FailureHandler());
+        byte[] bytes = new byte[MAX_QUEUED_BYTES / 4];
+        // The peer never reads, so the socket buffers get full and the data is queued until the limit is reached
+        for (int i = 0; i < 1000 && !channelFailure.isDone(); i++) {
+            outputStream.write(bytes);
+            outputStream.flush();
+        }
+
+        assertTrue(channelFailure.get(5, TimeUnit.SECONDS) instanceof SocketTimeoutException);
+    }
+
+    @Test
+    public void testSingleWriteLargerThanLimitIsAccepted() throws Exception {
+        NioChannelOutputStream outputStream = nioSelectorPool.register(clientChannel, new FailureHandler());
+        byte[] bytes = new byte[2 * MAX_QUEUED_BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        outputStream.write(bytes);
+        outputStream.flush();
+
+        ByteBuffer received = ByteBuffer.allocate(bytes.length);
+        while (received.hasRemaining()) {
+            peerChannel.read(received);
+        }
+        assertArrayEquals(bytes, received.array());
+        assertFalse(channelFailure.isDone());
+    }
+
+    private class FailureHandler implements NioSelectorPool.ChannelHandler {
+        @Override
+        public void onFrameReceived(byte[] frame) {
+        }
+
+        @Override
+        public void onFrameRejected(int frameSize) {
+        }
+
+        @Override
+        public void onEndOfStream() {
+        }
+
+        @Override
+        public void onChannelFailure(Throwable throwable) {
+            channelFailure.complete(throwable);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.network;
+
+import bisq.network.p2p.peers.keepalive.messages.Ping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class SynchronizedProtoOutputStreamTest {
+    @Test
+    public void testWriteEnvelopeAsyncDoesNotWaitForWrite() throws Exception {
+        CountDownLatch writeAllowed = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        // Blocks like the socket of a slow peer until we release it
+        OutputStream slowStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                awaitWriteAllowed();
+                written.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                awaitWriteAllowed();
+                written.write(bytes, offset, length);
+            }
+
+            private void awaitWriteAllowed() throws IOException {
+                try {
+                    writeAllowed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        SynchronizedProtoOutputStream outputStream = new SynchronizedProtoOutputStream(slowStream, mock(Statistic.class));
+
+        Ping first = new Ping(1, 0);
+        Ping second = new Ping(2, 0);
+        outputStream.writeEnvelopeAsync(first, first.toProtoNetworkEnvelope(), Throwable::printStackTrace);
+        outputStream.writeEnvelopeAsync(second, second.toProtoNetworkEnvelope(), Throwable::printStackTrace);
+        assertEquals(0, written.size());
+
+        writeAllowed.countDown();
+        // A blocking write is queued behind the async ones, so after it returned all envelopes got written
+        Ping third = new Ping(3, 0);
+        outputStream.writeEnvelope(third, third.toProtoNetworkEnvelope());
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(written.toByteArray());
+        assertEquals(1, protobuf.NetworkEnvelope.parseDelimitedFrom(inputStream).getPing().getNonce());
+        assertEquals(2, protobuf.NetworkEnvelope.parseDelimitedFrom(inputStream).getPing().getNonce());
+        assertEquals(3, protobuf.NetworkEnvelope.parseDelimitedFrom(inputStream).getPing().getNonce());
+        assertEquals(0, inputStream.available());
+        outputStream.onConnectionShutdown();
+    }
+
+    @Test
+    public void testWriteAfterShutdownCallsErrorHandler() throws Exception {
+        SynchronizedProtoOutputStream outputStream = new SynchronizedProtoOutputStream(new ByteArrayOutputStream(),
+                mock(Statistic.class));
+        outputStream.onConnectionShutdown();
+
+        CountDownLatch failed = new CountDownLatch(1);
+        Ping ping = new Ping(1, 0);
+        outputStream.writeEnvelopeAsync(ping, ping.toProtoNetworkEnvelope(), throwable -> failed.countDown());
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+    }
+}
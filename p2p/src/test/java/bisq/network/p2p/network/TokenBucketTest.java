@@ -0,0 +1,62 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket tokenBucket = new TokenBucket(3, 20, 1000);
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertFalse(tokenBucket.tryConsume(1000));
+        assertEquals(20, tokenBucket.getMillisUntilNextToken(1000));
+        assertEquals(5, tokenBucket.getMillisUntilNextToken(1015));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket tokenBucket = new TokenBucket(2, 20, 1000);
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertFalse(tokenBucket.tryConsume(1019));
+        assertTrue(tokenBucket.tryConsume(1020));
+        assertFalse(tokenBucket.tryConsume(1020));
+
+        // Partial intervals are not lost
+        assertFalse(tokenBucket.tryConsume(1030));
+        assertTrue(tokenBucket.tryConsume(1040));
+    }
+
+    @Test
+    public void testRefillIsCappedAtCapacity() {
+        TokenBucket tokenBucket = new TokenBucket(2, 20, 1000);
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertTrue(tokenBucket.tryConsume(1000));
+        assertEquals(0, tokenBucket.getMillisUntilNextToken(10_000));
+        assertTrue(tokenBucket.tryConsume(10_000));
+        assertTrue(tokenBucket.tryConsume(10_000));
+        assertFalse(tokenBucket.tryConsume(10_000));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.peers.getdata;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.persistence.ByteArrayMap;
+
+import com.google.protobuf.ByteString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyBucketSummaryTest {
+    private static List<P2PDataStorage.ByteArray> createKeys(int numKeys, int seed) {
+        Random random = new Random(seed);
+        List<P2PDataStorage.ByteArray> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            byte[] bytes = new byte[20];
+            random.nextBytes(bytes);
+            keys.add(new P2PDataStorage.ByteArray(bytes));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testProtoRoundTrip() {
+        KeyBucketSummary summary = KeyBucketSummary.fromKeys(createKeys(1000, 1), 42);
+        Assert.assertEquals(64, summary.getNumBuckets());
+        Assert.assertEquals(summary, KeyBucketSummary.fromProto(summary.toProtoMessage()));
+    }
+
+    @Test
+    public void testMalformedProtoIsRejected() {
+        protobuf.KeyBucketSummary proto = KeyBucketSummary.fromKeys(createKeys(1000, 1), 42).toProtoMessage();
+        Assert.assertNull(KeyBucketSummary.fromProto(proto.toBuilder().setNumBuckets(63).build()));
+        Assert.assertNull(KeyBucketSummary.fromProto(proto.toBuilder().setNumBuckets(0).build()));
+        Assert.assertNull(KeyBucketSummary.fromProto(proto.toBuilder().setDigests(ByteString.EMPTY).build()));
+    }
+
+    @Test
+    public void testNumBucketsIsCapped() {
+        KeyBucketSummary summary = KeyBucketSummary.fromKeys(createKeys(0, 1), 42);
+        Assert.assertEquals(1, summary.getNumBuckets());
+
+        summary = KeyBucketSummary.fromKeys(createKeys(KeyBucketSummary.MAX_NUM_BUCKETS * 16, 1), 42);
+        Assert.assertEquals(KeyBucketSummary.MAX_NUM_BUCKETS, summary.getNumBuckets());
+    }
+
+    @Test
+    public void testAllKeysKnownIfInSync() {
+        List<P2PDataStorage.ByteArray> keys = createKeys(1000, 1);
+        Predicate<P2PDataStorage.ByteArray> isKnown = KeyBucketSummary.fromKeys(keys, 42).getKnownKeysPredicate(keys);
+        Assert.assertTrue(keys.stream().allMatch(isKnown));
+    }
+
+    @Test
+    public void testKeysOfMapGiveSameSummary() {
+        List<P2PDataStorage.ByteArray> requesterKeys = createKeys(1000, 1);
+        ByteArrayMap<Boolean> requesterMap = new ByteArrayMap<>();
+        requesterKeys.forEach(key -> requesterMap.put(key, true));
+        Assert.assertEquals(KeyBucketSummary.fromKeys(requesterKeys, 42),
+                KeyBucketSummary.fromKeysOf(requesterMap, 42));
+
+        List<P2PDataStorage.ByteArray> responderKeys = new ArrayList<>(requesterKeys);
+        responderKeys.add(createKeys(1, 2).get(0));
+        ByteArrayMap<Boolean> responderMap = new ByteArrayMap<>();
+        responderKeys.forEach(key -> responderMap.put(key, true));
+
+        KeyBucketSummary summary = KeyBucketSummary.fromKeys(requesterKeys, 42);
+        Predicate<P2PDataStorage.ByteArray> isKnown = summary.getKnownKeysPredicate(responderKeys);
+        ByteArrayMap.KeyPredicate isKnownForKeysOfMap = summary.getKnownKeysPredicateForKeysOf(responderMap);
+        responderKeys.forEach(key -> Assert.assertEquals(isKnown.test(key),
+                isKnownForKeysOfMap.test(key.bytes, 0, key.bytes.length)));
+    }
+
+    @Test
+    public void testOnlyBucketOfMissingKeyIsSent() {
+        List<P2PDataStorage.ByteArray> requesterKeys = createKeys(1000, 1);
+        List<P2PDataStorage.ByteArray> responderKeys = new ArrayList<>(requesterKeys);
+        P2PDataStorage.ByteArray missingKey = createKeys(1, 2).get(0);
+        responderKeys.add(missingKey);
+
+        Predicate<P2PDataStorage.ByteArray> isKnown = KeyBucketSummary.fromKeys(requesterKeys, 42)
+                .getKnownKeysPredicate(responderKeys);
+        Assert.assertFalse(isKnown.test(missingKey));
+
+        long numSent = responderKeys.stream().filter(isKnown.negate()).count();
+        Assert.assertTrue(numSent < 10 * KeyBucketSummary.TARGET_KEYS_PER_BUCKET);
+    }
+}
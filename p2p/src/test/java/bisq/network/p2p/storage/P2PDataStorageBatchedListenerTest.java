@@ -0,0 +1,144 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.NodeAddress;
+import bisq.network.p2p.network.Connection;
+import bisq.network.p2p.peers.getdata.messages.GetDataResponse;
+import bisq.network.p2p.storage.messages.AddPersistableNetworkPayloadMessage;
+import bisq.network.p2p.storage.mocks.PersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+import bisq.network.p2p.storage.persistence.BatchedAppendOnlyDataStoreListener;
+
+import bisq.common.UserThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the delivery of the added PersistableNetworkPayloads to BatchedAppendOnlyDataStoreListeners.
+ */
+public class P2PDataStorageBatchedListenerTest {
+    private TestState testState;
+    private final List<Collection<PersistableNetworkPayload>> batches = new ArrayList<>();
+    private final BatchedAppendOnlyDataStoreListener batchedListener = batches::add;
+    private Executor userThreadExecutor;
+
+    @Before
+    public void setUp() {
+        testState = new TestState();
+        testState.mockedStorage.addAppendOnlyDataStoreListener(batchedListener);
+        userThreadExecutor = UserThread.getExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        UserThread.setExecutor(userThreadExecutor);
+    }
+
+    private static List<PersistableNetworkPayload> createPayloads(int numPayloads) {
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < numPayloads; i++) {
+            payloads.add(new PersistableNetworkPayloadStub(new byte[]{(byte) i}));
+        }
+        return payloads;
+    }
+
+    private static Connection createConnection() {
+        Connection connection = mock(Connection.class);
+        when(connection.getPeersNodeAddressOptional()).thenReturn(Optional.of(TestState.getTestNodeAddress()));
+        return connection;
+    }
+
+    // TESTCASE: All payloads of a GetDataResponse are delivered with one call, other listeners get one call per payload
+    @Test
+    public void processGetDataResponse_deliversOneBatch() {
+        List<PersistableNetworkPayload> payloads = createPayloads(3);
+        GetDataResponse getDataResponse = new GetDataResponse(new HashSet<>(), new HashSet<>(payloads), 1, false);
+
+        testState.mockedStorage.processGetDataResponse(getDataResponse, new NodeAddress("peer", 8080));
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(new HashSet<>(payloads), new HashSet<>(batches.get(0)));
+        payloads.forEach(payload -> verify(testState.appendOnlyDataStoreListener).onAdded(payload));
+    }
+
+    // TESTCASE: The payloads of the envelopes of a bundle, which are delivered with one user thread task, are
+    // delivered with one call
+    @Test
+    public void onMessage_bundleDeliversOneBatch() {
+        List<Runnable> userThreadTasks = new ArrayList<>();
+        UserThread.setExecutor(userThreadTasks::add);
+        List<PersistableNetworkPayload> payloads = createPayloads(3);
+        Connection connection = createConnection();
+
+        payloads.forEach(payload ->
+                testState.mockedStorage.onMessage(new AddPersistableNetworkPayloadMessage(payload), connection));
+        Assert.assertTrue(batches.isEmpty());
+
+        Assert.assertEquals(1, userThreadTasks.size());
+        userThreadTasks.get(0).run();
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(payloads, new ArrayList<>(batches.get(0)));
+        payloads.forEach(payload -> verify(testState.appendOnlyDataStoreListener, times(1)).onAdded(payload));
+    }
+
+    // TESTCASE: A payload added with the client API is delivered with a batch of one
+    @Test
+    public void addPersistableNetworkPayload_deliversSingletonBatch() {
+        PersistableNetworkPayload payload = createPayloads(1).get(0);
+
+        testState.mockedStorage.addPersistableNetworkPayload(payload, TestState.getTestNodeAddress(), false);
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(List.of(payload), new ArrayList<>(batches.get(0)));
+    }
+
+    // TESTCASE: Duplicates are not delivered again
+    @Test
+    public void addPersistableNetworkPayload_duplicateNotDelivered() {
+        PersistableNetworkPayload payload = createPayloads(1).get(0);
+        testState.mockedStorage.addPersistableNetworkPayload(payload, TestState.getTestNodeAddress(), false);
+        batches.clear();
+
+        testState.mockedStorage.addPersistableNetworkPayload(payload, TestState.getTestNodeAddress(), false);
+
+        Assert.assertTrue(batches.isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void deliveredBatchIsImmutable() {
+        testState.mockedStorage.addPersistableNetworkPayload(createPayloads(1).get(0), TestState.getTestNodeAddress(), false);
+
+        batches.get(0).clear();
+    }
+}
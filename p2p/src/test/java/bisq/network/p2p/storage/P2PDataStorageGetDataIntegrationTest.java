@@ -22,6 +22,8 @@ import bisq.network.p2p.peers.getdata.messages.GetDataRequest;
 import bisq.network.p2p.peers.getdata.messages.GetDataResponse;
 import bisq.network.p2p.storage.mocks.PersistableExpirableProtectedStoragePayloadStub;
 import bisq.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
 import bisq.network.p2p.storage.payload.ProtectedStoragePayload;
 
@@ -190,4 +192,38 @@ public class P2PDataStorageGetDataIntegrationTest {
         clientNodeTestState.verifyProtectedStorageRemove(
                 beforeState, onSeedNodeAndClientNode, false, false, false, false);
     }
+
+    // TESTCASE: Compact data sync only delivers the buckets which are out of sync
+    @Test
+    public void compactSynchronizationDeliversMissingPayloads() {
+        TestState seedNodeTestState = new TestState();
+        P2PDataStorage seedNode = seedNodeTestState.mockedStorage;
+
+        TestState clientNodeTestState = new TestState();
+        P2PDataStorage clientNode = clientNodeTestState.mockedStorage;
+
+        for (int i = 0; i < 200; i++) {
+            PersistableNetworkPayload payload = createPersistableNetworkPayload(i);
+            seedNode.addPersistableNetworkPayload(payload, null, false);
+            clientNode.addPersistableNetworkPayload(payload, null, false);
+        }
+        PersistableNetworkPayload onSeedNode = createPersistableNetworkPayload(200);
+        seedNode.addPersistableNetworkPayload(onSeedNode, null, false);
+
+        GetDataRequest getDataRequest = clientNode.buildPreliminaryGetDataRequest(1, true);
+        Assert.assertTrue(getDataRequest.getExcludedKeys().isEmpty());
+
+        GetDataResponse getDataResponse = seedNode.buildGetDataResponse(
+                getDataRequest, 1000, new AtomicBoolean(), new AtomicBoolean(), new Capabilities());
+
+        Assert.assertTrue(getDataResponse.getPersistableNetworkPayloadSet().contains(onSeedNode));
+        Assert.assertTrue(getDataResponse.getPersistableNetworkPayloadSet().size() < 100);
+    }
+
+    private static PersistableNetworkPayload createPersistableNetworkPayload(int i) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) i;
+        hash[1] = (byte) (i >> 8);
+        return new SerializablePersistableNetworkPayloadStub(hash, i);
+    }
 }
@@ -33,6 +33,7 @@ import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
@@ -188,5 +189,8 @@ public class P2PDataStorageRemoveExpiredTest {
         SavedTestState beforeState = this.testState.saveTestState(purgedProtectedStorageEntry);
         this.testState.mockedStorage.removeExpiredEntries();
         this.testState.verifyProtectedStorageRemove(beforeState, expectedRemoves, true, true, false, false);
+
+        // The purged map is written and copied concurrently afterwards
+        Assert.assertTrue(this.testState.mockedStorage.sequenceNumberMap.getMap() instanceof ConcurrentHashMap);
     }
 }
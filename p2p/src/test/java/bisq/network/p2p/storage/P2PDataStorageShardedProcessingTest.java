@@ -0,0 +1,149 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.TestUtils;
+import bisq.network.p2p.network.Connection;
+import bisq.network.p2p.storage.messages.AddDataMessage;
+import bisq.network.p2p.storage.messages.RefreshOfferMessage;
+import bisq.network.p2p.storage.messages.RemoveDataMessage;
+import bisq.network.p2p.storage.mocks.ExpirableProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import bisq.network.p2p.storage.payload.ProtectedStoragePayload;
+
+import bisq.common.app.Version;
+import bisq.common.crypto.CryptoException;
+import bisq.common.crypto.Sig;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the P2PDataStore with the ProtectedStorageEntry messages from the network applied off the user thread.
+ */
+public class P2PDataStorageShardedProcessingTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    private TestState testState;
+    private Connection connection;
+    // Events in the order the listener got them, guarded by itself
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        // Required to hash the payloads
+        Version.setBaseCryptoNetworkId(1);
+
+        testState = new TestState(4);
+        connection = mock(Connection.class);
+        when(connection.getPeersNodeAddressOptional()).thenReturn(Optional.of(TestState.getTestNodeAddress()));
+
+        testState.mockedStorage.addHashMapChangedListener(new HashMapChangedListener() {
+            @Override
+            public void onAdded(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+                synchronized (events) {
+                    protectedStorageEntries.forEach(e -> events.add("added " + e.getSequenceNumber()));
+                }
+            }
+
+            @Override
+            public void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+                synchronized (events) {
+                    protectedStorageEntries.forEach(e -> events.add("removed " + e.getSequenceNumber()));
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        testState.mockedStorage.shutDown();
+    }
+
+    private ProtectedStorageEntry createEntry(ProtectedStoragePayload payload, KeyPair ownerKeys, int sequenceNumber)
+            throws CryptoException {
+        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(
+                new P2PDataStorage.DataAndSeqNrPair(payload, sequenceNumber));
+        return new ProtectedStorageEntry(payload, ownerKeys.getPublic(), sequenceNumber,
+                Sig.sign(ownerKeys.getPrivate(), hashOfDataAndSeqNr), testState.clockFake);
+    }
+
+    private int getNumEvents() {
+        synchronized (events) {
+            return events.size();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    // TESTCASE: Adds of many payloads get applied and all listeners get notified
+    @Test
+    public void addsOfManyPayloadsAreApplied() throws NoSuchAlgorithmException, CryptoException, InterruptedException {
+        int numEntries = 50;
+        for (int i = 0; i < numEntries; i++) {
+            KeyPair ownerKeys = TestUtils.generateKeyPair();
+            ProtectedStoragePayload payload = new ExpirableProtectedStoragePayloadStub(ownerKeys.getPublic());
+            testState.mockedStorage.onMessage(new AddDataMessage(createEntry(payload, ownerKeys, 1)), connection);
+        }
+
+        waitUntil(() -> getNumEvents() == numEntries);
+        Assert.assertEquals(numEntries, testState.mockedStorage.getMap().size());
+    }
+
+    // TESTCASE: The messages of a payload are applied in the order we received them
+    @Test
+    public void messagesOfPayloadAreAppliedInOrder() throws NoSuchAlgorithmException, CryptoException, InterruptedException {
+        KeyPair ownerKeys = TestUtils.generateKeyPair();
+        ProtectedStoragePayload payload = new ExpirableProtectedStoragePayloadStub(ownerKeys.getPublic());
+        P2PDataStorage.ByteArray hashOfPayload = P2PDataStorage.get32ByteHashAsByteArray(payload);
+
+        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new P2PDataStorage.DataAndSeqNrPair(payload, 2));
+        RefreshOfferMessage refreshOfferMessage = new RefreshOfferMessage(hashOfDataAndSeqNr,
+                Sig.sign(ownerKeys.getPrivate(), hashOfDataAndSeqNr), hashOfPayload.bytes, 2);
+
+        testState.mockedStorage.onMessage(new AddDataMessage(createEntry(payload, ownerKeys, 1)), connection);
+        testState.mockedStorage.onMessage(refreshOfferMessage, connection);
+        testState.mockedStorage.onMessage(new RemoveDataMessage(createEntry(payload, ownerKeys, 3)), connection);
+
+        waitUntil(() -> getNumEvents() == 2);
+        synchronized (events) {
+            Assert.assertEquals(List.of("added 1", "removed 3"), events);
+        }
+        Assert.assertFalse(testState.mockedStorage.getMap().containsKey(hashOfPayload));
+        Assert.assertEquals(3, testState.mockedStorage.sequenceNumberMap.get(hashOfPayload).sequenceNr);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.NodeAddress;
+import bisq.network.p2p.TestUtils;
+import bisq.network.p2p.peers.getdata.messages.GetDataResponse;
+import bisq.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
+import bisq.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+
+import bisq.common.app.Capabilities;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+
+import java.time.Clock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SerializedPayloadCacheTest {
+    private TestState testState;
+    private NodeAddress localNodeAddress;
+
+    @Before
+    public void setUp() {
+        testState = new TestState();
+        localNodeAddress = new NodeAddress("localhost", 8080);
+    }
+
+    @Test
+    public void testCachedBytesAreReused() throws NoSuchAlgorithmException {
+        SerializedPayloadCache cache = new SerializedPayloadCache();
+        PersistableNetworkPayload payload = new SerializablePersistableNetworkPayloadStub(new byte[]{1}, 1);
+
+        ByteString bytes = cache.getSerializedPersistableNetworkPayload(payload);
+        Assert.assertEquals(payload.toProtoMessage().toByteString(), bytes);
+        Assert.assertSame(bytes, cache.getSerializedPersistableNetworkPayload(payload));
+
+        // Another instance with the same hash must not get the cached bytes
+        PersistableNetworkPayload other = new SerializablePersistableNetworkPayloadStub(new byte[]{1}, 2);
+        Assert.assertEquals(other.toProtoMessage().toByteString(), cache.getSerializedPersistableNetworkPayload(other));
+
+        ProtectedStorageEntry protectedStorageEntry = createProtectedStorageEntry();
+        ByteString entryBytes = cache.getSerializedStorageEntryWrapper(protectedStorageEntry);
+        Assert.assertEquals(GetDataResponse.toStorageEntryWrapper(protectedStorageEntry).toByteString(), entryBytes);
+        Assert.assertSame(entryBytes, cache.getSerializedStorageEntryWrapper(protectedStorageEntry));
+        Assert.assertEquals(3, cache.size());
+
+        cache.removeProtectedStorageEntry(protectedStorageEntry);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCacheIsBounded() throws NoSuchAlgorithmException {
+        SerializedPayloadCache cache = new SerializedPayloadCache(10);
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            PersistableNetworkPayload payload = new SerializablePersistableNetworkPayloadStub(new byte[]{(byte) i}, i);
+            payloads.add(payload);
+            Assert.assertEquals(payload.toProtoMessage().toByteString(),
+                    cache.getSerializedPersistableNetworkPayload(payload));
+        }
+        List<ProtectedStorageEntry> protectedStorageEntries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ProtectedStorageEntry protectedStorageEntry = createProtectedStorageEntry();
+            protectedStorageEntries.add(protectedStorageEntry);
+            cache.getSerializedStorageEntryWrapper(protectedStorageEntry);
+        }
+
+        // Payloads and entries are still referenced, so only the size bound has evicted them
+        Assert.assertTrue(cache.size() <= 20);
+        Assert.assertEquals(100, payloads.size());
+        Assert.assertEquals(20, protectedStorageEntries.size());
+    }
+
+    @Test
+    public void testResponseFromCachedBytesIsIdenticalOnTheWire() throws NoSuchAlgorithmException {
+        SerializedPayloadCache cache = new SerializedPayloadCache();
+        Set<PersistableNetworkPayload> payloads = new LinkedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            payloads.add(new SerializablePersistableNetworkPayloadStub(new byte[]{(byte) i}, i));
+        }
+        Set<ProtectedStorageEntry> protectedStorageEntries = new LinkedHashSet<>();
+        protectedStorageEntries.add(createProtectedStorageEntry());
+        protectedStorageEntries.add(createProtectedStorageEntry());
+
+        for (boolean isGetUpdatedDataResponse : new boolean[]{false, true}) {
+            GetDataResponse cached = new GetDataResponse(protectedStorageEntries,
+                    payloads,
+                    cache::getSerializedStorageEntryWrapper,
+                    cache::getSerializedPersistableNetworkPayload,
+                    1,
+                    isGetUpdatedDataResponse);
+            GetDataResponse serialized = new GetDataResponse(protectedStorageEntries,
+                    payloads,
+                    1,
+                    isGetUpdatedDataResponse);
+            Assert.assertArrayEquals(serialized.toProtoNetworkEnvelope().toByteArray(),
+                    cached.toProtoNetworkEnvelope().toByteArray());
+        }
+    }
+
+    @Test
+    public void testResponseFromCachedBytesMatchesSerializedResponse() throws InvalidProtocolBufferException {
+        for (int i = 0; i < 100; i++) {
+            testState.mockedStorage.addPersistableNetworkPayload(
+                    new SerializablePersistableNetworkPayloadStub(new byte[]{(byte) i}, i), localNodeAddress, false);
+        }
+
+        // The second response is built from cached bytes
+        for (int i = 0; i < 2; i++) {
+            GetDataResponse getDataResponse = testState.mockedStorage.buildGetDataResponse(
+                    new PreliminaryGetDataRequest(1, new HashSet<>()),
+                    1000,
+                    new AtomicBoolean(),
+                    new AtomicBoolean(),
+                    new Capabilities());
+            GetDataResponse serializedWithoutCache = new GetDataResponse(getDataResponse.getDataSet(),
+                    getDataResponse.getPersistableNetworkPayloadSet(),
+                    getDataResponse.getRequestNonce(),
+                    getDataResponse.isGetUpdatedDataResponse());
+
+            protobuf.GetDataResponse expected = serializedWithoutCache.toProtoNetworkEnvelope().getGetDataResponse();
+            protobuf.GetDataResponse actual = protobuf.NetworkEnvelope.parseFrom(
+                    getDataResponse.toProtoNetworkEnvelope().toByteArray()).getGetDataResponse();
+
+            Assert.assertEquals(100, actual.getPersistableNetworkPayloadItemsCount());
+            Assert.assertEquals(new HashSet<>(expected.getPersistableNetworkPayloadItemsList()),
+                    new HashSet<>(actual.getPersistableNetworkPayloadItemsList()));
+            Assert.assertEquals(expected.getRequestNonce(), actual.getRequestNonce());
+            Assert.assertEquals(expected.getSupportedCapabilitiesList(), actual.getSupportedCapabilitiesList());
+            Assert.assertEquals(expected.getSerializedSize(), actual.getSerializedSize());
+        }
+    }
+
+    private static ProtectedStorageEntry createProtectedStorageEntry() throws NoSuchAlgorithmException {
+        KeyPair ownerKeys = TestUtils.generateKeyPair();
+        return new ProtectedStorageEntry(new ProtectedStoragePayloadStub(ownerKeys.getPublic()),
+                ownerKeys.getPublic(),
+                1,
+                new byte[]{1, 2, 3},
+                Clock.systemDefaultZone());
+    }
+}
@@ -72,8 +72,14 @@ public class TestState {
     private final PersistenceManager<SequenceNumberMap> mockSeqNrPersistenceManager;
     private final ProtectedDataStoreService protectedDataStoreService;
     final ClockFake clockFake;
+    private final int storageValidationThreads;
 
     TestState() {
+        this(0);
+    }
+
+    TestState(int storageValidationThreads) {
+        this.storageValidationThreads = storageValidationThreads;
         this.mockBroadcaster = mock(Broadcaster.class);
         this.mockSeqNrPersistenceManager = mock(PersistenceManager.class);
         this.clockFake = new ClockFake();
@@ -85,7 +91,8 @@ public class TestState {
                 this.protectedDataStoreService, mock(ResourceDataStoreService.class),
                 this.mockSeqNrPersistenceManager,
                 this.clockFake,
-                MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE);
+                MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE,
+                0);
 
         this.appendOnlyDataStoreListener = mock(AppendOnlyDataStoreListener.class);
         this.hashMapChangedListener = mock(HashMapChangedListener.class);
@@ -97,7 +104,8 @@ public class TestState {
                 this.mockSeqNrPersistenceManager,
                 this.clockFake,
                 this.hashMapChangedListener,
-                this.appendOnlyDataStoreListener);
+                this.appendOnlyDataStoreListener,
+                this.storageValidationThreads);
 
         when(this.mockSeqNrPersistenceManager.getPersisted())
                 .thenReturn(this.mockedStorage.sequenceNumberMap);
@@ -116,7 +124,8 @@ public class TestState {
                 this.mockSeqNrPersistenceManager,
                 this.clockFake,
                 this.hashMapChangedListener,
-                this.appendOnlyDataStoreListener);
+                this.appendOnlyDataStoreListener,
+                this.storageValidationThreads);
 
         when(this.mockSeqNrPersistenceManager.getPersisted())
                 .thenReturn(this.mockedStorage.sequenceNumberMap);
@@ -128,13 +137,15 @@ public class TestState {
             PersistenceManager<SequenceNumberMap> sequenceNrMapPersistenceManager,
             ClockFake clock,
             HashMapChangedListener hashMapChangedListener,
-            AppendOnlyDataStoreListener appendOnlyDataStoreListener) {
+            AppendOnlyDataStoreListener appendOnlyDataStoreListener,
+            int storageValidationThreads) {
 
         P2PDataStorage p2PDataStorage = new P2PDataStorage(mock(NetworkNode.class),
                 broadcaster,
                 new AppendOnlyDataStoreServiceFake(),
                 protectedDataStoreService, mock(ResourceDataStoreService.class),
-                sequenceNrMapPersistenceManager, clock, MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE);
+                sequenceNrMapPersistenceManager, clock, MAX_SEQUENCE_NUMBER_MAP_SIZE_BEFORE_PURGE,
+                storageValidationThreads);
 
         // Currently TestState only supports reading ProtectedStorageEntries off disk.
         p2PDataStorage.readFromResourcesSync("unused");
@@ -0,0 +1,41 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.mocks;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * PersistableNetworkPayloadStub which can be serialized. It uses the AccountAgeWitness proto as we do not have
+ * a dedicated one for tests.
+ */
+public class SerializablePersistableNetworkPayloadStub extends PersistableNetworkPayloadStub {
+    private final long date;
+
+    public SerializablePersistableNetworkPayloadStub(byte[] hash, long date) {
+        super(hash);
+        this.date = date;
+    }
+
+    @Override
+    public protobuf.PersistableNetworkPayload toProtoMessage() {
+        return protobuf.PersistableNetworkPayload.newBuilder()
+                .setAccountAgeWitness(protobuf.AccountAgeWitness.newBuilder()
+                        .setHash(ByteString.copyFrom(getHash()))
+                        .setDate(date))
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppendOnlyLogTest {
+    private File dir;
+    // Read from the log thread
+    private final List<PersistableNetworkPayload> snapshot = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = new File(Files.createTempDirectory("storage").toFile(), "TestStore_log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir.getParentFile());
+    }
+
+    private AppendOnlyLog createLog() {
+        return new AppendOnlyLog(dir,
+                proto -> new SerializablePersistableNetworkPayloadStub(proto.getAccountAgeWitness().getHash().toByteArray(),
+                        proto.getAccountAgeWitness().getDate()),
+                () -> new ArrayList<>(snapshot));
+    }
+
+    private static PersistableNetworkPayload createPayload(int i) {
+        return new SerializablePersistableNetworkPayloadStub(new byte[]{(byte) i, (byte) (i >> 8)}, i);
+    }
+
+    private static List<Integer> toIds(Collection<PersistableNetworkPayload> payloads) {
+        return payloads.stream()
+                .map(payload -> (payload.getHash()[0] & 0xFF) | (payload.getHash()[1] & 0xFF) << 8)
+                .collect(Collectors.toList());
+    }
+
+    private List<PersistableNetworkPayload> reopenAndReplay() {
+        AppendOnlyLog log = createLog();
+        assertTrue(log.exists());
+        return log.replay();
+    }
+
+    @Test
+    public void appendedPayloadsAreReplayedInOrder() {
+        AppendOnlyLog log = createLog();
+        assertFalse(log.exists());
+        log.open();
+        for (int i = 0; i < 100; i++) {
+            log.append(createPayload(i));
+        }
+        log.close();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, toIds(reopenAndReplay()));
+    }
+
+    @Test
+    public void openWithoutFilesWritesSnapshotAsBase() {
+        // That is the migration from the single file store
+        snapshot.addAll(Arrays.asList(createPayload(1), createPayload(2)));
+        AppendOnlyLog log = createLog();
+        log.open();
+        log.append(createPayload(3));
+        log.close();
+
+        assertEquals(Arrays.asList(1, 2, 3), toIds(reopenAndReplay()));
+    }
+
+    @Test
+    public void compactionReplacesAllFilesWithSnapshot() {
+        AppendOnlyLog log = createLog();
+        log.open();
+        log.append(createPayload(1));
+        log.append(createPayload(2));
+        // Payload 1 got removed from the store
+        snapshot.add(createPayload(2));
+        log.requestCompaction();
+        log.append(createPayload(3));
+        log.close();
+
+        assertEquals(Arrays.asList(2, 3), toIds(reopenAndReplay()));
+    }
+
+    @Test
+    public void failedWriteGetsPersistedByCompaction() {
+        snapshot.addAll(Arrays.asList(createPayload(1), createPayload(2)));
+        // Writing the base file at open fails as its temp file cannot be created
+        assertTrue(new File(dir, "base_0.log.tmp").mkdirs());
+        AppendOnlyLog log = createLog();
+        log.open();
+        snapshot.add(createPayload(3));
+        log.append(createPayload(3));
+        log.close();
+
+        assertEquals(Arrays.asList(1, 2, 3), toIds(reopenAndReplay()));
+    }
+
+    @Test
+    public void appendAfterRestartContinuesLog() {
+        AppendOnlyLog log = createLog();
+        log.open();
+        log.append(createPayload(1));
+        log.close();
+
+        log = createLog();
+        List<PersistableNetworkPayload> replayed = log.replay();
+        log.open();
+        log.append(createPayload(2));
+        log.close();
+
+        assertEquals(Arrays.asList(1), toIds(replayed));
+        assertEquals(Arrays.asList(1, 2), toIds(reopenAndReplay()));
+    }
+
+    @Test
+    public void tornRecordIsTruncated() throws IOException {
+        AppendOnlyLog log = createLog();
+        log.open();
+        log.append(createPayload(1));
+        log.append(createPayload(2));
+        log.close();
+
+        File segment = Arrays.stream(dir.listFiles())
+                .filter(file -> file.getName().startsWith("segment_"))
+                .findAny()
+                .orElseThrow();
+        long validSize = segment.length();
+        // Header of a record of 100 bytes but only 3 bytes of data
+        Files.write(segment.toPath(), new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        assertEquals(Arrays.asList(1, 2), toIds(reopenAndReplay()));
+        assertEquals(validSize, segment.length());
+    }
+
+    @Test
+    public void recordWithInvalidChecksumIsNotReplayed() throws IOException {
+        AppendOnlyLog log = createLog();
+        log.open();
+        log.append(createPayload(1));
+        log.close();
+
+        File segment = Arrays.stream(dir.listFiles())
+                .filter(file -> file.getName().startsWith("segment_"))
+                .findAny()
+                .orElseThrow();
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment.toPath(), bytes);
+
+        assertTrue(reopenAndReplay().isEmpty());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ByteArrayMapTest {
+    private static P2PDataStorage.ByteArray createKey(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return new P2PDataStorage.ByteArray(bytes);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        ByteArrayMap<String> map = new ByteArrayMap<>();
+        P2PDataStorage.ByteArray key = createKey(new Random(1), 20);
+
+        Assert.assertNull(map.put(key, "a"));
+        Assert.assertEquals("a", map.get(key));
+        Assert.assertEquals("a", map.get(key.bytes.clone()));
+        Assert.assertEquals("a", map.put(key, "b"));
+        Assert.assertEquals("b", map.putIfAbsent(key, "c"));
+        Assert.assertEquals(1, map.size());
+
+        Assert.assertEquals("b", map.remove(key));
+        Assert.assertFalse(map.containsKey(key));
+        Assert.assertTrue(map.isEmpty());
+
+        // Re-adding a removed key must work
+        Assert.assertNull(map.putIfAbsent(key, "d"));
+        Assert.assertEquals("d", map.get(key));
+    }
+
+    @Test
+    public void testKeyIsCopied() {
+        ByteArrayMap<String> map = new ByteArrayMap<>();
+        byte[] bytes = new byte[20];
+        map.put(bytes, "a");
+        bytes[0] = 1;
+        Assert.assertNull(map.get(bytes));
+        Assert.assertEquals("a", map.get(new byte[20]));
+    }
+
+    @Test
+    public void testKeysWithOtherLength() {
+        ByteArrayMap<String> map = new ByteArrayMap<>();
+        Random random = new Random(1);
+        P2PDataStorage.ByteArray key20 = createKey(random, 20);
+        P2PDataStorage.ByteArray key32 = createKey(random, 32);
+        map.put(key20, "a");
+        map.put(key32, "b");
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("b", map.get(key32));
+        Assert.assertEquals(new HashSet<>(List.of(key20, key32)), map.keySet());
+
+        Assert.assertEquals("b", map.remove(key32));
+        Assert.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testIterationIsInInsertionOrder() {
+        ByteArrayMap<Integer> map = new ByteArrayMap<>();
+        Random random = new Random(1);
+        List<P2PDataStorage.ByteArray> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            P2PDataStorage.ByteArray key = createKey(random, 20);
+            keys.add(key);
+            map.put(key, i);
+        }
+        map.remove(keys.remove(500));
+
+        Assert.assertEquals(keys, new ArrayList<>(map.keySet()));
+        int previous = -1;
+        for (int value : map.values()) {
+            Assert.assertTrue(value > previous);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void testForEachEntry() {
+        ByteArrayMap<Integer> map = new ByteArrayMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            map.put(createKey(random, 20), i);
+        }
+        map.put(createKey(random, 32), 100);
+        map.remove(map.keySet().iterator().next());
+
+        Map<P2PDataStorage.ByteArray, Integer> visited = new LinkedHashMap<>();
+        map.forEachEntry((keyBytes, offset, length, value) -> {
+            P2PDataStorage.ByteArray key = new P2PDataStorage.ByteArray(
+                    Arrays.copyOfRange(keyBytes, offset, offset + length));
+            Assert.assertTrue(map.containsKey(keyBytes, offset, length));
+            Assert.assertEquals(value, map.get(keyBytes, offset, length));
+            visited.put(key, value);
+        });
+        Assert.assertEquals(new ArrayList<>(map.entrySet()), new ArrayList<>(visited.entrySet()));
+    }
+
+    @Test
+    public void testStaticForEachEntry() {
+        ByteArrayMap<Integer> byteArrayMap = new ByteArrayMap<>();
+        Map<P2PDataStorage.ByteArray, Integer> hashMap = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            byteArrayMap.put(createKey(random, 20), i);
+            hashMap.put(createKey(random, 20), 10 + i);
+        }
+        Map<P2PDataStorage.ByteArray, Integer> union = new ReadOnlyMapUnion<>(List.of(byteArrayMap, hashMap));
+
+        Map<P2PDataStorage.ByteArray, Integer> visited = new HashMap<>();
+        ByteArrayMap.forEachEntry(union, (keyBytes, offset, length, value) -> {
+            byte[] key = Arrays.copyOfRange(keyBytes, offset, offset + length);
+            visited.put(new P2PDataStorage.ByteArray(key), value);
+        });
+        Assert.assertEquals(union, visited);
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        ByteArrayMap<Integer> map = new ByteArrayMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            map.put(createKey(random, 20), i);
+        }
+        map.put(createKey(random, 32), 100);
+
+        Iterator<Integer> iterator = map.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0)
+                iterator.remove();
+        }
+        Assert.assertEquals(50, map.size());
+        Assert.assertTrue(map.values().stream().allMatch(value -> value % 2 == 1));
+    }
+
+    @Test
+    public void testBehavesLikeHashMap() {
+        ByteArrayMap<Integer> map = new ByteArrayMap<>();
+        Map<P2PDataStorage.ByteArray, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        List<P2PDataStorage.ByteArray> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(createKey(random, 20));
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            P2PDataStorage.ByteArray key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Assert.assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 2:
+                    Assert.assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals(expected.get(key), map.get(key));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(map, expected);
+    }
+}
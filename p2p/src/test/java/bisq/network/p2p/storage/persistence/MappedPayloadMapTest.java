@@ -0,0 +1,167 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPayloadMapTest {
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("storage").toFile();
+        file = new File(dir, "TestStore_1.4.0_mapped");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private static final Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> DECODER =
+            proto -> new SerializablePersistableNetworkPayloadStub(proto.getAccountAgeWitness().getHash().toByteArray(),
+                    proto.getAccountAgeWitness().getDate());
+
+    private static MappedPayloadMap map(File file) throws IOException {
+        return MappedPayloadMap.map(file, DECODER);
+    }
+
+    private static Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> createPayloads(int numPayloads) {
+        Random random = new Random(1);
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads = new HashMap<>();
+        while (payloads.size() < numPayloads) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            payloads.put(new P2PDataStorage.ByteArray(hash), new SerializablePersistableNetworkPayloadStub(hash, payloads.size()));
+        }
+        return payloads;
+    }
+
+    @Test
+    public void containsAllWrittenPayloads() throws IOException {
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads = createPayloads(1000);
+        MappedPayloadMap.write(file, payloads, DECODER);
+        MappedPayloadMap mappedPayloadMap = map(file);
+
+        assertEquals(payloads.size(), mappedPayloadMap.size());
+        assertEquals(payloads.keySet(), new HashSet<>(mappedPayloadMap.keySet()));
+        payloads.forEach((hash, payload) -> {
+            assertTrue(mappedPayloadMap.containsKey(hash));
+            PersistableNetworkPayload mappedPayload = mappedPayloadMap.get(hash);
+            assertArrayEquals(payload.getHash(), mappedPayload.getHash());
+            assertEquals(payload.toProtoMessage(), mappedPayload.toProtoMessage());
+        });
+    }
+
+    @Test
+    public void serializedPayloadsAreTheWrittenBytes() throws IOException {
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads = createPayloads(100);
+        MappedPayloadMap.write(file, payloads, DECODER);
+        MappedPayloadMap mappedPayloadMap = map(file);
+
+        payloads.forEach((hash, payload) ->
+                assertEquals(payload.toProtoMessage().toByteString(), mappedPayloadMap.getSerializedPayload(hash.bytes)));
+        assertNull(mappedPayloadMap.getSerializedPayload(new byte[20]));
+    }
+
+    @Test
+    public void unknownKeysAreNotContained() throws IOException {
+        MappedPayloadMap.write(file, createPayloads(100), DECODER);
+        MappedPayloadMap mappedPayloadMap = map(file);
+
+        assertFalse(mappedPayloadMap.containsKey(new P2PDataStorage.ByteArray(new byte[20])));
+        assertFalse(mappedPayloadMap.containsKey(new P2PDataStorage.ByteArray(new byte[]{1, 2, 3})));
+        assertFalse(mappedPayloadMap.containsKey("not a hash"));
+        assertNull(mappedPayloadMap.get(new P2PDataStorage.ByteArray(new byte[20])));
+    }
+
+    @Test
+    public void emptyMap() throws IOException {
+        MappedPayloadMap.write(file, new HashMap<>(), DECODER);
+        MappedPayloadMap mappedPayloadMap = map(file);
+
+        assertTrue(mappedPayloadMap.isEmpty());
+        assertFalse(mappedPayloadMap.containsKey(new P2PDataStorage.ByteArray(new byte[20])));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFileIsRejected() throws IOException {
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        map(file);
+    }
+
+    @Test
+    public void undecodablePayloadsAreNotWritten() throws IOException {
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads = createPayloads(10);
+        P2PDataStorage.ByteArray undecodableHash = payloads.keySet().iterator().next();
+        MappedPayloadMap.write(file, payloads, proto -> {
+            if (Arrays.equals(proto.getAccountAgeWitness().getHash().toByteArray(), undecodableHash.bytes))
+                throw new IllegalArgumentException("Unsupported payload");
+            return DECODER.apply(proto);
+        });
+        MappedPayloadMap mappedPayloadMap = map(file);
+
+        assertEquals(9, mappedPayloadMap.size());
+        assertFalse(mappedPayloadMap.containsKey(undecodableHash));
+        assertNull(mappedPayloadMap.get(undecodableHash));
+        mappedPayloadMap.keySet().forEach(hash -> assertTrue(mappedPayloadMap.get(hash) != null));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedFileIsRejected() throws IOException {
+        MappedPayloadMap.write(file, createPayloads(10), DECODER);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file.toPath(), bytes);
+        map(file);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void isReadOnly() throws IOException {
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> payloads = createPayloads(1);
+        MappedPayloadMap.write(file, payloads, DECODER);
+
+        map(file).put(payloads.keySet().iterator().next(), payloads.values().iterator().next());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadOnlyMapUnionTest {
+
+    @Test
+    public void testUnion() {
+        Map<String, Integer> first = new HashMap<>();
+        first.put("a", 1);
+        first.put("b", 2);
+        Map<String, Integer> second = new HashMap<>();
+        second.put("c", 3);
+
+        Map<String, Integer> union = new ReadOnlyMapUnion<>(Arrays.asList(first, Collections.emptyMap(), second));
+
+        Assert.assertEquals(3, union.size());
+        Assert.assertFalse(union.isEmpty());
+        Assert.assertEquals(Integer.valueOf(1), union.get("a"));
+        Assert.assertEquals(Integer.valueOf(3), union.get("c"));
+        Assert.assertNull(union.get("d"));
+        Assert.assertTrue(union.containsKey("b"));
+        Assert.assertFalse(union.containsKey("d"));
+
+        Map<String, Integer> expected = new HashMap<>(first);
+        expected.putAll(second);
+        Assert.assertEquals(expected, union);
+        Assert.assertEquals(expected.entrySet(), new HashSet<>(union.entrySet()));
+        Assert.assertEquals(expected.keySet(), new HashSet<>(union.keySet()));
+    }
+
+    @Test
+    public void testReflectsChanges() {
+        Map<String, Integer> live = new HashMap<>();
+        Map<String, Integer> union = new ReadOnlyMapUnion<>(Collections.singletonList(live));
+        Assert.assertTrue(union.isEmpty());
+
+        live.put("a", 1);
+        Assert.assertEquals(1, union.size());
+        Assert.assertEquals(Integer.valueOf(1), union.get("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPutNotSupported() {
+        new ReadOnlyMapUnion<String, Integer>(Collections.singletonList(new HashMap<>())).put("a", 1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveNotSupported() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("a", 1);
+        Set<String> keySet = new ReadOnlyMapUnion<>(Collections.singletonList(map)).keySet();
+        keySet.remove("a");
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+
+import bisq.common.proto.persistable.PersistableEnvelope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequenceNumberMapTest {
+    private static P2PDataStorage.MapValue createMapValue(int sequenceNr) {
+        return P2PDataStorage.MapValue.fromProto(protobuf.MapValue.newBuilder()
+                .setSequenceNr(sequenceNr)
+                .setTimeStamp(1000L * sequenceNr)
+                .build());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() {
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        P2PDataStorage.ByteArray key1 = new P2PDataStorage.ByteArray(new byte[]{1});
+        P2PDataStorage.ByteArray key2 = new P2PDataStorage.ByteArray(new byte[]{2});
+        sequenceNumberMap.put(key1, createMapValue(1));
+
+        PersistableEnvelope snapshot = sequenceNumberMap.toPersistableSnapshot();
+        Assert.assertNotNull(snapshot);
+        Assert.assertNotSame(sequenceNumberMap, snapshot);
+
+        sequenceNumberMap.put(key1, createMapValue(2));
+        sequenceNumberMap.put(key2, createMapValue(3));
+
+        protobuf.PersistableEnvelope serialized = (protobuf.PersistableEnvelope) snapshot.toPersistableMessage();
+        SequenceNumberMap restored = SequenceNumberMap.fromProto(serialized.getSequenceNumberMap());
+        Assert.assertEquals(1, restored.size());
+        Assert.assertEquals(1, restored.get(key1).sequenceNr);
+        Assert.assertEquals(2, sequenceNumberMap.size());
+    }
+}